@@ -13,7 +13,7 @@ public class Main {
 	public static void main(String[] args) {
 		// TODO Auto-generated method stub
         ODRegisterParameter registerParameter = new ODRegisterParameter();
-        ODDeployer deployer = ODDeployer.getInstance();
+        ODDeployer deployer = new ODDeployer();
         ODDeployer.DEBUG = false;
         ODDeployer.PRINT_SHELL = false;
 //        ODDeployer.CONNECT = false;
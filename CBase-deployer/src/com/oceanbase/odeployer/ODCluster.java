@@ -0,0 +1,509 @@
+package com.oceanbase.odeployer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.oceanbase.odeployer.command.ODCommand;
+import com.oceanbase.odeployer.command.ODCommandHandler;
+import com.oceanbase.odeployer.command.ODICommandHandler;
+import com.oceanbase.odeployer.common.ODConfiguration;
+import com.oceanbase.odeployer.common.ODConfigurationDiff;
+import com.oceanbase.odeployer.common.ODError;
+import com.oceanbase.odeployer.common.ODItem;
+import com.oceanbase.odeployer.common.ODOceanbase;
+import com.oceanbase.odeployer.common.ODServer;
+import com.oceanbase.odeployer.common.ODStatusCache;
+import com.oceanbase.odeployer.parser.ODISectionParser;
+import com.oceanbase.odeployer.start.ODParameterGenerator;
+import com.oceanbase.odeployer.task.ODDeployTask;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODMetricRegistry;
+import com.oceanbase.odeployer.util.ODPrinter;
+import com.oceanbase.odeployer.util.ODShell;
+import com.oceanbase.odeployer.util.ODUtil;
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 集群上下文
+ * <p>保存一个集群在一次命令运行中的全部状态: 配置文件, 配置项集合, 解析器, 主机节点,
+ * Shell命令生成器, 启动参数生成器和动作执行线程池.</p>
+ * <p>每个配置文件对应一个上下文, 上下文之间不共享状态, 因此同一进程中可同时操作多个集群.</p>
+ * <blockquote><pre>
+ * ODCluster cluster = deployer.createCluster("config/odeployer.cfg");
+ * cluster.handleCommand(cmd, argumentList, argvStr);
+ * cluster.close();
+ * </pre></blockquote>
+ * @since OD2.0
+ */
+public class ODCluster {
+
+    /** 注册了子命令, 配置项, 解析器等组件的部署器 */
+    private final ODDeployer deployer;
+
+    /** 配置文件路径和名称 */
+    private final String configureFileName;
+
+    /** 配置文件加载器, 重新加载配置时替换为新的实例 */
+    private volatile ODConfiguration configuration;
+
+    /** 最近一次加载失败的配置, 用于判断配置文件是否再次被修改 */
+    private ODConfiguration rejectedConfiguration;
+
+    /** 管理各主机节点 */
+    private final ODOceanbase oceanbase;
+
+    /** 生成远程Shell命令, 保存安装目录和端口号 */
+    private final ODShell shell = new ODShell();
+
+    /** 进程状态缓存, 在本次命令内共享 */
+    private final ODStatusCache statusCache = new ODStatusCache(ODDeployer.STATUS_TTL);
+
+    /** 默认的子命令处理器 */
+    private ODICommandHandler defaultCommandHandler = new ODCommandHandler();
+
+    /** 自定义的子命令处理器 */
+    private ODICommandHandler customCommandHandler;
+
+    /** 实例化当前使用的参数生成器 */
+    private ODParameterGenerator parameterGenerator;
+
+    /** 用于执行action */
+    private ThreadPoolExecutor actionExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(5);
+
+    /** 当前处理的子命令 */
+    private ODCommand command;
+
+    /** 子命令的实际输入参数 */
+    private List<String> argumentList = new ArrayList<>();
+
+    /** 设定所启动的RS,UPS数目与设定的RS,UPS数目一致*/
+    private String stValueRsCount;
+    private String stValueUpsCount;
+
+    /** 设定所启动的RS,UPS为主RS以及主UPS*/
+    private String stValueMrs;
+    private String stValueMups;
+
+    /**
+     * 由ODDeployer创建
+     * @param deployer 已初始化的部署器
+     * @param configureFileName 配置文件
+     */
+    ODCluster(ODDeployer deployer, String configureFileName) {
+        this.deployer = deployer;
+        this.configureFileName = configureFileName;
+        this.configuration = new ODConfiguration(this);
+        this.oceanbase = new ODOceanbase(this);
+        // 动作线程池的队列长度和活跃线程数
+        ODMetricRegistry.gauge("od_action_queue_depth", "Actions waiting in the cluster executor",
+                ODMetricRegistry.label("cluster", configureFileName), new ODMetricRegistry.ODGauge() {
+                    @Override
+                    public long value() {
+                        return actionExecutor.getQueue().size();
+                    }
+                });
+        ODMetricRegistry.gauge("od_action_active_threads", "Actions running in the cluster executor",
+                ODMetricRegistry.label("cluster", configureFileName), new ODMetricRegistry.ODGauge() {
+                    @Override
+                    public long value() {
+                        return actionExecutor.getActiveCount();
+                    }
+                });
+        // 自定义的子命令处理器
+        Class<? extends ODICommandHandler> handlerClass = deployer.getCustomCommandHandlerClass();
+        if(handlerClass != null) {
+            try {
+                customCommandHandler = handlerClass.newInstance();
+            } catch (Exception e) {
+                ODLogger.error("instantiate '" + handlerClass + "' fail!", (new Throwable()).getStackTrace());
+            }
+        }
+    }
+
+    /**
+     * 处理子命令
+     * 错误信息输出到控制台和日志文件
+     * @param cmd 子命令
+     * @param argumentList 子命令的参数
+     * @param argsStr 控制台输入
+     * @return 捕获所有异常
+     */
+    @SuppressWarnings("unchecked")
+    public ODError handleCommand(ODCommand cmd, List<String> argumentList, String argsStr) {
+        ODError ret = ODError.SUCCESS;
+        this.argumentList = argumentList;
+        this.command = cmd;
+        try {
+            if(cmd != ODCommand.CONFIGURATION) { // 生成配置模板文件是可不用加载配置文件，因为此时可能没有配置文件
+                Pair<ODError, Map<ODItem, Object>> configRet = configuration.loadConf(configureFileName, cmd);
+                ret = configRet.first;
+                Map<ODItem, Object> configurations = configRet.second;
+                if(ret.isError()) { // 解析配置文件出错
+                    String errorMessage = (String)configurations.get(ODItem.H_ERROR_MESSAGE);
+                    ODLogger.log(errorMessage);
+                } else {
+                    String sectionName = null;
+                    if(cmd.getBindingSection() != null
+                            && cmd.getBindingSection() != ODISectionParser.class) {
+                        sectionName = getSectionParser(cmd.getBindingSection()).getSectionName();
+                    }
+                    String taskName = sectionName; // 对于0类section, task name即为section name
+                    if(cmd.getArgumentsNum() > 0) { // 若子命令参数大于0, 说明指定了task name
+                        taskName = argumentList.get(0);
+                    } else {
+                        if(cmd == ODCommand.DEPLOY) { // 对deploy命令特殊处理
+                            // 把oceanbase的版本名称添加到命令行参数的最前面
+                            taskName = getOceanbaseVersion();
+                        }
+                        argumentList.add(0, taskName); // 把默认的task name添加到命令行参数的最前面
+                    }
+                    // 复制一份, 不修改已加载的配置
+                    List<ODServer> serverList = new ArrayList<>((List<ODServer>) configurations.get(ODItem.H_SERVERS));
+                    if(!cmd.getNeedPreconnectAll() && !cmd.getNeedAliveMS()) {
+                        // 实际使用的ip,避免不必要的连接
+                        Set<String> usedIpSet = new HashSet<>();
+                        List<String> ipList = configuration.getIpList(sectionName, taskName);
+                        if(ipList != null) {
+                            usedIpSet.addAll(ipList);
+                        }
+                        for(int i = serverList.size() - 1; i >= 0; i--) {
+                            if(!usedIpSet.contains(serverList.get(i).ip)) { // 若未真正使用
+                                serverList.remove(i);
+                            }
+                        }
+                    }
+                    // 程序输出头部信息
+                    List<Pair<String, String>> headMessageList = configuration.getItemList(sectionName, taskName);
+                    //获取配置文件中指定section的rs和ups数目
+                    if("start".equals(cmd.toString())) {
+                        stValueRsCount = getHeadMessage(headMessageList, ODItem.START_RSCOUNT);
+                        stValueUpsCount = getHeadMessage(headMessageList, ODItem.START_UPSCOUNT);
+                        stValueMrs = getHeadMessage(headMessageList, ODItem.START_MRS);
+                        stValueMups = getHeadMessage(headMessageList, ODItem.START_MUPS);
+                    }
+                    //打印程序头
+                    printHeader(argsStr, serverList, headMessageList);
+                    // 获取对应oceabanse版本的安装目录
+                    ODDeployTask deployTask = getDeployTask();
+                    if(deployTask == null) {
+                        ODLogger.log("oceanbase version '" + getOceanbaseVersion() + "' is undefined in the section of 'oceanbase'!");
+                        ret = ODError.ERROR;
+                    } else {
+                        String oceanbaseDir = deployTask.getTargetDir();
+                        String rsPort = String.valueOf(configurations.get(ODItem.SERVER_RS_PORT));
+                        //upsport/msport/csport
+                        String upsPortp = String.valueOf(configurations.get(ODItem.H_SERVER_UPS_PORT_P));
+                        String upsPortm = String.valueOf(configurations.get(ODItem.H_SERVER_UPS_PORT_M));
+                        String msPortp = String.valueOf(configurations.get(ODItem.H_SERVER_MS_PORT_P));
+                        String msPortz = String.valueOf(configurations.get(ODItem.H_SERVER_MS_PORT_Z));
+                        String csPortp = String.valueOf(configurations.get(ODItem.H_SERVER_CS_PORT_P));
+                        String csPortn = String.valueOf(configurations.get(ODItem.H_SERVER_CS_PORT_N));
+
+                        boolean noPreConnect = false;
+                        //需要使用MS,但不预连接
+                        if(cmd.getNeedAliveMS() && !cmd.getNeedPreconnectAll()) {
+                            noPreConnect = true;
+                        }
+                        // 初始化Oceanbase
+                        ret = oceanbase.init(serverList, oceanbaseDir, rsPort, upsPortp, upsPortm, msPortp, msPortz, csPortp, csPortn, noPreConnect);
+                    }
+                }
+            }
+            if(ret.isSuccess()) {
+                // 依次调用子命令处理器处理同一命令
+                ret = defaultCommandHandler.handleCommand(this, cmd);
+                if(ret != null && ret.isSuccess() && customCommandHandler != null) {
+                    ret = customCommandHandler.handleCommand(this, cmd);
+                }
+            }
+        } catch (Exception e) {
+            if(ODDeployer.DEBUG) {
+                e.printStackTrace();
+            }
+            ODLogger.error(e.toString(), (new Throwable()).getStackTrace());
+        }
+        return ret;
+    }
+
+    /**
+     * 释放资源
+     */
+    public void close() {
+        oceanbase.close();
+        actionExecutor.shutdownNow();
+        ODMetricRegistry.remove("od_action_queue_depth", ODMetricRegistry.label("cluster", configureFileName));
+        ODMetricRegistry.remove("od_action_active_threads", ODMetricRegistry.label("cluster", configureFileName));
+    }
+
+    /**
+     * 提交执行动作的任务
+     * @param action
+     * @return 可用于等待或取消
+     */
+    public Future<?> executeAction(Runnable action) {
+        return actionExecutor.submit(action);
+    }
+
+    /**
+     * 提交有返回值的任务, 如采集主机状态
+     * @param action
+     * @return 可用于获取结果
+     */
+    public <T> Future<T> executeAction(Callable<T> action) {
+        return actionExecutor.submit(action);
+    }
+
+    // ----------------------------------------------------------- getter
+
+    public ODDeployer getDeployer() {
+        return deployer;
+    }
+
+    public String getConfigureFileName() {
+        return configureFileName;
+    }
+
+    public ODConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public ODShell getShell() {
+        return shell;
+    }
+
+    public ODStatusCache getStatusCache() {
+        return statusCache;
+    }
+
+    /**
+     * 获取Oceanbase集群
+     * @return 确保在loadConf()后调用该方法
+     */
+    public ODOceanbase getOceanbase() {
+        return oceanbase;
+    }
+
+    /** 子命令的实际输入参数 */
+    public List<String> getArgumentList() {
+        return argumentList;
+    }
+
+    /**
+     * 获取配置项集合
+     * @return 确保在loadConf()后调用该方法
+     */
+    public Map<ODItem, Object> getConfigurations() {
+        return configuration.getConfigurations();
+    }
+
+    /**
+     * 解析器列表
+     * @return 不会为null
+     */
+    public List<ODISectionParser> getSectionParserList() {
+        return configuration.getSectionParsers();
+    }
+
+    /**
+     * 根据类名获取解析器
+     * @param clazz 解析器类
+     * @return 可能返回null
+     */
+    public ODISectionParser getSectionParser(Class<? extends ODISectionParser> clazz) {
+        for(ODISectionParser parser: configuration.getSectionParsers()) {
+            if(clazz == parser.getClass()) {
+                return parser;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据名称获取解析器
+     * @param sectionName section名称
+     * @return 可能返回null
+     */
+    public ODISectionParser getSectionParser(String sectionName) {
+        return configuration.getSectionParser(sectionName);
+    }
+
+    /**
+     * 判断解析器是否已注册
+     * @param sectionName section的名称
+     * @return boolean
+     */
+    public boolean isSectionParserRegistered(String sectionName) {
+        return (getSectionParser(sectionName) != null);
+    }
+
+    /**
+     * Oceanbase版本
+     * @return
+     */
+    public String getOceanbaseVersion() {
+        return (String) getConfigurations().get(ODItem.SERVER_VERSION);
+    }
+
+    /**
+     * 当前使用的启动参数生成器
+     * @return 可能为null
+     */
+    public ODParameterGenerator getParameterGenerator() {
+        if(parameterGenerator == null) {
+            Class<? extends ODParameterGenerator> clazz = deployer.getParameterGenerator(getOceanbaseVersion());
+            if(clazz != null) {
+                try {
+                    parameterGenerator = clazz.newInstance();
+                    parameterGenerator.setCluster(this);
+                } catch (Exception e) {
+                    ODLogger.error("fail to create new instance of '" + clazz + "'!", (new Throwable()).getStackTrace());
+                }
+            }
+        }
+        return parameterGenerator;
+    }
+
+    /**
+     * 在加载配置文件完成前获取主机节点信息
+     * @param ip 主机IP
+     * @return ODServer
+     */
+    public ODServer getConfigueServer(String ip) {
+        return configuration.getConfigueServer(ip);
+    }
+
+    // ----------------------------------------------------------- reload
+
+    /**
+     * 配置文件或引用的文件在加载之后是否被修改
+     * @return boolean
+     */
+    public boolean isConfigurationModified() {
+        return configuration.isModified(configureFileName)
+                && (rejectedConfiguration == null || rejectedConfiguration.isModified(configureFileName));
+    }
+
+    /**
+     * 重新加载配置文件, 用于长时间运行的子命令
+     * <p>解析到新的加载器, 出错时保留当前的配置; 成功后替换当前的配置, 并按差异更新主机列表和端口号,
+     * 新增或修改的主机重新连接, 删除的主机断开连接, 其余主机保持连接</p>
+     * 结果只写入日志文件, 由调用者显示, 如watch命令显示在表格下方
+     * @return first: 是否成功, second: 与当前配置的差异, 出错时为null
+     */
+    public Pair<ODError, ODConfigurationDiff> reloadConfiguration() {
+        ODConfiguration next = new ODConfiguration(this);
+        Pair<ODError, Map<ODItem, Object>> configRet = next.loadConf(configureFileName, command);
+        if(configRet.first.isError()) {
+            rejectedConfiguration = next; // 文件再次修改前不重复加载
+            ODLogger.logToFile("[ERROR] reload '" + configureFileName + "' fail, keep the current configuration:"
+                    + ODUtil.SEPARATOR + configRet.second.get(ODItem.H_ERROR_MESSAGE));
+            return new Pair<>(ODError.ERROR, null);
+        }
+        ODConfigurationDiff diff = ODConfigurationDiff.compare(configuration, next);
+        configuration = next;
+        rejectedConfiguration = null;
+        if(!diff.isEmpty()) {
+            ODLogger.logToFile("reload '" + configureFileName + "': " + diff);
+            if(diff.isPortChanged()) {
+                ODDeployTask deployTask = getDeployTask();
+                Map<ODItem, Object> configurations = next.getConfigurations();
+                shell.init(deployTask != null ? deployTask.getTargetDir() : null,
+                        String.valueOf(configurations.get(ODItem.SERVER_RS_PORT)),
+                        String.valueOf(configurations.get(ODItem.H_SERVER_UPS_PORT_P)),
+                        String.valueOf(configurations.get(ODItem.H_SERVER_UPS_PORT_M)),
+                        String.valueOf(configurations.get(ODItem.H_SERVER_MS_PORT_P)),
+                        String.valueOf(configurations.get(ODItem.H_SERVER_MS_PORT_Z)),
+                        String.valueOf(configurations.get(ODItem.H_SERVER_CS_PORT_P)),
+                        String.valueOf(configurations.get(ODItem.H_SERVER_CS_PORT_N)));
+                statusCache.clear();
+            }
+            oceanbase.apply(diff, next.getServerList());
+        }
+        return new Pair<>(ODError.SUCCESS, diff);
+    }
+
+    /**
+     * 获取oceanbase版本对应的task
+     * @return
+     */
+    public ODDeployTask getDeployTask() {
+        return (ODDeployTask) configuration.getTaskFromSection("oceanbase", getOceanbaseVersion());
+    }
+
+    /**获取所预先设定的U/u值*/
+    public String getStValueRsCount() {
+        return stValueRsCount;
+    }
+
+    public String getStValueUpsCount() {
+        return stValueUpsCount;
+    }
+
+    /**获取所预先设定的主RS和主UPS*/
+    public String getStValueMrs() {
+        return stValueMrs;
+    }
+
+    public String getStValueMups() {
+        return stValueMups;
+    }
+
+    // ----------------------------------------------------------- private
+
+    /**
+     * 按配置项名称获取头部信息中的值, 与配置项在文件中的顺序无关
+     * @param headMessageList 头部信息
+     * @param item 配置项
+     * @return 可能为null
+     */
+    private String getHeadMessage(List<Pair<String, String>> headMessageList, ODItem item) {
+        String name = item.getShorName();
+        for(Pair<String, String> message: headMessageList) {
+            if(message != null && name.equals(message.first)) {
+                return message.second;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 打印程序头部输出信息
+     * @param argvStr 命令行输入
+     * @param serverList 主机列表
+     * @param headMessageList 使用到的配置项等信息
+     */
+    private void printHeader(String argvStr, List<ODServer> serverList, List<Pair<String, String>> headMessageList) {
+        String border = "-";
+        String lineBorder = "+";
+        String version = getOceanbaseVersion();
+        int leftWidth = 18;
+        ODPrinter.printSingleLine(lineBorder);
+        ODPrinter.printMessageCenter("OceanbaseDeployer V-" + deployer.getVersion(), border);
+        ODPrinter.printMessageCenter(ODUtil.getSystemTime(), border);
+        ODPrinter.printMessageCenter(argvStr, border);
+        ODPrinter.printSingleLine(lineBorder);
+        ODPrinter.printMessageLeft(ODUtil.formatString("oceanbase.version", leftWidth) + ": " + version, border);
+        for(int i = 0; i < serverList.size(); i++) {
+            ODPrinter.printMessageLeft(ODUtil.formatString("server[" + i + "]", leftWidth) + ": " + serverList.get(i), border);
+        }
+        if(headMessageList != null && headMessageList.size() > 0) {
+            ODPrinter.printSingleLine(lineBorder);
+            for(Pair<String, String> message: headMessageList) {
+                if(message != null) {
+                    ODPrinter.printMessageLeft(ODUtil.formatString(message.first, leftWidth) + ": " + message.second, border);
+                } else { // 添加空行
+                    ODPrinter.printSingleLine(lineBorder);
+                }
+            }
+        }
+        ODPrinter.printSingleLine(lineBorder);
+    }
+
+}
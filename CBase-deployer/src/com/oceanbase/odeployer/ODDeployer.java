@@ -4,47 +4,48 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.oceanbase.odeployer.annotation.ODCommandAttribute;
 import com.oceanbase.odeployer.annotation.ODItemAttribute;
 import com.oceanbase.odeployer.command.ODCommand;
-import com.oceanbase.odeployer.command.ODCommandHandler;
 import com.oceanbase.odeployer.command.ODICommandHandler;
-import com.oceanbase.odeployer.common.ODConfiguration;
+import com.oceanbase.odeployer.common.ODConnectionPool;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODItem;
-import com.oceanbase.odeployer.common.ODOceanbase;
 import com.oceanbase.odeployer.common.ODRegisterParameter;
 import com.oceanbase.odeployer.common.ODServer;
+import com.oceanbase.odeployer.parser.ODBenchSectionParser;
 import com.oceanbase.odeployer.parser.ODISectionParser;
+import com.oceanbase.odeployer.parser.ODInitSqlSectionParser;
 import com.oceanbase.odeployer.parser.ODOceanbaseSectionParser;
+import com.oceanbase.odeployer.parser.ODPreflightSectionParser;
 import com.oceanbase.odeployer.parser.ODServerSectionParser;
 import com.oceanbase.odeployer.parser.ODStartSectionParser;
 import com.oceanbase.odeployer.start.ODBaseParameterGenerator;
 import com.oceanbase.odeployer.start.ODParameterGenerator;
 import com.oceanbase.odeployer.start.ODPaxosParameterGenerator;
-import com.oceanbase.odeployer.task.ODDeployTask;
+import com.oceanbase.odeployer.util.ODEventLog;
 import com.oceanbase.odeployer.util.ODLogger;
-import com.oceanbase.odeployer.util.ODPrinter;
 import com.oceanbase.odeployer.util.ODUtil;
 import com.oceanbase.odeployer.util.Pair;
 
 /**
  * Oceanbase Deployer
- * <p>单例模式</p>
- * <blockquote>ODDeployer deployer = ODDeployer.getInstance()</blockquote>
+ * <p>注册子命令, 配置项, 解析器, 启动参数生成器等组件, 并为每个配置文件创建独立的集群上下文{@code ODCluster}</p>
+ * <blockquote>ODDeployer deployer = new ODDeployer()</blockquote>
  * <p>使用方法：</p>
  * <blockquote><pre>
  * 1. init() 初始化，参数ODRegisterParameter可为<tt>null</tt>
  * 2. registerParameterGenerator() 注册自定义的OB附加参数启动器
- * 3. start() 直接传入main接收的参数数组
+ * 3. start() 直接传入main接收的参数数组, 多个配置文件以','分隔时并发操作多个集群
+ *    或 createCluster() 创建集群上下文, 自行调度
  * 4. destroy() 释放资源
  * </pre></blockquote>
  * <p>公开静态变量：</p>
@@ -69,6 +70,18 @@ public final class ODDeployer {
     /** 是否连接远程主机, 用于调试 */
     public static boolean CONNECT = true;
 
+    /** 进程状态缓存的有效期(毫秒), 同一命令内重复的存活检查不再执行远程命令, 不大于0时不缓存 */
+    public static long STATUS_TTL = 3000;
+
+    /** 运行指标HTTP服务的端口, 在watch, metrics命令中启动, 不大于0时不启动 */
+    public static int METRICS_PORT = 0;
+
+    /** 是否使用配置文件的快照, 见ODConfigurationCache */
+    public static boolean CONFIG_CACHE = true;
+
+    /** 是否输出结构化的事件日志, 见ODEventLog */
+    public static boolean EVENT_LOG = true;
+
     /** 程序版本号 */
     private String version;
 
@@ -78,57 +91,29 @@ public final class ODDeployer {
     /** 日志文件路径和名称, 默认: log/odeployer.log" */
     private static String LOG_FILE_NAME = "log/odeployer.log";
 
-    /** 默认的子命令处理器 */
-    private ODICommandHandler defaultCommandHandler;
+    /** 事件日志路径和名称, 每行一个JSON对象 */
+    private static String EVENT_LOG_FILE_NAME = "log/odeployer.events.jsonl";
 
-    /** 自定义的子命令处理器 */
-    private ODICommandHandler customCommandHandler;
+    /** 自定义的子命令处理器, 每个集群单独实例化 */
+    private Class<? extends ODICommandHandler> customCommandHandlerClass;
 
     /** 扩展的Server */
     private Class<? extends ODServer> customServerClass;
 
-    /** 配置文件解析器的集合 */
-    private List<ODISectionParser> sectionParserList = new ArrayList<>();
+    /** 配置文件解析器的集合, 每个集群单独实例化 */
+    private List<Class<? extends ODISectionParser>> sectionParserClassList = new ArrayList<>();
+
+    /** 已注册的section名称, 用于重复性检查 */
+    private List<String> sectionNameList = new ArrayList<>();
     
     /** 启动命令参数生成器, 默认不实例化 */
     private Map<String, Class<? extends ODParameterGenerator>> parameterGenerators = new HashMap<>();
-    
-    /** 实例化当前使用的参数生成器 */
-    private ODParameterGenerator parameterGenerator;
-    
-    /** 用于执行action */
-    private ExecutorService actionExecutor = Executors.newFixedThreadPool(5);
-    
-    /** 配置文件加载器 */
-    private ODConfiguration configuration;
-
-    /** 管理各主机节点 */
-    private ODOceanbase oceanbase;
 
     /** 是否初始化,保证仅初始化一次 */
     private boolean isInit;
 
     /** 是否开始运行,保证只start一次 */
     private boolean isStart;
-    
-    /** 设定所启动的RS,UPS数目与设定的RS,UPS数目一致*/
-    private static String stValueRsCount;
-    private static String stValueUpsCount;
-    
-    /** 设定所启动的RS,UPS为主RS以及主UPS*/
-    private static String stValueMrs;
-    private static String stValueMups;
-
-    /** 单例 */
-    private static ODDeployer DEPLOYER = new ODDeployer();
-
-    /** 获取ODDeployer的惟一实例 */
-    public static ODDeployer getInstance() {
-        return DEPLOYER;
-    }
-
-    /** 禁止在外部实例化 */
-    private ODDeployer() {}
 
     /**
      * 初始化
@@ -156,15 +141,20 @@ public final class ODDeployer {
                 } else {
                     loadItemAttribute(ODItem.class);//加载配置项的属性注解
                 }
+                ODItem.compileValuePatterns();
                 // 注册默认的解析器
-                //registerSectionParser(new ODDeploySectionParser());
-                registerSectionParser(new ODOceanbaseSectionParser());
-                registerSectionParser(new ODServerSectionParser());
-                registerSectionParser(new ODStartSectionParser());
+                //registerSectionParser(ODDeploySectionParser.class);
+                registerSectionParser(ODOceanbaseSectionParser.class);
+                registerSectionParser(ODServerSectionParser.class);
+                registerSectionParser(ODStartSectionParser.class);
+                registerSectionParser(ODPreflightSectionParser.class);
+                registerSectionParser(ODInitSqlSectionParser.class);
+                registerSectionParser(ODBenchSectionParser.class);
                 // ------------------------------------------- 3. 注册自定义的子命令处理器
                 if(registerParameter.customCommandHandlerClass != null) {
                     try {
-                        customCommandHandler = registerParameter.customCommandHandlerClass.newInstance();
+                        registerParameter.customCommandHandlerClass.newInstance(); // 检查能否实例化
+                        customCommandHandlerClass = registerParameter.customCommandHandlerClass;
                     } catch (Exception e) {
                         ODLogger.error("instantiate '" + registerParameter.customCommandClass + "' fail!", (new Throwable()).getStackTrace());
                         ret = ODError.ERROR;
@@ -176,10 +166,7 @@ public final class ODDeployer {
                 // ------------------------------------------- 5. 注册自定义的解析器
                 if(registerParameter.customSectionParserList != null) {                 	
                     for(Class<? extends ODISectionParser> clazz: registerParameter.customSectionParserList) {
-                        try {
-                            registerSectionParser(clazz.newInstance());
-                        } catch (Exception e) {
-                            ODLogger.error("instantiate '" + clazz + "' fail!", (new Throwable()).getStackTrace());
+                        if(registerSectionParser(clazz).isError()) {
                             ret = ODError.ERROR;
                         }
                     }
@@ -188,12 +175,10 @@ public final class ODDeployer {
             if(ret.isSuccess()) {
                 isInit = true; // 确保初始化成功
                 this.version = version;
-                defaultCommandHandler = new ODCommandHandler();
 
                 //注册默认版本的启动命令参数生成器
                 registerParameterGenerator("OB_PAXOS", ODPaxosParameterGenerator.class);
                 registerParameterGenerator("OB_BASE", ODBaseParameterGenerator.class);
-                configuration = new ODConfiguration();
             }
         } else {
             ODLogger.error("ODDeployer is initialized already!", (new Throwable()).getStackTrace());
@@ -207,6 +192,9 @@ public final class ODDeployer {
      */
     public static void initLogger() {
         ODLogger.init(LOG_FILE_NAME);
+        if(EVENT_LOG) {
+            ODEventLog.init(EVENT_LOG_FILE_NAME);
+        }
     }
 
     /**
@@ -226,6 +214,7 @@ public final class ODDeployer {
     /**
      * 运行部署器，只能调用一次
      * 命令行输入的参数进行识别, 参数输入错误仅在控制台输出
+     * 配置文件参数可以是以','分隔的多个文件, 此时每个文件对应一个集群, 并发执行同一子命令
      * @param argvs 控制台输入
      */
     public ODError start(String argvs[]) {
@@ -252,18 +241,13 @@ public final class ODDeployer {
                                 }
                             }
                             if(ret.isSuccess()) {
+                                String configureFileNames = CONFIGURE_FILE_NAME;
                                 if(argvs.length == num + 2) { // 若指了定配置文件名称
-                                    CONFIGURE_FILE_NAME = argvs[num + 1].trim();
+                                    configureFileNames = argvs[num + 1].trim();
                                 }
                                 if(argvs.length == num + 1 || argvs.length == num + 2) {
-                                    cmd.setArgumentList(argvsList);                                   
-                                    ret = handleCommand(cmd, ODUtil.toString(argvs)); // 处理子命令                           
-                                    long useTime = System.currentTimeMillis() - startTime;
-                                    if(ret != null && ret.isSuccess()) {
-                                        ODLogger.log("Over! (" + ODUtil.parseTime(useTime) + ")");
-                                    } else if(argvs.length > 0) {
-                                        ODLogger.log("Exit with errors! (" + ODUtil.parseTime(useTime) + ")");
-                                    }
+                                    ret = handleCommand(cmd, argvsList, ODUtil.toString(argvs),
+                                            ODUtil.split(configureFileNames, ","), startTime); // 处理子命令
                                 } else {
                                     ret = ODError.ERROR;
                                     System.out.println("[ERROR] wrong command!");
@@ -289,6 +273,20 @@ public final class ODDeployer {
         return ret;
     }
 
+    /**
+     * 创建集群上下文
+     * 每个集群独立加载配置文件, 实例化解析器, 连接主机节点, 可在不同线程中同时使用
+     * @param configureFileName 配置文件路径和名称
+     * @return 若未初始化,返回null
+     */
+    public ODCluster createCluster(String configureFileName) {
+        if(isInit) {
+            return new ODCluster(this, configureFileName);
+        }
+        ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
+        return null;
+    }
+
     /**
      * 注册启动命令参数生成器, 应在start前注册
      * @param parameterGeneratorClass 附加启动参数生成器
@@ -343,81 +341,13 @@ public final class ODDeployer {
         ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
         return null;
     }
-    
-    /**
-     * 根据类名获取解析器
-     * @param sectionName section名称
-     * @return 可能返回null
-     */
-    public ODISectionParser getSectionParser(Class<? extends ODISectionParser> clazz) {
-        for(ODISectionParser parser: sectionParserList) {
-            if(clazz == parser.getClass()) {
-                return parser;
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * 根据名称获取解析器
-     * @param sectionName section名称
-     * @return 可能返回null
-     */
-    public ODISectionParser getSectionParser(String sectionName) {
-        if(sectionName != null) {
-            for(ODISectionParser parser: sectionParserList) {
-                if(sectionName.equals(parser.getSectionName())) {
-                    return parser;
-                }
-            }
-        }
-        return null;
-    }
 
     /**
-     * 解析器列表
-     * @return 若未初始化,返回null
+     * 已注册的解析器类, 按注册顺序排列
+     * @return 不会为null
      */
-    public List<ODISectionParser> getSectionParserList() {
-        if(isInit) {
-            return sectionParserList;
-        }
-        ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
-        return null;
-    }
-
-    
-    /**
-     * 判断解析器是否已注册
-     * @param sectionName section的名称
-     * @return boolean
-     */
-    public boolean isSectionParserRegistered(String sectionName) {
-        return (getSectionParser(sectionName) != null);
-    }
-
-    /**
-     * 获取配置项集合
-     * @return 确保在loadConf()后调用该方法，否则返回集合为null
-     */
-    public Map<ODItem, Object> getConfigurations() {
-        if(isInit) {
-            return ODConfiguration.getConfigurations();
-        }
-        ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
-        return null;
-    }
-
-    /**
-     * 获取Oceanbase集群
-     * @return 确保在loadConf()后调用该方法，否则返回null
-     */
-    public ODOceanbase getOceanbase() {
-        if(isInit) {
-            return oceanbase;
-        }
-        ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
-        return null;
+    public List<Class<? extends ODISectionParser>> getSectionParserClassList() {
+        return sectionParserClassList;
     }
     
     /**
@@ -428,55 +358,6 @@ public final class ODDeployer {
     public boolean isParameterGeneratorRegistered(String oceanbaseVersion) {
         return parameterGenerators.containsKey(oceanbaseVersion);
     }
-    
-    /**
-     * Oceanbase版本
-     * @return
-     */
-    public String getOceanbaseVersion() {
-        return (String) getConfigurations().get(ODItem.SERVER_VERSION);
-    }
-    
-    /**
-     * 当前使用的启动参数生成器
-     * @return
-     */
-    public ODParameterGenerator getParameterGenerator() {
-        if(parameterGenerator == null) {
-            Class<? extends ODParameterGenerator> clazz = getParameterGenerator(getOceanbaseVersion());
-            if(clazz != null) {
-                try {
-                    parameterGenerator = clazz.newInstance();
-                } catch (Exception e) {
-                    ODLogger.error("fail to create new instance of '" + clazz + "'!", (new Throwable()).getStackTrace());
-                }
-            }
-        }
-        return parameterGenerator;
-    }
-
-    /**
-     * 在加载配置文件完成前获取主机节点信息
-     * @param ip 主机IP
-     * @return ODServer
-     */
-    public ODServer getConfigueServer(String ip) {
-        if(sectionParserList != null) {
-            for(ODISectionParser parser: sectionParserList) {
-                if(parser instanceof ODServerSectionParser) {
-                    List<ODServer> serverList = ((ODServerSectionParser)parser).getServerList();
-                    if(serverList != null) {
-                        for(ODServer s: serverList) {
-                            if(s.ip.equals(ip)) {
-                                return s;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return null;
-    }
 
     /**
      * 版本号
@@ -501,178 +382,116 @@ public final class ODDeployer {
         ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
         return null;
     }
-    
+
     /**
-     * 主机列表
+     * 自定义的子命令处理器类
      * @return 可能null
      */
-    @SuppressWarnings("unchecked")
-    public List<Class<? extends ODServer>> getServerList() {
-        if(isInit) {
-            return (List<Class<? extends ODServer>>) getConfigurations().get(ODItem.H_SERVERS);
-        }
-        ODLogger.error("ODDeployer has not been initialized!", (new Throwable()).getStackTrace());
-        return null;
+    public Class<? extends ODICommandHandler> getCustomCommandHandlerClass() {
+        return customCommandHandlerClass;
     }
     
     /**
-     * 获取oceanbase版本对应的task
-     * @return
-     */
-    public ODDeployTask getDeployTask() {
-    	return (ODDeployTask) ODConfiguration.getTaskFromSection("oceanbase", getOceanbaseVersion());
-    }
-    
-    /**
-     * 提交执行动作的任务
-     * @param action
-     */
-    public void executeAction(Runnable action) {
-        actionExecutor.submit(action);
-    }
-    
-    /**
-     * 销毁资源
+     * 销毁资源, 等待异步日志写入文件
      */
     public void destroy() {
-        if(oceanbase != null) {
-            oceanbase.close();
-        }
-        actionExecutor.shutdownNow();
+        ODEventLog.destroy();
         ODLogger.destroy();
     }
 
     // ----------------------------------------------------------- private
 
     /**
-     * 处理子命令
-     * 错误信息输出到控制台和日志文件
+     * 为每个配置文件创建集群上下文并处理子命令
+     * 只有一个配置文件时在当前线程中执行, 否则每个集群一个线程
      * @param cmd 子命令
+     * @param argvsList 子命令的参数
      * @param argsStr 控制台输入
-     * @return 捕获所有异常
+     * @param configureFileNames 配置文件列表
+     * @param startTime 用于计算总运行时间
+     * @return 任意集群出错即返回ERROR
      */
-    @SuppressWarnings("unchecked")
-    private ODError handleCommand(ODCommand cmd, String argsStr) {
+    private ODError handleCommand(final ODCommand cmd, final List<String> argvsList, final String argsStr,
+                                  String[] configureFileNames, final long startTime) {
         ODError ret = ODError.SUCCESS;
-        try {
-            if(cmd != ODCommand.CONFIGURATION) { // 生成配置模板文件是可不用加载配置文件，因为此时可能没有配置文件
-                if(ret.isSuccess()) {              	
-                    Pair<ODError, Map<ODItem, Object>> configRet = configuration.loadConf(CONFIGURE_FILE_NAME, cmd, sectionParserList);
-                    ret = configRet.first;
-                    Map<ODItem, Object> configurations = configRet.second;
-                    if(ret.isError()) { // 解析配置文件出错	
-                        String errorMessage = (String)configurations.get(ODItem.H_ERROR_MESSAGE);
-                        ODLogger.log(errorMessage);
-                    // System.out.print(errorMessage);
-                    } else {
-                        String sectionName = null;
-                        if(cmd.getBindingSection() != null 
-                                && cmd.getBindingSection() != ODISectionParser.class) {
-                            sectionName = cmd.getBindingSection().newInstance().getSectionName();
-                        }
-                        String taskName = sectionName; // 对于0类section, task name即为section name
-                        if(cmd.getArgumentsNum() > 0) { // 若子命令参数大于0, 说明指定了task name
-                            taskName = cmd.getArgumentList().get(0);
-                        } else {
-                        	if(cmd == ODCommand.DEPLOY) { // 对deploy命令特殊处理
-                        		// 把oceanbase的版本名称添加到命令行参数的最前面
-                        		taskName = getOceanbaseVersion();
-                        	}
-                            cmd.getArgumentList().add(0, taskName); // 把默认的task name添加到命令行参数的最前面
-                        }
-                        List<ODServer> serverList = (List<ODServer>) configurations.get(ODItem.H_SERVERS);
-                        if(!cmd.getNeedPreconnectAll() && !cmd.getNeedAliveMS()) {
-                            // 实际使用的ip,避免不必要的连接 
-                            Set<String> usedIpSet = new HashSet<>();
-                            List<String> ipList = ODConfiguration.getIpList(sectionName, taskName);
-                            if(ipList != null) {
-                                usedIpSet.addAll(ipList);                             
-                            }
-                            for(int i = serverList.size() - 1; i >= 0; i--) {
-                                if(!usedIpSet.contains(serverList.get(i).ip)) { // 若未真正使用
-                                    serverList.remove(i);
-                                }
-                            }
-                        }
-                        // 程序输出头部信息 
-                        List<Pair<String, String>> headMessageList = ODConfiguration.getItemList(sectionName, taskName);
-                        //add zhangyf [paxos] 170522
-                        //获取配置文件中指定section的rs和ups数目
-                        if("start".equals(cmd.toString()))
-                        {
-                        	stValueRsCount = headMessageList.get(2).second;
-                        	stValueUpsCount = headMessageList.get(3).second;
-                        	stValueMrs = headMessageList.get(4).second;
-                        	stValueMups = headMessageList.get(5).second;
-                        }
-                        //add end
-                        //打印程序头
-                        printHeader(argsStr, serverList, headMessageList);        
-                        oceanbase = ODOceanbase.getInstance();
-                        // 获取对应oceabanse版本的安装目录
-                        ODDeployTask deployTask = getDeployTask();
-                        if(deployTask == null) {
-                        	ODLogger.log("oceanbase version '" + getOceanbaseVersion() + "' is undefined in the section of 'oceanbase'!");
-                        	ret = ODError.ERROR;
-                        } else {
-                        	String oceanbaseDir = deployTask.getTargetDir();
-                            String rsPort = String.valueOf(configurations.get(ODItem.SERVER_RS_PORT));
-                            //upsport/msport/csport
-                            String upsPortp = String.valueOf(configurations.get(ODItem.H_SERVER_UPS_PORT_P));
-                            String upsPortm = String.valueOf(configurations.get(ODItem.H_SERVER_UPS_PORT_M));
-                            String msPortp = String.valueOf(configurations.get(ODItem.H_SERVER_MS_PORT_P));
-                            String msPortz = String.valueOf(configurations.get(ODItem.H_SERVER_MS_PORT_Z));
-//                            String lmsPortz = String.valueOf(configurations.get(ODItem.H_SERVER_LMS_PORT_Z));
-                            String csPortp = String.valueOf(configurations.get(ODItem.H_SERVER_CS_PORT_P));
-                            String csPortn = String.valueOf(configurations.get(ODItem.H_SERVER_CS_PORT_N));
-                            //end
-                            
-                            boolean noPreConnect = false;
-                            //需要使用MS,但不预连接
-                            if(cmd.getNeedAliveMS() && !cmd.getNeedPreconnectAll()) {
-                            	noPreConnect = true;
-                            }
-                            // 初始化Oceanbase
-                            ret = oceanbase.init(serverList, oceanbaseDir, rsPort, upsPortp, upsPortm, msPortp, msPortz, csPortp, csPortn, noPreConnect);
-                        }
+        // 在当前线程中创建上下文, 保证解析器按注册顺序初始化
+        List<ODCluster> clusterList = new ArrayList<>();
+        for(String filename: configureFileNames) {
+            clusterList.add(createCluster(filename.trim()));
+        }
+        if(clusterList.size() == 1) {
+            ret = handleCommand(clusterList.get(0), cmd, argvsList, argsStr, startTime, false);
+        } else {
+            ExecutorService clusterExecutor = Executors.newFixedThreadPool(clusterList.size());
+            List<Future<ODError>> futureList = new ArrayList<>();
+            for(final ODCluster cluster: clusterList) {
+                futureList.add(clusterExecutor.submit(new Callable<ODError>() {
+                    @Override
+                    public ODError call() {
+                        // 每个集群使用参数列表的副本, 避免相互修改
+                        return handleCommand(cluster, cmd, new ArrayList<>(argvsList), argsStr, startTime, true);
                     }
-                }
+                }));
             }
-            if(ret.isSuccess()) {
-                // 依次调用子命令处理器处理同一命令
-                ret = defaultCommandHandler.handleCommand(cmd);
-                if(ret != null && ret.isSuccess() && customCommandHandler != null) {
-                    ret = customCommandHandler.handleCommand(cmd);
+            for(Future<ODError> future: futureList) {
+                try {
+                    if(future.get().isError()) {
+                        ret = ODError.ERROR;
+                    }
+                } catch (Exception e) {
+                    ODLogger.error(e.toString(), (new Throwable()).getStackTrace());
+                    ret = ODError.ERROR;
                 }
             }
-        } catch (Exception e) {
-            if(DEBUG) {
-                e.printStackTrace();
-            }
-            ODLogger.error(e.toString(), (new Throwable()).getStackTrace());
+            clusterExecutor.shutdown();
+        }
+        ODConnectionPool.closeAll(); // 连接池由所有集群共享
+        return ret;
+    }
+
+    /**
+     * 在一个集群上处理子命令, 结束后释放该集群的资源
+     * @param withFileName 输出结束信息时是否带上配置文件名称
+     * @return 捕获所有异常
+     */
+    private ODError handleCommand(ODCluster cluster, ODCommand cmd, List<String> argvsList, String argsStr,
+                                  long startTime, boolean withFileName) {
+        ODError ret = cluster.handleCommand(cmd, argvsList, argsStr);
+        cluster.close();
+        long useTime = System.currentTimeMillis() - startTime;
+        String filename = "";
+        if(withFileName) {
+            filename = "[" + cluster.getConfigureFileName() + "] ";
+        }
+        if(ret != null && ret.isSuccess()) {
+            ODLogger.log(filename + "Over! (" + ODUtil.parseTime(useTime) + ")");
+        } else {
+            ODLogger.log(filename + "Exit with errors! (" + ODUtil.parseTime(useTime) + ")");
+            ret = ODError.ERROR;
         }
         return ret;
     }
     
     /**
      * 注册解析器
-     * @param parser 解析器
+     * @param clazz 解析器类, 每个集群上下文单独实例化
      * @return section的名称不可重复
      */
-    private ODError registerSectionParser(ODISectionParser parser) {
+    private ODError registerSectionParser(Class<? extends ODISectionParser> clazz) {
         ODError ret = ODError.SUCCESS;
-        if(parser != null) {
-            boolean isDuplicate = false;
-            for(ODISectionParser p: sectionParserList) {
-                if(parser.getSectionName().equals(p.getSectionName())) {
-                    isDuplicate = true;
-                    ODLogger.error("the name of section '" + parser.getSectionName() + "' is duplicate!", (new Throwable()).getStackTrace());
-                    break;
+        if(clazz != null) {
+            try {
+                String sectionName = clazz.newInstance().getSectionName();
+                if(sectionNameList.contains(sectionName)) {
+                    ret = ODError.ERROR;
+                    ODLogger.error("the name of section '" + sectionName + "' is duplicate!", (new Throwable()).getStackTrace());
+                } else {
+                    sectionNameList.add(sectionName);
+                    sectionParserClassList.add(clazz);
                 }
-            }
-            if(!isDuplicate) {
-                parser.init();
-                sectionParserList.add(parser);
+            } catch (Exception e) {
+                ODLogger.error("instantiate '" + clazz + "' fail!", (new Throwable()).getStackTrace());
+                ret = ODError.ERROR;
             }
         } else {
             ret = ODError.ERROR;
@@ -737,39 +556,6 @@ public final class ODDeployer {
         return ret;
     }
 
-    /**
-     * 打印程序头部输出信息
-     * @param argvStr 命令行输入
-     * @param serverList 主机列表
-     * @param headMessageList 使用到的配置项等信息
-     */
-    private void printHeader(String argvStr, List<ODServer> serverList, List<Pair<String, String>> headMessageList) {
-        String border = "-";
-        String lineBorder = "+";
-        String version = getOceanbaseVersion();
-        int leftWidth = 18;
-        ODPrinter.printSingleLine(lineBorder);
-        ODPrinter.printMessageCenter("OceanbaseDeployer V-" + getVersion(), border);
-        ODPrinter.printMessageCenter(ODUtil.getSystemTime(), border);
-        ODPrinter.printMessageCenter(argvStr, border);
-        ODPrinter.printSingleLine(lineBorder);
-        ODPrinter.printMessageLeft(ODUtil.formatString("oceanbase.version", leftWidth) + ": " + version, border);
-        for(int i = 0; i < serverList.size(); i++) {
-            ODPrinter.printMessageLeft(ODUtil.formatString("server[" + i + "]", leftWidth) + ": " + serverList.get(i), border);
-        }
-        if(headMessageList != null && headMessageList.size() > 0) {
-            ODPrinter.printSingleLine(lineBorder);
-            for(Pair<String, String> message: headMessageList) {
-                if(message != null) {
-                    ODPrinter.printMessageLeft(ODUtil.formatString(message.first, leftWidth) + ": " + message.second, border);
-                } else { // 添加空行
-                    ODPrinter.printSingleLine(lineBorder);
-                }
-            }
-        }
-        ODPrinter.printSingleLine(lineBorder);
-    }
-
     /**
      * 打印程序版本和使用说明
      */
@@ -803,31 +589,10 @@ public final class ODDeployer {
         //sb.append("  ").append(ODUtil.charToString("-", maxLen)).append(ODUtil.SEPARATOR);
         // -------------------------------------------- 3. notes
         sb.append("<config file>: path/filename, '").append(CONFIGURE_FILE_NAME).append("' in default.").append(ODUtil.SEPARATOR);
+        sb.append("               Several files separated by ',' are handled concurrently, one cluster per file.").append(ODUtil.SEPARATOR);
         sb.append("See '").append(LOG_FILE_NAME).append("' for the details of execute log.").append(ODUtil.SEPARATOR);
         sb.append(ODUtil.charToString("-", 65));
         System.out.println(sb.toString());
     }
 
-    //add zhangf [paxos] 170522
-    /**获取所预先设定的U/u值*/
-	public static String getStValueRsCount() {
-		return stValueRsCount;
-	}
-
-	public static String getStValueUpsCount() {
-		return stValueUpsCount;
-	}
-
-	/**获取所预先设定的主RS和主UPS*/
-	public static String getStValueMrs() {
-		return stValueMrs;
-	}
-
-	public static String getStValueMups() {
-		return stValueMups;
-	}
-    //add end
-    
-    
-
 }
@@ -4,9 +4,11 @@ import java.util.List;
 
 import com.oceanbase.odeployer.common.ODAction;
 import com.oceanbase.odeployer.common.ODActionExecutor;
+import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODServer;
 import com.oceanbase.odeployer.common.ODServerName;
 import com.oceanbase.odeployer.start.ODMultiUpsParameterGenerator;
+import com.oceanbase.odeployer.start.ODParameterGenerator;
 import com.oceanbase.odeployer.start.ODPaxosParameterGenerator;
 import com.oceanbase.odeployer.start.ODStartParameter;
 import com.oceanbase.odeployer.task.ODStartTask;
@@ -21,7 +23,7 @@ import com.oceanbase.odeployer.util.ODLogger;
 public class ODStartActionExecutor extends ODActionExecutor {
     
     @Override
-    public void execute(int index, List<String> argv, ODTask task) {
+    public ODError execute(int index, List<String> argv, ODTask task) {
         ODStartTask startTask = (ODStartTask) task;
         ODAction action = startTask.getAction(index);
         ODServer server = action.getServer();
@@ -30,23 +32,24 @@ public class ODStartActionExecutor extends ODActionExecutor {
         // 获取附加的启动参数
         ODStartParameter parameters = startTask.getParameterGenerator().generateStartParameter(index);
         if(parameters == null) {
-           ODLogger.debug("parameters=null", (new Throwable()).getStackTrace());
+           ODLogger.debug("parameters=null");
         }
         //add zhangyf [paxos] 170522
+        ODParameterGenerator generator = startTask.getParameterGenerator();
         try{
-        	serverWait = Double.parseDouble((String)ODPaxosParameterGenerator.getActionList().get(index).getParameters().get(2));         	
-        }catch(Exception e)
-        {
-        	try{
-        		serverWait = Double.parseDouble((String)ODMultiUpsParameterGenerator.getActionList().get(index).getParameters().get(6));
-        	}catch(Exception e1){
-        		serverWait = 0.5;        		
+        	if(generator instanceof ODPaxosParameterGenerator) {
+        		serverWait = Double.parseDouble((String)((ODPaxosParameterGenerator) generator).getActionList().get(index).getParameters().get(2));
+        	} else if(generator instanceof ODMultiUpsParameterGenerator) {
+        		serverWait = Double.parseDouble((String)((ODMultiUpsParameterGenerator) generator).getActionList().get(index).getParameters().get(6));
+        	} else {
+        		serverWait = 0.5;
         	}
+        }catch(Exception e){
+        	serverWait = 0.5;
         }
         //add end
         //mod zhangyf [paxos] 170109
-//        System.out.println("index "+index+ODServer.allServerList+""+startTask.getMrs().ip+" "+ startTask.getMups().ip);
-        server.start(serverWait,servernames, startTask.getMrs().ip, startTask.getMups().ip,parameters, 
+        return server.start(serverWait,servernames, startTask.getMrs().ip, startTask.getMups().ip,parameters, 
                 startTask.isWipeData(), startTask.isWipeLog(), startTask.isWipeEtc());
     }
     
@@ -7,6 +7,7 @@ import java.util.Set;
 
 import com.oceanbase.odeployer.annotation.ODCommandAttribute;
 import com.oceanbase.odeployer.parser.ODISectionParser;
+import com.oceanbase.odeployer.parser.ODInitSqlSectionParser;
 import com.oceanbase.odeployer.parser.ODOceanbaseSectionParser;
 import com.oceanbase.odeployer.parser.ODStartSectionParser;
 import com.oceanbase.odeployer.util.ODLogger;
@@ -39,9 +40,6 @@ public class ODCommand {
     /** 子命令名称和缩写的集合，用于重复性检查 */
     private static Set<String> nameSet = new HashSet<>();
 
-    /** 实际输入参数 */
-    private List<String> argumentList;
-    
     /** 子命令属性 */
     private Attribute attribute = new Attribute();
 
@@ -73,6 +71,67 @@ public class ODCommand {
             description="deploy oceanbase to all nodes")
     public static final ODCommand DEPLOY = new ODCommand("DEPLOY");
     
+    @ODCommandAttribute(
+            connectAll=true,
+            description="show pid, uptime, memory, cpu and ports of all server")
+    public static final ODCommand STATUS = new ODCommand("STATUS");
+    
+    @ODCommandAttribute(
+            argument="interval",
+            connectAll=true,
+            description="refresh status of all server every 'interval' seconds")
+    public static final ODCommand WATCH = new ODCommand("WATCH");
+    
+    @ODCommandAttribute(
+            argument="interval",
+            connectAll=true,
+            description="sample cpu, memory, threads, fds and io of all server every 'interval' seconds")
+    public static final ODCommand METRICS = new ODCommand("METRICS");
+    
+    @ODCommandAttribute(
+            argument="all|rs|ups|ms|cs",
+            connectAll=true,
+            description="tail logs of the servers on all nodes, merged by time")
+    public static final ODCommand LOGS = new ODCommand("LOGS");
+    
+    @ODCommandAttribute(
+            argument="all|rs|ups|ms|cs,filter",
+            connectAll=true,
+            description="fetch logs filtered on all nodes, filter: '-' or 'from=..;to=..;level=..;grep=..'")
+    public static final ODCommand FETCH_LOG = new ODCommand("FETCH_LOG");
+    
+    @ODCommandAttribute(
+            connectAll=true,
+            description="check disk, ulimit, memory, cpu, kernel parameters and clock of all nodes against 'preflight.*'")
+    public static final ODCommand PREFLIGHT = new ODCommand("PREFLIGHT");
+    
+    @ODCommandAttribute(
+            argument="initsqlname",
+            section=ODInitSqlSectionParser.class,
+            connectAll=true,
+            connectMS=true,
+            description="run the sql script of 'initsql.name' in batches and report the time of each statement")
+    public static final ODCommand INIT_SQL = new ODCommand("INIT_SQL");
+    
+    @ODCommandAttribute(
+            argument="sql,table|csv|tsv",
+            connectAll=true,
+            connectMS=true,
+            description="run 'sql' on an alive mergeserver and print rows as they arrive")
+    public static final ODCommand QUERY = new ODCommand("QUERY");
+    
+    @ODCommandAttribute(
+            argument="sql",
+            connectAll=true,
+            connectMS=true,
+            description="run 'sql' on all alive mergeservers and merge the rows, '*' marks rows that differ")
+    public static final ODCommand QUERY_ALL = new ODCommand("QUERY_ALL");
+    
+    @ODCommandAttribute(
+            connectAll=true,
+            description="run the 'bench.*' workload and report qps and latency percentiles")
+    public static final ODCommand BENCH = new ODCommand("BENCH");
+    
     @ODCommandAttribute(
             description="create 'config/odeploy.cfg.template'")
     public static final ODCommand CONFIGURATION = new ODCommand("CONFIGURATION");
@@ -242,17 +301,6 @@ public class ODCommand {
         return ret;
     }
 
-    /** 实际输入参数 */
-    public List<String> getArgumentList() {
-//    	ODLogger.log("para_stop"+argumentList);
-        return argumentList;
-    }
-
-    /** 实际输入参数 */
-    public void setArgumentList(List<String> argumentList) {
-        this.argumentList = argumentList;
-    }
-    
     /**
      * 设置属性值
      * @param argument
@@ -1,16 +1,40 @@
 package com.oceanbase.odeployer.command;
 
-import java.util.HashMap;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.common.ODError;
+import com.oceanbase.odeployer.common.ODHostStatus;
+import com.oceanbase.odeployer.common.ODStatusWatcher;
 import com.oceanbase.odeployer.common.ODItem;
+import com.oceanbase.odeployer.common.ODLogFilter;
+import com.oceanbase.odeployer.common.ODLogMerger;
+import com.oceanbase.odeployer.common.ODMetricCollector;
+import com.oceanbase.odeployer.common.ODQuery;
+import com.oceanbase.odeployer.common.ODServer;
+import com.oceanbase.odeployer.common.ODServerName;
+import com.oceanbase.odeployer.parser.ODBenchSectionParser;
 import com.oceanbase.odeployer.parser.ODISectionParser;
+import com.oceanbase.odeployer.parser.ODPreflightSectionParser;
+import com.oceanbase.odeployer.task.ODBenchTask;
+import com.oceanbase.odeployer.task.ODPreflightTask;
 import com.oceanbase.odeployer.task.ODTask;
 import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODMetricServer;
+import com.oceanbase.odeployer.util.ODPrinter;
+import com.oceanbase.odeployer.util.ODResultWriter;
 import com.oceanbase.odeployer.util.ODUtil;
+import com.oceanbase.odeployer.util.Pair;
 
 /**
  * 子命令处理器
@@ -22,20 +46,36 @@ import com.oceanbase.odeployer.util.ODUtil;
  */
 public class ODCommandHandler implements ODICommandHandler {
 
-    private ODDeployer deployer = ODDeployer.getInstance();
+    /** 当前处理的集群上下文 */
+    private ODCluster cluster;
 
     private Map<ODItem, Object> configurations;
     
-    /** 自动处理的Task, key是section的名称 */
-    private static Map<String, ODItem> taskToItemMap = new HashMap<>();
+    /** metrics命令统计的时间窗口(秒) */
+    private static final int METRICS_WINDOW = 60;
+
+    /** logs命令的重排窗口(毫秒), 缓冲行数上限, 先输出的已有行数 */
+    private static final long LOGS_REORDER_WINDOW = 1000;
+    private static final int LOGS_MAX_BUFFERED = 10000;
+    private static final int LOGS_TAIL_LINES = 10;
+
+    /** fetch-log命令保存日志的本地目录, 每次执行新建一个以时间命名的子目录 */
+    private static final String FETCH_LOG_DIR = "log/fetch";
+
+    /** query命令的超时时间(秒), 包含读取全部结果的时间 */
+    private static final int QUERY_TIMEOUT = 600;
+
+    /** query-all命令的总超时时间(秒) */
+    private static final int QUERY_ALL_TIMEOUT = 30;
 
     /** 可用的MS */
     protected String availableMSIp;
 
     @Override
-    public ODError handleCommand(ODCommand cmd) throws Exception {
+    public ODError handleCommand(ODCluster cluster, ODCommand cmd) throws Exception {
         ODError ret = ODError.SUCCESS;
-        configurations = deployer.getConfigurations();      
+        this.cluster = cluster;
+        configurations = cluster.getConfigurations();      
         if(cmd != ODCommand.CONFIGURATION //忽略生成配置文件模板的命令
                 && (configurations == null || configurations.isEmpty())) {
             ret = ODError.ERROR;
@@ -43,7 +83,7 @@ public class ODCommandHandler implements ODICommandHandler {
         }
         // 若子命令需要连接数据库
         if(cmd.getNeedAliveMS()) {
-            availableMSIp = deployer.getOceanbase().getAliveMsIp();
+            availableMSIp = cluster.getOceanbase().getAliveMsIp();
             if(availableMSIp == null) {
                 ODLogger.log("[ERROR] No alive mergeserver is found!");
                 ret = ODError.ERROR;
@@ -53,18 +93,36 @@ public class ODCommandHandler implements ODICommandHandler {
             if(cmd == ODCommand.ALL_START) {
                 ret = handleAllStart();
             } else if(cmd == ODCommand.ALL_STOP) {
-                ret = handleAllStop(cmd.getArgumentList());         
+                ret = handleAllStop(cluster.getArgumentList());         
+            } else if(cmd == ODCommand.STATUS) {
+                ret = handleStatus();
+            } else if(cmd == ODCommand.WATCH) {
+                ret = handleWatch(cluster.getArgumentList());
+            } else if(cmd == ODCommand.METRICS) {
+                ret = handleMetrics(cluster.getArgumentList());
+            } else if(cmd == ODCommand.LOGS) {
+                ret = handleLogs(cluster.getArgumentList());
+            } else if(cmd == ODCommand.FETCH_LOG) {
+                ret = handleFetchLog(cluster.getArgumentList());
+            } else if(cmd == ODCommand.PREFLIGHT) {
+                ret = handlePreflight();
+            } else if(cmd == ODCommand.QUERY) {
+                ret = handleQuery(cluster.getArgumentList());
+            } else if(cmd == ODCommand.QUERY_ALL) {
+                ret = handleQueryAll(cluster.getArgumentList());
+            } else if(cmd == ODCommand.BENCH) {
+                ret = handleBench();
             } else if(cmd == ODCommand.CONFIGURATION) {
                 ret = handleCreateConfiguration();
             } else {
                 // 处理映射为Task的命令             	
                 Class<? extends ODISectionParser> clazz = cmd.getBindingSection();
                 if(clazz != null && clazz != ODISectionParser.class) {
-                    ODISectionParser section = deployer.getSectionParser(clazz);
+                    ODISectionParser section = cluster.getSectionParser(clazz);
                     if(section != null) {
-                        ODItem taskItem = taskToItemMap.get(section.getSectionName());
+                        ODItem taskItem = cluster.getConfiguration().getSectionBindingTask(section.getSectionName());
                         if(taskItem != null) {               	
-                            ret = handleTaskCommand(cmd.getArgumentList(), taskItem, section.getSectionName());
+                            ret = handleTaskCommand(cluster.getArgumentList(), taskItem, section.getSectionName());
                         } else {
                             ODLogger.log("[ERROR] Command '" + cmd + "' is unhandled!");
                             ret = ODError.ERROR;
@@ -79,22 +137,13 @@ public class ODCommandHandler implements ODICommandHandler {
         return ret;
     }
     
-    /**
-     * 添加需要处理的task
-     * @param section 与Task绑定的section
-     * @param item 保存Task的配置项
-     */
-    public static void addSectionBindingTask(String section, ODItem item) {
-        taskToItemMap.put(section, item);
-    }
-
     // ----------------------------------------------------------- private
 
     /** all-start */
     private ODError handleAllStart() throws Exception {
         ODError ret = ODError.SUCCESS;
-        if(deployer.getOceanbase() != null) {
-            ret = deployer.getOceanbase().start();
+        if(cluster.getOceanbase() != null) {
+            ret = cluster.getOceanbase().start();
         }
         return ret;
     }
@@ -102,7 +151,7 @@ public class ODCommandHandler implements ODICommandHandler {
     /** all-stop */
     private ODError handleAllStop(List<String> argumentList) throws Exception {
         ODError ret = ODError.SUCCESS;
-        if(deployer.getOceanbase() != null) {
+        if(cluster.getOceanbase() != null) {
             if(argumentList.size() == 1) {
                 boolean force = false;
                 String argv = argumentList.get(0);
@@ -115,13 +164,280 @@ public class ODCommandHandler implements ODICommandHandler {
                     ret = ODError.ERROR;
                 }
                 if(ret.isSuccess()) {
-                    ret = deployer.getOceanbase().stop(force);
+                    ret = cluster.getOceanbase().stop(force);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** status */
+    private ODError handleStatus() {
+        ODError ret = ODError.SUCCESS;
+        if(cluster.getOceanbase() != null) {
+            List<List<String>> rows = new ArrayList<>();
+            for(ODHostStatus status: cluster.getOceanbase().collectStatus()) {
+                if(!status.isReachable()) {
+                    ODLogger.log("[ERROR] [" + status.getIp() + "]: get status fail!");
+                    ret = ODError.ERROR;
+                }
+                rows.addAll(status.toRows());
+            }
+            ODPrinter.printTable("Server Status", ODHostStatus.getHeader(), rows);
+        }
+        return ret;
+    }
+
+    /** watch */
+    private ODError handleWatch(List<String> argumentList) {
+        ODError ret = ODError.SUCCESS;
+        if(cluster.getOceanbase() != null && argumentList.size() == 1) {
+            int interval = parseInterval(argumentList.get(0));
+            if(interval <= 0) {
+                ret = ODError.ERROR;
+            } else {
+                if(ODMetricServer.start(ODDeployer.METRICS_PORT)) {
+                    try {
+                        ret = new ODStatusWatcher(cluster, interval).watch();
+                    } finally {
+                        ODMetricServer.stop();
+                    }
+                } else {
+                    ret = ODError.ERROR;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** metrics */
+    private ODError handleMetrics(List<String> argumentList) {
+        ODError ret = ODError.SUCCESS;
+        if(cluster.getOceanbase() != null && argumentList.size() == 1) {
+            int interval = parseInterval(argumentList.get(0));
+            if(interval <= 0 || !ODMetricServer.start(ODDeployer.METRICS_PORT)) {
+                ret = ODError.ERROR;
+            } else {
+                ODMetricCollector collector = new ODMetricCollector(cluster, ODMetricCollector.DEFAULT_CAPACITY);
+                String tablename = "now/avg/p95 of last " + METRICS_WINDOW + "s, Ctrl+C to exit";
+                try {
+                    while(!Thread.currentThread().isInterrupted()) {
+                        collector.collect();
+                        ODPrinter.printTable(tablename, ODMetricCollector.getHeader(), collector.toRows(METRICS_WINDOW * 1000L));
+                        try {
+                            Thread.sleep(interval * 1000L);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                } finally {
+                    ODMetricServer.stop();
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** logs */
+    private ODError handleLogs(List<String> argumentList) {
+        ODError ret = ODError.SUCCESS;
+        if(cluster.getOceanbase() != null && argumentList.size() == 1) {
+            final List<ODServerName> servernames = parseServerNames(argumentList.get(0));
+            if(servernames == null) {
+                return ODError.ERROR;
+            }
+            final ODLogMerger merger = new ODLogMerger(LOGS_REORDER_WINDOW, LOGS_MAX_BUFFERED);
+            final List<ODServer> serverList = cluster.getOceanbase().getServerList();
+            for(final ODServer server: serverList) {
+                Thread thread = new Thread(new Runnable() { // 每台主机一个长时间运行的线程, 不占用动作线程池
+                    @Override
+                    public void run() {
+                        if(server.tailLogs(servernames, LOGS_TAIL_LINES, merger).isError()) {
+                            ODLogger.log("[ERROR] [" + server.ip + "]: tail logs fail!");
+                        }
+                    }
+                }, "tail-" + server.ip);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            try {
+                while(!Thread.currentThread().isInterrupted()) {
+                    for(String line: merger.poll(100)) {
+                        System.out.println(line);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // 退出
+            } finally {
+                for(ODServer server: serverList) {
+                    server.abort();
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** fetch-log */
+    private ODError handleFetchLog(List<String> argumentList) {
+        ODError ret = ODError.SUCCESS;
+        if(cluster.getOceanbase() != null && argumentList.size() == 2) {
+            final List<ODServerName> servernames = parseServerNames(argumentList.get(0));
+            final ODLogFilter filter = ODLogFilter.parse(argumentList.get(1));
+            if(servernames == null || filter == null) {
+                return ODError.ERROR;
+            }
+            final File dir = new File(FETCH_LOG_DIR, new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+            ODLogger.log("fetch log [" + filter + "] to " + dir);
+            // 各主机并行拉取, 每台主机上的Server依次拉取
+            List<ODServer> serverList = cluster.getOceanbase().getServerList();
+            List<Future<Pair<ODError, List<List<String>>>>> futureList = new ArrayList<>();
+            for(final ODServer server: serverList) {
+                futureList.add(cluster.executeAction(new Callable<Pair<ODError, List<List<String>>>>() {
+                    @Override
+                    public Pair<ODError, List<List<String>>> call() throws Exception {
+                        return server.fetchLogs(servernames, filter, dir);
+                    }
+                }));
+            }
+            List<List<String>> rows = new ArrayList<>();
+            for(int i = 0; i < serverList.size(); i++) {
+                try {
+                    Pair<ODError, List<List<String>>> result = futureList.get(i).get();
+                    if(result.first.isError()) {
+                        ret = ODError.ERROR;
+                    }
+                    rows.addAll(result.second);
+                } catch (InterruptedException | ExecutionException e) {
+                    ODLogger.log("[ERROR] [" + serverList.get(i).ip + "]: fetch log fail!");
+                    ret = ODError.ERROR;
                 }
+                rows.add(null);
             }
+            ODPrinter.printTable("Fetch Log", Arrays.asList("IP", "Server", "File", "Size(KB)"), rows);
         }
         return ret;
     }
 
+    /** query */
+    private ODError handleQuery(List<String> argumentList) {
+        ODError ret = ODError.ERROR;
+        if(argumentList.size() == 2) {
+            ODResultWriter writer = ODResultWriter.create(argumentList.get(1), availableMSIp);
+            if(writer != null) {
+                ODQuery query = new ODQuery(cluster, availableMSIp);
+                try {
+                    ret = query.executeStreamQuery(argumentList.get(0), QUERY_TIMEOUT, writer);
+                } finally {
+                    query.close();
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** query-all */
+    private ODError handleQueryAll(List<String> argumentList) {
+        ODError ret = ODError.ERROR;
+        if(argumentList.size() == 1) {
+            List<String> msIps = cluster.getOceanbase().getAliveMsIps();
+            ODLogger.log("query " + msIps.size() + " mergeservers: " + msIps);
+            Pair<ODError, Pair<List<String>, List<List<String>>>> result = ODQuery.executeFanOutQuery(cluster, msIps,
+                    argumentList.get(0), QUERY_ALL_TIMEOUT);
+            ret = result.first;
+            if(result.second != null) {
+                ODPrinter.printTable("Query All", result.second.first, result.second.second);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * preflight
+     * 不绑定section, 未配置preflight.*时使用默认阈值
+     */
+    private ODError handlePreflight() throws Exception {
+        String sectionName = cluster.getSectionParser(ODPreflightSectionParser.class).getSectionName();
+        ODTask task = getSectionTask(sectionName);
+        if(task == null) {
+            task = new ODPreflightTask(sectionName);
+            task.setCluster(cluster);
+        }
+        return task.execute(cluster.getArgumentList(), sectionName);
+    }
+
+    /**
+     * bench
+     * 不绑定section, 未配置bench.*时使用默认值
+     */
+    private ODError handleBench() throws Exception {
+        String sectionName = cluster.getSectionParser(ODBenchSectionParser.class).getSectionName();
+        ODTask task = getSectionTask(sectionName);
+        if(task == null) {
+            task = new ODBenchTask(sectionName);
+            task.setCluster(cluster);
+        }
+        return task.execute(cluster.getArgumentList(), sectionName);
+    }
+
+    /**
+     * 类型为SECTION0的section配置的Task
+     * @param sectionName section的名称, 也是task的名称
+     * @return 未配置时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private ODTask getSectionTask(String sectionName) {
+        ODItem taskItem = cluster.getConfiguration().getSectionBindingTask(sectionName);
+        if(taskItem != null && configurations.get(taskItem) != null) {
+            return ((Map<String, ODTask>) configurations.get(taskItem)).get(sectionName);
+        }
+        return null;
+    }
+
+    /**
+     * 解析Server类型参数
+     * @param argv 如: rs|ms, all表示所有Server
+     * @return 非法时打印错误信息, 并返回null
+     */
+    private List<ODServerName> parseServerNames(String argv) {
+        List<ODServerName> servernames = new ArrayList<>();
+        if(argv.equalsIgnoreCase("all")) {
+            servernames.addAll(Arrays.asList(ODServer.SERVER_NAMES));
+            return servernames;
+        }
+        for(String name: ODUtil.split(argv, "\\|")) {
+            ODServerName servername = ODServerName.toServerType(name);
+            if(servername == ODServerName.LMS) {
+                servername = ODServerName.MS;
+            }
+            if(servername == ODServerName.UNKNOWN) {
+                ODLogger.log("[ERROR] the argument of '" + name + "' is undefined, it should be 'all' or some of 'rs|ups|ms|cs'!");
+                return null;
+            }
+            if(!servernames.contains(servername)) {
+                servernames.add(servername);
+            }
+        }
+        return servernames;
+    }
+
+    /**
+     * 解析时间间隔参数
+     * @param argv 秒
+     * @return 非法时打印错误信息, 并返回0
+     */
+    private int parseInterval(String argv) {
+        int interval = 0;
+        try {
+            interval = Integer.parseInt(argv);
+        } catch (NumberFormatException e) {
+            // 下面统一提示
+        }
+        if(interval <= 0) {
+            ODLogger.log("[ERROR] the argument of '" + argv + "' is undefined, it should be a positive number of seconds!");
+        }
+        return interval;
+    }
+
     /**
      * 生成配置文件模板
      * @return 必须配置了解析器,否则出错
@@ -131,9 +447,10 @@ public class ODCommandHandler implements ODICommandHandler {
         String filename = "config/odeployer.cfg.template";
         String filetext = null;
         // 从解析器中分类获取所有配置项信息
-        List<ODISectionParser> sectionParserList = deployer.getSectionParserList();
+        List<ODISectionParser> sectionParserList = cluster.getSectionParserList();
         if(sectionParserList != null && sectionParserList.size() > 0) {
-            filetext = ODUtil.buildConfigurationTemplate(deployer.getVersion(), sectionParserList, deployer.getParameterCeneratorList());
+            filetext = ODUtil.buildConfigurationTemplate(cluster.getDeployer().getVersion(), sectionParserList,
+                    cluster.getDeployer().getParameterCeneratorList());
         } else {
             ODLogger.error("get SectionParser list fail!", (new Throwable()).getStackTrace());
             ret = ODError.ERROR;
@@ -1,5 +1,6 @@
 package com.oceanbase.odeployer.command;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.common.ODError;
 
 /**
@@ -14,11 +15,12 @@ public interface ODICommandHandler {
 
     /**
      * 处理子命令
+     * @param cluster 集群上下文, 包含配置项集合和子命令的实际参数
      * @param cmd 子命令
      * @return 执行是否成功
      * @throws Exception
      */
-    ODError handleCommand(ODCommand cmd) throws Exception;
+    ODError handleCommand(ODCluster cluster, ODCommand cmd) throws Exception;
     
 
 }
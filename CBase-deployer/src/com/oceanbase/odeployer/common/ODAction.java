@@ -116,6 +116,24 @@ public class ODAction {
         }
     }
     
+    /**
+     * Server类型, 用于日志
+     * @return 如: rs|ups, 第0个参数不是Server名称列表时返回null
+     */
+    public String getRoles() {
+        if(parameters.size() > 0 && parameters.get(0) instanceof List) {
+            StringBuilder sb = new StringBuilder();
+            for(Object sn: (List<?>) parameters.get(0)) {
+                if(sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append(sn);
+            }
+            return sb.toString();
+        }
+        return null;
+    }
+
     /**
      * Server名称列表 rs,ups,ms,lms,cs
      * @return 可能为null
@@ -18,7 +18,8 @@ public abstract class ODActionExecutor {
      * @param index 动作在列表中的序号, 即第index个动作
      * @param argv 命令行参数
      * @param task action所属的task
+     * @return 执行结果, 由task的失败处理策略决定是否终止任务
      */
-    public abstract void execute(int index, List<String> argv, ODTask task);
+    public abstract ODError execute(int index, List<String> argv, ODTask task);
     
 }
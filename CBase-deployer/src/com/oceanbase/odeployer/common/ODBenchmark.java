@@ -0,0 +1,338 @@
+package com.oceanbase.odeployer.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oceanbase.odeployer.ODDeployer;
+import com.oceanbase.odeployer.util.ODLatencyHistogram;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * JDBC压测
+ * <p>只使用标准的MySQL语法, 可以对任意MySQL协议的服务执行, 不依赖集群上下文</p>
+ * <pre>
+ * point-select: SELECT c FROM table WHERE id = ?
+ * insert:       REPLACE INTO table (id, k, c) VALUES (?, ?, ?), id从预置行之后递增, 重复执行不会冲突
+ * range-scan:   SELECT c FROM table WHERE id BETWEEN ? AND ?+RANGE_SIZE-1
+ * </pre>
+ * 每个工作线程从连接池借出一个连接, 按权重随机选择负载, 延迟记录到线程自己的直方图, 结束后合并
+ * @since OD2.0
+ */
+public class ODBenchmark {
+
+    public static final String POINT_SELECT = "point-select";
+    public static final String INSERT = "insert";
+    public static final String RANGE_SCAN = "range-scan";
+
+    private static final List<String> WORKLOADS = Arrays.asList(POINT_SELECT, INSERT, RANGE_SCAN);
+
+    /** range-scan的行数 */
+    public static final int RANGE_SIZE = 100;
+
+    /** 预置数据时每个批量的行数 */
+    private static final int LOAD_BATCH = 500;
+
+    /** 等待工作线程结束的额外时间(毫秒) */
+    private static final long STOP_GRACE = 10000;
+
+    private String ip;
+    private String port;
+    private String user;
+    private String password;
+    private String table;
+
+    /** 预置的行数, 查询的id在[1, rows]内 */
+    private int rows = 1;
+
+    private AtomicLong nextId = new AtomicLong();
+
+    /** 已输出的错误数, 避免刷屏 */
+    private AtomicInteger loggedErrors = new AtomicInteger();
+
+    private static final int MAX_LOGGED_ERRORS = 5;
+
+    /**
+     * @param ip 服务地址
+     * @param port SQL端口号
+     * @param user 数据库用户
+     * @param password 用户密码
+     * @param table 压测表名
+     */
+    public ODBenchmark(String ip, String port, String user, String password, String table) {
+        this.ip = ip;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.table = table;
+    }
+
+    /**
+     * 解析负载配置
+     * @param spec 如: point-select:8|insert:1|range-scan:1, 权重可省略, 默认为1
+     * @return 负载 -> 权重, 非法时返回null
+     */
+    public static Map<String, Integer> parseWorkload(String spec) {
+        Map<String, Integer> workload = new LinkedHashMap<>();
+        for(String part: ODUtil.split(spec, "\\|")) {
+            String[] kv = ODUtil.split(part, ":");
+            String name = kv[0].toLowerCase();
+            int weight = 1;
+            try {
+                if(kv.length > 1) {
+                    weight = Integer.parseInt(kv[1]);
+                }
+            } catch (NumberFormatException e) {
+                weight = -1;
+            }
+            if(!WORKLOADS.contains(name) || weight < 0 || kv.length > 2) {
+                ODLogger.log("[ERROR] the workload '" + part + "' is undefined, it should be 'name[:weight]', "
+                        + "name: " + WORKLOADS + "!");
+                return null;
+            }
+            if(weight > 0) {
+                workload.put(name, weight);
+            }
+        }
+        if(workload.isEmpty()) {
+            ODLogger.log("[ERROR] the workload '" + spec + "' is empty!");
+            return null;
+        }
+        return workload;
+    }
+
+    /**
+     * 建表并预置数据, 已有足够的行时不再写入
+     * @param rows 预置的行数
+     * @return 是否成功
+     */
+    public ODError prepare(int rows) {
+        this.rows = Math.max(rows, 1);
+        nextId.set(this.rows + 1);
+        Connection conn = ODConnectionPool.borrow(ip, port, user, password);
+        if(conn == null) {
+            return ODError.ERROR;
+        }
+        boolean broken = false;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + table
+                    + " (id BIGINT NOT NULL, k INT, c VARCHAR(120), PRIMARY KEY (id))");
+            long count = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE id <= " + this.rows)) {
+                if(rs.next()) {
+                    count = rs.getLong(1);
+                }
+            }
+            if(count < this.rows) {
+                ODLogger.log("load " + this.rows + " rows into '" + table + "'");
+                try (PreparedStatement ps = conn.prepareStatement("REPLACE INTO " + table + " (id, k, c) VALUES (?, ?, ?)")) {
+                    Random random = new Random(0);
+                    for(int id = 1; id <= this.rows; id++) {
+                        bindRow(ps, id, random);
+                        ps.addBatch();
+                        if(id % LOAD_BATCH == 0 || id == this.rows) {
+                            ps.executeBatch();
+                        }
+                    }
+                }
+            }
+            return ODError.SUCCESS;
+        } catch (SQLException e) {
+            broken = isBroken(e);
+            ODLogger.log("[ERROR] prepare table '" + table + "' fail: " + ODUtil.parseException(e));
+            return ODError.ERROR;
+        } finally {
+            ODConnectionPool.release(ODConnectionPool.key(ip, port, user), conn, broken);
+        }
+    }
+
+    /**
+     * 执行压测
+     * @param workload 见parseWorkload()
+     * @param threads 工作线程数
+     * @param duration 持续时间(毫秒)
+     * @param timeout 每个语句的超时时间(秒)
+     * @return 不会为null
+     */
+    public ODBenchmarkResult run(Map<String, Integer> workload, int threads, long duration, final int timeout) {
+        final List<String> names = new ArrayList<>(workload.keySet());
+        final int[] cumulativeWeights = new int[names.size()];
+        int totalWeight = 0;
+        for(int i = 0; i < names.size(); i++) {
+            totalWeight += workload.get(names.get(i));
+            cumulativeWeights[i] = totalWeight;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "od-bench-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long start = System.nanoTime();
+        final long deadline = start + duration * 1000000L;
+        List<Future<ODBenchmarkResult>> futureList = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            final long seed = i;
+            futureList.add(workers.submit(new Callable<ODBenchmarkResult>() {
+                @Override
+                public ODBenchmarkResult call() throws Exception {
+                    return work(names, cumulativeWeights, deadline, timeout, new Random(seed));
+                }
+            }));
+        }
+        workers.shutdown();
+        ODBenchmarkResult result = new ODBenchmarkResult(names);
+        for(Future<ODBenchmarkResult> future: futureList) {
+            try {
+                long wait = Math.max(deadline - System.nanoTime(), 0) / 1000000L + STOP_GRACE;
+                result.add(future.get(wait, TimeUnit.MILLISECONDS));
+            } catch (Exception e) {
+                future.cancel(true);
+                result.addWorkerFailure();
+                ODLogger.log("[ERROR] bench worker fail: " + ODUtil.parseException(e));
+            }
+        }
+        workers.shutdownNow();
+        result.setElapsed(System.nanoTime() - start);
+        return result;
+    }
+
+    // ----------------------------------------------------------- private
+
+    /** 一个工作线程, 直到截止时间 */
+    private ODBenchmarkResult work(List<String> names, int[] cumulativeWeights, long deadline, int timeout,
+                                   Random random) {
+        ODBenchmarkResult result = new ODBenchmarkResult(names);
+        String key = ODConnectionPool.key(ip, port, user);
+        Connection conn = null;
+        PreparedStatement[] statements = new PreparedStatement[names.size()];
+        int totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+        while(System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            int w = 0;
+            int r = random.nextInt(totalWeight);
+            while(r >= cumulativeWeights[w]) {
+                w++;
+            }
+            long begin = System.nanoTime();
+            try {
+                if(conn == null) {
+                    conn = ODConnectionPool.borrow(ip, port, user, password);
+                    if(conn == null) {
+                        result.addError(w);
+                        ODUtil.sleep(100); // 连接失败, 稍后重试
+                        continue;
+                    }
+                }
+                if(statements[w] == null) {
+                    statements[w] = prepareStatement(conn, names.get(w));
+                    statements[w].setQueryTimeout(timeout);
+                }
+                execute(names.get(w), statements[w], random);
+                result.record(w, System.nanoTime() - begin);
+            } catch (SQLException e) {
+                result.addError(w);
+                if(loggedErrors.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+                    ODLogger.log("[WARN] " + names.get(w) + ": " + ODUtil.parseException(e));
+                }
+                if(isBroken(e)) { // 换一个连接
+                    closeStatements(statements);
+                    ODConnectionPool.release(key, conn, true);
+                    conn = null;
+                }
+            }
+        }
+        closeStatements(statements);
+        ODConnectionPool.release(key, conn, false);
+        return result;
+    }
+
+    private PreparedStatement prepareStatement(Connection conn, String name) throws SQLException {
+        switch (name) {
+            case POINT_SELECT:
+                return conn.prepareStatement("SELECT c FROM " + table + " WHERE id = ?");
+            case INSERT:
+                return conn.prepareStatement("REPLACE INTO " + table + " (id, k, c) VALUES (?, ?, ?)");
+            default:
+                return conn.prepareStatement("SELECT c FROM " + table + " WHERE id BETWEEN ? AND ?");
+        }
+    }
+
+    private void execute(String name, PreparedStatement ps, Random random) throws SQLException {
+        switch (name) {
+            case POINT_SELECT:
+                ps.setLong(1, 1 + random.nextInt(rows));
+                consume(ps.executeQuery());
+                break;
+            case INSERT:
+                bindRow(ps, nextId.getAndIncrement(), random);
+                ps.executeUpdate();
+                break;
+            default:
+                long from = 1 + random.nextInt(Math.max(rows - RANGE_SIZE + 1, 1));
+                ps.setLong(1, from);
+                ps.setLong(2, from + RANGE_SIZE - 1);
+                consume(ps.executeQuery());
+        }
+    }
+
+    /** 读取全部结果, 计入延迟 */
+    private static void consume(ResultSet rs) throws SQLException {
+        try {
+            while(rs.next()) {
+                rs.getString(1);
+            }
+        } finally {
+            rs.close();
+        }
+    }
+
+    private static void bindRow(PreparedStatement ps, long id, Random random) throws SQLException {
+        ps.setLong(1, id);
+        ps.setInt(2, random.nextInt(1000000));
+        StringBuilder c = new StringBuilder(120);
+        while(c.length() < 110) {
+            c.append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36)).append('-');
+        }
+        ps.setString(3, c.substring(0, 110));
+    }
+
+    private static void closeStatements(PreparedStatement[] statements) {
+        for(int i = 0; i < statements.length; i++) {
+            if(statements[i] != null) {
+                try {
+                    statements[i].close();
+                } catch (SQLException e) {
+                    if(ODDeployer.DEBUG) {
+                        e.printStackTrace();
+                    }
+                }
+                statements[i] = null;
+            }
+        }
+    }
+
+    /** 连接异常 */
+    private static boolean isBroken(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+}
@@ -0,0 +1,143 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.oceanbase.odeployer.util.ODLatencyHistogram;
+
+/**
+ * 压测结果
+ * <p>每个负载一个延迟直方图和错误数, 工作线程各自记录, 由{@code ODBenchmark}合并</p>
+ * @since OD2.0
+ */
+public class ODBenchmarkResult {
+
+    private List<String> names;
+
+    private ODLatencyHistogram[] histograms;
+
+    private long[] errors;
+
+    /** 未正常结束的工作线程数 */
+    private int workerFailures;
+
+    /** 纳秒 */
+    private long elapsed;
+
+    public ODBenchmarkResult(List<String> names) {
+        this.names = names;
+        histograms = new ODLatencyHistogram[names.size()];
+        for(int i = 0; i < histograms.length; i++) {
+            histograms[i] = new ODLatencyHistogram();
+        }
+        errors = new long[names.size()];
+    }
+
+    /**
+     * 表头
+     * @return 延迟的单位为毫秒
+     */
+    public static List<String> getHeader() {
+        return new ArrayList<>(Arrays.asList("Workload", "Ops", "Errors", "QPS", "Mean", "p50", "p99", "p999", "Max"));
+    }
+
+    /**
+     * 每个负载一行, 最后一行为总计
+     * @return 表格行
+     */
+    public List<List<String>> toRows() {
+        List<List<String>> rows = new ArrayList<>();
+        long totalErrors = 0;
+        for(int i = 0; i < names.size(); i++) {
+            rows.add(toRow(names.get(i), histograms[i], errors[i]));
+            totalErrors += errors[i];
+        }
+        if(names.size() > 1) {
+            rows.add(null);
+            rows.add(toRow("total", getTotal(), totalErrors));
+        }
+        return rows;
+    }
+
+    /**
+     * 所有负载合并的直方图
+     * @return 新的实例
+     */
+    public ODLatencyHistogram getTotal() {
+        ODLatencyHistogram total = new ODLatencyHistogram();
+        for(ODLatencyHistogram histogram: histograms) {
+            total.add(histogram);
+        }
+        return total;
+    }
+
+    /**
+     * 所有负载的成功次数每秒
+     * @return elapsed为0时返回0
+     */
+    public double getQps() {
+        return qps(getTotal().getTotalCount());
+    }
+
+    public long getErrorCount() {
+        long total = 0;
+        for(long e: errors) {
+            total += e;
+        }
+        return total;
+    }
+
+    public int getWorkerFailures() {
+        return workerFailures;
+    }
+
+    /** 秒 */
+    public double getElapsedSeconds() {
+        return elapsed / 1e9;
+    }
+
+    // ----------------------------------------------------------- package
+
+    void record(int workload, long nanos) {
+        histograms[workload].record(nanos);
+    }
+
+    void addError(int workload) {
+        errors[workload]++;
+    }
+
+    void addWorkerFailure() {
+        workerFailures++;
+    }
+
+    void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /** 合并一个工作线程的结果 */
+    void add(ODBenchmarkResult other) {
+        for(int i = 0; i < histograms.length; i++) {
+            histograms[i].add(other.histograms[i]);
+            errors[i] += other.errors[i];
+        }
+    }
+
+    // ----------------------------------------------------------- private
+
+    private List<String> toRow(String name, ODLatencyHistogram histogram, long error) {
+        return new ArrayList<>(Arrays.asList(name, String.valueOf(histogram.getTotalCount()), String.valueOf(error),
+                String.format("%.1f", qps(histogram.getTotalCount())), millis(histogram.getMean()),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMax())));
+    }
+
+    private double qps(long count) {
+        return elapsed > 0 ? count * 1e9 / elapsed : 0;
+    }
+
+    /** 微秒转为毫秒, 保留两位小数 */
+    private static String millis(double micros) {
+        return String.format("%.2f", micros / 1000);
+    }
+}
@@ -2,17 +2,26 @@ package com.oceanbase.odeployer.common;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.command.ODCommand;
 import com.oceanbase.odeployer.parser.ODCommonSectionParser;
 import com.oceanbase.odeployer.parser.ODISectionParser;
+import com.oceanbase.odeployer.parser.ODServerSectionParser;
 import com.oceanbase.odeployer.task.ODTask;
 import com.oceanbase.odeployer.util.ODLogger;
 import com.oceanbase.odeployer.util.ODUtil;
@@ -21,127 +30,200 @@ import com.oceanbase.odeployer.util.Pair;
 /**
  * 配置文件加载器
  * <p>读取配置文件, 自动调用相应解析器识别配置项, 保存到键值集合</p>
+ * <p>每个实例加载一次配置文件, 拥有自己的解析器, 解析器通过getConfiguration()访问所属的实例.
+ * 加载完成后配置项集合不再修改, 重新加载时创建新的实例, 见ODCluster.reloadConfiguration()</p>
  * @author lbz@lbzhong.com 2016/03/30
  * @since OD1.0
  * @author yanfeizhang68@gmail.com 2016/12/30
  * @since OD2.0
  */
 public class ODConfiguration {
+
+    /** 所属的集群上下文 */
+    private final ODCluster cluster;
     
     /** 配置项的键值对集合 */
-    private static Map<ODItem, Object> CONFIGURATIONS = new HashMap<>();
+    private Map<ODItem, Object> configurations = new HashMap<>();
+    
+    /** 配置文件解析器, 每个实例独立实例化 */
+    private final List<ODISectionParser> sectionParsers = new ArrayList<>();
+    
+    /** 是否已加载, 只加载一次 */
+    private boolean isLoaded;
+    
+    /** 加载时配置文件和引用文件的最后修改时间 */
+    private long lastModified;
     
     /** 解析配置文件的当前行 */
-    private static int LINE_NUMBER = 0;
+    private int lineNumber = 0;
+    
+    /** 当前行所在的文件, 主配置文件为null */
+    private String source;
+    
+    /** 引用的文件, 路径 -&gt; 内容摘要, 用于判断快照是否过期 */
+    private Map<String, String> includes = new LinkedHashMap<>();
+    
+    /** 正在读取的引用文件, 用于检查循环引用 */
+    private List<String> includeStack = new ArrayList<>();
+    
+    /** 角色模板, 名称 -&gt; 值 */
+    private Map<String, String> roles = new HashMap<>();
+    
+    /** 自动处理的Task, key是section的名称, value是保存Task的配置项, 由解析器初始化时添加 */
+    private Map<String, ODItem> sectionTaskItems = new HashMap<>();
     
     /** 解析函数返回值 */
-    private static ODError RETURN = ODError.SUCCESS;
+    private ODError result = ODError.SUCCESS;
     
     /** 保存所有的解析错误信息 */
-    private static StringBuilder ERROR_BUILDER = new StringBuilder();
+    private StringBuilder errorBuilder = new StringBuilder();
     
     /** first是&lt;sectionName, taskName&gt;, second是ip列表, 若引用了某个task, 会添加该task的IP列表<br>
      * 用于预连接和打印到头部 */
-    private static List<Pair<Pair<String, String>, List<String>>> IP_LIST = new ArrayList<>();
+    private List<Pair<Pair<String, String>, List<String>>> ipLists = new ArrayList<>();
     
     /** first是&lt;sectionName, taskName&gt;, second是配置项值对列表, 若引用了某个task, 会添加该task的值列表<br>
      * 用于打印到头部 */
-    private static List<Pair<Pair<String, String>, List<Pair<String, String>>>> ITEM_LIST = new ArrayList<>();
+    private List<Pair<Pair<String, String>, List<Pair<String, String>>>> itemLists = new ArrayList<>();
+    
+    /** 引用其他配置文件, 如: include = servers.cfg, 相对路径以当前文件所在目录为起点 */
+    public static final String INCLUDE = "include";
+    
+    /** 角色模板的前缀, 如: role.mscs = ms|cs,1,2,2,True,2,0.5, 值中的"@mscs"字段替换为模板 */
+    public static final String ROLE_PREFIX = "role.";
+    
+    /** 引用的最大深度 */
+    private static final int MAX_INCLUDE_DEPTH = 8;
     
+    /** 由ODCluster创建 */
+    public ODConfiguration(ODCluster cluster) {
+        this.cluster = cluster;
+        // 注册解析器
+        for(Class<? extends ODISectionParser> clazz: cluster.getDeployer().getSectionParserClassList()) {
+            try {
+                ODISectionParser parser = clazz.newInstance();
+                parser.setCluster(cluster);
+                if(parser instanceof ODItemAdder) {
+                    ((ODItemAdder) parser).setConfiguration(this);
+                }
+                parser.init();
+                sectionParsers.add(parser);
+            } catch (Exception e) {
+                ODLogger.error("instantiate '" + clazz + "' fail!", (new Throwable()).getStackTrace());
+            }
+        }
+    }
+
     /**
      * 加载配置文件
      * @param filename 路径/文件
      * @param cmd 子命令
-     * @param sectionParsers section解析器, 自定义的解析器必须实现SectionParser接口
-     * @return 已捕获解析相关的所有异常
+     * @return 已捕获解析相关的所有异常, 重复调用时返回第一次的结果
      */
-    public Pair<ODError, Map<ODItem, Object>> loadConf(String filename, ODCommand cmd, List<ODISectionParser> sectionParsers) { //启用默认解析器 	       
-    	if(RETURN.isSuccess()) {
-            BufferedReader bReader = null;
+    public Pair<ODError, Map<ODItem, Object>> loadConf(String filename, ODCommand cmd) { //启用默认解析器 	       
+    	if(!isLoaded && result.isSuccess()) {
+            isLoaded = true;
             try {
+                byte[] content = null;
                 try {
-                    bReader = new BufferedReader(new FileReader(new File(filename)));
+                    content = Files.readAllBytes(new File(filename).toPath());
                 } catch (Exception e) {
                     System.out.println("[ERROR] Open configure file '" + filename + "' error!");
-                    RETURN = ODError.ERROR;
+                    result = ODError.ERROR;
                 }
-                List<String> lineList = new ArrayList<>(); // 先保存配置文件
-                if(RETURN.isSuccess()) {
-                    String tmpLine;
-                    LINE_NUMBER = 1; // 文件行号从1开始
-                    while(null != (tmpLine = bReader.readLine())) {
-                        tmpLine = tmpLine.trim();
-                        lineList.add(tmpLine);
-                        if(!tmpLine.startsWith("#")) { // #行注释
-                            String itemStr = tmpLine.split("=")[0].trim();
-                            ODItem item = ODItem.valueOf(itemStr);
-                            if(item == ODItem.UNKNOWN || item.isHidden()) { // 检查配置项是否已定义
-                                printError(ODError.ERROR_UNKNOWN_ITEM, itemStr);
-                            }
+                if(result.isSuccess()) {
+                    // 配置文件未修改时使用快照, 否则切分配置文件, 每行只切分一次
+                    ODConfigurationCache cache = null;
+                    List<ODConfigureLine> lines = null;
+                    if(ODDeployer.CONFIG_CACHE) {
+                        cache = new ODConfigurationCache(filename, content, cluster.getDeployer().getVersion());
+                        lines = cache.load(includes);
+                    }
+                    boolean isCached = lines != null;
+                    if(!isCached) {
+                        File file = new File(filename).getAbsoluteFile();
+                        lines = new ArrayList<>();
+                        includeStack.add(file.getCanonicalPath()); // 不能引用主配置文件
+                        tokenize(new BufferedReader(new StringReader(new String(content))), null, file.getParentFile(), lines);
+                    }
+                    lastModified = getLastModified(filename);
+                    int lastLineNumber = lineNumber;
+                    // 按section分组
+                    Map<String, List<ODConfigureLine>> sectionLines = new HashMap<>();
+                    for(ODConfigureLine line: lines) {
+                        String sectionName = line.item.getSectionName();
+                        List<ODConfigureLine> list = sectionLines.get(sectionName);
+                        if(list == null) {
+                            list = new ArrayList<>();
+                            sectionLines.put(sectionName, list);
                         }
-                        LINE_NUMBER++;
-                    } // end while
+                        list.add(line);
+                        if(line.source == null) {
+                            lastLineNumber = Math.max(lastLineNumber, line.lineNumber + 1);
+                        }
+                    }
+                    // 按注册顺序执行解析器, 后面的解析器可以引用前面的解析结果
                     for(ODISectionParser parser: sectionParsers) {
-                        LINE_NUMBER = 1; // 文件行号从1开始
                         // 解析开始前
                         parser.before();
-                        for(String line: lineList) {
-                            if(!line.startsWith("#")) { // #行注释
-                                String[] args = line.split("#")[0].split("="); // 行后#注释
-                                String itemStr = args[0].trim();
-                                // 解析对应的配置项前缀和子命令
-                                if(itemStr.startsWith(parser.getSectionName() + ".")) {
-                                    ODItem item = ODItem.valueOf(itemStr);
-                                    if(item != ODItem.UNKNOWN && !item.isHidden()) { // 忽略H_前缀的配置项
-                                        boolean isEof = item.isClose(); // 结束符不满足"配置项 = 值"的格式
-                                        boolean isNullable = item.isNullable(); // 配置项可为空                       
-                                        if(args.length == 2 || isEof) { // "配置项 = 值"
-                                            String value = null;
-                                            if(!isEof) {
-                                                value = args[1].trim();                              
-                                            }
-                                            if(isEof || value.length() > 0) {                                  											
-                                                parser.parseConfigureItems(cmd, item, value);
-                                            } else if (!isNullable) {
-                                                printError(ODError.ERROR_EMPTY_VALUE, item);
-                                            }
-                                        } else if(line.length() > 0 && !isNullable) {
-                                            printError(ODError.ERROR_PATTERN);
+                        List<ODConfigureLine> list = sectionLines.get(parser.getSectionName());
+                        if(list != null) {
+                            for(ODConfigureLine line: list) {
+                                lineNumber = line.lineNumber;
+                                source = line.source;
+                                ODItem item = line.item;
+                                boolean isEof = item.isClose(); // 结束符不满足"配置项 = 值"的格式
+                                if(line.value != null || isEof) { // "配置项 = 值"
+                                    if(isEof) {
+                                        parser.parseConfigureItems(cmd, item, null);
+                                    } else if(line.value.length() > 0) {
+                                        // 逐个展开主机范围
+                                        for(Iterator<String> it = line.values(); it.hasNext();) {
+                                            parser.parseConfigureItems(cmd, item, it.next());
                                         }
-                                    } 
+                                    } else if (!item.isNullable()) { // 配置项可为空
+                                        printError(ODError.ERROR_EMPTY_VALUE, item);
+                                    }
+                                } else if(!item.isNullable()) {
+                                    printError(ODError.ERROR_PATTERN);
                                 }
                             }
-                            LINE_NUMBER++;
                         }
+                        lineNumber = lastLineNumber;
+                        source = null;
                         // 解析结束后
                         parser.after();
                     }
                     @SuppressWarnings("unchecked")
-                    List<ODServer> serverList = (List<ODServer>) CONFIGURATIONS.get(ODItem.H_SERVERS);
+                    List<ODServer> serverList = (List<ODServer>) configurations.get(ODItem.H_SERVERS);
                     // 检查主机列表是否为空
                     if(!ODDeployer.DEBUG && serverList.size() == 0) {
                         printError(ODError.ERROR_EXCEPTION, "Server list is empty!");
                     }
+                    // 只保存校验通过的配置
+                    if(cache != null && !isCached && result.isSuccess()) {
+                        cache.save(lines, includes);
+                    }
                 }
             } catch (Exception e) {
                 printError(ODError.ERROR_EXCEPTION, ODUtil.parseException(e));
-                RETURN = ODError.ERROR;
+                result = ODError.ERROR;
             } finally {
-                if(bReader != null) {
-                    try {
-                        bReader.close();
-                    } catch (IOException e) {
-                        if(ODDeployer.DEBUG) {
-                            e.printStackTrace();
-                        }
-                        RETURN = ODError.ERROR;
-                    }
-                }
                 // 添加错误信息到返回值
-                addConfigureItem(ODItem.H_ERROR_MESSAGE, ERROR_BUILDER.toString());
+                addConfigureItem(ODItem.H_ERROR_MESSAGE, errorBuilder.toString());
+                configurations = Collections.unmodifiableMap(configurations);
             }
         }
-        return new Pair<>(RETURN, CONFIGURATIONS);
+        return new Pair<>(result, configurations);
+    }
+
+    /**
+     * 配置文件或引用文件在加载之后是否被修改
+     * @param filename 配置文件
+     * @return 未加载时返回false
+     */
+    public boolean isModified(String filename) {
+        return isLoaded && getLastModified(filename) != lastModified;
     }
 
     /**
@@ -149,9 +231,9 @@ public class ODConfiguration {
      * @param item 配置项
      * @param value 值
      */
-    public static void addConfigureItem(ODItem item, Object value) {
-        if(!CONFIGURATIONS.containsKey(item)) {
-            CONFIGURATIONS.put(item, value);
+    public void addConfigureItem(ODItem item, Object value) {
+        if(!configurations.containsKey(item)) {
+            configurations.put(item, value);
         } else {
             printError(ODError.ERROR_CONFLICT, item);
         }
@@ -161,12 +243,212 @@ public class ODConfiguration {
      * 获取配置项集合
      * @return 在解析过程中调用，集合可能不完整
      */
-    public static Map<ODItem, Object> getConfigurations() {
-        return CONFIGURATIONS;
+    public Map<ODItem, Object> getConfigurations() {
+        return configurations;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
     }
 
-    public static int getLineNumber() {
-        return LINE_NUMBER;
+    /**
+     * 解析器列表
+     * @return 不会为null
+     */
+    public List<ODISectionParser> getSectionParsers() {
+        return sectionParsers;
+    }
+
+    /**
+     * 根据名称获取解析器
+     * @param sectionName section名称
+     * @return 可能返回null
+     */
+    public ODISectionParser getSectionParser(String sectionName) {
+        if(sectionName != null) {
+            for(ODISectionParser parser: sectionParsers) {
+                if(sectionName.equals(parser.getSectionName())) {
+                    return parser;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在加载配置文件完成前获取主机节点信息
+     * @param ip 主机IP
+     * @return 可能为null
+     */
+    public ODServer getConfigueServer(String ip) {
+        for(ODISectionParser parser: sectionParsers) {
+            if(parser instanceof ODServerSectionParser) {
+                ODServer server = ((ODServerSectionParser)parser).getServer(ip);
+                if(server != null) {
+                    return server;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 已加载的主机列表
+     * @return 未加载或出错时为空列表
+     */
+    @SuppressWarnings("unchecked")
+    public List<ODServer> getServerList() {
+        List<ODServer> serverList = (List<ODServer>) configurations.get(ODItem.H_SERVERS);
+        return serverList != null ? serverList : new ArrayList<ODServer>();
+    }
+
+    /**
+     * 所有section和task的配置项列表
+     * @return sectionName.taskName -&gt; 配置项值对列表
+     */
+    public Map<String, List<Pair<String, String>>> getItemLists() {
+        Map<String, List<Pair<String, String>>> map = new LinkedHashMap<>();
+        for(Pair<Pair<String, String>, List<Pair<String, String>>> p: itemLists) {
+            map.put(p.first.first + "." + p.first.second, p.second);
+        }
+        return map;
+    }
+    
+    /**
+     * 配置文件和已读取的引用文件中最后的修改时间
+     * @param filename 配置文件
+     */
+    private long getLastModified(String filename) {
+        long modified = new File(filename).lastModified();
+        for(String path: includes.keySet()) {
+            modified = Math.max(modified, new File(path).lastModified());
+        }
+        return modified;
+    }
+
+    /**
+     * 切分配置文件, 读到引用时递归读取被引用的文件, 未定义的配置项记录错误
+     * @param reader 逐行读取
+     * @param sourceName 文件名, 主配置文件为null
+     * @param dir 文件所在的目录
+     * @param lines 保存切分结果
+     */
+    private void tokenize(BufferedReader reader, String sourceName, File dir, List<ODConfigureLine> lines)
+            throws IOException {
+        String tmpLine;
+        int number = 1; // 文件行号从1开始
+        while(null != (tmpLine = reader.readLine())) {
+            lineNumber = number;
+            source = sourceName;
+            String line = tmpLine.trim();
+            int pos = line.indexOf('#'); // #行注释, 行后#注释
+            if(pos >= 0) {
+                line = line.substring(0, pos).trim();
+            }
+            if(line.length() > 0) {
+                String itemStr = line;
+                String value = null;
+                pos = line.indexOf('='); // 值中可以有'='
+                if(pos >= 0) {
+                    itemStr = line.substring(0, pos).trim();
+                    value = line.substring(pos + 1).trim();
+                }
+                if(itemStr.equals(INCLUDE)) {
+                    include(value, dir, lines);
+                } else if(itemStr.startsWith(ROLE_PREFIX)) {
+                    addRole(itemStr.substring(ROLE_PREFIX.length()), value);
+                } else {
+                    ODItem item = ODItem.valueOf(itemStr);
+                    if(item == ODItem.UNKNOWN || item.isHidden()) { // 检查配置项是否已定义, 忽略H_前缀的配置项
+                        printError(ODError.ERROR_UNKNOWN_ITEM, itemStr);
+                    } else {
+                        ODConfigureLine configureLine = new ODConfigureLine(number, sourceName, item, applyRole(value));
+                        if(configureLine.isValidRange()) {
+                            lines.add(configureLine);
+                        } else {
+                            printError(ODError.ERROR_EXCEPTION, "The range in '" + value + "' should be [from-to], 0 <= from <= to <= 255");
+                        }
+                    }
+                }
+            }
+            number++;
+        }
+        lineNumber = number;
+    }
+
+    /**
+     * 读取被引用的配置文件
+     * @param filename 被引用的文件
+     * @param dir 当前文件所在的目录
+     * @param lines 保存切分结果
+     */
+    private void include(String filename, File dir, List<ODConfigureLine> lines) {
+        if(filename == null || filename.length() == 0) {
+            printError(ODError.ERROR_EXCEPTION, "The value of '" + INCLUDE + "' is empty");
+            return;
+        }
+        File file = new File(filename);
+        if(!file.isAbsolute()) {
+            file = new File(dir, filename);
+        }
+        int currentLine = lineNumber;
+        String currentSource = source;
+        String path = file.getAbsolutePath();
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            // 使用绝对路径
+        }
+        if(includeStack.contains(path) || includeStack.size() >= MAX_INCLUDE_DEPTH) {
+            printError(ODError.ERROR_EXCEPTION, "Recursive include of '" + filename + "'");
+            return;
+        }
+        includeStack.add(path);
+        try (DigestInputStream in = new DigestInputStream(new FileInputStream(file), ODConfigurationCache.newDigest())) {
+            // 逐行读取, 同时计算摘要
+            tokenize(new BufferedReader(new InputStreamReader(in)), file.getPath(), file.getParentFile(), lines);
+            includes.put(path, ODConfigurationCache.toHex(in.getMessageDigest().digest()));
+        } catch (IOException e) {
+            lineNumber = currentLine;
+            source = currentSource;
+            printError(ODError.ERROR_EXCEPTION, "Open include file '" + filename + "' error");
+        } finally {
+            includeStack.remove(includeStack.size() - 1);
+        }
+        lineNumber = currentLine;
+        source = currentSource;
+    }
+
+    /**
+     * 定义角色模板
+     * @param name 模板名称
+     * @param value 模板的值
+     */
+    private void addRole(String name, String value) {
+        if(name.length() == 0 || value == null || value.length() == 0) {
+            printError(ODError.ERROR_PATTERN);
+        } else if(roles.containsKey(name)) {
+            printError(ODError.ERROR_EXCEPTION, "Role '" + name + "' is existed");
+        } else {
+            roles.put(name, applyRole(value));
+        }
+    }
+
+    /**
+     * 将值中的"@角色"字段替换为角色模板, 未定义的角色保持不变
+     * @param value 配置项的值
+     * @return 可能为null
+     */
+    private String applyRole(String value) {
+        if(value == null || roles.isEmpty() || value.indexOf('@') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for(String field: value.split(",", -1)) {
+            String role = field.trim().startsWith("@") ? roles.get(field.trim().substring(1)) : null;
+            sb.append(role != null ? role : field).append(',');
+        }
+        return ODUtil.removeLastChar(sb.toString());
     }
     
     // ------------------------------------------------------------------ Ip list
@@ -177,7 +459,7 @@ public class ODConfiguration {
      * @param taskName task
      * @param ip ip
      */
-    public static void addIp(String sectionName, String taskName, String ip) {
+    public void addIp(String sectionName, String taskName, String ip) {
         List<String> ipList = getIpListOrAdd(sectionName, taskName);
         ipList.add(ip);
     }
@@ -188,7 +470,7 @@ public class ODConfiguration {
      * @param targetTask 当前的task
      * @param sourceSection 引用的section
      */
-    public static void addIpList(String targetSection, String targetTask, String sourceSection) {
+    public void addIpList(String targetSection, String targetTask, String sourceSection) {
         List<String> source = getIpList(sourceSection);
         List<String> target = getIpListOrAdd(targetSection, targetTask);
         if(source != null) {
@@ -203,7 +485,7 @@ public class ODConfiguration {
      * @param sourceSection 引用的section
      * @param sourceTask 引用的task
      */
-    public static void addIpList(String targetSection, String targetTask, String sourceSection, String sourceTask) {
+    public void addIpList(String targetSection, String targetTask, String sourceSection, String sourceTask) {
         List<String> source = getIpList(sourceSection, sourceTask);
         List<String> target = getIpListOrAdd(targetSection, targetTask);
         if(source != null) {
@@ -216,9 +498,9 @@ public class ODConfiguration {
      * @param sectionName section
      * @return 可能为null
      */
-    public static List<String> getIpList(String sectionName) {
+    public List<String> getIpList(String sectionName) {
         List<String> tmp = new ArrayList<>();
-        for(Pair<Pair<String, String>, List<String>> p: IP_LIST) {
+        for(Pair<Pair<String, String>, List<String>> p: ipLists) {
             if(p.first.first.equals(sectionName)) {
                 tmp.addAll(p.second);
             }
@@ -232,12 +514,12 @@ public class ODConfiguration {
      * @param taskName task
      * @return 不会为null
      */
-    private static List<String> getIpListOrAdd(String sectionName, String taskName) {
+    private List<String> getIpListOrAdd(String sectionName, String taskName) {
         List<String> list = getIpList(sectionName, taskName);
         if(list == null) {
             //若不存在，则添加一个空列表
             list = new ArrayList<>();
-            IP_LIST.add(new Pair<Pair<String, String>, List<String>>(new Pair<String, String>(sectionName, taskName), list));
+            ipLists.add(new Pair<Pair<String, String>, List<String>>(new Pair<String, String>(sectionName, taskName), list));
         }
         return list;
     }
@@ -248,8 +530,8 @@ public class ODConfiguration {
      * @param taskName task
      * @return 若能为null
      */
-    public static List<String> getIpList(String sectionName, String taskName) {
-        for(Pair<Pair<String, String>, List<String>> p: IP_LIST) {
+    public List<String> getIpList(String sectionName, String taskName) {
+        for(Pair<Pair<String, String>, List<String>> p: ipLists) {
             if(p.first.equals(sectionName, taskName)) {
                 return p.second;
             }
@@ -266,7 +548,7 @@ public class ODConfiguration {
      * @param item 会截去前面section的名称
      * @param value 未经任何处理的配置项值
      */
-    public static void addItem(String sectionName, String taskName, ODItem item, String value) {
+    public void addItem(String sectionName, String taskName, ODItem item, String value) {
         List<Pair<String, String>> ipList = getItemListOrAdd(sectionName, taskName);
         if(item.isName()) {
             ipList.add(new Pair<String, String>("[task]", value));
@@ -281,7 +563,7 @@ public class ODConfiguration {
      * @param targetTask 当前的task
      * @param sourceSection 引用的section
      */
-    public static void addItemList(String targetSection, String targetTask, String sourceSection) {
+    public void addItemList(String targetSection, String targetTask, String sourceSection) {
         List<Pair<String, String>> source = getItemList(sourceSection);
         List<Pair<String, String>> target = getItemListOrAdd(targetSection, targetTask);
         if(source != null) {
@@ -300,7 +582,7 @@ public class ODConfiguration {
      * @param sourceSection 引用的section
      * @param sourceTask 引用的task
      */
-    public static void addItemList(String targetSection, String targetTask, String sourceSection, String sourceTask) {
+    public void addItemList(String targetSection, String targetTask, String sourceSection, String sourceTask) {
         List<Pair<String, String>> source = getItemList(sourceSection, sourceTask);
         List<Pair<String, String>> target = getItemListOrAdd(targetSection, targetTask);
         if(target != null) {
@@ -317,9 +599,9 @@ public class ODConfiguration {
      * @param sectionName section
      * @return 可能为null
      */
-    public static List<Pair<String, String>> getItemList(String sectionName) {
+    public List<Pair<String, String>> getItemList(String sectionName) {
         List<Pair<String, String>> tmp = new ArrayList<>();
-        for(Pair<Pair<String, String>, List<Pair<String, String>>> p: ITEM_LIST) {
+        for(Pair<Pair<String, String>, List<Pair<String, String>>> p: itemLists) {
             if(p.first.first.equals(sectionName)) {
                 tmp.addAll(p.second);
             }
@@ -333,12 +615,12 @@ public class ODConfiguration {
      * @param taskName task
      * @return 不会为null
      */
-    private static List<Pair<String, String>> getItemListOrAdd(String sectionName, String taskName) {
+    private List<Pair<String, String>> getItemListOrAdd(String sectionName, String taskName) {
         List<Pair<String, String>> list = getItemList(sectionName, taskName);
         if(list == null) {
             //若不存在，则添加一个空列表
         list = new ArrayList<>();
-        ITEM_LIST.add(new Pair<Pair<String, String>, List<Pair<String, String>>>(new Pair<String, String>(sectionName, taskName), list));
+        itemLists.add(new Pair<Pair<String, String>, List<Pair<String, String>>>(new Pair<String, String>(sectionName, taskName), list));
         }
         return list;
     }
@@ -349,29 +631,47 @@ public class ODConfiguration {
      * @param taskName task
      * @return 若不存在，则添加一个空列表
      */
-    public static List<Pair<String, String>> getItemList(String sectionName, String taskName) {
-        for(Pair<Pair<String, String>, List<Pair<String, String>>> p: ITEM_LIST) {
+    public List<Pair<String, String>> getItemList(String sectionName, String taskName) {
+        for(Pair<Pair<String, String>, List<Pair<String, String>>> p: itemLists) {
             if(p.first.equals(sectionName, taskName)) {
                 return p.second;
             }
         }
         //若不存在，则添加一个空列表
         List<Pair<String, String>> list = new ArrayList<>();
-        ITEM_LIST.add(new Pair<Pair<String, String>, 
+        itemLists.add(new Pair<Pair<String, String>, 
                 List<Pair<String, String>>>(new Pair<String, String>(sectionName, taskName), list));
         return list;
     }
     
     // ------------------------------------------------------------------ Section and Task
     
+    /**
+     * 以section为中介, 绑定command和task
+     * @param sectionName 与Task绑定的section
+     * @param item 保存Task的配置项
+     */
+    public void addSectionBindingTask(String sectionName, ODItem item) {
+        sectionTaskItems.put(sectionName, item);
+    }
+    
+    /**
+     * 与section绑定的Task所在的配置项
+     * @param sectionName section的名称
+     * @return 未绑定时返回null
+     */
+    public ODItem getSectionBindingTask(String sectionName) {
+        return sectionTaskItems.get(sectionName);
+    }
+    
     /**
      * section必须继承 ODCommonSectionParser
      * @param sectionName section
      * @return 可能为null
      */
     @SuppressWarnings("unchecked")
-    public static Map<String, ODTask> getSection(String sectionName) {
-        ODISectionParser parser = ODDeployer.getInstance().getSectionParser(sectionName);
+    public Map<String, ODTask> getSection(String sectionName) {
+        ODISectionParser parser = getSectionParser(sectionName);
         if(parser != null) {
             ODCommonSectionParser p = null;
             try {
@@ -390,7 +690,7 @@ public class ODConfiguration {
      * @param sectionName section type必须是0
      * @return 可以null
      */
-    public static ODTask getTaskFromSection(String sectionName) {
+    public ODTask getTaskFromSection(String sectionName) {
         return getTaskFromSection(sectionName, sectionName);
     }
     
@@ -400,7 +700,7 @@ public class ODConfiguration {
      * @param taskName task的名称
      * @return 可能null
      */
-    public static ODTask getTaskFromSection(String sectionName, String taskName) {
+    public ODTask getTaskFromSection(String sectionName, String taskName) {
         Map<String, ODTask> map = getSection(sectionName);
         // map may be null
         if(map != null) {
@@ -416,7 +716,7 @@ public class ODConfiguration {
      * @param message　提示信息
      * @param lineNumber　配置项所有行号
      */
-    public static void printError(String message, int lineNumber) {
+    public void printError(String message, int lineNumber) {
         printError(ODError.ERROR_EXCEPTION, null, message, true, lineNumber);
     }
     
@@ -424,7 +724,7 @@ public class ODConfiguration {
      * 配置项值格式错误
      * @param code ERROR_PATTERN
      */
-    private static void printError(ODError code) {
+    private void printError(ODError code) {
         printError(code, null, null, true);
     }
     
@@ -432,33 +732,45 @@ public class ODConfiguration {
      * @param code ERROR_EMPTY_VALUE, ERROR_WRONG_VALUE, ERROR_CONFLICT
      * @param item 配置项
      */
-    public static void printError(ODError code, ODItem item) {
+    public void printError(ODError code, ODItem item) {
         printError(code, item, null, true);
     }
     
-    public static void printError(ODError code, String message) {
+    public void printError(ODError code, String message) {
         printError(code, null, message, true);
     }
     
-    public static void printError(ODError code, String message, boolean withLineNumber) {
+    public void printError(ODError code, String message, boolean withLineNumber) {
         printError(code, null, message, withLineNumber);
     }
     
-    public static void printError(ODError code, ODItem item, boolean withLineNumber) {
+    public void printError(ODError code, ODItem item, boolean withLineNumber) {
         printError(code, item, null, withLineNumber);
     }
 
-    public static void printError(ODError code, ODItem item, String message, int lineNumber) {
+    public void printError(ODError code, ODItem item, String message, int lineNumber) {
         printError(code, item, message, true, lineNumber);
     }
     
-    public static void printError(ODError code, ODItem item, String message) {
+    public void printError(ODError code, ODItem item, String message) {
         printError(code, item, message, true);
     }    
 
-    private static void printError(ODError code, ODItem item, String message, boolean withLineNumber) {
+    private void printError(ODError code, ODItem item, String message, boolean withLineNumber) {
         printError(code, item, message, withLineNumber, -1);
     }
+    /**
+     * 错误所在的位置
+     * @param lineNumber 行号
+     * @return 当前行在被引用的文件中时为"文件:行号"
+     */
+    private String location(int lineNumber) {
+        if(source != null && lineNumber == this.lineNumber) {
+            return source + ":" + lineNumber;
+        }
+        return String.valueOf(lineNumber);
+    }
+    
     /**
      * 
      * @param code 错误类型
@@ -467,7 +779,7 @@ public class ODConfiguration {
      * @param withLineNumber 是否输出行号
      * @param lineNumber 若=-1，则使用全局的行号
      */
-    private static void printError(ODError code, ODItem item, String message,
+    private void printError(ODError code, ODItem item, String message,
                                    boolean withLineNumber, int lineNumber) {
         String msg = "";
         String itemStr = null;
@@ -475,21 +787,21 @@ public class ODConfiguration {
             itemStr = item.toString();
         }
         if(lineNumber < 0) {
-            lineNumber = LINE_NUMBER;
+            lineNumber = this.lineNumber;
         }
         switch(code) {
         case ERROR_PATTERN:
-            msg += "Should be '配置项 = 值' in configuration file: " + lineNumber;
+            msg += "Should be '配置项 = 值' in configuration file: " + location(lineNumber);
             break;
         case ERROR_UNKNOWN_ITEM:
-            msg += "Unknown item '" + message + "' is found in configuration file: " + lineNumber;
+            msg += "Unknown item '" + message + "' is found in configuration file: " + location(lineNumber);
             break;
         case ERROR_EMPTY_VALUE:
-            msg += "The value of '" + itemStr + "' is empty in configuration file: " + lineNumber;
+            msg += "The value of '" + itemStr + "' is empty in configuration file: " + location(lineNumber);
             break;
         case ERROR_WRONG_VALUE:
             assert item != null;
-            msg += "The value of '" + itemStr + "' is expected to be '" + item.getValuePattern().toString() + "' in configuration file: " + lineNumber;
+            msg += "The value of '" + itemStr + "' is expected to be '" + item.getValuePattern().toString() + "' in configuration file: " + location(lineNumber);
             break;
         case ERROR_MISS_ITEM:
             msg += "Configure item '" + itemStr + "' is expected";
@@ -497,24 +809,24 @@ public class ODConfiguration {
                 msg += " for '" + message + "'";
             }
             if(withLineNumber && lineNumber > 0) {
-                msg += " in configuration file: " + lineNumber;
+                msg += " in configuration file: " + location(lineNumber);
             } else {
                 msg += "!";
             }
             break;
         case ERROR_CONFLICT:
-            msg += "Conflict item '" + itemStr + "' is found in configuration file: " + lineNumber;
+            msg += "Conflict item '" + itemStr + "' is found in configuration file: " + location(lineNumber);
             break;
         default:
             msg += "Exception: '" + message + "'";
             if(withLineNumber && lineNumber > 0) {
-                msg += " in configuration file: " + lineNumber;
+                msg += " in configuration file: " + location(lineNumber);
             } else {
                 msg += "!";
             }
             break;
         }
-        RETURN = ODError.ERROR;
-        ERROR_BUILDER.append("[").append(code.toString()).append("] ").append(msg).append(ODUtil.SEPARATOR);
+        result = ODError.ERROR;
+        errorBuilder.append("[").append(code.toString()).append("] ").append(msg).append(ODUtil.SEPARATOR);
     }
 }
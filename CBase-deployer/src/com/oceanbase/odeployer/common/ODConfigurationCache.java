@@ -0,0 +1,206 @@
+package com.oceanbase.odeployer.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oceanbase.odeployer.ODDeployer;
+import com.oceanbase.odeployer.util.ODLocalCache;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * 配置文件的快照
+ * <p>保存校验通过的配置行, 位于配置文件所在目录的缓存目录下(见ODLocalCache), 以配置文件内容和程序版本号的摘要为键,
+ * 同时记录被引用文件的摘要. 所有文件都未修改时直接读取快照, 不再切分和校验文本</p>
+ * 主机范围不展开保存; 解析结果引用了集群上下文(主机, task), 每次仍由解析器根据快照重新生成
+ * <pre>
+ * 格式: MAGIC, FORMAT, 键, 引用数, 每个引用(路径, 摘要), 行数, 每行(行号, 文件, 配置项, 值)
+ * </pre>
+ * @since OD2.0
+ */
+public class ODConfigurationCache {
+
+    private static final int MAGIC = 0x4F44434E; // "ODCN"
+
+    /** 快照格式的版本, 格式变化时递增 */
+    private static final int FORMAT = 2;
+
+    private File cacheFile;
+
+    /** 配置文件 */
+    private String filename;
+
+    /** 配置文件内容和程序版本号的摘要 */
+    private String key;
+
+    /**
+     * @param filename 配置文件
+     * @param content 配置文件的内容
+     * @param version 程序版本号
+     */
+    public ODConfigurationCache(String filename, byte[] content, String version) {
+        this.filename = filename;
+        cacheFile = new File(ODLocalCache.getCacheDir(filename), new File(filename).getName() + ".snapshot");
+        key = digest(content, version);
+    }
+
+    /**
+     * 读取快照
+     * @param includes 保存快照中被引用的文件, 路径 -&gt; 摘要
+     * @return 快照不存在, 已过期或无法识别时返回null
+     */
+    public List<ODConfigureLine> load(Map<String, String> includes) {
+        if(!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            Map<String, String> digests = new LinkedHashMap<>();
+            for(int i = 0; i < count; i++) { // 被引用的文件已修改
+                String path = in.readUTF();
+                String digest = in.readUTF();
+                if(!digest.equals(digest(new File(path)))) {
+                    return null;
+                }
+                digests.put(path, digest);
+            }
+            count = in.readInt();
+            List<ODConfigureLine> lines = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                int lineNumber = in.readInt();
+                String source = readNullableUTF(in);
+                ODItem item = ODItem.valueOf(in.readUTF());
+                String value = readNullableUTF(in);
+                if(item == ODItem.UNKNOWN) { // 配置项已变化
+                    return null;
+                }
+                lines.add(new ODConfigureLine(lineNumber, source, item, value));
+            }
+            includes.putAll(digests);
+            return lines;
+        } catch (IOException e) {
+            if(ODDeployer.DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 保存快照, 先写入临时文件再替换, 失败时不影响配置文件的加载
+     * @param lines 校验通过的配置行
+     * @param includes 被引用的文件, 路径 -&gt; 摘要
+     */
+    public void save(List<ODConfigureLine> lines, Map<String, String> includes) {
+        File dir = cacheFile.getParentFile();
+        if(!ODLocalCache.makeCacheDir(filename)) {
+            return;
+        }
+        File tmpFile = new File(dir, cacheFile.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(key);
+                out.writeInt(includes.size());
+                for(Map.Entry<String, String> include: includes.entrySet()) {
+                    out.writeUTF(include.getKey());
+                    out.writeUTF(include.getValue());
+                }
+                out.writeInt(lines.size());
+                for(ODConfigureLine line: lines) {
+                    out.writeInt(line.lineNumber);
+                    writeNullableUTF(out, line.source);
+                    out.writeUTF(line.item.toString());
+                    writeNullableUTF(out, line.value);
+                }
+            }
+            if(!tmpFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                if(!tmpFile.renameTo(cacheFile)) {
+                    tmpFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            ODLogger.log("[WARN] save configuration snapshot '" + cacheFile + "' fail: " + ODUtil.parseException(e));
+        }
+    }
+
+    /**
+     * 新的摘要算法实例
+     * @return SHA-1
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // JDK必须支持SHA-1
+        }
+    }
+
+    /**
+     * 摘要转为十六进制字符串
+     * @param digest 摘要
+     * @return 小写
+     */
+    public static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for(byte b: digest) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    // ----------------------------------------------------------- private
+
+    private static String digest(byte[] content, String version) {
+        MessageDigest md = newDigest();
+        md.update(content);
+        md.update((byte) 0);
+        md.update(String.valueOf(version).getBytes(StandardCharsets.UTF_8));
+        return toHex(md.digest());
+    }
+
+    /**
+     * 文件的摘要
+     * @return 读取失败时返回null
+     */
+    private static String digest(File file) {
+        try {
+            MessageDigest md = newDigest();
+            md.update(Files.readAllBytes(file.toPath()));
+            return toHex(md.digest());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if(str != null) {
+            out.writeUTF(str);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 两次加载的配置之间的差异
+ * <pre>
+ * 主机:   新增, 删除, 用户或网卡修改
+ * 配置项: 端口号, 版本等单值配置项的修改
+ * task:   各section中task的新增, 删除, 配置项修改, 如启动配置start.*
+ * </pre>
+ * 创建后不再修改
+ * @since OD2.0
+ */
+public class ODConfigurationDiff {
+
+    /** 端口号相关的配置项 */
+    private static final List<ODItem> PORT_ITEMS = Arrays.asList(ODItem.SERVER_RS_PORT, ODItem.H_SERVER_UPS_PORT_P,
+            ODItem.H_SERVER_UPS_PORT_M, ODItem.H_SERVER_MS_PORT_P, ODItem.H_SERVER_MS_PORT_Z,
+            ODItem.H_SERVER_CS_PORT_P, ODItem.H_SERVER_CS_PORT_N);
+
+    private final List<String> addedHosts = new ArrayList<>();
+
+    private final List<String> removedHosts = new ArrayList<>();
+
+    private final List<String> changedHosts = new ArrayList<>();
+
+    /** first: 配置项, second: &lt;修改前, 修改后&gt; */
+    private final List<Pair<ODItem, Pair<String, String>>> changedItems = new ArrayList<>();
+
+    /** section.task */
+    private final List<String> addedTasks = new ArrayList<>();
+
+    private final List<String> removedTasks = new ArrayList<>();
+
+    private final List<String> changedTasks = new ArrayList<>();
+
+    private boolean isPortChanged;
+
+    private ODConfigurationDiff() {
+    }
+
+    /**
+     * 比较两次加载的配置
+     * @param before 当前的配置
+     * @param after 新加载的配置
+     * @return 不会为null
+     */
+    public static ODConfigurationDiff compare(ODConfiguration before, ODConfiguration after) {
+        ODConfigurationDiff diff = new ODConfigurationDiff();
+        diff.compareHosts(before.getServerList(), after.getServerList());
+        diff.compareItems(before.getConfigurations(), after.getConfigurations());
+        diff.compareTasks(before.getItemLists(), after.getItemLists());
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return addedHosts.isEmpty() && removedHosts.isEmpty() && changedHosts.isEmpty() && changedItems.isEmpty()
+                && addedTasks.isEmpty() && removedTasks.isEmpty() && changedTasks.isEmpty();
+    }
+
+    public List<String> getAddedHosts() {
+        return Collections.unmodifiableList(addedHosts);
+    }
+
+    public List<String> getRemovedHosts() {
+        return Collections.unmodifiableList(removedHosts);
+    }
+
+    /** 用户, 密码或网卡修改的主机 */
+    public List<String> getChangedHosts() {
+        return Collections.unmodifiableList(changedHosts);
+    }
+
+    public List<Pair<ODItem, Pair<String, String>>> getChangedItems() {
+        return Collections.unmodifiableList(changedItems);
+    }
+
+    public List<String> getAddedTasks() {
+        return Collections.unmodifiableList(addedTasks);
+    }
+
+    public List<String> getRemovedTasks() {
+        return Collections.unmodifiableList(removedTasks);
+    }
+
+    public List<String> getChangedTasks() {
+        return Collections.unmodifiableList(changedTasks);
+    }
+
+    /** 是否有端口号修改 */
+    public boolean isPortChanged() {
+        return isPortChanged;
+    }
+
+    /**
+     * 表头
+     * @return Kind, Name, Before, After
+     */
+    public static List<String> getHeader() {
+        return new ArrayList<>(Arrays.asList("Kind", "Name", "Before", "After"));
+    }
+
+    /**
+     * 每个差异一行
+     * @return 表格行
+     */
+    public List<List<String>> toRows() {
+        List<List<String>> rows = new ArrayList<>();
+        addRows(rows, "+host", addedHosts);
+        addRows(rows, "-host", removedHosts);
+        addRows(rows, "~host", changedHosts);
+        for(Pair<ODItem, Pair<String, String>> item: changedItems) {
+            rows.add(new ArrayList<>(Arrays.asList("~item", item.first.toString(), item.second.first, item.second.second)));
+        }
+        addRows(rows, "+task", addedTasks);
+        addRows(rows, "-task", removedTasks);
+        addRows(rows, "~task", changedTasks);
+        return rows;
+    }
+
+    /** 用于日志 */
+    public String toString() {
+        if(isEmpty()) {
+            return "no change";
+        }
+        StringBuilder sb = new StringBuilder();
+        append(sb, "+hosts", addedHosts);
+        append(sb, "-hosts", removedHosts);
+        append(sb, "~hosts", changedHosts);
+        if(!changedItems.isEmpty()) {
+            List<String> names = new ArrayList<>();
+            for(Pair<ODItem, Pair<String, String>> item: changedItems) {
+                names.add(item.first + "=" + item.second.second);
+            }
+            append(sb, "~items", names);
+        }
+        append(sb, "+tasks", addedTasks);
+        append(sb, "-tasks", removedTasks);
+        append(sb, "~tasks", changedTasks);
+        return sb.toString();
+    }
+
+    // ----------------------------------------------------------- private
+
+    private void compareHosts(List<ODServer> before, List<ODServer> after) {
+        Map<String, ODServer> beforeMap = new LinkedHashMap<>();
+        for(ODServer server: before) {
+            beforeMap.put(server.ip, server);
+        }
+        Map<String, ODServer> afterMap = new LinkedHashMap<>();
+        for(ODServer server: after) {
+            afterMap.put(server.ip, server);
+        }
+        for(ODServer server: after) {
+            ODServer old = beforeMap.get(server.ip);
+            if(old == null) {
+                addedHosts.add(server.ip);
+            } else if(!equals(old.username, server.username) || !equals(old.password, server.password)
+                    || !equals(old.network, server.network)) {
+                changedHosts.add(server.ip);
+            }
+        }
+        for(ODServer server: before) {
+            if(!afterMap.containsKey(server.ip)) {
+                removedHosts.add(server.ip);
+            }
+        }
+    }
+
+    /** 只比较单值的配置项, 主机列表和task另外比较 */
+    private void compareItems(Map<ODItem, Object> before, Map<ODItem, Object> after) {
+        List<ODItem> items = new ArrayList<>(after.keySet());
+        for(ODItem item: before.keySet()) {
+            if(!after.containsKey(item)) {
+                items.add(item);
+            }
+        }
+        for(ODItem item: items) {
+            Object b = before.get(item);
+            Object a = after.get(item);
+            if(item == ODItem.H_ERROR_MESSAGE || b instanceof Map || a instanceof Map || b instanceof List
+                    || a instanceof List) {
+                continue;
+            }
+            String bs = b != null ? b.toString() : null;
+            String as = a != null ? a.toString() : null;
+            if(!equals(bs, as)) {
+                changedItems.add(new Pair<>(item, new Pair<>(bs, as)));
+                isPortChanged |= PORT_ITEMS.contains(item);
+            }
+        }
+    }
+
+    private void compareTasks(Map<String, List<Pair<String, String>>> before,
+                              Map<String, List<Pair<String, String>>> after) {
+        for(Map.Entry<String, List<Pair<String, String>>> entry: after.entrySet()) {
+            List<Pair<String, String>> old = before.get(entry.getKey());
+            if(old == null) {
+                addedTasks.add(entry.getKey());
+            } else if(!toStrings(old).equals(toStrings(entry.getValue()))) {
+                changedTasks.add(entry.getKey());
+            }
+        }
+        for(String task: before.keySet()) {
+            if(!after.containsKey(task)) {
+                removedTasks.add(task);
+            }
+        }
+    }
+
+    /** Pair没有实现equals(Object), 转换为字符串比较 */
+    private static List<String> toStrings(List<Pair<String, String>> items) {
+        List<String> list = new ArrayList<>(items.size());
+        for(Pair<String, String> item: items) {
+            list.add(item == null ? "" : item.first + "=" + item.second);
+        }
+        return list;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void addRows(List<List<String>> rows, String kind, List<String> names) {
+        for(String name: names) {
+            rows.add(new ArrayList<>(Arrays.asList(kind, name, "", "")));
+        }
+    }
+
+    private static void append(StringBuilder sb, String kind, List<String> names) {
+        if(!names.isEmpty()) {
+            if(sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(kind).append(names);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.oceanbase.odeployer.common.ODValue.ODValueType;
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 切分后的一行配置
+ * <p>由{@code ODConfiguration}从配置文件或快照中得到, 按section分发给对应的解析器</p>
+ * 第一个字段为主机IP的配置项(如server.ip, start.server)可以在该字段中包含范围, 如: 10.1.2.[10-209],
+ * 多个范围按笛卡尔积展开, 展开在解析时逐个生成, 不保存展开后的文本; 其他配置项的值原样保留
+ * @since OD2.0
+ */
+public class ODConfigureLine {
+
+    /** 主机范围, 如: [10-209] */
+    private static final Pattern RANGE_PATTERN = Pattern.compile("\\[(\\d+)-(\\d+)\\]");
+
+    /** 范围的上限, IP地址的一段 */
+    private static final int MAX_RANGE_VALUE = 255;
+
+    /** 所在的行号 */
+    public final int lineNumber;
+
+    /** 所在的文件, 主配置文件为null */
+    public final String source;
+
+    public final ODItem item;
+
+    /** 没有'='时为null, 范围未展开 */
+    public final String value;
+
+    /** 第一个字段中范围之间的文本, 比范围多一个; 没有范围时为null */
+    private String[] literals;
+
+    private int[] from;
+
+    private int[] to;
+
+    public ODConfigureLine(int lineNumber, String source, ODItem item, String value) {
+        this.lineNumber = lineNumber;
+        this.source = source;
+        this.item = item;
+        this.value = value;
+        if(value != null && value.indexOf('[') >= 0 && isHostItem(item)) {
+            parseRange();
+        }
+    }
+
+    /**
+     * 是否包含合法的范围
+     * @return 范围的起点大于终点或超出0-255时返回false
+     */
+    public boolean isValidRange() {
+        if(literals != null) {
+            for(int i = 0; i < from.length; i++) {
+                if(from[i] > to[i] || to[i] > MAX_RANGE_VALUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 展开后的值的个数
+     * @return 没有范围时为1
+     */
+    public long getValueCount() {
+        long count = 1;
+        if(literals != null) {
+            for(int i = 0; i < from.length; i++) {
+                count *= Math.max(to[i] - from[i] + 1, 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 逐个展开值
+     * @return 没有范围时只返回value
+     */
+    public Iterator<String> values() {
+        return new Iterator<String>() {
+
+            private long remain = isValidRange() ? getValueCount() : 0;
+
+            /** 当前展开到的值, 最后一个范围变化最快 */
+            private int[] current = from != null ? from.clone() : null;
+
+            @Override
+            public boolean hasNext() {
+                return remain > 0;
+            }
+
+            @Override
+            public String next() {
+                if(remain <= 0) {
+                    throw new NoSuchElementException();
+                }
+                remain--;
+                if(literals == null) {
+                    return value;
+                }
+                StringBuilder sb = new StringBuilder(value.length());
+                for(int i = 0; i < current.length; i++) {
+                    sb.append(literals[i]).append(current[i]);
+                }
+                sb.append(literals[current.length]);
+                for(int i = current.length - 1; i >= 0; i--) { // 进位
+                    if(current[i] < to[i]) {
+                        current[i]++;
+                        break;
+                    }
+                    current[i] = from[i];
+                }
+                return sb.toString();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    // ----------------------------------------------------------- private
+
+    /** 第一个字段是否为主机IP */
+    private static boolean isHostItem(ODItem item) {
+        List<Pair<ODItem, ODValueCodec>> valuePatterns = item.getValuePattern().valuePatterns;
+        return !valuePatterns.isEmpty() && valuePatterns.get(0).second.getValueType() == ODValueType.IP;
+    }
+
+    /** 只识别第一个字段中的范围, 最后一段文本包括其余的字段 */
+    private void parseRange() {
+        int end = value.indexOf(',');
+        if(end < 0) {
+            end = value.length();
+        }
+        Matcher matcher = RANGE_PATTERN.matcher(value).region(0, end);
+        List<String> literalList = new ArrayList<>();
+        List<int[]> rangeList = new ArrayList<>();
+        int pos = 0;
+        while(matcher.find()) {
+            try {
+                rangeList.add(new int[] {Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))});
+            } catch (NumberFormatException e) {
+                rangeList.add(new int[] {1, 0}); // 超出范围, 视为非法
+            }
+            literalList.add(value.substring(pos, matcher.start()));
+            pos = matcher.end();
+        }
+        if(!rangeList.isEmpty()) {
+            literalList.add(value.substring(pos));
+            literals = literalList.toArray(new String[literalList.size()]);
+            from = new int[rangeList.size()];
+            to = new int[rangeList.size()];
+            for(int i = 0; i < from.length; i++) {
+                from[i] = rangeList.get(i)[0];
+                to[i] = rangeList.get(i)[1];
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.oceanbase.odeployer.common;
+
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.oceanbase.odeployer.ODDeployer;
+import com.oceanbase.odeployer.util.ODCounter;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODMetricRegistry;
+
+/**
+ * MS的JDBC连接池
+ * <p>全局唯一, 以ip:port/user为键, 所有集群共享; 借出时检查空闲较久的连接是否可用, 空闲超时的连接由后台线程关闭</p>
+ * <blockquote><pre>
+ * String key = ODConnectionPool.key(ip, port, user);
+ * Connection conn = ODConnectionPool.borrow(ip, port, user, password);
+ * ...
+ * ODConnectionPool.release(key, conn, broken);
+ * </pre></blockquote>
+ * 同一个线程调度器还用于SQL执行超时的看门狗, 代替每个查询一个线程
+ * @since OD2.0
+ */
+public class ODConnectionPool {
+
+    /** 空闲超过该时间(毫秒)的连接被关闭 */
+    public static long IDLE_TIMEOUT = 60000;
+
+    /** 空闲超过该时间(毫秒)的连接在借出前检查 */
+    public static long VALIDATE_AFTER = 5000;
+
+    /** 检查连接的超时时间(秒) */
+    public static int VALIDATE_TIMEOUT = 2;
+
+    /** 每个键保留的最大空闲连接数 */
+    public static int MAX_IDLE = 8;
+
+    /** 看门狗在SQL超时后再等待的时间(毫秒), 仍未返回时关闭连接 */
+    private static final long WATCHDOG_GRACE = 2000;
+
+    private static final Map<String, ArrayDeque<IdleConnection>> idleMap = new HashMap<>();
+
+    private static int idleCount;
+
+    private static ScheduledExecutorService scheduler;
+
+    private static final ODCounter openedCounter = ODMetricRegistry.counter("od_jdbc_connections_opened_total",
+            "JDBC connections opened to MergeServers", "");
+    private static final ODCounter reusedCounter = ODMetricRegistry.counter("od_jdbc_connections_reused_total",
+            "JDBC connections taken from the pool", "");
+
+    static {
+        ODMetricRegistry.gauge("od_jdbc_idle_connections", "Idle JDBC connections in the pool", "",
+                new ODMetricRegistry.ODGauge() {
+                    @Override
+                    public long value() {
+                        synchronized (ODConnectionPool.class) {
+                            return idleCount;
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 连接池的键
+     * @return 如: 10.0.0.1:2880/admin
+     */
+    public static String key(String ip, String port, String user) {
+        return ip + ":" + port + "/" + user;
+    }
+
+    /**
+     * 借出连接, 没有可用的空闲连接时新建
+     * @param ip MS ip
+     * @param port MS SQL端口号
+     * @param user 数据库用户
+     * @param password 用户密码
+     * @return 连接失败时返回null
+     */
+    public static Connection borrow(String ip, String port, String user, String password) {
+        String key = key(ip, port, user);
+        while(true) {
+            IdleConnection idle;
+            synchronized (ODConnectionPool.class) {
+                ArrayDeque<IdleConnection> deque = idleMap.get(key);
+                idle = deque == null ? null : deque.pollLast(); // 最近使用的连接最可能可用
+                if(idle == null) {
+                    break;
+                }
+                idleCount--;
+            }
+            if(System.currentTimeMillis() - idle.since < VALIDATE_AFTER || isValid(idle.conn)) {
+                reusedCounter.increment();
+                return idle.conn;
+            }
+            closeQuietly(idle.conn);
+        }
+        Connection conn = ODOceanbaseConnector.getJDBCConnection(ip, port, user, password);
+        if(conn != null) {
+            openedCounter.increment();
+        }
+        return conn;
+    }
+
+    /**
+     * 归还连接
+     * @param key 见key()
+     * @param conn 可以为null
+     * @param broken 连接已不可用, 如网络错误或被看门狗关闭, 此时直接关闭
+     */
+    public static void release(String key, Connection conn, boolean broken) {
+        if(conn == null) {
+            return;
+        }
+        if(!broken && !isClosed(conn)) { // 刚归还的连接借出时不检查, 已关闭的不能放回
+            synchronized (ODConnectionPool.class) {
+                ArrayDeque<IdleConnection> deque = idleMap.get(key);
+                if(deque == null) {
+                    deque = new ArrayDeque<>();
+                    idleMap.put(key, deque);
+                }
+                if(deque.size() < MAX_IDLE) {
+                    deque.addLast(new IdleConnection(conn));
+                    idleCount++;
+                    getScheduler();
+                    return;
+                }
+            }
+        }
+        closeQuietly(conn);
+    }
+
+    /**
+     * SQL执行超时的看门狗
+     * <p>驱动的查询超时依赖服务端响应, 网络中断时无效, 超时后仍未返回则关闭连接, 使阻塞的读取抛出异常</p>
+     * @param conn 正在执行SQL的连接
+     * @param timeout 超时时间(秒)
+     * @return 执行结束后应调用cancel(false)
+     */
+    public static ScheduledFuture<?> watch(final Connection conn, int timeout) {
+        return getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                ODLogger.log("[WARN] SQL does not return in time, close the connection!");
+                closeQuietly(conn);
+            }
+        }, timeout * 1000L + WATCHDOG_GRACE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭所有空闲连接, 在所有集群的命令结束后调用
+     */
+    public static void closeAll() {
+        Map<String, ArrayDeque<IdleConnection>> map;
+        synchronized (ODConnectionPool.class) {
+            map = new HashMap<>(idleMap);
+            idleMap.clear();
+            idleCount = 0;
+        }
+        for(ArrayDeque<IdleConnection> deque: map.values()) {
+            for(IdleConnection idle: deque) {
+                closeQuietly(idle.conn);
+            }
+        }
+    }
+
+    // ----------------------------------------------------------- private
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if(scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "od-connection-pool");
+                    thread.setDaemon(true); // 不阻止进程退出
+                    return thread;
+                }
+            });
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evict();
+                }
+            }, IDLE_TIMEOUT, IDLE_TIMEOUT / 2, TimeUnit.MILLISECONDS);
+        }
+        return scheduler;
+    }
+
+    /** 关闭空闲超时的连接 */
+    private static void evict() {
+        long now = System.currentTimeMillis();
+        ArrayDeque<IdleConnection> expired = new ArrayDeque<>();
+        synchronized (ODConnectionPool.class) {
+            for(ArrayDeque<IdleConnection> deque: idleMap.values()) {
+                Iterator<IdleConnection> it = deque.iterator(); // 从最早归还的开始
+                while(it.hasNext()) {
+                    IdleConnection idle = it.next();
+                    if(now - idle.since < IDLE_TIMEOUT) {
+                        break;
+                    }
+                    it.remove();
+                    idleCount--;
+                    expired.add(idle);
+                }
+            }
+        }
+        for(IdleConnection idle: expired) {
+            closeQuietly(idle.conn);
+        }
+    }
+
+    private static boolean isValid(Connection conn) {
+        try {
+            return conn.isValid(VALIDATE_TIMEOUT);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /** 连接是否已关闭, 不访问服务端 */
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (Exception e) {
+            if(ODDeployer.DEBUG) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class IdleConnection {
+
+        private final Connection conn;
+
+        /** 归还的时间 */
+        private final long since = System.currentTimeMillis();
+
+        private IdleConnection(Connection conn) {
+            this.conn = conn;
+        }
+    }
+}
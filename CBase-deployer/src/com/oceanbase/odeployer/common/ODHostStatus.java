@@ -0,0 +1,158 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 主机节点的状态快照
+ * <p>一次远程调用获取该主机上所有Server进程的状态, 所有检查进程存活的地方都应读取该快照</p>
+ * @since OD2.0
+ */
+public class ODHostStatus {
+
+    private String ip;
+
+    /** 是否成功获取状态 */
+    private boolean reachable;
+
+    /** 采集时间 */
+    private long timestamp = System.currentTimeMillis();
+
+    private Map<ODServerName, ODServerStatus> statusMap = new LinkedHashMap<>();
+
+    public ODHostStatus(String ip, boolean reachable) {
+        this.ip = ip;
+        this.reachable = reachable;
+        for(ODServerName servername: ODServer.SERVER_NAMES) {
+            statusMap.put(servername, new ODServerStatus(servername));
+        }
+    }
+
+    /**
+     * 解析状态脚本的输出
+     * @param ip 主机IP
+     * @param ret 远程命令的执行结果
+     * @return 不会为null, 执行失败时所有Server均视为未存活
+     */
+    public static ODHostStatus parse(String ip, Pair<ODError, String> ret) {
+        ODHostStatus hostStatus = new ODHostStatus(ip, ret.first.isSuccess());
+        if(ret.first.isSuccess() && ret.second != null) {
+            for(String line: ret.second.split("\n")) {
+                ODServerStatus status = ODServerStatus.parse(line.trim());
+                if(status != null) {
+                    hostStatus.statusMap.put(status.getServerName(), status);
+                }
+            }
+        }
+        return hostStatus;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 指定Server的状态
+     * @param servername LMS与MS是同一进程
+     * @return 未定义的Server返回null
+     */
+    public ODServerStatus getStatus(ODServerName servername) {
+        if(servername == ODServerName.LMS) {
+            servername = ODServerName.MS;
+        }
+        return statusMap.get(servername);
+    }
+
+    /**
+     * 指定的Server是否存活
+     * @param servername Server类型
+     * @return boolean
+     */
+    public boolean isAlive(ODServerName servername) {
+        ODServerStatus status = getStatus(servername);
+        return status != null && status.isAlive();
+    }
+
+    /**
+     * 是否有任意Server存活
+     * @return boolean
+     */
+    public boolean isAnyAlive() {
+        for(ODServerStatus status: statusMap.values()) {
+            if(status.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 转换为表格的若干行
+     * @return 只有第一行的第一列为IP, 最后一行为null, 表示横线
+     */
+    public List<List<String>> toRows() {
+        List<List<String>> rows = new ArrayList<>();
+        if(reachable) {
+            boolean isFirstRow = true;
+            for(ODServerStatus status: statusMap.values()) {
+                List<String> row = status.toRow();
+                row.add(0, isFirstRow ? ip : "");
+                isFirstRow = false;
+                rows.add(row);
+            }
+        } else {
+            List<String> row = new ArrayList<>();
+            row.add(ip);
+            row.add("unreachable");
+            for(int i = 0; i < 6; i++) {
+                row.add("");
+            }
+            rows.add(row);
+        }
+        rows.add(null); // 横线
+        return rows;
+    }
+
+    /**
+     * 表头, 与toRows()的列对应
+     * @return 新的列表
+     */
+    public static List<String> getHeader() {
+        List<String> header = new ArrayList<>();
+        header.add("IP");
+        header.add("Server");
+        header.add("Alive");
+        header.add("PID");
+        header.add("Uptime");
+        header.add("RSS(MB)");
+        header.add("CPU(%)");
+        header.add("Ports");
+        return header;
+    }
+
+    /** 由缓存重建快照时使用 */
+    void setStatus(ODServerStatus status) {
+        statusMap.put(status.getServerName(), status);
+    }
+
+    void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "ODHostStatus={ip=" + ip + ",reachable=" + reachable + ",status=" + statusMap.values() + "}";
+    }
+}
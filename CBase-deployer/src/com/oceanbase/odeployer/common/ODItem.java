@@ -2,8 +2,9 @@ package com.oceanbase.odeployer.common;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.action.ODStartActionExecutor;
 import com.oceanbase.odeployer.annotation.ODItemAttribute;
 import com.oceanbase.odeployer.util.ODLogger;
@@ -30,9 +31,18 @@ public class ODItem {
     
     /** 配置项列表 */
     private static List<ODItem> values = new ArrayList<>();
+
+    /** 名称到配置项的索引, 解析配置文件时按行查找 */
+    private static Map<String, ODItem> index = new ConcurrentHashMap<>();
+
+    /** 所属的section, 首次使用时计算 */
+    private String sectionName;
     
     private Attribute attribute = new Attribute();
 
+    /** 编译后的赋值格式, 注册完成后或首次使用时编译 */
+    private volatile ODItemValuePattern valuePattern;
+
     // ------------------------------------------------------- items
     
     public static final ODItem UNKNOWN = new ODItem("UNKNOWN");
@@ -191,13 +201,189 @@ public class ODItem {
     		defaultValue="0.0.0.0",
             description="assign the master updateserver ip")
     public static final ODItem START_MUPS = new ODItem("START_MUPS");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="[fail-fast/best-effort/quorum]",
+            defaultValue="fail-fast",
+            description="stop starting when any server fails, ignore failures, or stop when a majority is impossible")
+    public static final ODItem START_POLICY = new ODItem("START_POLICY");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="0",
+            description="minimum qps of the smoke workload after bootstrap, 0 to skip the check")
+    public static final ODItem START_GATE_QPS = new ODItem("START_GATE_QPS");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="100",
+            description="maximum p99 latency(ms) of the smoke workload")
+    public static final ODItem START_GATE_P99 = new ODItem("START_GATE_P99");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="300",
+            description="time(second) for the cluster to reach the qps and p99 after bootstrap")
+    public static final ODItem START_GATE_BUDGET = new ODItem("START_GATE_BUDGET");
     
     @ODItemAttribute(
     		pattern="ip,[rs|ups|ms|lms|cs],String,String,String,String,String,String",
             executor=ODStartActionExecutor.class,
             defaultValue="0.0.0.0, rs|ups|ms|cs,1,2,2,True,2,0.5")
     public static final ODItem START_SERVER = new ODItem("START_SERVER");
-    
+
+    // ------------------------------------------------------- preflight
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="20",
+            description="minimum free space(GB) under the target directory")
+    public static final ODItem PREFLIGHT_DISK = new ODItem("PREFLIGHT_DISK");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="4",
+            description="minimum available memory(GB)")
+    public static final ODItem PREFLIGHT_MEMORY = new ODItem("PREFLIGHT_MEMORY");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="2",
+            description="minimum number of online cpus")
+    public static final ODItem PREFLIGHT_CPU = new ODItem("PREFLIGHT_CPU");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="65535",
+            description="minimum 'ulimit -n'")
+    public static final ODItem PREFLIGHT_NOFILE = new ODItem("PREFLIGHT_NOFILE");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="4096",
+            description="minimum 'ulimit -u'")
+    public static final ODItem PREFLIGHT_NPROC = new ODItem("PREFLIGHT_NPROC");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="200",
+            description="maximum clock offset(ms) against the deployer")
+    public static final ODItem PREFLIGHT_CLOCK = new ODItem("PREFLIGHT_CLOCK");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="string",
+            defaultValue="vm.max_map_count>=65530|net.core.somaxconn>=1024",
+            description="kernel parameters, 'name>=value', 'name<=value' or 'name=value' separated by '|'")
+    public static final ODItem PREFLIGHT_SYSCTL = new ODItem("PREFLIGHT_SYSCTL");
+
+    // ------------------------------------------------------- initsql
+    @ODItemAttribute(
+            pattern="file",
+            defaultValue="sql/init.sql",
+            description="local sql script, statements end with ';'")
+    public static final ODItem INITSQL_FILE = new ODItem("INITSQL_FILE");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="4",
+            description="connections running independent statements in parallel")
+    public static final ODItem INITSQL_PARALLEL = new ODItem("INITSQL_PARALLEL");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="100",
+            description="maximum statements of the same table in one jdbc batch, 1 to disable")
+    public static final ODItem INITSQL_BATCH = new ODItem("INITSQL_BATCH");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="60",
+            description="timeout(second) of each statement or batch")
+    public static final ODItem INITSQL_TIMEOUT = new ODItem("INITSQL_TIMEOUT");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="[fail-fast/best-effort/quorum]",
+            defaultValue="fail-fast",
+            description="stop at the first failed statement, ignore failures, or stop when a majority is impossible")
+    public static final ODItem INITSQL_POLICY = new ODItem("INITSQL_POLICY");
+
+    // ------------------------------------------------------- bench
+    @ODItemAttribute(
+            nullable=true,
+            pattern="string",
+            defaultValue="ms",
+            description="'ms' for an alive mergeserver, or 'ip:port' of any mysql protocol server")
+    public static final ODItem BENCH_ENDPOINT = new ODItem("BENCH_ENDPOINT");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="$H_BENCH_USERNAME,$H_BENCH_PASSWORD",
+            defaultValue="admin,admin",
+            description="username,password")
+    public static final ODItem BENCH_USER = new ODItem("BENCH_USER");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="string",
+            defaultValue="point-select:8|insert:1|range-scan:1",
+            description="'name:weight' separated by '|', name: point-select, insert, range-scan")
+    public static final ODItem BENCH_WORKLOAD = new ODItem("BENCH_WORKLOAD");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="8",
+            description="worker threads, one connection each")
+    public static final ODItem BENCH_THREADS = new ODItem("BENCH_THREADS");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="30",
+            description="duration(second)")
+    public static final ODItem BENCH_DURATION = new ODItem("BENCH_DURATION");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="10000",
+            description="rows loaded before the run")
+    public static final ODItem BENCH_ROWS = new ODItem("BENCH_ROWS");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="string",
+            defaultValue="od_bench",
+            description="table name, created if not exists")
+    public static final ODItem BENCH_TABLE = new ODItem("BENCH_TABLE");
+
+    @ODItemAttribute(
+            nullable=true,
+            pattern="number",
+            defaultValue="5",
+            description="timeout(second) of each statement")
+    public static final ODItem BENCH_TIMEOUT = new ODItem("BENCH_TIMEOUT");
+
+    @ODItemAttribute(pattern="username")
+    public static final ODItem H_BENCH_USERNAME = new ODItem("H_BENCH_USERNAME");
+
+    @ODItemAttribute(pattern="password")
+    public static final ODItem H_BENCH_PASSWORD = new ODItem("H_BENCH_PASSWORD");
+
     
     
     // ------------------------------------------------------- public
@@ -206,17 +392,12 @@ public class ODItem {
         if(name != null) {
             this.name = name.replace("_", ".").toLowerCase(); //转换名称
         }
-        boolean isDuplicate = false; // 检查重复
-        for(ODItem item: values) {
-            if(item.name.equals(this.name)) {
-                isDuplicate = true;
-                ODLogger.error("item duplicate! '" + this.name + "' is existed",
-                        (new Throwable()).getStackTrace());
-                break;
-            }
-        }
-        if(!isDuplicate) {
+        if(index.containsKey(this.name)) { // 检查重复
+            ODLogger.error("item duplicate! '" + this.name + "' is existed",
+                    (new Throwable()).getStackTrace());
+        } else {
             values.add(this); // 添加到列表
+            index.put(this.name, this);
         }
     }
 
@@ -232,12 +413,15 @@ public class ODItem {
      * @return 不会为null
      */
     public String getSectionName() {
-        String tmp = name;
-        if(isHidden()) {
-            tmp = tmp.substring(2);
+        if(sectionName == null) {
+            String tmp = name;
+            if(isHidden()) {
+                tmp = tmp.substring(2);
+            }
+            String[] names = ODUtil.split(tmp, "\\.");
+            sectionName = names[0];
         }
-        String[] names = ODUtil.split(tmp, "\\.");
-        return names[0];
+        return sectionName;
     }
     
     /**
@@ -315,11 +499,9 @@ public class ODItem {
      */
     public static ODItem valueOf(String item) {
         if(item != null) {
-            item = item.trim();
-            for(ODItem it: ODItem.values) {
-                if(it.toString().equals(item)) {
-                    return it;
-                } 
+            ODItem it = index.get(item.trim());
+            if(it != null) {
+                return it;
             }
         }
         return UNKNOWN;
@@ -337,6 +519,20 @@ public class ODItem {
         return UNKNOWN;
     }
     
+    /**
+     * 获取已存在的配置项, 若不存在则新建<br>
+     * 每个集群都会实例化一次解析器, 解析器生成的name, close, hidden配置项只能创建一次
+     * @param name 配置项的全写, 如:START_NAME
+     * @return 不会为null
+     */
+    public static synchronized ODItem valueOfFullNameOrAdd(String name) {
+        ODItem item = valueOfFullName(name);
+        if(item == UNKNOWN) {
+            item = new ODItem(name);
+        }
+        return item;
+    }
+    
     /**
      * 获取section所属的普通配置项列表<br>
      * 不包括特殊的配置项: name, close, hidden
@@ -367,7 +563,22 @@ public class ODItem {
      * @return Pattern 不会为null
      */
     public ODItemValuePattern getValuePattern() {
-        return ODItemValuePattern.toValuePattern(this, attribute.pattern);
+        ODItemValuePattern vp = valuePattern;
+        if(vp == null) { // 编译结果相同, 并发时重复编译无影响
+            vp = ODItemValuePattern.toValuePattern(this, attribute.pattern);
+            valuePattern = vp;
+        }
+        return vp;
+    }
+
+    /**
+     * 编译所有配置项的赋值格式, 在注册配置项的属性之后调用
+     * <p>$H_ITEM引用的配置项可能在之后才注册, 因此不在setAttribute中编译</p>
+     */
+    public static void compileValuePatterns() {
+        for(ODItem item: values) {
+            item.getValuePattern();
+        }
     }
     
     /**
@@ -425,13 +636,13 @@ public class ODItem {
 
     /**
      * 说明
+     * @param versions 已注册的Oceanbase版本, 用于SERVER_VERSION的说明
      * @return 对配置原样返回
      */
-    public String getDescription() {
+    public String getDescription(List<String> versions) {
         String desc = attribute.description;
         if(this == ODItem.SERVER_VERSION) { // 对OB版本号特殊处理
             desc += "registered version: ";
-            List<String> versions = ODDeployer.getInstance().getParameterCeneratorList();
             if(versions != null) {
                 for(String v: versions) {
                     desc += v + " ";
@@ -492,16 +703,18 @@ public class ODItem {
     /**
      * 获取某一类配置项的赋值格式和说明, 用于生成配置文件
      * @param sectionName 配置项类别，Secion的名称
+     * @param versions 已注册的Oceanbase版本
      * @return first = item name, second = value pattern, description
      */
-    public static List<Pair<String, Pair<String, String>>> getValuePatternAndDescriptionList(String sectionName) {
+    public static List<Pair<String, Pair<String, String>>> getValuePatternAndDescriptionList(String sectionName,
+            List<String> versions) {
         List<Pair<String, Pair<String, String>>> ret = new ArrayList<>();
         if(sectionName != null) {
             for(ODItem item: values) { // 将section.name提前
                 if(item.toString().startsWith(sectionName)) {
                     if(item.isName()) {
                         ret.add(new Pair<>(item.toString(),
-                                new Pair<>(item.getValuePattern().toString(), item.getDescription())));
+                                new Pair<>(item.getValuePattern().toString(), item.getDescription(versions))));
                         break;
                     }
                 }
@@ -509,7 +722,7 @@ public class ODItem {
             for(ODItem item: values) {
                 if(item.toString().startsWith(sectionName) && !item.isName()) {
                     ret.add(new Pair<>(item.toString(),
-                            new Pair<>(item.getValuePattern().toString(), item.getDescription())));
+                            new Pair<>(item.getValuePattern().toString(), item.getDescription(versions))));
                 }
             }
         }
@@ -530,6 +743,7 @@ public class ODItem {
         attribute.executor = executor;
         attribute.defaultValue = defaultValue;
         attribute.description = description;
+        valuePattern = null;
     }
 
     /** 配置项属性 */
@@ -3,6 +3,8 @@ package com.oceanbase.odeployer.common;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.oceanbase.odeployer.ODCluster;
+
 /**
  * 配置项添加器
  * 具有重复和非空检查功能
@@ -11,6 +13,12 @@ import java.util.Set;
  */
 public class ODItemAdder {
 
+    /** 所属的集群上下文 */
+    protected ODCluster cluster;
+
+    /** 所属的配置文件加载器 */
+    private ODConfiguration configuration;
+
     /** 用于检查配置项重复冲突 */
     protected Set<ODItem> itemSet = new HashSet<>();
 
@@ -21,7 +29,7 @@ public class ODItemAdder {
      */
     protected boolean isExist(ODItem item) {
         if(itemSet.contains(item)) {
-            ODConfiguration.printError(ODError.ERROR_CONFLICT, item);
+            getConfiguration().printError(ODError.ERROR_CONFLICT, item);
             return true;
         }
         itemSet.add(item);
@@ -35,9 +43,33 @@ public class ODItemAdder {
      */
     protected void addConfigureItem(ODItem item, Object value) {
         if(value == null) {
-            ODConfiguration.printError(ODError.ERROR_MISS_ITEM, item, false);
+            getConfiguration().printError(ODError.ERROR_MISS_ITEM, item, false);
         } else {
-            ODConfiguration.addConfigureItem(item, value);
+            getConfiguration().addConfigureItem(item, value);
         }
     }
+
+    /**
+     * 绑定集群上下文
+     * @param cluster 在init()之前调用
+     */
+    public void setCluster(ODCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * 绑定配置文件加载器, 重新加载配置时解析结果保存到新的加载器
+     * @param configuration 由ODConfiguration在init()之前调用
+     */
+    public void setConfiguration(ODConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 所属的配置文件加载器
+     * @return 未绑定时返回集群当前的加载器
+     */
+    protected ODConfiguration getConfiguration() {
+        return configuration != null ? configuration : cluster.getConfiguration();
+    }
 }
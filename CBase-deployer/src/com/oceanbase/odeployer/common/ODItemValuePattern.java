@@ -5,34 +5,29 @@ import com.oceanbase.odeployer.util.ODUtil;
 import com.oceanbase.odeployer.util.Pair;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * 配置项的值格式
+ * <p>每个配置项只编译一次, 由{@link ODItem#getValuePattern()}缓存, 创建后不再修改</p>
  * @author lbz@lbzhong.com 2016/4/6
  * @since OD1.0
  */
 public class ODItemValuePattern {
 
-    /** first:引用的配置项, second: 取值类型 */
-    public List<Pair<ODItem, ODValue>> valuePatterns = new ArrayList<>();
+    /** first:引用的配置项, second: 取值格式的编解码器, 不可修改 */
+    public final List<Pair<ODItem, ODValueCodec>> valuePatterns;
+
+    /** 用于输出错误信息和生成配置模板 */
+    private final String str;
+
+    private ODItemValuePattern(List<Pair<ODItem, ODValueCodec>> valuePatterns) {
+        this.valuePatterns = Collections.unmodifiableList(valuePatterns);
+        this.str = format();
+    }
 
     public String toString() {
-        String str = "<";
-        for(Pair<ODItem, ODValue> p: valuePatterns) {
-            ODItem it = p.first;
-            if(it != null) {
-                String name = it.toString();
-                int pos = name.lastIndexOf(".");
-                if(pos > 0) {
-                    str += name.substring(pos + 1, name.length()) + "(" + p.second.getPattern() + "),";
-                }
-            } else {
-                str += p.second.getPattern() + ",";
-            }
-        }
-        str = ODUtil.removeLastChar(str);
-        str += ">";
         return str;
     }
 
@@ -43,7 +38,7 @@ public class ODItemValuePattern {
      * @return Pattern
      */
     public static ODItemValuePattern toValuePattern(ODItem item, String pattern) {
-        ODItemValuePattern valuePattern = new ODItemValuePattern();
+        List<Pair<ODItem, ODValueCodec>> valuePatterns = new ArrayList<>();
         pattern = pattern.replace("<", "").replace(">", "");
         String[] patterns = ODUtil.split(pattern, ",");
         for(String p: patterns) {
@@ -59,7 +54,7 @@ public class ODItemValuePattern {
                         } else {
                             if(it.getValueCount() == 1) {
                                 String vp = it.getValuePattern().toString();
-                                valuePattern.valuePatterns.add(new Pair<>(it, ODValue.patternToValue(vp)));
+                                valuePatterns.add(new Pair<>(it, ODValueCodec.compile(vp)));
                             } else {
                                 ODLogger.error("the value count of '" +it + "' used in the pattern of '"+ item.toString() +"' should be 1!",
                                         (new Throwable()).getStackTrace());
@@ -70,10 +65,30 @@ public class ODItemValuePattern {
                     }
                 }
             } else {
-                valuePattern.valuePatterns.add(new Pair<ODItem, ODValue>(null, ODValue.patternToValue(p)));
+                valuePatterns.add(new Pair<ODItem, ODValueCodec>(null, ODValueCodec.compile(p)));
             }
         }
-        return valuePattern;
+        return new ODItemValuePattern(valuePatterns);
     }
 
+    // ----------------------------------------------------------- private
+
+    private String format() {
+        String str = "<";
+        for(Pair<ODItem, ODValueCodec> p: valuePatterns) {
+            ODItem it = p.first;
+            if(it != null) {
+                String name = it.toString();
+                int pos = name.lastIndexOf(".");
+                if(pos > 0) {
+                    str += name.substring(pos + 1, name.length()) + "(" + p.second.getPattern() + "),";
+                }
+            } else {
+                str += p.second.getPattern() + ",";
+            }
+        }
+        str = ODUtil.removeLastChar(str);
+        str += ">";
+        return str;
+    }
 }
@@ -0,0 +1,92 @@
+package com.oceanbase.odeployer.common;
+
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * 日志过滤条件, 在远程主机上执行
+ * <p>格式为以';'分隔的key=value, '-'表示不过滤:</p>
+ * <blockquote><pre>
+ * from=2016-12-30 10:00:00  不早于该时间
+ * to=2016-12-30 11         不晚于该时间, 按前缀比较, 即包含11点整个小时
+ * level=WARN                不低于该级别: DEBUG, TRACE, INFO, WARN, ERROR
+ * grep=bootstrap            行匹配该正则表达式(ERE)
+ * </pre></blockquote>
+ * 条件只对带时间戳的行判断, 其后的续行(如堆栈)随该行一起保留或丢弃
+ * @since OD2.0
+ */
+public class ODLogFilter {
+
+    /** 日志级别, 从低到高 */
+    public static final String[] LEVELS = {"DEBUG", "TRACE", "INFO", "WARN", "ERROR"};
+
+    private String from = "";
+
+    private String to = "";
+
+    private String level = "";
+
+    private String grep = "";
+
+    /**
+     * 解析过滤条件
+     * @param filter 如: from=2016-12-30 10:00:00;level=WARN
+     * @return 格式错误时打印错误信息, 并返回null
+     */
+    public static ODLogFilter parse(String filter) {
+        ODLogFilter logFilter = new ODLogFilter();
+        if(filter == null || filter.trim().equals("-")) {
+            return logFilter;
+        }
+        for(String condition: ODUtil.split(filter, ";")) {
+            if(condition.length() == 0) {
+                continue;
+            }
+            int index = condition.indexOf('=');
+            String key = index > 0 ? condition.substring(0, index).trim() : condition;
+            String value = index > 0 ? condition.substring(index + 1).trim() : "";
+            if(key.equalsIgnoreCase("from")) {
+                logFilter.from = value;
+            } else if(key.equalsIgnoreCase("to")) {
+                logFilter.to = value;
+            } else if(key.equalsIgnoreCase("level")) {
+                logFilter.level = value.toUpperCase();
+                if(!ODUtil.isExist(java.util.Arrays.asList(LEVELS), logFilter.level)) {
+                    ODLogger.log("[ERROR] the log level of '" + value + "' is undefined, expect one of 'DEBUG|TRACE|INFO|WARN|ERROR'!");
+                    return null;
+                }
+            } else if(key.equalsIgnoreCase("grep")) {
+                logFilter.grep = value;
+            } else {
+                ODLogger.log("[ERROR] the filter of '" + condition + "' is undefined, expect 'from=|to=|level=|grep='!");
+                return null;
+            }
+        }
+        return logFilter;
+    }
+
+    /** 起始时间, 空字符串表示不限 */
+    public String getFrom() {
+        return from;
+    }
+
+    /** 结束时间, 按前缀比较, 空字符串表示不限 */
+    public String getTo() {
+        return to;
+    }
+
+    /** 最低级别, 空字符串表示不限 */
+    public String getLevel() {
+        return level;
+    }
+
+    /** 正则表达式, 空字符串表示不限 */
+    public String getGrep() {
+        return grep;
+    }
+
+    @Override
+    public String toString() {
+        return "from=" + from + ";to=" + to + ";level=" + level + ";grep=" + grep;
+    }
+}
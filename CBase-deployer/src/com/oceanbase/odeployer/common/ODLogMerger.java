@@ -0,0 +1,154 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多路日志的归并器
+ * <p>每个日志文件是一路, 同一路内的行已按时间排序, 按Oceanbase日志行首的时间戳做k路归并</p>
+ * <blockquote><pre>
+ * [2016-12-30 10:20:30.123456] INFO  ob_root_server2.cpp:123 [140392] ...
+ * </pre></blockquote>
+ * 所有路都有待输出的行时, 输出时间戳最小的行; 否则只等待一个有限的重排窗口, 避免慢主机阻塞输出
+ * @since OD2.0
+ */
+public class ODLogMerger {
+
+    /** 重排窗口(毫秒), 行到达后最多等待的时间 */
+    private final long window;
+
+    /** 缓冲的最大行数, 超过时不再等待 */
+    private final int maxBuffered;
+
+    /** 各路待输出的行, key为前缀, 如: 10.0.0.1 rs */
+    private Map<String, ArrayDeque<Line>> queues = new LinkedHashMap<>();
+
+    /** 各路最后一个时间戳, 用于没有时间戳的续行 */
+    private Map<String, Long> lastTimestamps = new LinkedHashMap<>();
+
+    private int buffered;
+
+    /**
+     * @param window 重排窗口(毫秒)
+     * @param maxBuffered 缓冲的最大行数
+     */
+    public ODLogMerger(long window, int maxBuffered) {
+        this.window = window;
+        this.maxBuffered = maxBuffered;
+    }
+
+    /**
+     * 添加一路日志, 应在开始读取前添加所有路
+     * @param source 前缀, 如: 10.0.0.1 rs
+     */
+    public synchronized void addSource(String source) {
+        if(!queues.containsKey(source)) {
+            queues.put(source, new ArrayDeque<Line>());
+            lastTimestamps.put(source, 0L);
+        }
+    }
+
+    /**
+     * 写入一行, 由读取日志的线程调用
+     * @param source 前缀
+     * @param text 日志行
+     */
+    public synchronized void offer(String source, String text) {
+        addSource(source);
+        long timestamp = parseTimestamp(text);
+        if(timestamp < 0) { // 续行, 如堆栈, 沿用上一行的时间戳
+            timestamp = lastTimestamps.get(source);
+        } else {
+            lastTimestamps.put(source, timestamp);
+        }
+        queues.get(source).addLast(new Line(source, text, timestamp, System.currentTimeMillis()));
+        buffered++;
+        notifyAll();
+    }
+
+    /**
+     * 取出可以输出的行
+     * @param timeout 没有可输出的行时最多等待的时间(毫秒)
+     * @return 已按时间戳排序, 格式为: [前缀] 日志行
+     * @throws InterruptedException
+     */
+    public synchronized List<String> poll(long timeout) throws InterruptedException {
+        List<String> lines = new ArrayList<>();
+        drain(lines);
+        if(lines.isEmpty()) {
+            wait(timeout);
+            drain(lines);
+        }
+        return lines;
+    }
+
+    // ----------------------------------------------------------- private
+
+    private void drain(List<String> lines) {
+        long now = System.currentTimeMillis();
+        while(buffered > 0) {
+            ArrayDeque<Line> minQueue = null;
+            boolean isAllReady = true;
+            for(ArrayDeque<Line> queue: queues.values()) {
+                Line head = queue.peekFirst();
+                if(head == null) {
+                    isAllReady = false;
+                } else if(minQueue == null || head.timestamp < minQueue.peekFirst().timestamp) {
+                    minQueue = queue;
+                }
+            }
+            Line min = minQueue.peekFirst();
+            // 有路为空时, 该路之后可能到达更早的行, 等待到窗口结束
+            if(isAllReady || buffered > maxBuffered || now - min.arrival >= window) {
+                minQueue.pollFirst();
+                buffered--;
+                lines.add("[" + min.source + "] " + min.text);
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 解析行首的时间戳
+     * @param text 如: [2016-12-30 10:20:30.123456] ...
+     * @return yyMMddHHmmss后接6位微秒组成的数, 格式不符时返回-1
+     */
+    static long parseTimestamp(String text) {
+        if(text.length() < 28 || text.charAt(0) != '[' || text.charAt(27) != ']') {
+            return -1;
+        }
+        long value = 0;
+        for(int i = 3; i < 27; i++) { // 跳过世纪
+            char c = text.charAt(i);
+            if(c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else if(c != '-' && c != ' ' && c != ':' && c != '.') {
+                return -1;
+            }
+        }
+        return value;
+    }
+
+    private static class Line {
+
+        private final String source;
+
+        private final String text;
+
+        private final long timestamp;
+
+        /** 到达时间, 用于重排窗口 */
+        private final long arrival;
+
+        private Line(String source, String text, long timestamp, long arrival) {
+            this.source = source;
+            this.text = text;
+            this.timestamp = timestamp;
+            this.arrival = arrival;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.oceanbase.odeployer.ODCluster;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * Server进程资源指标的采集器
+ * <p>每次采集时, 每台主机只执行一次远程命令读取/proc/&lt;pid&gt;, 各主机并行执行</p>
+ * 每台主机的每个Server的每个指标保存在一个{@code ODMetricRing}中
+ * @since OD2.0
+ */
+public class ODMetricCollector {
+
+    /** 默认保留的采样点数 */
+    public static final int DEFAULT_CAPACITY = 600;
+
+    private final ODCluster cluster;
+
+    private final int capacity;
+
+    /** key: ip + servername, 数组下标为ODMetricType的序号 */
+    private Map<String, ODMetricRing[]> ringMap = new LinkedHashMap<>();
+
+    /** 各主机上一次的采样, 用于计算速率 */
+    private Map<String, ODProcSample> lastSampleMap = new HashMap<>();
+
+    public ODMetricCollector(ODCluster cluster, int capacity) {
+        this.cluster = cluster;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 采集一次所有主机的指标
+     * @return 有主机采集失败时返回ERROR
+     */
+    public ODError collect() {
+        ODError ret = ODError.SUCCESS;
+        List<ODServer> serverList = cluster.getOceanbase().getServerList();
+        if(serverList == null) {
+            return ODError.ERROR;
+        }
+        List<Future<ODProcSample>> futureList = new ArrayList<>();
+        for(final ODServer server: serverList) {
+            futureList.add(cluster.executeAction(new Callable<ODProcSample>() {
+                @Override
+                public ODProcSample call() throws Exception {
+                    return server.getProcSample();
+                }
+            }));
+        }
+        long now = System.currentTimeMillis();
+        for(int i = 0; i < futureList.size(); i++) {
+            ODProcSample sample = null;
+            try {
+                sample = futureList.get(i).get();
+            } catch (InterruptedException | ExecutionException e) {
+                ODLogger.debug(e.toString());
+            }
+            if(sample == null || !sample.isValid()) {
+                ODLogger.log("[ERROR] [" + serverList.get(i).ip + "]: read metrics fail!");
+                ret = ODError.ERROR;
+            } else {
+                record(sample, now);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 指标的时间序列
+     * @param ip 主机IP
+     * @param servername Server类型
+     * @param type 指标
+     * @return 未采集过时返回null
+     */
+    public synchronized ODMetricRing getRing(String ip, ODServerName servername, ODMetricType type) {
+        ODMetricRing[] rings = ringMap.get(ip + servername);
+        return rings == null ? null : rings[type.ordinal()];
+    }
+
+    /**
+     * 统计时间窗口内的指标
+     * @param ip 主机IP
+     * @param servername Server类型
+     * @param type 指标
+     * @param window 窗口大小(毫秒), 不大于0时统计所有采样点
+     * @return 未采集过时返回null
+     */
+    public ODMetricRing.Stats getStats(String ip, ODServerName servername, ODMetricType type, long window) {
+        ODMetricRing ring = getRing(ip, servername, type);
+        return ring == null ? null : ring.stats(window, System.currentTimeMillis());
+    }
+
+    /**
+     * 转换为表格
+     * 每个单元格为: 当前值/窗口平均值/窗口p95
+     * @param window 窗口大小(毫秒)
+     * @return 每台主机之后为null, 表示横线
+     */
+    public List<List<String>> toRows(long window) {
+        List<List<String>> rows = new ArrayList<>();
+        for(ODServer server: cluster.getOceanbase().getServerList()) {
+            boolean isFirstRow = true;
+            for(ODServerName servername: ODServer.SERVER_NAMES) {
+                List<String> row = new ArrayList<>();
+                row.add(isFirstRow ? server.ip : "");
+                row.add(servername.toString());
+                isFirstRow = false;
+                for(ODMetricType type: ODMetricType.values()) {
+                    ODMetricRing.Stats stats = getStats(server.ip, servername, type, window);
+                    if(stats == null || stats.getCount() == 0) {
+                        row.add("");
+                    } else {
+                        row.add(format(getRing(server.ip, servername, type).last()) + "/"
+                                + format(stats.getAvg()) + "/" + format(stats.getPercentile(95)));
+                    }
+                }
+                rows.add(row);
+            }
+            rows.add(null);
+        }
+        return rows;
+    }
+
+    /**
+     * 表头, 与toRows()的列对应
+     * @return 新的列表
+     */
+    public static List<String> getHeader() {
+        List<String> header = new ArrayList<>();
+        header.add("IP");
+        header.add("Server");
+        for(ODMetricType type: ODMetricType.values()) {
+            header.add(type.toString());
+        }
+        return header;
+    }
+
+    // ----------------------------------------------------------- private
+
+    /** 由原始计数计算指标并写入时间序列 */
+    private synchronized void record(ODProcSample sample, long now) {
+        ODProcSample lastSample = lastSampleMap.put(sample.getIp(), sample);
+        for(ODServerName servername: ODServer.SERVER_NAMES) {
+            long[] counters = sample.getCounters(servername);
+            if(counters == null) {
+                continue; // 进程不存在, 时间序列中留空
+            }
+            String key = sample.getIp() + servername;
+            ODMetricRing[] rings = ringMap.get(key);
+            if(rings == null) {
+                rings = new ODMetricRing[ODMetricType.values().length];
+                for(int i = 0; i < rings.length; i++) {
+                    rings[i] = new ODMetricRing(capacity);
+                }
+                ringMap.put(key, rings);
+            }
+            rings[ODMetricType.RSS.ordinal()].add(now, counters[ODProcSample.RSS_KB] / 1024.0);
+            rings[ODMetricType.THREADS.ordinal()].add(now, counters[ODProcSample.THREADS]);
+            rings[ODMetricType.FDS.ordinal()].add(now, counters[ODProcSample.FDS]);
+            // 速率需要同一进程的前后两次采样
+            long[] lastCounters = lastSample == null ? null : lastSample.getCounters(servername);
+            double seconds = lastSample == null ? 0 : sample.getUptime() - lastSample.getUptime();
+            if(lastCounters != null && lastCounters[ODProcSample.PID] == counters[ODProcSample.PID] && seconds > 0) {
+                double cpu = (counters[ODProcSample.CPU_TICKS] - lastCounters[ODProcSample.CPU_TICKS])
+                        / (double) sample.getClockTicks() / seconds * 100;
+                rings[ODMetricType.CPU.ordinal()].add(now, cpu);
+                if(counters[ODProcSample.READ_BYTES] >= 0 && lastCounters[ODProcSample.READ_BYTES] >= 0) {
+                    rings[ODMetricType.READ.ordinal()].add(now,
+                            (counters[ODProcSample.READ_BYTES] - lastCounters[ODProcSample.READ_BYTES]) / 1024.0 / seconds);
+                    rings[ODMetricType.WRITE.ordinal()].add(now,
+                            (counters[ODProcSample.WRITE_BYTES] - lastCounters[ODProcSample.WRITE_BYTES]) / 1024.0 / seconds);
+                }
+            }
+        }
+    }
+
+    private static String format(double value) {
+        return ODUtil.trimFloat((float) value);
+    }
+}
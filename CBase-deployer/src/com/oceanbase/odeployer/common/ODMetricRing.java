@@ -0,0 +1,125 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.Arrays;
+
+/**
+ * 单个指标的时间序列
+ * <p>定长的环形缓冲区, 时间和值都保存在基本类型数组中, 写入时不产生对象</p>
+ * 查询时按时间窗口计算最小值, 最大值, 平均值和百分位数
+ * @since OD2.0
+ */
+public class ODMetricRing {
+
+    private final long[] times;
+
+    private final double[] values;
+
+    /** 下一个写入位置 */
+    private int head;
+
+    private int size;
+
+    /**
+     * @param capacity 保留的采样点数
+     */
+    public ODMetricRing(int capacity) {
+        times = new long[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * 写入采样点
+     * @param time 采样时间(毫秒)
+     * @param value 值
+     */
+    public synchronized void add(long time, double value) {
+        times[head] = time;
+        values[head] = value;
+        head = (head + 1) % values.length;
+        if(size < values.length) {
+            size++;
+        }
+    }
+
+    /**
+     * 最新的值
+     * @return 没有采样点时返回NaN
+     */
+    public synchronized double last() {
+        if(size == 0) {
+            return Double.NaN;
+        }
+        return values[(head - 1 + values.length) % values.length];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 统计时间窗口内的采样点
+     * @param window 窗口大小(毫秒), 不大于0时统计所有采样点
+     * @param now 窗口的结束时间
+     * @return 窗口内没有采样点时count为0, 其余值为NaN
+     */
+    public synchronized Stats stats(long window, long now) {
+        double[] sorted = new double[size];
+        int count = 0;
+        double sum = 0;
+        for(int i = 0; i < size; i++) {
+            int index = (head - 1 - i + values.length) % values.length;
+            if(window > 0 && now - times[index] > window) {
+                break; // 更早的采样点都在窗口之外
+            }
+            sorted[count++] = values[index];
+            sum += values[index];
+        }
+        Arrays.sort(sorted, 0, count);
+        return new Stats(sorted, count, sum);
+    }
+
+    /** 时间窗口内的统计值 */
+    public static class Stats {
+
+        private final double[] sorted;
+
+        private final int count;
+
+        private final double sum;
+
+        private Stats(double[] sorted, int count, double sum) {
+            this.sorted = sorted;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return count == 0 ? Double.NaN : sorted[0];
+        }
+
+        public double getMax() {
+            return count == 0 ? Double.NaN : sorted[count - 1];
+        }
+
+        public double getAvg() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        /**
+         * 百分位数, 取最近秩
+         * @param percent 0-100, 如: 95
+         * @return 没有采样点时返回NaN
+         */
+        public double getPercentile(double percent) {
+            if(count == 0) {
+                return Double.NaN;
+            }
+            int rank = (int) Math.ceil(percent / 100 * count);
+            return sorted[Math.min(Math.max(rank, 1), count) - 1];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.oceanbase.odeployer.common;
+
+/**
+ * Server进程的资源指标
+ * <blockquote><pre>
+ * 1. CPU     CPU使用率(%), 由utime+stime的增量计算
+ * 2. RSS     常驻内存(MB)
+ * 3. THREADS 线程数
+ * 4. FDS     打开的文件描述符数
+ * 5. READ    磁盘读(KB/s), 由read_bytes的增量计算
+ * 6. WRITE   磁盘写(KB/s), 由write_bytes的增量计算
+ * </pre></blockquote>
+ * @since OD2.0
+ */
+public enum ODMetricType {
+    CPU,
+    RSS,
+    THREADS,
+    FDS,
+    READ,
+    WRITE;
+
+    /** 表头名称 */
+    public String toString() {
+        switch (this) {
+            case CPU:
+                return "CPU(%)";
+            case RSS:
+                return "RSS(MB)";
+            case THREADS:
+                return "Threads";
+            case FDS:
+                return "FDs";
+            case READ:
+                return "Read(KB/s)";
+            case WRITE:
+                return "Write(KB/s)";
+            default:
+                return null;
+        }
+    }
+}
@@ -1,19 +1,34 @@
 package com.oceanbase.odeployer.common;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.task.ODStartTask;
+import com.oceanbase.odeployer.task.ODTask;
+import com.oceanbase.odeployer.util.ODLocalCache;
 import com.oceanbase.odeployer.util.ODLogger;
-import com.oceanbase.odeployer.util.ODShell;
 import com.oceanbase.odeployer.util.ODUtil;
 import com.oceanbase.odeployer.util.Pair;
 
 /**
  * Oceanbase
- * <p>单例模式: ODOceanbase oceanbase = ODOceanbase.getInstance()</p>
+ * <p>每个集群上下文拥有一个实例: ODOceanbase oceanbase = cluster.getOceanbase()</p>
  * 管理主机列表, 定义的集群级别的基本功能
  * @author lbz@lbzhong.com 2016/03/30
  * @since OD1.0
@@ -22,9 +37,11 @@ import com.oceanbase.odeployer.util.Pair;
  */
 public final class ODOceanbase {
 
-    
-    /** 单例模式 */
-    private static ODOceanbase instance = new ODOceanbase();
+    /** 探测MS端口的连接超时(毫秒) */
+    private static final int MS_PROBE_TIMEOUT = 1000;
+
+    /** 所属的集群上下文 */
+    private final ODCluster cluster;
 
     /** 是否初始化 */
     private boolean isInit;
@@ -32,12 +49,9 @@ public final class ODOceanbase {
     /** 主机列表 */
     private List<ODServer> serverList = new ArrayList<>();
 
-    /** 禁用默认的构造函数 */
-    private ODOceanbase() {}
-
-    /** Oceanbase惟一实例 */
-    public static ODOceanbase getInstance() {
-        return instance;
+    /** 由ODCluster创建 */
+    public ODOceanbase(ODCluster cluster) {
+        this.cluster = cluster;
     }
 
     /**
@@ -52,7 +66,7 @@ public final class ODOceanbase {
         ODError ret = ODError.SUCCESS;
         if(!isInit) {
                 this.serverList.addAll(serverList);
-                ODShell.init(oceanbaseDir, rsPort, upsPortp, upsPortm, msPortp, msPortz, csPortp, csPortn);
+                cluster.getShell().init(oceanbaseDir, rsPort, upsPortp, upsPortm, msPortp, msPortz, csPortp, csPortn);
                 isInit = true;
                 if(ODDeployer.CONNECT && !noPreConnect) {
                     if(!connect()) { // 连接成功
@@ -74,13 +88,14 @@ public final class ODOceanbase {
             if(!serverList.isEmpty()) {
                 //构建ODStartTask启动所有Server
                 ODStartTask task = new ODStartTask("all-start");
+                task.setCluster(cluster);
                 for(ODServer server: serverList) {
                     String[] servernames = {"rs", "ups", "ms", "cs"};
                     // action类型为 START_SERVER 
                     ODAction action = new ODAction(ODItem.START_SERVER, server, Arrays.asList(servernames));
                     task.addAction(action);
                 }
-                task.execute(null, "start");
+                ret = task.execute(null, "start");
             }
         } else {
             ODLogger.error("ODOceanbase is not initialized!", (new Throwable()).getStackTrace());
@@ -124,7 +139,7 @@ public final class ODOceanbase {
             if(isInit && serverList != null && serverList.size() > 0) {
                 ODLogger.log("Deploy oceanbase to:");
                 for(ODServer server: serverList) {
-                    ODLogger.log("[" + server.ip + "]: " + ODShell.getOceanbaseDir());
+                    ODLogger.log("[" + server.ip + "]: " + cluster.getShell().getOceanbaseDir());
                 }
                 for(ODServer server: serverList) {
                     ret = server.mkdir();
@@ -135,15 +150,15 @@ public final class ODOceanbase {
                 if(ODDeployer.CONNECT && ret.isSuccess()) {
                     // user指当前OD工具的用户, 由第一个Server的username + oceanbase拼接而成
                     // 在复制文件时用于区分不同的程序产生的expect文件
-                	String user = serverList.get(0).username + ODShell.getOceanbaseDir().replace("~", "").replace("/", ".");
-//                    String user = serverList.get(0).username + ODShell.getOceanbaseDir().replace("~", "_").replace("/", ".");
+                	String user = serverList.get(0).username + cluster.getShell().getOceanbaseDir().replace("~", "").replace("/", ".");
+//                    String user = serverList.get(0).username + cluster.getShell().getOceanbaseDir().replace("~", "_").replace("/", ".");
                 	ODRemoteConnector rc = new ODRemoteConnector(sourceIp, sourceName, sourcePass);
                 	Pair<ODError , String> testRet = rc.executeValue("expect -v");
                 	if (testRet.second != null&& testRet.second.contains("command not found")){
                 		System.out.println("'expect' is not found");
                 		ret = ODError.ERROR;
                 	}else{  
-                    rc.executeDirect(ODShell.getDeployCmd(serverList, sourceOB, user));
+                    rc.executeDirect(cluster.getShell().getDeployCmd(serverList, sourceOB, user));
                     Thread.sleep(1000); // 等待一定时间
                     int sec = 0;
                     int lastLineLen = 0;
@@ -200,37 +215,162 @@ public final class ODOceanbase {
     }
 
     /**
-     * 是否有任意Server进程存活
-     * @return boolean
+     * 并行采集所有主机的状态快照, 每台主机只执行一次远程命令
+     * 缓存有效期内的主机不执行远程命令
+     * @return 与主机列表的顺序一致, 必须先初始化
      */
-    public boolean isAnyServerAlive() {
+    public List<ODHostStatus> collectStatus() {
+        return collectStatus(false);
+    }
+
+    /**
+     * 并行采集所有主机的状态快照
+     * @param refresh 是否忽略缓存
+     * @return 与主机列表的顺序一致, 必须先初始化
+     */
+    public List<ODHostStatus> collectStatus(final boolean refresh) {
+        List<ODHostStatus> statusList = new ArrayList<>();
         if(isInit) {
-            for(ODServer server: serverList) {
-                if(server.isAnyServerAlive()) {
-                    return true;
+            List<Future<ODHostStatus>> futureList = new ArrayList<>();
+            for(final ODServer server: serverList) {
+                futureList.add(cluster.executeAction(new Callable<ODHostStatus>() {
+                    @Override
+                    public ODHostStatus call() throws Exception {
+                        return refresh ? server.refreshStatus() : server.getStatus();
+                    }
+                }));
+            }
+            for(int i = 0; i < serverList.size(); i++) {
+                try {
+                    statusList.add(futureList.get(i).get());
+                } catch (InterruptedException | ExecutionException e) {
+                    ODLogger.error("collect status of [" + serverList.get(i).ip + "] fail!", (new Throwable()).getStackTrace());
+                    statusList.add(new ODHostStatus(serverList.get(i).ip, false));
                 }
             }
         } else {
             ODLogger.error("ODOceanbase is not initialized!", (new Throwable()).getStackTrace());
         }
+        return statusList;
+    }
+
+    /**
+     * 是否有任意Server进程存活
+     * @return boolean
+     */
+    public boolean isAnyServerAlive() {
+        for(ODHostStatus status: collectStatus()) {
+            if(status.isAnyAlive()) {
+                return true;
+            }
+        }
         return false;
     }
 
     /**
-     * 按Server列表的顺序获取可用的MS
-     * @return ip
+     * 获取可用的MS
+     * <p>先检查上次命令记住的MS, 不可用时并行探测启动配置中有MS或LMS的主机, 取最先成功的结果并取消其余探测</p>
+     * 能连接MS的SQL端口即视为可用, 端口不通时以状态快照为准
+     * @return ip, 没有可用的MS时返回null
      */
     public String getAliveMsIp() {
-        if(isInit) {
-            for(ODServer server: serverList) {
-                if(server.isMSAlive()) {
-                    return server.ip;
+        if(!isInit) {
+            ODLogger.error("ODOceanbase is not initialized!", (new Throwable()).getStackTrace());
+            return null;
+        }
+        final int port = getMsSqlPort();
+        List<ODServer> candidates = getMsCandidates();
+        String configureFileName = cluster.getConfigureFileName();
+        String cacheKey = new File(configureFileName).getName() + ".alive.ms";
+        String cachedIp = ODLocalCache.get(configureFileName, cacheKey);
+        if(cachedIp != null && port > 0) {
+            for(ODServer server: candidates) {
+                if(server.ip.equals(cachedIp) && ODUtil.isPortOpen(cachedIp, port, MS_PROBE_TIMEOUT)) {
+                    return cachedIp; // 一次连接即可确定
                 }
             }
-        } else {
+        }
+        String aliveIp = null;
+        if(!candidates.isEmpty()) {
+            ExecutorService probeExecutor = newProbeExecutor(candidates.size());
+            CompletionService<String> completionService = new ExecutorCompletionService<>(probeExecutor);
+            try {
+                for(final ODServer server: candidates) {
+                    completionService.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            if(port > 0 && ODUtil.isPortOpen(server.ip, port, MS_PROBE_TIMEOUT)) {
+                                return server.ip;
+                            }
+                            if(!Thread.currentThread().isInterrupted() && server.isMSAlive()) {
+                                return server.ip;
+                            }
+                            return null;
+                        }
+                    });
+                }
+                for(int i = 0; i < candidates.size() && aliveIp == null; i++) {
+                    try {
+                        aliveIp = completionService.take().get();
+                    } catch (ExecutionException e) {
+                        ODLogger.debug("probe mergeserver fail: " + e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                probeExecutor.shutdownNow(); // 取消其余探测
+            }
+        }
+        if(aliveIp != null) {
+            ODLogger.debug("alive mergeserver: " + aliveIp);
+        }
+        ODLocalCache.put(configureFileName, cacheKey, aliveIp); // 没有可用的MS时删除
+        return aliveIp;
+    }
+
+    /**
+     * 获取所有可用的MS
+     * <p>并行探测启动配置中有MS或LMS的主机, 判断方法同getAliveMsIp()</p>
+     * @return 按主机列表的顺序, 不会为null
+     */
+    public List<String> getAliveMsIps() {
+        List<String> aliveIps = new ArrayList<>();
+        if(!isInit) {
             ODLogger.error("ODOceanbase is not initialized!", (new Throwable()).getStackTrace());
+            return aliveIps;
         }
-        return null;
+        final int port = getMsSqlPort();
+        List<ODServer> candidates = getMsCandidates();
+        if(candidates.isEmpty()) {
+            return aliveIps;
+        }
+        ExecutorService probeExecutor = newProbeExecutor(candidates.size());
+        try {
+            List<Future<Boolean>> futureList = new ArrayList<>();
+            for(final ODServer server: candidates) {
+                futureList.add(probeExecutor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return (port > 0 && ODUtil.isPortOpen(server.ip, port, MS_PROBE_TIMEOUT)) || server.isMSAlive();
+                    }
+                }));
+            }
+            for(int i = 0; i < candidates.size(); i++) {
+                try {
+                    if(futureList.get(i).get()) {
+                        aliveIps.add(candidates.get(i).ip);
+                    }
+                } catch (ExecutionException e) {
+                    ODLogger.debug("probe mergeserver fail: " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            probeExecutor.shutdownNow();
+        }
+        return aliveIps;
     }
 
     /**
@@ -246,6 +386,55 @@ public final class ODOceanbase {
         return null;
     }
 
+    /**
+     * 按重新加载的配置更新主机列表
+     * <p>删除或修改的主机断开连接, 新增或修改的主机使用新配置重新连接, 其余主机保持原有连接</p>
+     * @param diff 配置差异
+     * @param servers 新配置中的主机列表
+     * @return 必须先初始化
+     */
+    public ODError apply(ODConfigurationDiff diff, List<ODServer> servers) {
+        ODError ret = ODError.SUCCESS;
+        if(isInit) {
+            List<String> removedIps = diff.getRemovedHosts();
+            List<String> changedIps = diff.getChangedHosts();
+            List<String> addedIps = diff.getAddedHosts();
+            for(int i = serverList.size() - 1; i >= 0; i--) {
+                ODServer server = serverList.get(i);
+                if(removedIps.contains(server.ip) || changedIps.contains(server.ip)) {
+                    server.close();
+                    cluster.getStatusCache().invalidate(server.ip);
+                    if(removedIps.contains(server.ip)) {
+                        serverList.remove(i);
+                    }
+                }
+            }
+            for(ODServer server: servers) {
+                int index = -1;
+                if(changedIps.contains(server.ip)) { // 保持在主机列表中的位置
+                    for(int i = 0; i < serverList.size() && index < 0; i++) {
+                        if(serverList.get(i).ip.equals(server.ip)) {
+                            index = i;
+                        }
+                    }
+                    if(index >= 0) {
+                        serverList.set(index, server);
+                    }
+                } else if(addedIps.contains(server.ip)) {
+                    serverList.add(server);
+                    index = serverList.size() - 1;
+                }
+                if(index >= 0 && ODDeployer.CONNECT && !server.connect(true)) {
+                    ret = ODError.ERROR;
+                }
+            }
+        } else {
+            ODLogger.error("ODOceanbase is not initialized!", (new Throwable()).getStackTrace());
+            ret = ODError.ERROR;
+        }
+        return ret;
+    }
+
     /** 关闭连接 */
     public void close() {
         if(isInit) {
@@ -268,6 +457,67 @@ public final class ODOceanbase {
 
     // ----------------------------------------------------------- private
 
+    /**
+     * MS的SQL端口
+     * @return 未配置时返回0
+     */
+    private int getMsSqlPort() {
+        try {
+            return Integer.parseInt(cluster.getShell().getMsZPort().trim());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 启动配置中有MS或LMS的主机
+     * <p>没有启动配置或启动配置中没有MS时, 返回所有主机</p>
+     * @return 按主机列表的顺序
+     */
+    private List<ODServer> getMsCandidates() {
+        Set<String> msIps = new HashSet<>();
+        Map<String, ODTask> section = cluster.getConfiguration().getSection("start");
+        if(section != null) {
+            for(ODTask task: section.values()) {
+                ODAction action;
+                for(int i = 0; (action = task.getAction(i)) != null; i++) {
+                    List<ODServerName> servernames = action.getServernames();
+                    if(action.getServer() != null && servernames != null
+                            && (servernames.contains(ODServerName.MS) || servernames.contains(ODServerName.LMS))) {
+                        msIps.add(action.getServer().ip);
+                    }
+                }
+            }
+        }
+        if(msIps.isEmpty()) {
+            return serverList;
+        }
+        List<ODServer> candidates = new ArrayList<>();
+        for(ODServer server: serverList) {
+            if(msIps.contains(server.ip)) {
+                candidates.add(server);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 探测MS的线程池, 每台主机一个线程, 用完即关闭
+     * <p>不占用集群的action线程池, 避免探测排队等待</p>
+     * @param threads 线程数, 大于0
+     */
+    private static ExecutorService newProbeExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "od-ms-probe-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     /** 连接各主机节点 */
     private boolean connect() {
         if(isInit) {
@@ -0,0 +1,119 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 启动前已被占用的端口
+ * <p>由{@code ODShell.getListenPortsCmd()}的输出解析得到, 兼容ss和netstat两种格式:</p>
+ * <blockquote><pre>
+ * LISTEN 0 128 *:2500 *:* users:(("rootserver",pid=1234,fd=5))
+ * tcp 0 0 0.0.0.0:2500 0.0.0.0:* LISTEN 1234/rootserver
+ * </pre></blockquote>
+ * 无权限查看其它用户的进程时, 进程号和进程名为'-'
+ * @since OD2.0
+ */
+public class ODPortConflict {
+
+    private static final Pattern SS_PROCESS = Pattern.compile("\\(\\(\"([^\"]*)\",pid=(\\d+)");
+
+    private static final Pattern NETSTAT_PROCESS = Pattern.compile("(\\d+)/(\\S+)$");
+
+    private String ip;
+
+    private ODServerName servername;
+
+    private int port;
+
+    private String pid = "-";
+
+    private String process = "-";
+
+    /**
+     * 解析远程命令的输出
+     * @param ip 主机IP
+     * @param output 远程命令的输出, 可以为null
+     * @param ports 待启动的端口及所属的Server
+     * @return 不会为null, 没有冲突时为空
+     */
+    public static List<ODPortConflict> parse(String ip, String output, Map<Integer, ODServerName> ports) {
+        List<ODPortConflict> conflicts = new ArrayList<>();
+        if(output == null) {
+            return conflicts;
+        }
+        for(String line: output.split("\n")) {
+            String[] fields = line.trim().split("\\s+");
+            if(fields.length < 4) {
+                continue;
+            }
+            // ss和netstat的第4列都是本地地址, 如: *:2500, [::]:2500, 0.0.0.0:2500
+            String address = fields[3];
+            int port;
+            try {
+                port = Integer.parseInt(address.substring(address.lastIndexOf(':') + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            ODServerName servername = ports.get(port);
+            if(servername == null || contains(conflicts, port)) { // IPv4和IPv6各一行
+                continue;
+            }
+            ODPortConflict conflict = new ODPortConflict();
+            conflict.ip = ip;
+            conflict.servername = servername;
+            conflict.port = port;
+            Matcher matcher = SS_PROCESS.matcher(line);
+            if(matcher.find()) {
+                conflict.process = matcher.group(1);
+                conflict.pid = matcher.group(2);
+            } else {
+                matcher = NETSTAT_PROCESS.matcher(line.trim());
+                if(matcher.find()) {
+                    conflict.pid = matcher.group(1);
+                    conflict.process = matcher.group(2);
+                }
+            }
+            conflicts.add(conflict);
+        }
+        return conflicts;
+    }
+
+    /**
+     * 表头
+     * @return IP, Server, Port, PID, Process
+     */
+    public static List<String> getHeader() {
+        return new ArrayList<>(Arrays.asList("IP", "Server", "Port", "PID", "Process"));
+    }
+
+    /**
+     * 表格的一行
+     * @return 与getHeader()对应
+     */
+    public List<String> toRow() {
+        return Arrays.asList(ip, servername.toShortName(), String.valueOf(port), pid, process);
+    }
+
+    public ODServerName getServerName() {
+        return servername;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    // ----------------------------------------------------------- private
+
+    private static boolean contains(List<ODPortConflict> conflicts, int port) {
+        for(ODPortConflict conflict: conflicts) {
+            if(conflict.port == port) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
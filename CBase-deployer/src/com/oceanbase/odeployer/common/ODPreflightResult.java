@@ -0,0 +1,133 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 单台主机的启动前检查项
+ * <p>由{@code ODShell.getPreflightCmd()}的输出解析得到, 每行为key=value</p>
+ * 时钟偏差以远程时间减去命令开始和结束时刻的中点, 误差为往返时间的一半
+ * @since OD2.0
+ */
+public class ODPreflightResult {
+
+    public static final String DISK = "disk";
+    public static final String MEMORY = "memory";
+    public static final String CPU = "cpu";
+    public static final String NOFILE = "nofile";
+    public static final String NPROC = "nproc";
+    public static final String SYSCTL_PREFIX = "sysctl.";
+
+    private static final String TIME = "time";
+
+    private String ip;
+
+    /** 远程命令是否执行成功 */
+    private boolean reachable;
+
+    private Map<String, String> values = new LinkedHashMap<>();
+
+    /** 远程时间减去本地时间(毫秒) */
+    private long clockOffset;
+
+    /** 时钟偏差的误差(毫秒), 往返时间的一半加上远程时间的精度 */
+    private long clockError;
+
+    /** 是否取得了远程时间 */
+    private boolean hasClock;
+
+    public ODPreflightResult(String ip, boolean reachable) {
+        this.ip = ip;
+        this.reachable = reachable;
+    }
+
+    /**
+     * 解析远程命令的输出
+     * @param ip 主机IP
+     * @param ret 远程命令的执行结果
+     * @param start 命令开始的本地时间(毫秒)
+     * @param end 命令结束的本地时间(毫秒)
+     * @return 不会为null
+     */
+    public static ODPreflightResult parse(String ip, Pair<ODError, String> ret, long start, long end) {
+        ODPreflightResult result = new ODPreflightResult(ip, ret.first.isSuccess());
+        if(ret.second != null) {
+            for(String line: ret.second.split("\n")) {
+                int index = line.indexOf('=');
+                if(index > 0) {
+                    result.values.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+                }
+            }
+        }
+        String time = result.values.remove(TIME);
+        if(time != null && time.length() > 0) {
+            try {
+                long remote;
+                long resolution = 0; // 远程时间被截断的精度
+                if(time.endsWith("N")) { // date不支持%N, 只精确到秒
+                    remote = Long.parseLong(time.substring(0, time.length() - 1)) * 1000;
+                    resolution = 1000;
+                } else {
+                    remote = Long.parseLong(time) / 1000000;
+                }
+                result.clockOffset = remote - (start + end) / 2;
+                result.clockError = (end - start + 1) / 2 + resolution;
+                result.hasClock = true;
+            } catch (NumberFormatException e) {
+                // 没有远程时间
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 数值型的检查项
+     * @param key 如: DISK, SYSCTL_PREFIX + "vm.max_map_count"
+     * @return unlimited时为Long.MAX_VALUE, 没有该项或非数值时为-1, 多个值时取第一个
+     */
+    public long getLong(String key) {
+        String value = values.get(key);
+        if(value == null || value.length() == 0) {
+            return -1;
+        }
+        if(value.equals("unlimited")) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(value.split("\\s+")[0]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 原始值
+     * @param key 检查项
+     * @return 可能为null
+     */
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public boolean hasClock() {
+        return hasClock;
+    }
+
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
+    public long getClockError() {
+        return clockError;
+    }
+}
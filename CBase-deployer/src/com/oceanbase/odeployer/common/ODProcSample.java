@@ -0,0 +1,106 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 主机上所有Server进程的一次资源采样
+ * <p>由{@code ODShell.getProcMetricsCmd()}的输出解析得到, 保存的是原始计数, 速率由前后两次采样计算</p>
+ * @since OD2.0
+ */
+public class ODProcSample {
+
+    // 计数数组的下标
+    public static final int PID = 0;
+    public static final int CPU_TICKS = 1;
+    public static final int RSS_KB = 2;
+    public static final int THREADS = 3;
+    public static final int FDS = 4;
+    public static final int READ_BYTES = 5;
+    public static final int WRITE_BYTES = 6;
+    private static final int COUNTER_NUM = 7;
+
+    private String ip;
+
+    /** 采样时的系统运行时间(秒), 作为计算速率的时钟 */
+    private double uptime = -1;
+
+    private int clockTicks = 100;
+
+    /** 存活进程的计数, 不存在或读取失败的进程不保存 */
+    private Map<ODServerName, long[]> countersMap = new EnumMap<>(ODServerName.class);
+
+    private ODProcSample(String ip) {
+        this.ip = ip;
+    }
+
+    /**
+     * 解析采样命令的输出
+     * @param ip 主机IP
+     * @param ret 远程命令的执行结果
+     * @return 不会为null, 执行失败时isValid()为false
+     */
+    public static ODProcSample parse(String ip, Pair<ODError, String> ret) {
+        ODProcSample sample = new ODProcSample(ip);
+        if(ret.first.isError() || ret.second == null) {
+            return sample;
+        }
+        for(String line: ret.second.split("\n")) {
+            String[] fields = line.trim().split("\\|", -1);
+            try {
+                if(fields[0].equals("t") && fields.length >= 3) {
+                    sample.uptime = Double.parseDouble(fields[1].trim());
+                    sample.clockTicks = Integer.parseInt(fields[2].trim());
+                } else if(fields.length >= 6) {
+                    ODServerName servername = ODServerName.toServerType(fields[0]);
+                    String[] ticks = fields[2].trim().split("\\s+");
+                    String[] mem = fields[3].trim().split("\\s+");
+                    String[] io = fields[5].trim().split("\\s+");
+                    if(servername != ODServerName.UNKNOWN && ticks.length == 2 && mem.length == 2) {
+                        long[] counters = new long[COUNTER_NUM];
+                        counters[PID] = Long.parseLong(fields[1].trim());
+                        counters[CPU_TICKS] = Long.parseLong(ticks[0]) + Long.parseLong(ticks[1]);
+                        counters[RSS_KB] = Long.parseLong(mem[0]);
+                        counters[THREADS] = Long.parseLong(mem[1]);
+                        counters[FDS] = Long.parseLong(fields[4].trim());
+                        // 无权限读取/proc/<pid>/io时为-1
+                        counters[READ_BYTES] = io.length == 2 ? Long.parseLong(io[0]) : -1;
+                        counters[WRITE_BYTES] = io.length == 2 ? Long.parseLong(io[1]) : -1;
+                        sample.countersMap.put(servername, counters);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // 忽略格式错误的行
+            }
+        }
+        return sample;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    /** 是否读取到了时钟 */
+    public boolean isValid() {
+        return uptime >= 0;
+    }
+
+    public double getUptime() {
+        return uptime;
+    }
+
+    public int getClockTicks() {
+        return clockTicks;
+    }
+
+    /**
+     * 进程的原始计数
+     * @param servername Server类型
+     * @return 进程不存在时返回null, 下标见PID, CPU_TICKS等常量
+     */
+    public long[] getCounters(ODServerName servername) {
+        return countersMap.get(servername);
+    }
+}
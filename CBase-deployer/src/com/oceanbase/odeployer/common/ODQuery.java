@@ -1,28 +1,35 @@
 package com.oceanbase.odeployer.common;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.util.ODLogger;
 import com.oceanbase.odeployer.util.ODPrinter;
-import com.oceanbase.odeployer.util.ODShell;
+import com.oceanbase.odeployer.util.ODResultWriter;
 import com.oceanbase.odeployer.util.ODUtil;
 import com.oceanbase.odeployer.util.Pair;
 
 /**
  * 执行SQL操作
  * <p>增加超时机制, 自适应输出表数据.</p>
+ * 连接从{@link ODConnectionPool}借出, close()时归还
  * @author lbz@lbzhong.com 2016/03/30
  * @since OD1.0
  * @author yanfeizhang68@gmail.com 2016/12/30
@@ -30,19 +37,34 @@ import com.oceanbase.odeployer.util.Pair;
  */
 public class ODQuery {
 
+    /** 流式查询的fetch size, MySQL驱动以Integer.MIN_VALUE表示逐行读取 */
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /** 连接池的键 */
+    private String key;
+
     private Connection conn;
 
     private Statement stmt;
 
-    /** 新线程，用于计算超时 */
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    /** 连接已不可用, 关闭时不归还连接池 */
+    private boolean broken;
 
-    public ODQuery(String ip) {
-        this(ip, ODShell.getMsZPort(), "admin", "admin");
+    /** 最近一次查询的表头 */
+    private List<String> lastHeader;
+
+    /**
+     * 连接集群中指定主机的MS
+     * @param cluster 集群上下文, 提供MS端口号
+     * @param ip MS所在主机IP
+     */
+    public ODQuery(ODCluster cluster, String ip) {
+        this(ip, cluster.getShell().getMsZPort(), "admin", "admin");
     }
 
     public ODQuery(String ip, String msPort, String user, String password) {
-        conn = ODOceanbaseConnector.getJDBCConnection(ip, msPort, user, password);
+        key = ODConnectionPool.key(ip, msPort, user);
+        conn = ODConnectionPool.borrow(ip, msPort, user, password);
         if(conn != null) {
             try {
                 stmt = conn.createStatement();
@@ -51,6 +73,7 @@ public class ODQuery {
                     e.printStackTrace();
                 }
                 ODLogger.log("[ERROR] createStatement [" + ip + ":" + msPort +"] fail!");
+                broken = true;
             }
         }
     }
@@ -64,25 +87,27 @@ public class ODQuery {
     public ODError executeUpdate(final String sql, int timeout) {
         ODError ret = ODError.SUCCESS;
         if(stmt != null) {
-            Callable<Integer> call = new Callable<Integer>() {
-                @Override
-                public Integer call() throws Exception {
-                    return stmt.executeUpdate(sql); // 执行SQL
-                }
-            };
-            Future<Integer> future = executor.submit(call);
+            long start = System.currentTimeMillis();
+            ScheduledFuture<?> watchdog = null;
             try {
-                int sqlRet = future.get(timeout * 1000, TimeUnit.MILLISECONDS);
+                stmt.setQueryTimeout(timeout);
+                watchdog = ODConnectionPool.watch(conn, timeout);
+                int sqlRet = stmt.executeUpdate(sql); // 执行SQL
                 if(sqlRet <= 0 && !sql.startsWith("create") && !sql.startsWith("drop")) {
                     ODLogger.log("[ERROR] Execute sql(" + sql + ") fail!");
                     ret = ODError.ERROR;
                 }
-            } catch (TimeoutException te) {
-                ODLogger.log("[WARN] Execute sql(" + sql + ") timeout!");
-                ret = ODError.ERROR;
             } catch (Exception e) {
-                ODLogger.log(ODUtil.parseException(e));
+                if(isTimeout(e, start, timeout)) {
+                    ODLogger.log("[WARN] Execute sql(" + sql + ") timeout!");
+                } else {
+                    ODLogger.log(ODUtil.parseException(e));
+                }
                 ret = ODError.ERROR;
+            } finally {
+                if(watchdog != null && !watchdog.cancel(false)) { // 看门狗已经或正在关闭连接
+                    broken = true;
+                }
             }
         } else {
             ret = ODError.ERROR;
@@ -122,34 +147,27 @@ public class ODQuery {
         ODError ret = ODError.SUCCESS;
         List<List<String>> rows = new ArrayList<>();
         if(stmt != null) {
-            Callable<ResultSet> call = new Callable<ResultSet>() {
-                @Override
-                public ResultSet call() throws Exception {
-                    return stmt.executeQuery(sql); // 执行SQL
-                }
-            };
-            Future<ResultSet> future = executor.submit(call);
+            long start = System.currentTimeMillis();
+            ScheduledFuture<?> watchdog = null;
             try {
-                ResultSet rs = future.get(timeout * 1000, TimeUnit.MILLISECONDS);
+                stmt.setQueryTimeout(timeout);
+                watchdog = ODConnectionPool.watch(conn, timeout); // 读取结果集也在超时时间内
+                ResultSet rs = stmt.executeQuery(sql); // 执行SQL
                 ResultSetMetaData metaData = rs.getMetaData();
                 int columnCount = metaData.getColumnCount();
                 // 表头
                 List<String> header = new ArrayList<>();
-                if(isPrint) {
-                    for(int i = 1; i <= columnCount; i++) {
-                        header.add(metaData.getColumnLabel(i));
-                    }
+                for(int i = 1; i <= columnCount; i++) {
+                    header.add(metaData.getColumnLabel(i));
                 }
+                lastHeader = header;
                 // 行
                 while (rs.next()) {
                     List<String> row = new ArrayList<>();
                     for(int i = 1; i <= columnCount; i++) {
                         // 如果某一列值为空，则填入""
-                        if(rs.getObject(i) != null) {
-                            row.add(rs.getObject(i).toString());
-                        } else {
-                            row.add("");
-                        }
+                        String value = rs.getString(i);
+                        row.add(value != null ? value : "");
                     }
                     rows.add(row);
                 }
@@ -165,12 +183,17 @@ public class ODQuery {
                 		ODPrinter.printTable(tablename, header, rows);
                 	}
                 }
-            } catch (TimeoutException te) {
-                ODLogger.log("[WARN] Query sql(" + sql + ") timeout!");
-                ret = ODError.ERROR;
             } catch (Exception e) {
                 ret = ODError.ERROR;
-                ODLogger.log(ODUtil.parseException(e));
+                if(isTimeout(e, start, timeout)) {
+                    ODLogger.log("[WARN] Query sql(" + sql + ") timeout!");
+                } else {
+                    ODLogger.log(ODUtil.parseException(e));
+                }
+            } finally {
+                if(watchdog != null && !watchdog.cancel(false)) { // 看门狗已经或正在关闭连接
+                    broken = true;
+                }
             }
         } else {
             ret = ODError.ERROR;
@@ -178,6 +201,236 @@ public class ODQuery {
         return new Pair<ODError, List<List<String>>>(ret, rows);
     }
     
+    /**
+     * 在多个MS上并行执行同一查询, 合并结果
+     * <p>所有MS上都相同的行只保留一行, 来源为all; 其余的行按来源分别列出并标记'*'.
+     * 超时的MS不参与比较, 其连接由看门狗关闭</p>
+     * @param cluster 集群上下文, 在其动作线程池上执行
+     * @param msIps MS所在主机IP
+     * @param sql SQL
+     * @param timeout 总的超时时间，单位：秒
+     * @return 合并后的表头和行, 所有MS都失败时为null; 任一MS失败时返回ERROR
+     */
+    public static Pair<ODError, Pair<List<String>, List<List<String>>>> executeFanOutQuery(final ODCluster cluster,
+            List<String> msIps, final String sql, final int timeout) {
+        ODError ret = ODError.SUCCESS;
+        long deadline = System.currentTimeMillis() + timeout * 1000L;
+        List<Future<Pair<List<String>, List<List<String>>>>> futureList = new ArrayList<>();
+        for(final String ip: msIps) {
+            futureList.add(cluster.executeAction(new Callable<Pair<List<String>, List<List<String>>>>() {
+                @Override
+                public Pair<List<String>, List<List<String>>> call() throws Exception {
+                    ODQuery query = new ODQuery(cluster, ip);
+                    try {
+                        Pair<ODError, List<List<String>>> result = query.executeQuery(sql, timeout, false);
+                        if(result.first.isError()) {
+                            return null;
+                        }
+                        return new Pair<List<String>, List<List<String>>>(query.lastHeader, result.second);
+                    } finally {
+                        query.close();
+                    }
+                }
+            }));
+        }
+        List<String> header = null;
+        List<String> sources = new ArrayList<>();
+        List<List<List<String>>> results = new ArrayList<>();
+        for(int i = 0; i < msIps.size(); i++) {
+            Pair<List<String>, List<List<String>>> result = null;
+            String ip = msIps.get(i);
+            try {
+                result = futureList.get(i).get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                futureList.get(i).cancel(true);
+                ODLogger.log("[WARN] [" + ip + "]: query sql(" + sql + ") timeout!");
+            } catch (InterruptedException | ExecutionException e) {
+                ODLogger.log("[ERROR] [" + ip + "]: " + ODUtil.parseException(e));
+            }
+            if(result == null) {
+                ret = ODError.ERROR;
+            } else if(header != null && !header.equals(result.first)) {
+                ODLogger.log("[ERROR] [" + ip + "]: columns " + result.first + " differ from " + header + "!");
+                ret = ODError.ERROR;
+            } else {
+                header = result.first;
+                sources.add(ip);
+                results.add(result.second);
+            }
+        }
+        if(header == null) {
+            return new Pair<ODError, Pair<List<String>, List<List<String>>>>(ODError.ERROR, null);
+        }
+        return new Pair<ODError, Pair<List<String>, List<List<String>>>>(ret, mergeRows(header, sources, results));
+    }
+
+    /**
+     * 批量执行非查询语句
+     * <p>只有一条语句时直接执行, 不检查影响行数; 否则合并为一个JDBC批量</p>
+     * @param sqls 语句列表
+     * @param timeout 超时时间，单位：秒, 整个批量共用
+     * @return 失败的语句在列表中的序号
+     */
+    public Pair<ODError, List<Integer>> executeBatch(List<String> sqls, int timeout) {
+        List<Integer> failed = new ArrayList<>();
+        if(stmt == null) {
+            for(int i = 0; i < sqls.size(); i++) {
+                failed.add(i);
+            }
+            return new Pair<ODError, List<Integer>>(ODError.ERROR, failed);
+        }
+        long start = System.currentTimeMillis();
+        ScheduledFuture<?> watchdog = null;
+        try {
+            stmt.setQueryTimeout(timeout);
+            watchdog = ODConnectionPool.watch(conn, timeout);
+            if(sqls.size() == 1) {
+                stmt.execute(sqls.get(0));
+            } else {
+                for(String sql: sqls) {
+                    stmt.addBatch(sql);
+                }
+                stmt.executeBatch();
+            }
+        } catch (BatchUpdateException be) {
+            // 驱动可能在第一个失败处停止, 之后的语句都视为失败
+            int[] counts = be.getUpdateCounts();
+            for(int i = 0; i < sqls.size(); i++) {
+                if(counts == null || i >= counts.length || counts[i] == Statement.EXECUTE_FAILED) {
+                    failed.add(i);
+                }
+            }
+            ODLogger.log(ODUtil.parseException(be));
+        } catch (Exception e) {
+            for(int i = 0; i < sqls.size(); i++) {
+                failed.add(i);
+            }
+            if(isTimeout(e, start, timeout)) {
+                ODLogger.log("[WARN] Execute sql(" + sqls.get(0) + (sqls.size() > 1 ? " ..." : "") + ") timeout!");
+            } else {
+                ODLogger.log(ODUtil.parseException(e));
+            }
+        } finally {
+            if(watchdog != null && !watchdog.cancel(false)) { // 看门狗已经或正在关闭连接
+                broken = true;
+            }
+            try {
+                stmt.clearBatch();
+            } catch (Exception e) {
+                broken = true;
+            }
+        }
+        return new Pair<ODError, List<Integer>>(failed.isEmpty() ? ODError.SUCCESS : ODError.ERROR, failed);
+    }
+
+    /**
+     * 流式查询, 行到达即输出, 不保存结果集
+     * <p>使用单独的只读、只进Statement, 驱动逐行读取</p>
+     * @param sql SQL
+     * @param timeout 超时时间，单位：秒, 包含读取全部结果的时间
+     * @param writer 见{@code ODResultWriter.create()}
+     * @return 是否执行成功
+     */
+    public ODError executeStreamQuery(final String sql, int timeout, ODResultWriter writer) {
+        ODError ret = ODError.SUCCESS;
+        if(stmt != null) {
+            long start = System.currentTimeMillis();
+            ScheduledFuture<?> watchdog = null;
+            Statement streamStmt = null;
+            try {
+                streamStmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                streamStmt.setFetchSize(STREAM_FETCH_SIZE);
+                streamStmt.setQueryTimeout(timeout);
+                watchdog = ODConnectionPool.watch(conn, timeout);
+                ResultSet rs = streamStmt.executeQuery(sql); // 执行SQL
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                List<String> header = new ArrayList<>(columnCount);
+                for(int i = 1; i <= columnCount; i++) {
+                    header.add(metaData.getColumnLabel(i));
+                }
+                writer.start(header);
+                while (rs.next()) {
+                    List<String> row = new ArrayList<>(columnCount);
+                    for(int i = 1; i <= columnCount; i++) {
+                        row.add(rs.getString(i)); // NULL由writer处理
+                    }
+                    writer.write(row);
+                }
+                rs.close();
+            } catch (Exception e) {
+                ret = ODError.ERROR;
+                if(isTimeout(e, start, timeout)) {
+                    ODLogger.log("[WARN] Query sql(" + sql + ") timeout!");
+                } else {
+                    ODLogger.log(ODUtil.parseException(e));
+                }
+            } finally {
+                writer.finish(); // 已输出的行保持完整
+                if(watchdog != null && !watchdog.cancel(false)) { // 看门狗已经或正在关闭连接
+                    broken = true;
+                }
+                if(streamStmt != null) {
+                    try {
+                        streamStmt.close();
+                    } catch (Exception e) {
+                        broken = true;
+                    }
+                }
+            }
+        } else {
+            ret = ODError.ERROR;
+        }
+        return ret;
+    }
+
+    /**
+     * 合并多个来源的行
+     * 相同的行按首次出现的顺序排列, 每行前加Diff和Source两列
+     */
+    private static Pair<List<String>, List<List<String>>> mergeRows(List<String> header, List<String> sources,
+            List<List<List<String>>> results) {
+        // 行 -> 返回该行的来源, 按首次出现的顺序; 同一来源中重复的行分别计数
+        Map<List<String>, List<String>> rowSources = new LinkedHashMap<>();
+        for(int i = 0; i < sources.size(); i++) {
+            Map<List<String>, Integer> occurrences = new HashMap<>();
+            for(List<String> row: results.get(i)) {
+                Integer n = occurrences.get(row);
+                n = n == null ? 1 : n + 1;
+                occurrences.put(row, n);
+                List<String> key = row;
+                if(n > 1) { // 重复的行作为不同的键
+                    key = new ArrayList<>(row);
+                    key.add(String.valueOf(n));
+                }
+                List<String> list = rowSources.get(key);
+                if(list == null) {
+                    list = new ArrayList<>();
+                    rowSources.put(key, list);
+                }
+                list.add(sources.get(i));
+            }
+        }
+        List<List<String>> rows = new ArrayList<>();
+        for(Map.Entry<List<String>, List<String>> entry: rowSources.entrySet()) {
+            List<String> row = new ArrayList<>();
+            boolean same = entry.getValue().size() == sources.size();
+            row.add(same ? "" : "*");
+            StringBuilder source = new StringBuilder();
+            for(String ip: entry.getValue()) {
+                source.append(source.length() > 0 ? "," : "").append(ip);
+            }
+            row.add(same ? "all" : source.toString());
+            row.addAll(entry.getKey().subList(0, header.size()));
+            rows.add(row);
+        }
+        List<String> mergedHeader = new ArrayList<>();
+        mergedHeader.add("Diff");
+        mergedHeader.add("Source");
+        mergedHeader.addAll(header);
+        return new Pair<List<String>, List<List<String>>>(mergedHeader, rows);
+    }
+
     private Pair<List<String>, List<List<String>>> tranformAllServerTable(List<String> header, 
     		List<List<String>> rows) {
     	//| cluster_id | svr_type     | svr_ip        | svr_port | inner_port | svr_role |
@@ -216,19 +469,42 @@ public class ODQuery {
 		return new Pair<List<String>, List<List<String>>>(header, newRows);
     }
 
-    /** 断开连接 */
+    /**
+     * 判断SQL异常是否由超时引起, 并记录连接是否已不可用
+     * <p>驱动的超时异常类型因版本而异, 以执行时间判断</p>
+     */
+    private boolean isTimeout(Exception e, long start, int timeout) {
+        if(e instanceof SQLException) {
+            String state = ((SQLException) e).getSQLState();
+            if(state != null && state.startsWith("08")) { // 连接异常
+                broken = true;
+            }
+        }
+        try {
+            if(conn.isClosed()) { // 被看门狗关闭
+                broken = true;
+            }
+        } catch (SQLException se) {
+            broken = true;
+        }
+        return System.currentTimeMillis() - start >= timeout * 1000L;
+    }
+
+    /** 归还连接 */
     public void close() {
         try {
             if(null != stmt) {
                 stmt.close();
             }
-            if(null != conn) {
-                conn.close();
-            }
-            executor.shutdownNow();
         } catch (Exception e) {
-            e.printStackTrace();
+            broken = true;
+            if(ODDeployer.DEBUG) {
+                e.printStackTrace();
+            }
         }
+        ODConnectionPool.release(key, conn, broken);
+        stmt = null;
+        conn = null;
     }
 
 }
@@ -4,7 +4,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -12,7 +18,11 @@ import ch.ethz.ssh2.Connection;
 import ch.ethz.ssh2.Session;
 
 import com.oceanbase.odeployer.ODDeployer;
+import com.oceanbase.odeployer.util.ODCounter;
+import com.oceanbase.odeployer.util.ODEventLog;
+import com.oceanbase.odeployer.util.ODHistogram;
 import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODMetricRegistry;
 import com.oceanbase.odeployer.util.ODUtil;
 import com.oceanbase.odeployer.util.Pair;
 
@@ -28,16 +38,54 @@ public class ODRemoteConnector {
     private boolean isAuthenticated;
     
     private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /** 主机IP */
+    private String ip;
+
+    /** 正在执行命令的会话, 用于中止 */
+    private Set<Session> openSessions = Collections.synchronizedSet(new HashSet<Session>());
     
+    // 运行指标, 按主机区分
+    private final ODCounter commandCounter;
+    private final ODCounter failureCounter;
+    private final ODCounter bytesSentCounter;
+    private final ODCounter bytesReceivedCounter;
+    private final ODHistogram commandHistogram;
+
+    /** 逐行处理远程命令的输出 */
+    public interface ODLineHandler {
+        void onLine(String line);
+    }
+
     /** 忽略返回的错误信息前缀 */
     private static String[] IGNORED_PREFIX = {"kill: usage", "cat:"};
+
+    /** 二进制输出的读取缓冲区大小 */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
     
     public ODRemoteConnector(String ip, String username, String password) {
+        this.ip = ip;
+        String host = ODMetricRegistry.label("host", ip);
+        commandCounter = ODMetricRegistry.counter("od_remote_commands_total", "Remote commands executed", host);
+        failureCounter = ODMetricRegistry.counter("od_remote_command_failures_total", "Remote commands failed", host);
+        bytesSentCounter = ODMetricRegistry.counter("od_remote_bytes_sent_total", "Bytes of remote commands sent", host);
+        bytesReceivedCounter = ODMetricRegistry.counter("od_remote_bytes_received_total", "Bytes of remote output received", host);
+        commandHistogram = ODMetricRegistry.histogram("od_remote_command_seconds", "Latency of remote commands", host);
         try {
             conn = new Connection(ip);
             if(ODDeployer.CONNECT) {
-                conn.connect();
-                isAuthenticated = conn.authenticateWithPassword(username, password);
+                long start = System.nanoTime();
+                try {
+                    conn.connect();
+                    isAuthenticated = conn.authenticateWithPassword(username, password);
+                } finally {
+                    ODMetricRegistry.histogram("od_ssh_connect_seconds", "Time to connect and authenticate", host)
+                            .observeSince(start);
+                    if(!isAuthenticated) {
+                        ODMetricRegistry.counter("od_ssh_connect_failures_total", "Failed ssh connections", host)
+                                .increment();
+                    }
+                }
             } else {
                 isAuthenticated = true;
             }
@@ -101,6 +149,151 @@ public class ODRemoteConnector {
         return execute(cmd, true, needCount, true);
     }
     
+    /**
+     * 以流的方式执行长时间运行的命令, 如tail -F
+     * 每读取到一行标准输出即回调, 直到命令结束或被abort()中止
+     * @param cmd shell命令
+     * @param handler 在当前线程中回调
+     * @return 被中止时也返回SUCCESS
+     */
+    public ODError executeStream(String cmd, ODLineHandler handler) {
+        if(ODDeployer.PRINT_SHELL) {
+            ODUtil.printShell(cmd);
+        }
+        if(!ODDeployer.CONNECT) {
+            return ODError.SUCCESS;
+        }
+        if(!isAuthenticated) {
+            return ODError.ERROR;
+        }
+        ODError ret = ODError.SUCCESS;
+        Session session = null;
+        long id = ODEventLog.nextCommandId();
+        long start = System.nanoTime();
+        boolean isAborted = false;
+        String error = null;
+        commandCounter.increment();
+        bytesSentCounter.add(cmd.length());
+        try {
+            session = conn.openSession();
+            openSessions.add(session);
+            session.execCommand(cmd);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(session.getStdout(), Charset.defaultCharset().toString()));
+            String line;
+            while(null != (line = reader.readLine())) {
+                bytesReceivedCounter.add(line.length() + 1);
+                handler.onLine(line);
+            }
+        } catch (Exception e) {
+            if(session != null && openSessions.contains(session)) { // 不是被abort()中止
+                ret = ODError.ERROR;
+                error = e.getMessage();
+                failureCounter.increment();
+                ODLogger.log("[ERROR] [" + ip + "]: " + e.getMessage());
+            }
+        } finally {
+            if(session != null) {
+                if(openSessions.remove(session)) {
+                    session.close();
+                } else { // 会话已被abort()关闭
+                    isAborted = true;
+                }
+            }
+            commandHistogram.observeSince(start);
+            ODEventLog.command(id, ip, start, isAborted ? ODEventLog.RESULT_ABORTED
+                    : ret.isSuccess() ? ODEventLog.RESULT_SUCCESS : ODEventLog.RESULT_ERROR, error);
+        }
+        return ret;
+    }
+
+    /**
+     * 执行远程命令, 将标准输出原样写入out, 适用于压缩数据等二进制输出
+     * <p>输出读完后再读取错误信息, 有错误信息时返回ERROR</p>
+     * @param cmd shell命令
+     * @param out 输出, 由调用者关闭
+     * @return 执行结果, 被中止时输出不完整, 返回ERROR
+     */
+    public ODError executeToStream(String cmd, OutputStream out) {
+        if(ODDeployer.PRINT_SHELL) {
+            ODUtil.printShell(cmd);
+        }
+        if(!ODDeployer.CONNECT) {
+            return ODError.SUCCESS;
+        }
+        if(!isAuthenticated) {
+            return ODError.ERROR;
+        }
+        ODError ret = ODError.SUCCESS;
+        Session session = null;
+        long id = ODEventLog.nextCommandId();
+        long start = System.nanoTime();
+        boolean isAborted = false;
+        String error = null;
+        commandCounter.increment();
+        bytesSentCounter.add(cmd.length());
+        try {
+            session = conn.openSession();
+            openSessions.add(session);
+            session.execCommand(cmd);
+            InputStream stdout = session.getStdout();
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int n;
+            while((n = stdout.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                bytesReceivedCounter.add(n);
+            }
+            String err = readInputStream(session.getStderr(), false);
+            if(err.length() > 0) {
+                ret = ODError.ERROR;
+                error = err;
+                failureCounter.increment();
+                ODLogger.log("[ERROR] [" + ip + "]: " + err);
+            }
+        } catch (Exception e) {
+            if(session != null && openSessions.contains(session)) { // 不是被abort()中止
+                ret = ODError.ERROR;
+                error = e.getMessage();
+                failureCounter.increment();
+                ODLogger.log("[ERROR] [" + ip + "]: " + e.getMessage());
+            }
+        } finally {
+            if(session != null) {
+                if(openSessions.remove(session)) {
+                    session.close();
+                } else { // 会话已被abort()关闭
+                    isAborted = true;
+                    ret = ODError.ERROR;
+                }
+            }
+            commandHistogram.observeSince(start);
+            ODEventLog.command(id, ip, start, isAborted ? ODEventLog.RESULT_ABORTED
+                    : ret.isSuccess() ? ODEventLog.RESULT_SUCCESS : ODEventLog.RESULT_ERROR, error);
+        }
+        return ret;
+    }
+
+    /**
+     * 中止所有正在执行的远程命令
+     * 关闭会话后, 阻塞在读取结果上的线程会抛出异常并返回ERROR
+     */
+    public void abort() {
+        List<Session> sessions;
+        synchronized (openSessions) {
+            sessions = new ArrayList<>(openSessions);
+            openSessions.clear();
+        }
+        for(Session session: sessions) {
+            try {
+                session.close();
+            } catch (Exception e) {
+                if(ODDeployer.DEBUG) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
     public void close() {
         try {
             if(conn != null) {
@@ -134,9 +327,17 @@ public class ODRemoteConnector {
         ODError ret = ODError.SUCCESS;
         String result = null;
         ODCountRunnable countRunnable = null;
+        Session session = null;
+        long id = ODEventLog.nextCommandId();
+        long start = System.nanoTime();
+        boolean isAborted = false;
+        String error = null;
+        commandCounter.increment();
+        bytesSentCounter.add(cmd.length());
         try {
             if(isAuthenticated) {
-                Session session = conn.openSession();
+                session = conn.openSession();
+                openSessions.add(session);
                 if(needCount) { //显示计时器
                     countRunnable = new ODCountRunnable();
                     executor.submit(countRunnable);
@@ -163,17 +364,44 @@ public class ODRemoteConnector {
                     }
                 }
                 
-                session.close();
+                if(openSessions.remove(session)) {
+                    session.close();
+                } else { // 会话已被abort()关闭, 读取到的结果不完整
+                    ODLogger.log("[" + ip + "]: remote command is aborted!");
+                    ret = ODError.ERROR;
+                    isAborted = true;
+                }
             } else {
                 ret = ODError.ERROR;
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            if(session != null && !openSessions.remove(session)) { // 会话已被abort()关闭
+                ODLogger.log("[" + ip + "]: remote command is aborted!");
+                isAborted = true;
+                if(ODDeployer.DEBUG) {
+                    e.printStackTrace();
+                }
+            } else {
+                e.printStackTrace();
+                if(session != null) {
+                    session.close();
+                }
+            }
             ret = ODError.ERROR;
+            error = e.toString();
         } finally {
             if(countRunnable != null) {
                 countRunnable.stop();
             }
+            commandHistogram.observeSince(start);
+            if(ret.isError()) {
+                failureCounter.increment();
+                if(error == null) {
+                    error = isAuthenticated ? result : "not authenticated";
+                }
+            }
+            ODEventLog.command(id, ip, start, isAborted ? ODEventLog.RESULT_ABORTED
+                    : ret.isSuccess() ? ODEventLog.RESULT_SUCCESS : ODEventLog.RESULT_ERROR, error);
         }
         return new Pair<>(ret, result);
     }
@@ -185,6 +413,7 @@ public class ODRemoteConnector {
         String line;
         int index = 1;
         while(null != (line = bReader.readLine())) {
+            bytesReceivedCounter.add(line.length() + 1);
             boolean isIgnored = false;
             for(String prefix: IGNORED_PREFIX) {
                 if(line.startsWith(prefix)) {
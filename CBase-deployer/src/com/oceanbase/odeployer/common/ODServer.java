@@ -1,8 +1,17 @@
 package com.oceanbase.odeployer.common;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.start.ODStartParameter;
 import com.oceanbase.odeployer.util.ODLogger;
 import com.oceanbase.odeployer.util.ODPrinter;
@@ -34,9 +43,9 @@ public class ODServer {
     public String password;
 
     protected String network;
-    
-    /** 获取主机列表*/
-    public static List<String> allServerList = new ArrayList<>();
+
+    /** 所属的集群上下文 */
+    protected ODCluster cluster;
 
     /** 是否已清除系统日志./data/ */
     private boolean hasWipeData = false;
@@ -56,6 +65,14 @@ public class ODServer {
         this.network = network;
     }
     
+    /**
+     * 绑定集群上下文
+     * @param cluster 由解析器在创建主机节点时调用
+     */
+    public void setCluster(ODCluster cluster) {
+        this.cluster = cluster;
+    }
+
     @Override
     public String toString() {
         return "[" + ip + "," + username + "," + password + "," + network + "]";
@@ -66,11 +83,10 @@ public class ODServer {
      * @param printLog 是否打印连接提示信息
      * @return 是否连接成功
      */
-    public boolean connect(boolean printLog) {
+    public synchronized boolean connect(boolean printLog) {
         if(conn == null) {
             if(printLog) {
                 System.out.println("> Connect to -----> " + ip + " >");
-                allServerList.add(ip);
             }
             conn = new ODRemoteConnector(ip, username, password);
             return conn.isConnectSuccess();
@@ -87,8 +103,9 @@ public class ODServer {
      * @param isWipeLog 启动OB时清除系统日志./log
      * @param isWipeEtc 启动OB时清除系统配置文件./etc/*.config.bin
      * @param parameters 启动附加参数
+     * @return 连接失败或启动命令输出了错误信息时返回ERROR
      */
-    public void start(double serverWait,List<ODServerName> servernames, String masterRsIP,String masterUpsIP, ODStartParameter parameters,
+    public ODError start(double serverWait,List<ODServerName> servernames, String masterRsIP,String masterUpsIP, ODStartParameter parameters,
                 boolean isWipeData, boolean isWipeLog, boolean isWipeEtc) {
     	ODUtil.sleep(serverWait * 1000);
         if(servernames != null) {
@@ -97,19 +114,19 @@ public class ODServer {
         	boolean wEtc = false;
         	boolean wData = false;
             StringBuilder sb = new StringBuilder();
-            sb.append(ODShell.getCdOceanbaseDir()).append(";");
+            sb.append(getShell().getCdOceanbaseDir()).append(";");
             if(isWipeLog && !hasWipeLog) { // 是否已清除系统日志log/
-                sb.append(ODShell.getClearSystemLogCmd()).append(";");
+                sb.append(getShell().getClearSystemLogCmd()).append(";");
                 hasWipeLog = true;
                 wLog = true;
             }
             if(isWipeEtc && !hasWipeEtc) { // 是否已清除系统配置文件
-                sb.append(ODShell.getClearConfigureCmd()).append(";");
+                sb.append(getShell().getClearConfigureCmd()).append(";");
                 hasWipeEtc = true;
                 wEtc = true;
             }
             if(isWipeData && !hasWipeData) { // 是否已清除data/数据
-                sb.append(ODShell.getResetDataCmd());
+                sb.append(getShell().getResetDataCmd());
                 hasWipeData = true;
                 wData = true;
             }
@@ -136,19 +153,19 @@ public class ODServer {
             	logBuilder.append(server.toShortName() + " ");
                 switch (server) {
                 case RS:
-                	sb.append("./bin/").append(ODShell.getStartRSCmd(ip, masterRsIP, network, parameters.getRsParameter())).append(";");
+                	sb.append("./bin/").append(getShell().getStartRSCmd(ip, masterRsIP, network, parameters.getRsParameter())).append(";");
                     break;
                 case UPS:
-                    sb.append("./bin/").append(ODShell.getStartUPSCmd(rsIp, network, parameters.getUpsParameter())).append(";");
+                    sb.append("./bin/").append(getShell().getStartUPSCmd(rsIp, network, parameters.getUpsParameter())).append(";");
                     break;
                 case MS:
-                    sb.append("./bin/").append(ODShell.getStartMSCmd(rsIp, network, parameters.getMsParameter())).append(";");
+                    sb.append("./bin/").append(getShell().getStartMSCmd(rsIp, network, parameters.getMsParameter())).append(";");
                     break;
                 case LMS:
-                    sb.append("./bin/").append(ODShell.getStartLMSCmd(rsIp, network, parameters.getMsParameter())).append(";");
+                    sb.append("./bin/").append(getShell().getStartLMSCmd(rsIp, network, parameters.getMsParameter())).append(";");
                     break;
                 case CS:
-                    sb.append("./bin/").append(ODShell.getStartCSCmd(rsIp, network, parameters.getCsParameter())).append(";");
+                    sb.append("./bin/").append(getShell().getStartCSCmd(rsIp, network, parameters.getCsParameter())).append(";");
                     break;
                 default:
                     ODLogger.error((new Throwable()).getStackTrace());
@@ -156,8 +173,13 @@ public class ODServer {
                 }
             }
             ODLogger.log("[" + ip + "]: " + logBuilder.toString());
-            exec(sb.toString());
+            Pair<ODError, String> ret = exec(sb.toString());
+            getStatusCache().invalidate(ip, servernames);
+            if(ret.first.isError() && (ret.second == null || !isIgnoredError(ret.second))) {
+                return ODError.ERROR;
+            }
         }
+        return ODError.SUCCESS;
     }
 
     /**
@@ -165,28 +187,34 @@ public class ODServer {
      * @param force 是否强制停止
      */
     public void stop(boolean force) {
-//    	ODLogger.log("pid   +   ret   "+ODShell.getAllPidCmd()+"|"+ODShell.getKillAllCmd(force));
-        Pair<ODError, String> pidRet = execValue(ODShell.getAllPidCmd());
-        Pair<ODError, String> ret = exec(ODShell.getKillAllCmd(force));
+        // 使用状态快照中的进程号, 不再重复读取pid文件
+        ODHostStatus status = getStatus();
+        StringBuilder sb = new StringBuilder();
+        for(ODServerName servername: SERVER_NAMES) {
+            ODServerStatus serverStatus = status.getStatus(servername);
+            if(serverStatus.isAlive()) {
+                sb.append(getShell().getKillPidCmd(serverStatus.getPid(), force)).append(";");
+            }
+        }
+        String result = null;
+        if(sb.length() > 0) {
+            result = exec(sb.toString()).second;
+        }
+        getStatusCache().invalidate(ip);
 
         //检查是否kill成功
-        String pidResult = pidRet.second;
-        String result = ret.second;
-        int count = 4;
+        int count = SERVER_NAMES.length;
         String fails = "";
-        if(pidRet.first.isSuccess() && pidResult != null) {
-            String[] servernames = {"rs", "ups", "ms", "cs"};
-            String[] pids = pidResult.split(ODUtil.SEPARATOR);
-            for(int i = 0; i < pids.length; i++) {
-                String pid = pids[i];
-                if(result != null && result.contains("(" + pid + ")")) { // kill success
-                    count--;
-                    fails += servernames[i] + " ";
-                }
+        for(ODServerName servername: SERVER_NAMES) {
+            ODServerStatus serverStatus = status.getStatus(servername);
+            if(!serverStatus.isAlive() // 进程不存在
+                    || (result != null && result.contains("(" + serverStatus.getPid() + ")"))) { // kill失败
+                count--;
+                fails += servername.toShortName() + " ";
             }
         }
         String log = "[" + ip + "]: Stop all server, force=" + force + ", Success: " + count;
-        if(count < 4) {
+        if(count < SERVER_NAMES.length) {
             log += ", (Fail:" + fails.substring(0, fails.length() - 1) + ")";
         }
         ODLogger.log(log);
@@ -199,7 +227,8 @@ public class ODServer {
      */
     public void stop(ODServerName servername, boolean force) {
         ODLogger.log("[" + ip + "]: " + servername);
-        exec(ODShell.getKillServerCmd(servername, force));
+        exec(getShell().getKillServerCmd(servername, force));
+        getStatusCache().invalidate(ip, servername);
     }
 
     /**
@@ -211,9 +240,10 @@ public class ODServer {
         StringBuilder sb = new StringBuilder();
         for(ODServerName serverType: servernames) {
             ODLogger.log("[" + ip + "]: " + serverType);
-            sb.append(" && ").append(ODShell.getKillServerCmd(serverType, force));
+            sb.append(" && ").append(getShell().getKillServerCmd(serverType, force));
         }
         exec(sb.toString().substring(4));
+        getStatusCache().invalidate(ip, servernames);
     }
 
     /**
@@ -221,10 +251,7 @@ public class ODServer {
      * @return boolean
      */
     public boolean isMSAlive() {
-        Pair<ODError, String> ret = exec(ODShell.getCheckServerAliveCmd(ODServerName.MS));
-        String result = ret.second;
-        //noinspection ConstantConditions
-        return (result != null && result.contains(ODServerName.MS.toString()));
+        return getStatus().isAlive(ODServerName.MS);
     }
 
     /**
@@ -235,7 +262,7 @@ public class ODServer {
     public ODError bootstrap(int bootstrapTimeout) {
         ODError ret = ODError.SUCCESS;
         ODPrinter.printMessageLine("Bootstrap");
-        String shell = ODShell.getCdOceanbaseDir() + ";./bin/" + ODShell.getBootstrapCmd(ip, bootstrapTimeout);
+        String shell = getShell().getCdOceanbaseDir() + ";./bin/" + getShell().getBootstrapCmd(ip, bootstrapTimeout);
         Pair<ODError, String> retBoot = execWaiting(shell);
         ODUtil.sleep(1000);
         String result = retBoot.second;
@@ -252,16 +279,7 @@ public class ODServer {
      * @return boolean
      */
     public boolean isAnyServerAlive() {
-        Pair<ODError, String> ret = checkServerAlive();
-        if(ret.first.isSuccess()) {
-            for(ODServerName serverName: SERVER_NAMES) {
-                //noinspection ConstantConditions
-                if(ret.second.contains(serverName.toString())) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return getStatus().isAnyAlive();
     }
     
     /**
@@ -270,13 +288,161 @@ public class ODServer {
      * @return boolean
      */
     public boolean isServerAlive(ODServerName servername) {
-        Pair<ODError, String> ret = exec(ODShell.getCheckServerAliveCmd(servername));
-        if(ret.first.isSuccess()) {
-            if(ret.second.contains(servername.toString())) {
-                return true;
+        return getStatus().isAlive(servername);
+    }
+
+    /**
+     * 获取本主机所有Server进程的状态快照
+     * 只执行一次远程命令, 返回各Server的进程号, 运行时间, 内存, CPU和监听端口
+     * 在缓存有效期内直接返回缓存的快照
+     * @return 不会为null, 远程命令执行失败时快照为不可达
+     */
+    public ODHostStatus getStatus() {
+        ODHostStatus status = getStatusCache().get(ip);
+        if(status == null) {
+            status = ODHostStatus.parse(ip, execValue(getShell().getStatusCmd()));
+            getStatusCache().put(status);
+        }
+        return status;
+    }
+
+    /**
+     * 读取本主机所有Server进程的资源计数
+     * 只执行一次远程命令, 读取各进程的/proc/&lt;pid&gt;
+     * @return 不会为null
+     */
+    public ODProcSample getProcSample() {
+        return ODProcSample.parse(ip, execValue(getShell().getProcMetricsCmd()));
+    }
+
+    /**
+     * 持续读取Server的日志并写入归并器, 直到被abort()中止
+     * @param servernames Server类型, 每个Server的日志为一路
+     * @param lines 先输出的已有行数
+     * @param merger 日志归并器
+     * @return 连接失败时返回ERROR
+     */
+    public ODError tailLogs(final List<ODServerName> servernames, int lines, final ODLogMerger merger) {
+        for(ODServerName servername: servernames) {
+            merger.addSource(ip + " " + servername.toShortName());
+        }
+        if(!connect(false)) {
+            return ODError.ERROR;
+        }
+        return conn.executeStream(getShell().getTailLogCmd(servernames, lines), new ODRemoteConnector.ODLineHandler() {
+
+            /** 只有一个文件时tail不输出文件名 */
+            private String source = ip + " " + servernames.get(0).toShortName();
+
+            @Override
+            public void onLine(String line) {
+                if(line.startsWith("==> ") && line.endsWith(" <==")) { // 切换文件
+                    for(ODServerName servername: servernames) {
+                        if(line.contains("/" + servername + ".log")) {
+                            source = ip + " " + servername.toShortName();
+                        }
+                    }
+                } else if(line.length() > 0) {
+                    merger.offer(source, line);
+                }
             }
+        });
+    }
+
+    /**
+     * 采集启动前检查项, 只执行一次远程命令
+     * 连接在计时前建立, 时钟偏差的误差只包含执行命令的往返时间
+     * @param sysctlNames 内核参数名称
+     * @return 不会为null
+     */
+    public ODPreflightResult preflight(List<String> sysctlNames) {
+        if(!connect(false)) {
+            return new ODPreflightResult(ip, false);
         }
-        return false;
+        long start = System.currentTimeMillis();
+        Pair<ODError, String> ret = execValue(getShell().getPreflightCmd(sysctlNames));
+        return ODPreflightResult.parse(ip, ret, start, System.currentTimeMillis());
+    }
+
+    /**
+     * 检查待启动的Server的端口是否已被占用, 只执行一次远程命令
+     * @param servernames Server的类型
+     * @return second为被占用的端口, 远程命令执行失败时first为ERROR
+     */
+    public Pair<ODError, List<ODPortConflict>> checkPorts(List<ODServerName> servernames) {
+        Map<Integer, ODServerName> ports = new HashMap<>();
+        for(ODServerName servername: servernames) {
+            for(String port: getShell().getServerPorts(servername)) {
+                try {
+                    ports.put(Integer.parseInt(port.trim()), servername);
+                } catch (NumberFormatException e) {
+                    ODLogger.log("[ERROR] [" + ip + "]: port '" + port + "' of " + servername + " is not a number!");
+                    return new Pair<ODError, List<ODPortConflict>>(ODError.ERROR, new ArrayList<ODPortConflict>());
+                }
+            }
+        }
+        List<String> portList = new ArrayList<>();
+        for(Integer port: ports.keySet()) {
+            portList.add(String.valueOf(port));
+        }
+        Pair<ODError, String> ret = new Pair<>(ODError.SUCCESS, null);
+        if(!portList.isEmpty()) {
+            ret = connect(false) ? execValue(getShell().getListenPortsCmd(portList)) : new Pair<ODError, String>(ODError.ERROR, null);
+        }
+        return new Pair<>(ret.first, ODPortConflict.parse(ip, ret.second, ports));
+    }
+
+    /**
+     * 拉取过滤后的日志, 在远程主机上过滤并压缩, 保存为dir/ip/rootserver.log.gz
+     * <p>各Server依次拉取, 没有日志文件的Server不生成文件</p>
+     * @param servernames Server的类型
+     * @param filter 过滤条件
+     * @param dir 本地目录
+     * @return second为结果表格的行: IP, Server, 文件, 大小(KB)
+     */
+    public Pair<ODError, List<List<String>>> fetchLogs(List<ODServerName> servernames, ODLogFilter filter, File dir) {
+        ODError ret = ODError.SUCCESS;
+        List<List<String>> rows = new ArrayList<>();
+        if(!connect(false)) {
+            return new Pair<>(ODError.ERROR, rows);
+        }
+        File hostDir = new File(dir, ip);
+        if(!hostDir.isDirectory() && !hostDir.mkdirs()) {
+            ODLogger.log("[ERROR] mkdir [" + hostDir + "] fail!");
+            return new Pair<>(ODError.ERROR, rows);
+        }
+        for(ODServerName servername: servernames) {
+            File file = new File(hostDir, servername + ".log.gz");
+            ODError error;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                error = conn.executeToStream(getShell().getFetchLogCmd(servername, filter), out);
+            } catch (IOException e) {
+                ODLogger.log("[ERROR] write [" + file + "] fail: " + e.getMessage());
+                error = ODError.ERROR;
+            }
+            String size;
+            if(error.isError()) {
+                ret = ODError.ERROR;
+                file.delete();
+                size = "fail";
+            } else if(file.length() == 0) { // 没有日志文件
+                file.delete();
+                size = "no log";
+            } else {
+                size = ODUtil.trimFloat(file.length() / 1024f);
+            }
+            rows.add(Arrays.asList(ip, servername.toShortName(), file.getPath(), size));
+        }
+        return new Pair<>(ret, rows);
+    }
+
+    /**
+     * 忽略缓存, 重新获取状态快照
+     * @return 不会为null
+     */
+    public ODHostStatus refreshStatus() {
+        getStatusCache().invalidate(ip);
+        return getStatus();
     }
 
     /**
@@ -284,41 +450,19 @@ public class ODServer {
      * @return 是否执行成功
      */
     ODError mkdir() {
-        ODError ret = exec(ODShell.getMkOceanbaseDir()).first;
+        ODError ret = exec(getShell().getMkOceanbaseDir()).first;
         if(ret.isError()) {
-            ODLogger.log("[ERROR] mkdir [" + ODShell.getOceanbaseDir() + "] fail in [" + ip + "] to deploy cluster!");
+            ODLogger.log("[ERROR] mkdir [" + getShell().getOceanbaseDir() + "] fail in [" + ip + "] to deploy cluster!");
         }
         return ret;
     }
     
+    /**
+     * 状态表格的若干行
+     * @return 见{@code ODHostStatus.toRows()}
+     */
     public List<List<String>> checkServerStatus() {
-        List<List<String>> rows = new ArrayList<>();
-        Pair<ODError, String> ret = checkServerAlive();
-        if(ret.first.isSuccess()) {
-            String result = ret.second;
-            boolean isFirstRow = true;
-            for(ODServerName servername: ODServer.SERVER_NAMES) {
-                List<String> row = new ArrayList<>();
-                if(isFirstRow) { // 只有第一行的第一列添加IP
-                    row.add(ip);
-                    isFirstRow = false;
-                } else {
-                    row.add("");
-                }
-                row.add(servername.toString());
-                row.add(getServerStatus(servername.toString(), result));
-                rows.add(row);
-            }
-            rows.add(null); // 横线
-        }
-        return rows;
-    }
-    
-    private String getServerStatus(String servername, String result) {
-        if(result != null && result.contains(servername)) {
-            return "Yes";
-        }
-        return "No";
+        return getStatus().toRows();
     }
     
     /**
@@ -331,21 +475,23 @@ public class ODServer {
         Pair<ODError, String> ret =  conn.execute(shell);
         String result = ret.second;
         if(ret.first.isError()) {
-            if(result != null
-                    && !result.startsWith("1 :ERROR: List of process IDs must follow -p")
-                    && !result.contains("No such process") && !result.contains("Server Not Start")
-                    && !result.contains("ob_pcap.cpp:559")
-            		&& !result.contains("(1) - Operation not permitted") 
-            	//add zhangyf 161103 b:
-                    && !result.contains("不允许的操作")
-                    && !result.contains("没有此进程")){
-            	//e:add
+            if(result != null && !isIgnoredError(result)) {
                 ODLogger.log(result);
             }
         }
         return ret;
     }
 
+    /**
+     * 中止正在执行的远程命令
+     * 关闭该主机上所有打开的会话, 阻塞在远程命令上的线程会立即返回ERROR
+     */
+    public void abort() {
+        if(conn != null) {
+            conn.abort();
+        }
+    }
+
     /**
      * 关闭远程连接
      */
@@ -377,11 +523,35 @@ public class ODServer {
     }
 
     /**
-     * 检查各Server进程是否存活
-     * @return second.result
+     * 可忽略的错误输出
+     * @param result 远程命令的错误输出
+     * @return 若是可忽略的错误, 返回true
+     */
+    protected boolean isIgnoredError(String result) {
+        return result.startsWith("1 :ERROR: List of process IDs must follow -p")
+                || result.contains("No such process") || result.contains("Server Not Start")
+                || result.contains("ob_pcap.cpp:559")
+                || result.contains("(1) - Operation not permitted")
+                //add zhangyf 161103 b:
+                || result.contains("不允许的操作")
+                || result.contains("没有此进程");
+                //e:add
+    }
+
+    /**
+     * 所属集群的Shell命令生成器
+     * @return ODShell
+     */
+    protected ODShell getShell() {
+        return cluster.getShell();
+    }
+
+    /**
+     * 所属集群的进程状态缓存
+     * @return ODStatusCache
      */
-    protected Pair<ODError, String> checkServerAlive() {
-        return exec(ODShell.getCheckAllAliveCmd());
+    protected ODStatusCache getStatusCache() {
+        return cluster.getStatusCache();
     }
 
 }
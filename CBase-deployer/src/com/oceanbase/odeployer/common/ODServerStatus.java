@@ -0,0 +1,175 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * 单个Server进程的状态
+ * <p>由{@code ODShell.getStatusCmd()}输出的一行解析得到, 格式为:</p>
+ * <blockquote><pre>
+ * rs|pid|comm etime rss pcpu|port,port,
+ * </pre></blockquote>
+ * @since OD2.0
+ */
+public class ODServerStatus {
+
+    private ODServerName servername;
+
+    /** 进程号, 无pid文件时为-1 */
+    private int pid = -1;
+
+    /** 进程是否存活 */
+    private boolean alive;
+
+    /** 运行时间(秒) */
+    private long uptime;
+
+    /** 常驻内存(KB) */
+    private long rss;
+
+    /** CPU使用率(%) */
+    private float cpu;
+
+    /** 监听的TCP端口 */
+    private List<Integer> ports = new ArrayList<>();
+
+    public ODServerStatus(ODServerName servername) {
+        this.servername = servername;
+    }
+
+    /**
+     * 解析状态脚本的一行输出
+     * @param line 如: rs|1234|rootserver 01:02:03 10240 1.5|2500,
+     * @return 格式错误时返回null
+     */
+    public static ODServerStatus parse(String line) {
+        String[] fields = line.split("\\|", -1);
+        if(fields.length < 4) {
+            return null;
+        }
+        ODServerName servername = ODServerName.toServerType(fields[0].trim());
+        if(servername == ODServerName.UNKNOWN) {
+            return null;
+        }
+        ODServerStatus status = new ODServerStatus(servername);
+        try {
+            if(fields[1].trim().length() > 0) {
+                status.pid = Integer.parseInt(fields[1].trim());
+            }
+            String[] stats = fields[2].trim().split("\\s+");
+            // 进程号可能已被其它程序复用, 需检查进程名称
+            if(stats.length >= 4 && stats[0].contains(servername.toString())) {
+                status.alive = true;
+                status.uptime = parseElapsedTime(stats[1]);
+                status.rss = Long.parseLong(stats[2]);
+                status.cpu = Float.parseFloat(stats[3]);
+                for(String port: ODUtil.split(fields[3], ",")) {
+                    if(port.length() > 0) {
+                        status.ports.add(Integer.parseInt(port));
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return status;
+    }
+
+    public ODServerName getServerName() {
+        return servername;
+    }
+
+    public int getPid() {
+        return pid;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    public long getUptime() {
+        return uptime;
+    }
+
+    public long getRss() {
+        return rss;
+    }
+
+    public float getCpu() {
+        return cpu;
+    }
+
+    public List<Integer> getPorts() {
+        return ports;
+    }
+
+    /**
+     * 转换为表格的一行
+     * @return Server, Alive, PID, Uptime, RSS(MB), CPU(%), Ports
+     */
+    public List<String> toRow() {
+        List<String> row = new ArrayList<>();
+        row.add(servername.toString());
+        if(alive) {
+            row.add("Yes");
+            row.add(String.valueOf(pid));
+            row.add(formatUptime(uptime));
+            row.add(String.valueOf(rss / 1024));
+            row.add(String.valueOf(cpu));
+            String str = "";
+            for(Integer port: ports) {
+                str += port + ",";
+            }
+            row.add(ODUtil.removeLastChar(str));
+        } else {
+            row.add("No");
+            for(int i = 0; i < 5; i++) {
+                row.add("");
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return "ODServerStatus={" + servername + ",pid=" + pid + ",alive=" + alive + ",uptime=" + uptime
+                + ",rss=" + rss + ",cpu=" + cpu + ",ports=" + ports + "}";
+    }
+
+    // ----------------------------------------------------------- private
+
+    /**
+     * 解析ps的etime
+     * @param etime 格式为[[dd-]hh:]mm:ss
+     * @return 秒
+     */
+    private static long parseElapsedTime(String etime) {
+        long days = 0;
+        int index = etime.indexOf('-');
+        if(index > 0) {
+            days = Long.parseLong(etime.substring(0, index));
+            etime = etime.substring(index + 1);
+        }
+        long seconds = 0;
+        for(String part: etime.split(":")) {
+            seconds = seconds * 60 + Long.parseLong(part);
+        }
+        return days * 86400 + seconds;
+    }
+
+    /**
+     * 格式化运行时间
+     * @param uptime 秒
+     * @return 如: 1d 02:03:04
+     */
+    private static String formatUptime(long uptime) {
+        long days = uptime / 86400;
+        String str = String.format("%02d:%02d:%02d", (uptime % 86400) / 3600, (uptime % 3600) / 60, uptime % 60);
+        if(days > 0) {
+            str = days + "d " + str;
+        }
+        return str;
+    }
+}
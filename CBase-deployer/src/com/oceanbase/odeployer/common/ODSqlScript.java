@@ -0,0 +1,221 @@
+package com.oceanbase.odeployer.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.oceanbase.odeployer.util.ODLogger;
+
+/**
+ * SQL脚本
+ * <p>以';'切分语句, 忽略引号内的';'和注释(--, #, 块注释), 并按执行顺序分为若干阶段:</p>
+ * <pre>
+ * 1. 连续的INSERT/REPLACE/UPDATE/DELETE为一个并行阶段, 按目标表分组,
+ *    不同表的语句可在不同连接上并行, 同一表的语句保持原有顺序并按batch条合并为一个JDBC批量
+ * 2. 其它语句(DDL, GRANT, ALTER SYSTEM, SET, 含子查询的DML等)单独为一个阶段, 等待前面的语句全部结束后执行
+ * </pre>
+ * 会话级的SET只影响执行它的连接, 脚本中应使用SET GLOBAL或ALTER SYSTEM
+ * @since OD2.0
+ */
+public class ODSqlScript {
+
+    private static final Pattern DML_PATTERN = Pattern.compile(
+            "^(?:insert|replace)\\s+(?:(?:low_priority|delayed|high_priority|ignore)\\s+)*(?:into\\s+)?([`\\w.]+)"
+            + "|^update\\s+(?:(?:low_priority|ignore)\\s+)*([`\\w.]+)"
+            + "|^delete\\s+(?:(?:low_priority|quick|ignore)\\s+)*from\\s+([`\\w.]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    /** 含子查询或多表的DML可能依赖其它表, 不参与并行 */
+    private static final Pattern MULTI_TABLE_PATTERN = Pattern.compile("\\b(?:select|join)\\b", Pattern.CASE_INSENSITIVE);
+
+    /** 语句 */
+    public static class ODSqlStatement {
+
+        /** 在脚本中的序号, 从1开始 */
+        public final int index;
+
+        /** 起始行号 */
+        public final int line;
+
+        public final String sql;
+
+        /** DML的目标表, 其它语句为null */
+        public final String table;
+
+        private ODSqlStatement(int index, int line, String sql) {
+            this.index = index;
+            this.line = line;
+            this.sql = sql;
+            Matcher m = DML_PATTERN.matcher(sql);
+            String t = null;
+            if(m.find() && !MULTI_TABLE_PATTERN.matcher(sql).find()) {
+                for(int i = 1; i <= m.groupCount() && t == null; i++) {
+                    t = m.group(i);
+                }
+            }
+            this.table = t == null ? null : t.replace("`", "").toLowerCase();
+        }
+
+        /** 语句的第一个关键字, 用于统计 */
+        public String getKind() {
+            int end = 0;
+            while(end < sql.length() && !Character.isWhitespace(sql.charAt(end))) {
+                end++;
+            }
+            return sql.substring(0, end).toUpperCase();
+        }
+    }
+
+    /** 执行阶段 */
+    public static class ODSqlStage {
+
+        /** 需单独执行的语句, 并行阶段为null */
+        public final ODSqlStatement barrier;
+
+        /** 并行阶段中每个表的批量, 每个批量内的语句按顺序合并执行 */
+        public final Map<String, List<List<ODSqlStatement>>> batches;
+
+        private ODSqlStage(ODSqlStatement barrier, Map<String, List<List<ODSqlStatement>>> batches) {
+            this.barrier = barrier;
+            this.batches = batches;
+        }
+    }
+
+    private List<ODSqlStatement> statements = new ArrayList<>();
+
+    /**
+     * 读取本地的SQL脚本
+     * @param file 脚本文件, UTF-8编码
+     * @return 读取失败时返回null
+     */
+    public static ODSqlScript load(File file) {
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            return parse(new String(bytes, Charset.forName("UTF-8")));
+        } catch (IOException e) {
+            ODLogger.log("[ERROR] read sql script '" + file + "' fail: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 切分语句
+     * @param text 脚本内容
+     * @return 不会为null
+     */
+    public static ODSqlScript parse(String text) {
+        ODSqlScript script = new ODSqlScript();
+        StringBuilder sql = new StringBuilder();
+        int line = 1;
+        int startLine = 1;
+        char quote = 0; // 当前所在的引号
+        int n = text.length();
+        for(int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            char next = i + 1 < n ? text.charAt(i + 1) : 0;
+            if(quote != 0) {
+                sql.append(c);
+                if(c == '\\' && quote != '`' && next != 0) { // 转义字符
+                    sql.append(next);
+                    i++;
+                } else if(c == quote) {
+                    quote = 0;
+                }
+            } else if(c == '-' && next == '-' || c == '#') { // 行注释
+                while(i < n && text.charAt(i) != '\n') {
+                    i++;
+                }
+                i--;
+                continue;
+            } else if(c == '/' && next == '*') { // 块注释
+                int end = text.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                for(int j = i; j < end; j++) {
+                    if(text.charAt(j) == '\n') {
+                        line++;
+                    }
+                }
+                if(sql.length() > 0) {
+                    sql.append(' ');
+                }
+                i = end - 1;
+                continue;
+            } else if(c == ';') {
+                script.add(sql.toString(), startLine);
+                sql.setLength(0);
+            } else {
+                if(c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                if(sql.length() == 0 && Character.isWhitespace(c)) {
+                    startLine = c == '\n' ? line + 1 : line;
+                } else {
+                    sql.append(c);
+                }
+            }
+            if(c == '\n') {
+                line++;
+            }
+        }
+        script.add(sql.toString(), startLine); // 最后一条语句可以没有';'
+        return script;
+    }
+
+    /**
+     * 划分执行阶段
+     * @param batchSize 每个批量的最大语句数, 不大于1时不合并
+     * @return 按执行顺序
+     */
+    public List<ODSqlStage> getStages(int batchSize) {
+        List<ODSqlStage> stages = new ArrayList<>();
+        Map<String, List<List<ODSqlStatement>>> batches = null;
+        for(ODSqlStatement statement: statements) {
+            if(statement.table == null) {
+                if(batches != null) {
+                    stages.add(new ODSqlStage(null, batches));
+                    batches = null;
+                }
+                stages.add(new ODSqlStage(statement, null));
+            } else {
+                if(batches == null) {
+                    batches = new LinkedHashMap<>();
+                }
+                List<List<ODSqlStatement>> tableBatches = batches.get(statement.table);
+                if(tableBatches == null) {
+                    tableBatches = new ArrayList<>();
+                    batches.put(statement.table, tableBatches);
+                }
+                List<ODSqlStatement> last = tableBatches.isEmpty() ? null : tableBatches.get(tableBatches.size() - 1);
+                if(last == null || last.size() >= Math.max(batchSize, 1)) {
+                    last = new ArrayList<>();
+                    tableBatches.add(last);
+                }
+                last.add(statement);
+            }
+        }
+        if(batches != null) {
+            stages.add(new ODSqlStage(null, batches));
+        }
+        return stages;
+    }
+
+    public List<ODSqlStatement> getStatements() {
+        return statements;
+    }
+
+    // ----------------------------------------------------------- private
+
+    private void add(String sql, int line) {
+        sql = sql.trim();
+        if(sql.length() > 0) {
+            statements.add(new ODSqlStatement(statements.size() + 1, line, sql));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程状态缓存
+ * <p>每个集群上下文一个实例, 以主机IP和Server类型为键, 在有效期内重复的存活检查不再执行远程命令</p>
+ * 部署器自身启动或停止进程时, 需要使对应的缓存失效
+ * @since OD2.0
+ */
+public class ODStatusCache {
+
+    /** 有效期(毫秒), 不大于0时不缓存 */
+    private final long ttl;
+
+    /** key: ip + servername */
+    private Map<String, ODServerStatus> statusMap = new HashMap<>();
+
+    /** 缓存的写入时间, key同上 */
+    private Map<String, Long> timeMap = new HashMap<>();
+
+    public ODStatusCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * 获取主机的状态快照
+     * @param ip 主机IP
+     * @return 任一Server的缓存不存在或已过期时返回null
+     */
+    public synchronized ODHostStatus get(String ip) {
+        long now = System.currentTimeMillis();
+        ODHostStatus hostStatus = new ODHostStatus(ip, true);
+        long timestamp = now;
+        for(ODServerName servername: ODServer.SERVER_NAMES) {
+            String key = ip + servername;
+            Long time = timeMap.get(key);
+            if(time == null || now - time >= ttl) {
+                return null;
+            }
+            hostStatus.setStatus(statusMap.get(key));
+            timestamp = Math.min(timestamp, time);
+        }
+        hostStatus.setTimestamp(timestamp);
+        return hostStatus;
+    }
+
+    /**
+     * 缓存主机的状态快照
+     * @param hostStatus 不可达的主机不缓存
+     */
+    public synchronized void put(ODHostStatus hostStatus) {
+        if(ttl > 0 && hostStatus.isReachable()) {
+            for(ODServerName servername: ODServer.SERVER_NAMES) {
+                String key = hostStatus.getIp() + servername;
+                statusMap.put(key, hostStatus.getStatus(servername));
+                timeMap.put(key, hostStatus.getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * 使主机上所有Server的缓存失效
+     * @param ip 主机IP
+     */
+    public synchronized void invalidate(String ip) {
+        for(ODServerName servername: ODServer.SERVER_NAMES) {
+            invalidate(ip, servername);
+        }
+    }
+
+    /**
+     * 使主机上指定Server的缓存失效
+     * @param ip 主机IP
+     * @param servernames Server类型
+     */
+    public synchronized void invalidate(String ip, List<ODServerName> servernames) {
+        for(ODServerName servername: servernames) {
+            invalidate(ip, servername);
+        }
+    }
+
+    /**
+     * 使主机上指定Server的缓存失效
+     * @param ip 主机IP
+     * @param servername LMS与MS是同一进程
+     */
+    public synchronized void invalidate(String ip, ODServerName servername) {
+        if(servername == ODServerName.LMS) {
+            servername = ODServerName.MS;
+        }
+        statusMap.remove(ip + servername);
+        timeMap.remove(ip + servername);
+    }
+
+    /** 清空所有缓存 */
+    public synchronized void clear() {
+        statusMap.clear();
+        timeMap.clear();
+    }
+}
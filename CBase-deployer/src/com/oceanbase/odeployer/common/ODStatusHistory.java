@@ -0,0 +1,95 @@
+package com.oceanbase.odeployer.common;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 单个Server进程的状态转换历史
+ * <p>定长的环形缓冲区, 只保留最近的若干次转换, 如: down -> up(1234)</p>
+ * @since OD2.0
+ */
+public class ODStatusHistory {
+
+    /** 默认保留的转换次数 */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final String name;
+
+    private final long[] times;
+
+    private final String[] transitions;
+
+    /** 下一个写入位置 */
+    private int head;
+
+    private int size;
+
+    /** 上一次的状态, 第一次采集时为null */
+    private String lastState;
+
+    /**
+     * @param name 进程名称, 如: [10.0.0.1] rootserver
+     * @param capacity 缓冲区大小
+     */
+    public ODStatusHistory(String name, int capacity) {
+        this.name = name;
+        this.times = new long[capacity];
+        this.transitions = new String[capacity];
+    }
+
+    /**
+     * 记录新的状态
+     * 第一次采集只作为基准, 不记录转换
+     * @param status 进程状态
+     * @param timestamp 采集时间
+     * @return 状态发生变化时返回转换描述, 格式同getTransitions()的second, 否则返回null
+     */
+    public synchronized String update(ODServerStatus status, long timestamp) {
+        String state = toState(status);
+        String transition = null;
+        if(lastState != null && !lastState.equals(state)) {
+            times[head] = timestamp;
+            transitions[head] = lastState + " -> " + state;
+            transition = format(head);
+            head = (head + 1) % transitions.length;
+            if(size < transitions.length) {
+                size++;
+            }
+        }
+        lastState = state;
+        return transition;
+    }
+
+    /**
+     * 最近的转换
+     * @return 按时间从早到晚排列, first: 采集时间, second: 如: 12:00:01 [10.0.0.1] rootserver: down -> up(1234)
+     */
+    public synchronized List<Pair<Long, String>> getTransitions() {
+        List<Pair<Long, String>> list = new ArrayList<>();
+        int start = (head - size + transitions.length) % transitions.length;
+        for(int i = 0; i < size; i++) {
+            int index = (start + i) % transitions.length;
+            list.add(new Pair<>(times[index], format(index)));
+        }
+        return list;
+    }
+
+    // ----------------------------------------------------------- private
+
+    private String format(int index) {
+        return new SimpleDateFormat("HH:mm:ss").format(new Date(times[index])) + " " + name + ": " + transitions[index];
+    }
+
+    private static String toState(ODServerStatus status) {
+        if(status == null) {
+            return "unknown";
+        } else if(status.isAlive()) {
+            return "up(" + status.getPid() + ")";
+        }
+        return "down";
+    }
+}
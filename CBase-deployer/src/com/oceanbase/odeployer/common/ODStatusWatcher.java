@@ -0,0 +1,234 @@
+package com.oceanbase.odeployer.common;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.oceanbase.odeployer.ODCluster;
+import com.oceanbase.odeployer.util.ODPrinter;
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 持续监控集群状态
+ * <p>保持远程连接, 按固定间隔采集状态快照, 只重绘发生变化的单元格</p>
+ * <blockquote><pre>
+ * 第1行:    标题和采集时间
+ * 第2行起:  状态表格
+ * 表格之后: 最近的状态转换, 合并各进程的转换历史和配置重新加载的结果
+ * </pre></blockquote>
+ * 每次采集前检查配置文件, 被修改时重新加载, 只重新连接受影响的主机
+ * @since OD2.0
+ */
+public class ODStatusWatcher {
+
+    private static final String ESC = "\033[";
+
+    /** 表格下方显示的转换条数 */
+    private static final int FOOTER_LINES = 5;
+
+    /** 表格起始行, 第1行为标题 */
+    private static final int TABLE_FIRST_LINE = 2;
+
+    private final ODCluster cluster;
+
+    /** 采集间隔(秒) */
+    private final int interval;
+
+    /** 各进程的状态转换历史, key: ip + servername */
+    private Map<String, ODStatusHistory> historyMap = new LinkedHashMap<>();
+
+    /** 最近的配置重新加载结果, first: 时间 */
+    private LinkedList<Pair<Long, String>> reloadEvents = new LinkedList<>();
+
+    /** 上一次绘制的内容 */
+    private List<List<String>> lastRows;
+
+    private List<Integer> lastWidths;
+
+    public ODStatusWatcher(ODCluster cluster, int interval) {
+        this.cluster = cluster;
+        this.interval = interval;
+    }
+
+    /**
+     * 开始监控, 直到线程被中断(Ctrl+C退出程序)
+     * @return 被中断时返回SUCCESS
+     */
+    public ODError watch() {
+        List<String> header = ODHostStatus.getHeader();
+        while(!Thread.currentThread().isInterrupted()) {
+            boolean hasTransition = reload();
+            List<ODHostStatus> statusList = cluster.getOceanbase().collectStatus(true);
+            List<List<String>> rows = new ArrayList<>();
+            for(ODHostStatus status: statusList) {
+                rows.addAll(status.toRows());
+                hasTransition |= record(status);
+            }
+            List<Integer> widths = ODPrinter.getColumnWidths(header, rows);
+            StringBuilder sb = new StringBuilder();
+            boolean isLayoutChanged = isLayoutChanged(rows, widths);
+            if(isLayoutChanged) {
+                sb.append(ESC).append("2J"); // 清屏
+                moveTo(sb, TABLE_FIRST_LINE, 1);
+                sb.append(ODPrinter.formatTable(header, rows, widths));
+            } else {
+                redrawCells(sb, rows, widths);
+            }
+            drawTitle(sb);
+            int line = TABLE_FIRST_LINE + 3 + rows.size() + 1 + 1; // 表格下边线之后空一行
+            if(isLayoutChanged || hasTransition) {
+                drawFooter(sb, line);
+            }
+            moveTo(sb, line + FOOTER_LINES + 1, 1);
+            System.out.print(sb.toString());
+            System.out.flush();
+            lastRows = rows;
+            lastWidths = widths;
+            try {
+                Thread.sleep(interval * 1000L);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        return ODError.SUCCESS;
+    }
+
+    // ----------------------------------------------------------- private
+
+    /**
+     * 配置文件被修改时重新加载, 有差异时记录并全部重绘
+     * @return 是否有需要显示的结果
+     */
+    private boolean reload() {
+        if(cluster.isConfigurationModified()) {
+            Pair<ODError, ODConfigurationDiff> ret = cluster.reloadConfiguration();
+            String event = null;
+            if(ret.first.isError()) {
+                event = "configuration reload fail, keep the current one, see the log file";
+            } else if(!ret.second.isEmpty()) {
+                event = "configuration reloaded: " + ret.second;
+                lastRows = null;
+            }
+            if(event != null) {
+                long now = System.currentTimeMillis();
+                reloadEvents.add(new Pair<>(now, new SimpleDateFormat("HH:mm:ss").format(new Date(now)) + " " + event));
+                if(reloadEvents.size() > FOOTER_LINES) {
+                    reloadEvents.removeFirst();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录各进程的状态转换
+     * @return 是否有进程的状态发生变化
+     */
+    private boolean record(ODHostStatus status) {
+        boolean hasTransition = false;
+        for(ODServerName servername: ODServer.SERVER_NAMES) {
+            String key = status.getIp() + servername;
+            ODStatusHistory history = historyMap.get(key);
+            if(history == null) {
+                history = new ODStatusHistory("[" + status.getIp() + "] " + servername, ODStatusHistory.DEFAULT_CAPACITY);
+                historyMap.put(key, history);
+            }
+            // 主机不可达时状态未知
+            if(history.update(status.isReachable() ? status.getStatus(servername) : null,
+                    status.getTimestamp()) != null) {
+                hasTransition = true;
+            }
+        }
+        return hasTransition;
+    }
+
+    /** 行数, 横线位置或列宽发生变化时需要全部重绘 */
+    private boolean isLayoutChanged(List<List<String>> rows, List<Integer> widths) {
+        if(lastRows == null || lastRows.size() != rows.size() || !lastWidths.equals(widths)) {
+            return true;
+        }
+        for(int i = 0; i < rows.size(); i++) {
+            if((rows.get(i) == null) != (lastRows.get(i) == null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 只重绘发生变化的单元格 */
+    private void redrawCells(StringBuilder sb, List<List<String>> rows, List<Integer> widths) {
+        for(int i = 0; i < rows.size(); i++) {
+            List<String> row = rows.get(i);
+            List<String> lastRow = lastRows.get(i);
+            if(row == null) {
+                continue;
+            }
+            // 表格的前3行为上边线, 表头和表头下的横线
+            int line = TABLE_FIRST_LINE + 3 + i;
+            int column = 2; // 第1列为边线'|'
+            for(int j = 0; j < row.size(); j++) {
+                String cell = row.get(j);
+                if(cell != null && !cell.equals(lastRow.get(j))) {
+                    moveTo(sb, line, column);
+                    sb.append(ODPrinter.formatCell(cell, widths.get(j)));
+                }
+                column += widths.get(j) + 1;
+            }
+        }
+    }
+
+    private void drawTitle(StringBuilder sb) {
+        moveTo(sb, 1, 1);
+        sb.append(ESC).append("2K");
+        sb.append("Every ").append(interval).append("s, last update: ")
+          .append(new SimpleDateFormat("HH:mm:ss").format(new Date()))
+          .append(", press Ctrl+C to exit");
+    }
+
+    /**
+     * 合并各进程的转换历史和配置重新加载的结果
+     * @return 按时间从早到晚排列, 最多FOOTER_LINES条
+     */
+    private List<String> getRecentTransitions() {
+        List<Pair<Long, String>> events = new ArrayList<>(reloadEvents);
+        for(ODStatusHistory history: historyMap.values()) {
+            events.addAll(history.getTransitions());
+        }
+        Collections.sort(events, new Comparator<Pair<Long, String>>() { // 稳定排序, 同一时间保持采集顺序
+            @Override
+            public int compare(Pair<Long, String> o1, Pair<Long, String> o2) {
+                return Long.compare(o1.first, o2.first);
+            }
+        });
+        List<String> recentTransitions = new ArrayList<>();
+        for(int i = Math.max(events.size() - FOOTER_LINES, 0); i < events.size(); i++) {
+            recentTransitions.add(events.get(i).second);
+        }
+        return recentTransitions;
+    }
+
+    /** 在表格下方显示最近的状态转换 */
+    private void drawFooter(StringBuilder sb, int line) {
+        List<String> recentTransitions = getRecentTransitions();
+        moveTo(sb, line, 1);
+        sb.append(ESC).append("2K").append("Recent transitions:");
+        for(int i = 0; i < FOOTER_LINES; i++) {
+            moveTo(sb, ++line, 1);
+            sb.append(ESC).append("2K");
+            if(i < recentTransitions.size()) {
+                sb.append("  ").append(recentTransitions.get(i));
+            }
+        }
+    }
+
+    private static void moveTo(StringBuilder sb, int line, int column) {
+        sb.append(ESC).append(line).append(';').append(column).append('H');
+    }
+}
@@ -0,0 +1,166 @@
+package com.oceanbase.odeployer.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.oceanbase.odeployer.common.ODValue.ODValueType;
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 单个取值格式的编解码器
+ * <p>由{@link ODItemValuePattern}在注册配置项时编译一次, 创建后不再修改, 可被多个集群共享</p>
+ * <blockquote><pre>
+ * 类型      输入值              解码结果
+ * NUMBER    10                  Integer
+ * FLOAT     0.5                 Float
+ * BOOLEAN   True                Boolean
+ * OPTION    rs|UPS              List&lt;String&gt;, 转换为小写
+ * SELECT    Paxos               String, 转换为小写
+ * IP        10.0.0.1            String
+ * SECTION   start               String
+ * TASK      start st1           Pair&lt;sectionName, taskName&gt;
+ * 其他      abc                 String
+ * </pre></blockquote>
+ * 解码时不使用正则表达式
+ * @since OD2.0
+ */
+public final class ODValueCodec {
+
+    private final ODValueType valueType;
+
+    /** 格式字符串, 如: [rs|ups] */
+    private final String pattern;
+
+    /** OPTION, SELECT的可选值, 用于显示 */
+    private final String options;
+
+    /** OPTION, SELECT的可选值, 已转换为小写 */
+    private final Set<String> optionSet;
+
+    private ODValueCodec(ODValueType valueType, String pattern, String options, Set<String> optionSet) {
+        this.valueType = valueType;
+        this.pattern = pattern;
+        this.options = options;
+        this.optionSet = optionSet;
+    }
+
+    /**
+     * 编译取值格式
+     * @param pattern 如: number, [rs|ups], [paxos/base]
+     * @return 不会为null
+     */
+    public static ODValueCodec compile(String pattern) {
+        ODValueType valueType = ODValue.toValueType(pattern);
+        String options = null;
+        Set<String> optionSet = Collections.emptySet();
+        if(valueType == ODValueType.OPTION || valueType == ODValueType.SELECT) {
+            char separator = valueType == ODValueType.OPTION ? '|' : '/';
+            List<String> list = split(pattern.replace("[", "").replace("]", ""), separator);
+            StringBuilder sb = new StringBuilder();
+            optionSet = new HashSet<>();
+            for(String option: list) {
+                if(sb.length() > 0) {
+                    sb.append(separator);
+                }
+                sb.append(option);
+                optionSet.add(option.toLowerCase());
+            }
+            options = sb.toString();
+            optionSet = Collections.unmodifiableSet(optionSet);
+        }
+        return new ODValueCodec(valueType, pattern, options, optionSet);
+    }
+
+    /**
+     * 转换值类型
+     * @param value 配置项输入值
+     * @return 转换类型后的值, 见类说明
+     * @throws Exception 值不符合格式时抛出, 包含说明
+     */
+    public Object decode(String value) throws Exception {
+        value = value.trim();
+        switch (valueType) {
+            case NUMBER:
+                return Integer.parseInt(value);
+            case FLOAT:
+                return Float.parseFloat(value);
+            case BOOLEAN:
+                if(value.equalsIgnoreCase("true")) {
+                    return Boolean.TRUE;
+                } else if(value.equalsIgnoreCase("false")) {
+                    return Boolean.FALSE;
+                }
+                throw new Exception("The value of '" + value + "' is undefined, expect 'true' or 'false'");
+            case OPTION:
+                List<String> values = split(value, '|');
+                for(int i = 0; i < values.size(); i++) {
+                    String v = values.get(i).toLowerCase();
+                    if(!optionSet.contains(v)) { // 是否符合可选集合中的一项
+                        throw new Exception("The value of '" + values.get(i) + "' is undefined, expect '<" + options + ">'");
+                    }
+                    values.set(i, v);
+                }
+                return values;
+            case SELECT:
+                if(value.length() == 0 || value.indexOf('/') >= 0) {
+                    throw new Exception("expect ONE option from '<" + options + ">'");
+                }
+                String v = value.toLowerCase();
+                if(!optionSet.contains(v)) {
+                    throw new Exception("The value of '" + value + "' is undefined, expect one of '<" + options + ">'");
+                }
+                return v;
+            case TASK:
+                int pos = value.indexOf(' ');
+                if(pos > 0 && value.indexOf(' ', pos + 1) < 0) {
+                    return new Pair<String, String>(value.substring(0, pos).trim(), value.substring(pos + 1).trim());
+                }
+                throw new Exception("The value of '" + value + "' is undefined, expect '<task(sectionName taskName)>'");
+            default: // STRING, IP, SECTION
+                return value;
+        }
+    }
+
+    public ODValueType getValueType() {
+        return valueType;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String toString() {
+        return options != null ? options : pattern;
+    }
+
+    // ----------------------------------------------------------- private
+
+    /**
+     * 按单个字符切分并去掉首尾空白, 与String.split相同, 末尾的空串被忽略
+     * @param str 字符串
+     * @param separator 分隔符
+     * @return 可修改的列表
+     */
+    private static List<String> split(String str, char separator) {
+        List<String> list = new ArrayList<>();
+        int start = 0;
+        int pos;
+        while((pos = str.indexOf(separator, start)) >= 0) {
+            list.add(str.substring(start, pos));
+            start = pos + 1;
+        }
+        list.add(str.substring(start));
+        if(list.size() > 1) {
+            for(int i = list.size() - 1; i >= 0 && list.get(i).isEmpty(); i--) {
+                list.remove(i);
+            }
+        }
+        for(int i = 0; i < list.size(); i++) {
+            list.set(i, list.get(i).trim());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,31 @@
+package com.oceanbase.odeployer.parser;
+
+import com.oceanbase.odeployer.common.ODSectionType;
+import com.oceanbase.odeployer.task.ODBenchTask;
+
+/**
+ * "bench.*"类型的配置项
+ * <p>继承通用的解析器, 所有配置项可为空, 未配置时使用默认值</p>
+ * @since OD2.0
+ */
+public class ODBenchSectionParser extends ODCommonSectionParser {
+
+    @Override
+    public String getSectionName() {
+        return "bench";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Workload of the benchmark command.";
+    }
+
+    // ----------------------------------------------------------- custom
+
+    public void init() {
+        // Section的类型为 0
+        // 初始化通用解析器
+        init(ODSectionType.SECTION0, ODBenchTask.class);
+    }
+
+}
@@ -9,9 +9,7 @@ import java.util.Map;
 
 import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.command.ODCommand;
-import com.oceanbase.odeployer.command.ODCommandHandler;
 import com.oceanbase.odeployer.common.ODAction;
-import com.oceanbase.odeployer.common.ODConfiguration;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODItem;
 import com.oceanbase.odeployer.common.ODItemAdder;
@@ -19,6 +17,7 @@ import com.oceanbase.odeployer.common.ODItemValuePattern;
 import com.oceanbase.odeployer.common.ODSectionType;
 import com.oceanbase.odeployer.common.ODServer;
 import com.oceanbase.odeployer.common.ODValue;
+import com.oceanbase.odeployer.common.ODValueCodec;
 import com.oceanbase.odeployer.task.ODTask;
 import com.oceanbase.odeployer.util.ODLogger;
 import com.oceanbase.odeployer.util.ODUtil;
@@ -89,8 +88,6 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
     /** 是否初始化 */
     private boolean isInit;
     
-    private ODDeployer deployer = ODDeployer.getInstance();
-    
     /* 本次执行命令绑定的section */
     private String commandSection;
     
@@ -120,13 +117,13 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                 this.taskClass = taskClass;
                 String sectionName = getSectionName().toUpperCase();
                 if(type == ODSectionType.SECTION1 || type == ODSectionType.SECTION2) { // 只有type=1或2的section才有这三个特殊的配置项
-                    this.nameItem = new ODItem(sectionName + "_NAME");
-                    this.closeItem = new ODItem(sectionName + "_CLOSE");
+                    this.nameItem = ODItem.valueOfFullNameOrAdd(sectionName + "_NAME");
+                    this.closeItem = ODItem.valueOfFullNameOrAdd(sectionName + "_CLOSE");
                 }
-                this.tasksItem = new ODItem("H_" + sectionName);
+                this.tasksItem = ODItem.valueOfFullNameOrAdd("H_" + sectionName);
                     
                 // 以section为中介，绑定command和task
-                ODCommandHandler.addSectionBindingTask(getSectionName(), tasksItem);
+                getConfiguration().addSectionBindingTask(getSectionName(), tasksItem);
                 
                 this.commonItems = new ArrayList<>();
                 for(ODItem item: itemList) {
@@ -148,7 +145,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
             }
         } else {
             ODLogger.error("ODCommonSectionParser(" + getSectionName() + ") is initialized!", (new Throwable()).getStackTrace());
-            ODConfiguration.printError(ODError.ERROR_EXCEPTION, "ODCommonSectionParser is initialized", false);
+            getConfiguration().printError(ODError.ERROR_EXCEPTION, "ODCommonSectionParser is initialized", false);
         }
     }
 
@@ -177,7 +174,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                                 " or actionItems is null!", (new Throwable()).getStackTrace());
             } else {
             	if(commandSection == null && cmd.isBindingSection()) {
-            		commandSection = deployer.getSectionParser(cmd.getBindingSection()).getSectionName();
+            		commandSection = cluster.getSectionParser(cmd.getBindingSection()).getSectionName();
             	}
                 // ----------------------------------------------------------- type = 0
                 if(type == ODSectionType.SECTION0) {
@@ -185,12 +182,13 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                         Constructor<?> constructor = taskClass.getConstructor(String.class);
                         // 若type=0, 只有一个task, 则以section的名称命名task
                         commonSection.task = (ODTask) constructor.newInstance(getSectionName());
-                        commonSection.beginLineNumber = ODConfiguration.getLineNumber();
+                        commonSection.task.setCluster(cluster);
+                        commonSection.beginLineNumber = getConfiguration().getLineNumber();
                     }
                     // common类型的配置项
                     parserCommonItems(item, value);
                     // 用于输出日志
-                    ODConfiguration.addItem(getSectionName(), getSectionName(), item, value);
+                    getConfiguration().addItem(getSectionName(), getSectionName(), item, value);
                 // ----------------------------------------------------------- type = 1,2
                 } else if(type == ODSectionType.SECTION1 || type == ODSectionType.SECTION2) {
                     if(item == nameItem) {
@@ -199,9 +197,10 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                             
                             Constructor<?> constructor = taskClass.getConstructor(String.class);
                             commonSection.task = (ODTask) constructor.newInstance(value);
-                            commonSection.beginLineNumber = ODConfiguration.getLineNumber();
+                            commonSection.task.setCluster(cluster);
+                            commonSection.beginLineNumber = getConfiguration().getLineNumber();
                         } else {
-                            ODConfiguration.printError(ODError.ERROR_MISS_ITEM, closeItem, nameItem.toString(), 
+                            getConfiguration().printError(ODError.ERROR_MISS_ITEM, closeItem, nameItem.toString(), 
                             		commonSection.beginLineNumber);
                         }
                     } else {
@@ -220,12 +219,12 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                                 }
                             }
                         } else {
-                            ODConfiguration.printError(ODError.ERROR_MISS_ITEM, nameItem, item.toString());
+                            getConfiguration().printError(ODError.ERROR_MISS_ITEM, nameItem, item.toString());
                         }
                     }
                     if(commonSection.task != null) {
                         // 用于输出日志
-                        ODConfiguration.addItem(getSectionName(), commonSection.task.getTaskName(), item, value);
+                        getConfiguration().addItem(getSectionName(), commonSection.task.getTaskName(), item, value);
                     }
                 } else {
                     ODLogger.error("ODCommonSectionParser type '" + type + "' is undefined!",
@@ -235,7 +234,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
         } else {
             ODLogger.error("ODCommonSectionParser(" + getSectionName() + ") has not been initialized!", 
             		(new Throwable()).getStackTrace());
-            ODConfiguration.printError(ODError.ERROR_EXCEPTION, "ODCommonSectionParser has not been initialized", false);
+            getConfiguration().printError(ODError.ERROR_EXCEPTION, "ODCommonSectionParser has not been initialized", false);
         }
     }
 
@@ -260,7 +259,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
             	}
                 if(commonSection.task == null) {
                 	if(commandSection != null && commandSection.equals(getSectionName())) {
-                		ODConfiguration.printError(ODError.ERROR_EXCEPTION, "No item is defined!", false);
+                		getConfiguration().printError(ODError.ERROR_EXCEPTION, "No item is defined!", false);
                 	}
                 } else {
                     // 把惟一的task添加到map
@@ -268,14 +267,14 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                 }
             } else if(type == ODSectionType.SECTION1 || type == ODSectionType.SECTION2) {
                 if(commonSection.task != null) { // 最后一个task没有close
-                    ODConfiguration.printError(ODError.ERROR_MISS_ITEM, closeItem, nameItem.toString(), commonSection.beginLineNumber);
+                    getConfiguration().printError(ODError.ERROR_MISS_ITEM, closeItem, nameItem.toString(), commonSection.beginLineNumber);
                 }
             }
             // 保存任务集合Map
-            ODConfiguration.addConfigureItem(tasksItem, commonSection.taskMap);
+            getConfiguration().addConfigureItem(tasksItem, commonSection.taskMap);
         } else {
             ODLogger.error("ODCommonSectionParser(" + getSectionName() + ") has not been initialized!", (new Throwable()).getStackTrace());
-            ODConfiguration.printError(ODError.ERROR_EXCEPTION, "ODCommonSectionParser has not been initialized", false);
+            getConfiguration().printError(ODError.ERROR_EXCEPTION, "ODCommonSectionParser has not been initialized", false);
         }
     }
     
@@ -306,7 +305,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
             for(ODItemValue iv: commonItems) {
                 if(iv.item == item) {
                     if(!isExist(item)) { // Common不可重复
-                        iv.lineNumber = ODConfiguration.getLineNumber();
+                        iv.lineNumber = getConfiguration().getLineNumber();
                         processValue(iv, value, false);
                         break;
                     }
@@ -329,7 +328,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
         if(actionItems != null) {
             for(ODItemValue iv: actionItems) {
                 if(iv.item == item) {
-                    iv.lineNumber = ODConfiguration.getLineNumber();                   
+                    iv.lineNumber = getConfiguration().getLineNumber();                   
                     processValue(iv, value, true);
                     break;
                 }
@@ -351,7 +350,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
         if(valuePattern.valuePatterns.size() == values.length) { // 检查值数目是否一致
             int i = 0;
             List<Object> actionValue = new ArrayList<>();
-            for(Pair<ODItem, ODValue> pattern: valuePattern.valuePatterns) {
+            for(Pair<ODItem, ODValueCodec> pattern: valuePattern.valuePatterns) {
                 Object objValue = castValue(values[i], pattern.second);
                 if(pattern.first == null) { // 若未引用其他配置项
                     if(isActionItem) { // action类型的配置项不需要保存到task
@@ -379,7 +378,7 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
                 commonSection.task.addAction(action);
             }
         } else {
-            ODConfiguration.printError(ODError.ERROR_WRONG_VALUE, itemValue.item);
+            getConfiguration().printError(ODError.ERROR_WRONG_VALUE, itemValue.item);
         }
     }
 
@@ -390,44 +389,44 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
      * @return 值
      */
     @SuppressWarnings("unchecked")
-    private Object castValue(String value, ODValue pattern) throws Exception {
-        Object v = ODValue.castValue(value, pattern).getValue();
+    private Object castValue(String value, ODValueCodec pattern) throws Exception {
+        Object v = pattern.decode(value);
         String currentSection = getSectionName();
         String currentTask = commonSection.task.getTaskName();
         if(pattern.getValueType() == ODValue.ODValueType.IP) {
             String ip = v.toString();
-            ODServer server = deployer.getConfigueServer(ip);
+            ODServer server = getConfiguration().getConfigueServer(ip);
             if(server != null) {
-                ODConfiguration.addIp(currentSection, currentTask, ip);
+                getConfiguration().addIp(currentSection, currentTask, ip);
                 return server;
             }
-            ODConfiguration.printError(ODError.ERROR_EXCEPTION, "Server [ip=" + ip + "] is undefined");
+            getConfiguration().printError(ODError.ERROR_EXCEPTION, "Server [ip=" + ip + "] is undefined");
             return new ODServer(null, null, null, null); // NULL server
         } else if(pattern.getValueType() == ODValue.ODValueType.SECTION) {
             String sectionName = v.toString();
-            Map<String, ODTask> section = ODConfiguration.getSection(sectionName);
+            Map<String, ODTask> section = getConfiguration().getSection(sectionName);
             if(section != null) {
                 // 添加已使用IP列表
-                ODConfiguration.addIpList(currentSection, currentTask, sectionName);
+                getConfiguration().addIpList(currentSection, currentTask, sectionName);
                 // 用于输出日志
-                ODConfiguration.addItemList(currentSection, currentTask, sectionName);
+                getConfiguration().addItemList(currentSection, currentTask, sectionName);
                 return section;
             }
-            ODConfiguration.printError(ODError.ERROR_EXCEPTION, "Section [name=" + sectionName + "] is undefined");
+            getConfiguration().printError(ODError.ERROR_EXCEPTION, "Section [name=" + sectionName + "] is undefined");
             return null;
         } else if(pattern.getValueType() == ODValue.ODValueType.TASK) {
             Pair<String, String> task = (Pair<String, String>) v;
             String sectionName = task.first;
             String taskName = task.second;
-            Object obj = ODConfiguration.getTaskFromSection(sectionName, taskName);
+            Object obj = getConfiguration().getTaskFromSection(sectionName, taskName);
             if(obj != null) {
                 // 添加已使用IP列表
-                ODConfiguration.addIpList(currentSection, currentTask, sectionName, taskName);
+                getConfiguration().addIpList(currentSection, currentTask, sectionName, taskName);
                 // 用于输出日志
-                ODConfiguration.addItemList(currentSection, currentTask, sectionName, taskName);
+                getConfiguration().addItemList(currentSection, currentTask, sectionName, taskName);
                 return obj;
             } 
-            ODConfiguration.printError(ODError.ERROR_EXCEPTION, "Task [section=" + sectionName + ", name=" + taskName + "] is undefined");
+            getConfiguration().printError(ODError.ERROR_EXCEPTION, "Task [section=" + sectionName + ", name=" + taskName + "] is undefined");
             return null;
         }
         return v;
@@ -469,9 +468,9 @@ public abstract class ODCommonSectionParser extends ODItemAdder implements ODISe
     	for(ODItemValue iv: commonItems) {
             if(!iv.item.isNullable() && !itemSet.contains(iv.item)) { // 若item不可为空
                 if(type == ODSectionType.SECTION0 || commonSection.beginLineNumber < 0) {
-                    ODConfiguration.printError(ODError.ERROR_MISS_ITEM,  iv.item, false);
+                    getConfiguration().printError(ODError.ERROR_MISS_ITEM,  iv.item, false);
                 } else {
-                    ODConfiguration.printError(ODError.ERROR_MISS_ITEM,  iv.item, nameItem.toString(), commonSection.beginLineNumber);
+                    getConfiguration().printError(ODError.ERROR_MISS_ITEM,  iv.item, nameItem.toString(), commonSection.beginLineNumber);
                 }
                 break;
             }
@@ -1,5 +1,6 @@
 package com.oceanbase.odeployer.parser;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.command.ODCommand;
 import com.oceanbase.odeployer.common.ODItem;
 
@@ -9,6 +10,12 @@ import com.oceanbase.odeployer.common.ODItem;
  * @since OD1.0
  */
 public interface ODISectionParser {
+
+    /**
+     * 绑定集群上下文, 在init()之前调用
+     * @param cluster 解析结果保存到该集群的配置文件加载器
+     */
+    void setCluster(ODCluster cluster);
     
     /**
      * 初始化配置单元类型
@@ -0,0 +1,31 @@
+package com.oceanbase.odeployer.parser;
+
+import com.oceanbase.odeployer.common.ODSectionType;
+import com.oceanbase.odeployer.task.ODInitSqlTask;
+
+/**
+ * "initsql.*"类型的配置项
+ * <p>继承通用的解析器, 每个initsql.name定义一个SQL脚本</p>
+ * @since OD2.0
+ */
+public class ODInitSqlSectionParser extends ODCommonSectionParser {
+
+    @Override
+    public String getSectionName() {
+        return "initsql";
+    }
+
+    @Override
+    public String getDescription() {
+        return "SQL scripts run through the mergeserver after bootstrap.";
+    }
+
+    // ----------------------------------------------------------- custom
+
+    public void init() {
+        // Section的类型为 1
+        // 初始化通用解析器
+        init(ODSectionType.SECTION1, ODInitSqlTask.class);
+    }
+
+}
@@ -1,8 +1,6 @@
 package com.oceanbase.odeployer.parser;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.command.ODCommand;
-import com.oceanbase.odeployer.common.ODConfiguration;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODItem;
 import com.oceanbase.odeployer.common.ODSectionType;
@@ -35,8 +33,8 @@ public class ODOceanbaseSectionParser extends ODCommonSectionParser {
     public void parseConfigureItems(ODCommand cmd, ODItem item, String value) throws Exception {
     	super.parseConfigureItems(cmd, item, value);
     	if(item.isName()) {
-    		if(!ODDeployer.getInstance().isParameterGeneratorRegistered(value)) {
-                ODConfiguration.printError(ODError.ERROR_EXCEPTION, item, 
+    		if(!cluster.getDeployer().isParameterGeneratorRegistered(value)) {
+                getConfiguration().printError(ODError.ERROR_EXCEPTION, item, 
                         "oceanbase.version(" + value + ") is undefined");
             }
     	}
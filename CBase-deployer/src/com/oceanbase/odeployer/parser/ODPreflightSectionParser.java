@@ -0,0 +1,31 @@
+package com.oceanbase.odeployer.parser;
+
+import com.oceanbase.odeployer.common.ODSectionType;
+import com.oceanbase.odeployer.task.ODPreflightTask;
+
+/**
+ * "preflight.*"类型的配置项
+ * <p>继承通用的解析器, 所有配置项可为空, 未配置时使用默认阈值</p>
+ * @since OD2.0
+ */
+public class ODPreflightSectionParser extends ODCommonSectionParser {
+
+    @Override
+    public String getSectionName() {
+        return "preflight";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Thresholds of the host checks before deploy or start.";
+    }
+
+    // ----------------------------------------------------------- custom
+
+    public void init() {
+        // Section的类型为 0
+        // 初始化通用解析器
+        init(ODSectionType.SECTION0, ODPreflightTask.class);
+    }
+
+}
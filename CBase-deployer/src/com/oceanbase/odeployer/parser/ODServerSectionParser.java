@@ -2,13 +2,13 @@ package com.oceanbase.odeployer.parser;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.command.ODCommand;
-import com.oceanbase.odeployer.common.ODConfiguration;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODItem;
 import com.oceanbase.odeployer.common.ODItemAdder;
@@ -67,10 +67,10 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                             serverSection.upsPortp = values[0];
                             serverSection.upsPortm = values[1];
                         } else {
-                            ODConfiguration.printError(ODError.ERROR_CONFLICT, item);
+                            getConfiguration().printError(ODError.ERROR_CONFLICT, item);
                         }
                     } else {
-                        ODConfiguration.printError(ODError.ERROR_WRONG_VALUE, item);
+                        getConfiguration().printError(ODError.ERROR_WRONG_VALUE, item);
                     }
                 }else if(item == ODItem.SERVER_MS_PORT){
                     String[] values = ODUtil.split(value, ",");
@@ -79,10 +79,10 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                             serverSection.msPortp = values[0];
                             serverSection.msPortz = values[1];
                         } else {
-                            ODConfiguration.printError(ODError.ERROR_CONFLICT, item);
+                            getConfiguration().printError(ODError.ERROR_CONFLICT, item);
                         }
                     } else {
-                        ODConfiguration.printError(ODError.ERROR_WRONG_VALUE, item);
+                        getConfiguration().printError(ODError.ERROR_WRONG_VALUE, item);
                     }
                 }else if(item == ODItem.SERVER_CS_PORT){
                     String[] values = ODUtil.split(value, ",");
@@ -91,21 +91,21 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                             serverSection.csPortp = values[0];
                             serverSection.csPortn = values[1];
                         } else {                         
-                            ODConfiguration.printError(ODError.ERROR_CONFLICT, item);
+                            getConfiguration().printError(ODError.ERROR_CONFLICT, item);
                         }
                     } else {
-                        ODConfiguration.printError(ODError.ERROR_WRONG_VALUE, item);
+                        getConfiguration().printError(ODError.ERROR_WRONG_VALUE, item);
                     }
     //------------------------------------------end_port-------------------------------------------                
                 }else if(item == ODItem.SERVER_VERSION) {
                     if(serverSection.version == null) {
                     	serverSection.version = value;
-                        if(!ODDeployer.getInstance().isParameterGeneratorRegistered(value)) {
-                            ODConfiguration.printError(ODError.ERROR_EXCEPTION, item, 
+                        if(!cluster.getDeployer().isParameterGeneratorRegistered(value)) {
+                            getConfiguration().printError(ODError.ERROR_EXCEPTION, item, 
                                     "oceanbase.version(" + value + ") is undefined");
                         }
                     } else {
-                        ODConfiguration.printError(ODError.ERROR_CONFLICT, item);
+                        getConfiguration().printError(ODError.ERROR_CONFLICT, item);
                     }
                 } else if(item == ODItem.SERVER_COMMON_USER) {
                     String[] values = ODUtil.split(value, ",");
@@ -114,10 +114,10 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                             serverSection.commonUsername = values[0];
                             serverSection.commonPassword = values[1];
                         } else {
-                            ODConfiguration.printError(ODError.ERROR_CONFLICT, item);
+                            getConfiguration().printError(ODError.ERROR_CONFLICT, item);
                         }
                     } else {
-                        ODConfiguration.printError(ODError.ERROR_WRONG_VALUE, item);
+                        getConfiguration().printError(ODError.ERROR_WRONG_VALUE, item);
                     }
                 } else if(item == ODItem.SERVER_COMMON_NETWORK) {
                     serverSection.commonNetwork = value;
@@ -128,7 +128,7 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                 //保存上一个Server
                 if(serverSection.server != null) {
                     serverSection.server.checkData(serverSection.server.ip);
-                    Class<? extends ODServer> customServerClass = ODDeployer.getInstance().getCustomServerClass();
+                    Class<? extends ODServer> customServerClass = cluster.getDeployer().getCustomServerClass();
                     ODServer server = null;
                     if(customServerClass == null) {
                         server = new ODServer(serverSection.server.ip, serverSection.server.username,
@@ -144,20 +144,16 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                         }
                     }
                     if(server != null) {
+                        server.setCluster(cluster);
                         serverSection.serverList.add(server);
+                        serverSection.serverMap.put(server.ip, server);
                     }
                     //serverSection.server = null;
                 }
             }
         // ----------------------------------------------------------- 2. server.ip
             if(item == ODItem.SERVER_IP) {
-                boolean isExist = false; // 检查是否重复配置节点
-                for(ODServer s: serverSection.serverList) {
-                    if(s.ip.equals(value)) {
-                        isExist = true;
-                        break;
-                    }
-                }
+                boolean isExist = serverSection.serverMap.containsKey(value); // 检查是否重复配置节点
                 if(!isExist) {
                     serverSection.server = new Server();
                     // 判断是否设置了server.common.user和server.common.network
@@ -170,7 +166,7 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                     }
                     serverSection.server.setIp(value);
                 } else {
-                    ODConfiguration.printError(ODError.ERROR_EXCEPTION, "[" + value + "] is existed");
+                    getConfiguration().printError(ODError.ERROR_EXCEPTION, "[" + value + "] is existed");
                 }
         // ----------------------------------------------------------- 3. server.user
             } else {
@@ -180,14 +176,14 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                         if(values != null && values.length == 2) {
                             serverSection.server.setUser(values[0], values[1]);
                         } else {
-                            ODConfiguration.printError(ODError.ERROR_WRONG_VALUE, item);
+                            getConfiguration().printError(ODError.ERROR_WRONG_VALUE, item);
                         }
         // ----------------------------------------------------------- 4. server.network
                     } else if(item == ODItem.SERVER_NETWORK) {
                         serverSection.server.setNetwork(value);
                     }
                 } else {
-                    ODConfiguration.printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_IP, item.toString());
+                    getConfiguration().printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_IP, item.toString());
                 }
             }
         }
@@ -203,16 +199,16 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
         addConfigureItem(ODItem.SERVER_RS_PORT, serverSection.rsPort);
         //add upsport/msport/csport
         if(serverSection.upsPortp != null){
-        	ODConfiguration.addConfigureItem(ODItem.H_SERVER_UPS_PORT_P, serverSection.upsPortp);
-        	ODConfiguration.addConfigureItem(ODItem.H_SERVER_UPS_PORT_M, serverSection.upsPortm);
+        	getConfiguration().addConfigureItem(ODItem.H_SERVER_UPS_PORT_P, serverSection.upsPortp);
+        	getConfiguration().addConfigureItem(ODItem.H_SERVER_UPS_PORT_M, serverSection.upsPortm);
         }
         if(serverSection.msPortp != null){
-        	ODConfiguration.addConfigureItem(ODItem.H_SERVER_MS_PORT_P, serverSection.msPortp);
-        	ODConfiguration.addConfigureItem(ODItem.H_SERVER_MS_PORT_Z, serverSection.msPortz);
+        	getConfiguration().addConfigureItem(ODItem.H_SERVER_MS_PORT_P, serverSection.msPortp);
+        	getConfiguration().addConfigureItem(ODItem.H_SERVER_MS_PORT_Z, serverSection.msPortz);
         }
         if(serverSection.csPortp != null){
-        	ODConfiguration.addConfigureItem(ODItem.H_SERVER_CS_PORT_P, serverSection.csPortp);
-        	ODConfiguration.addConfigureItem(ODItem.H_SERVER_CS_PORT_N, serverSection.csPortn);
+        	getConfiguration().addConfigureItem(ODItem.H_SERVER_CS_PORT_P, serverSection.csPortp);
+        	getConfiguration().addConfigureItem(ODItem.H_SERVER_CS_PORT_N, serverSection.csPortn);
         }
 //        addConfigureItem(ODItem.SERVER_UPS_PORT,serverSection.upsPortp);
 //        addConfigureItem(ODItem.SERVER_UPS_PORT,serverSection.upsPortm);
@@ -225,17 +221,17 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
         addConfigureItem(ODItem.SERVER_VERSION, serverSection.version);
         // server.common.user, server.common.network 为可选配置项
         if(serverSection.commonPassword != null) {
-            ODConfiguration.addConfigureItem(ODItem.H_SERVER_COMMON_USERNAME, serverSection.commonUsername);
-            ODConfiguration.addConfigureItem(ODItem.H_SERVER_COMMON_PASSWORD, serverSection.commonPassword);
+            getConfiguration().addConfigureItem(ODItem.H_SERVER_COMMON_USERNAME, serverSection.commonUsername);
+            getConfiguration().addConfigureItem(ODItem.H_SERVER_COMMON_PASSWORD, serverSection.commonPassword);
         }
         if(serverSection.commonNetwork != null) {
             addConfigureItem(ODItem.SERVER_COMMON_NETWORK, serverSection.commonNetwork);
         }
         // 添加服务器节点列表
         if(serverSection.serverList.size() == 0) {
-            ODConfiguration.printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_IP, false);
+            getConfiguration().printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_IP, false);
         } else {
-            ODConfiguration.addConfigureItem(ODItem.H_SERVERS, serverSection.serverList);
+            getConfiguration().addConfigureItem(ODItem.H_SERVERS, serverSection.serverList);
         }
     }
 
@@ -247,6 +243,15 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
         return serverSection.serverList;
     }
 
+    /**
+     * 按IP获取已解析的主机
+     * @param ip 主机IP
+     * @return 可能为null
+     */
+    public ODServer getServer(String ip) {
+        return serverSection.serverMap.get(ip);
+    }
+
     // ----------------------------------------------------------- private
 
     /**
@@ -272,7 +277,7 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                 this.password = password;
                 isCommonUser = false;
             } else {
-                ODConfiguration.printError(ODError.ERROR_CONFLICT, ODItem.SERVER_USER);
+                getConfiguration().printError(ODError.ERROR_CONFLICT, ODItem.SERVER_USER);
            }
         }
     
@@ -281,7 +286,7 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
                 this.network = network;
                 isCommonNetwork = false;
             } else {
-                ODConfiguration.printError(ODError.ERROR_CONFLICT, ODItem.SERVER_NETWORK);
+                getConfiguration().printError(ODError.ERROR_CONFLICT, ODItem.SERVER_NETWORK);
             }
         }
     
@@ -303,10 +308,10 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
         /** 检查是否设置了ip和username */
         private void checkData(String ip) {
             if(username == null) {
-                ODConfiguration.printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_USER, ip);
+                getConfiguration().printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_USER, ip);
             }
             if(network == null) {
-                ODConfiguration.printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_NETWORK, ip);
+                getConfiguration().printError(ODError.ERROR_MISS_ITEM, ODItem.SERVER_NETWORK, ip);
             }
         }
     }
@@ -321,6 +326,9 @@ public class ODServerSectionParser extends ODItemAdder implements ODISectionPars
     
         /** 所有主机节点信息列表 */
         private List<ODServer> serverList = new ArrayList<>();
+
+        /** ip到主机节点的索引 */
+        private Map<String, ODServer> serverMap = new HashMap<>();
     
         private String rsPort = null;
         
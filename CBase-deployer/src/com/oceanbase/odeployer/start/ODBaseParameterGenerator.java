@@ -8,7 +8,6 @@ import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODServer;
 import com.oceanbase.odeployer.common.ODServerName;
 import com.oceanbase.odeployer.util.ODLogger;
-import com.oceanbase.odeployer.util.ODShell;
 import com.oceanbase.odeployer.util.Pair;
 
 /**
@@ -83,8 +82,8 @@ public class ODBaseParameterGenerator extends ODParameterGenerator {
         ODError ret = ODError.SUCCESS;
         ODServer masterRS = getMasterRS();
         if(masterRS != null) {
-        	Pair<ODError, String> retExe = masterRS.exec("cd " + ODShell.getOceanbaseDir() + 
-        			";bin/rs_admin -r " + masterRS.ip + " -p " + ODShell.getRsPort() + " set_obi_role -o OBI_MASTER");
+        	Pair<ODError, String> retExe = masterRS.exec("cd " + cluster.getShell().getOceanbaseDir() + 
+        			";bin/rs_admin -r " + masterRS.ip + " -p " + cluster.getShell().getRsPort() + " set_obi_role -o OBI_MASTER");
         	ODLogger.log(retExe.second);
         }
         return ret;
@@ -3,7 +3,6 @@ package com.oceanbase.odeployer.start;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.common.ODAction;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODServerName;
@@ -30,7 +29,7 @@ import com.oceanbase.odeployer.util.ODLogger;
 public class ODMultiUpsParameterGenerator extends ODParameterGenerator {
 	
     /** 启动序列Action列表 */
-    private static List<ODAction> actionList;
+    private List<ODAction> actionList;
 
     /** RS数目 */
     private int RSCount;
@@ -64,8 +63,8 @@ public class ODMultiUpsParameterGenerator extends ODParameterGenerator {
 	            RSCount = 0;
 	            UPSCount = 0;
 	            clusterId = 0;
-	            ODMultiUpsParameterGenerator.actionList = new ArrayList<>();
-	            ODMultiUpsParameterGenerator.actionList.addAll(actionList);
+	            this.actionList = new ArrayList<>();
+	            this.actionList.addAll(actionList);
 
 	            // 计算启动RS和UPS的数目
 	            for(ODAction act: actionList) {
@@ -78,10 +77,10 @@ public class ODMultiUpsParameterGenerator extends ODParameterGenerator {
 	                }
 	            }         
 	            //mod zhangyf [paxos] 170522
-	            if(RSCount == Integer.parseInt(ODDeployer.getStValueRsCount()) && UPSCount == Integer.parseInt(ODDeployer.getStValueUpsCount())){           	
+	            if(RSCount == Integer.parseInt(cluster.getStValueRsCount()) && UPSCount == Integer.parseInt(cluster.getStValueUpsCount())){           	
 	            	isInit = true;          	
 	            }else{
-	            	ODLogger.log(RSCount+" "+Integer.parseInt(ODDeployer.getStValueRsCount())+" "+UPSCount+" "+Integer.parseInt(ODDeployer.getStValueUpsCount()));
+	            	ODLogger.log(RSCount+" "+Integer.parseInt(cluster.getStValueRsCount())+" "+UPSCount+" "+Integer.parseInt(cluster.getStValueUpsCount()));
 	            	ODLogger.log("real RS and UPS is "+RSCount+" "+UPSCount);
 	            	isInit = false;
 	                ret = ODError.ERROR;
@@ -154,7 +153,7 @@ public class ODMultiUpsParameterGenerator extends ODParameterGenerator {
 		return ODError.SUCCESS;
 	}
 	
-    public static List<ODAction> getActionList(){
+    public List<ODAction> getActionList(){
     	return actionList;
     }
 
@@ -1,5 +1,6 @@
 package com.oceanbase.odeployer.start;
 
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.common.ODAction;
 import com.oceanbase.odeployer.common.ODError;
 
@@ -14,6 +15,17 @@ public abstract class ODParameterGenerator {
     
     protected ODStartParameter startParameter = new ODStartParameter();
 
+    /** 所属的集群上下文 */
+    protected ODCluster cluster;
+
+    /**
+     * 绑定集群上下文
+     * @param cluster 在init()之前调用
+     */
+    public void setCluster(ODCluster cluster) {
+        this.cluster = cluster;
+    }
+
     /**
      * 初始化操作
      * 自定初始化某些全局变量
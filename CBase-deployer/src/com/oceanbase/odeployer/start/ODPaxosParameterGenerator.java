@@ -3,7 +3,6 @@ package com.oceanbase.odeployer.start;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.common.ODAction;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODServerName;
@@ -27,7 +26,7 @@ import com.oceanbase.odeployer.util.ODLogger;
 public class ODPaxosParameterGenerator extends ODParameterGenerator {
     
     /** 启动序列Action列表 */
-    private static List<ODAction> actionList;
+    private List<ODAction> actionList;
 
     /** RS数目 */
     private int RSCount;
@@ -56,8 +55,8 @@ public class ODPaxosParameterGenerator extends ODParameterGenerator {
             RSCount = 0;
             UPSCount = 0;
             clusterId = 0;
-            ODPaxosParameterGenerator.actionList = new ArrayList<>();
-            ODPaxosParameterGenerator.actionList.addAll(actionList);
+            this.actionList = new ArrayList<>();
+            this.actionList.addAll(actionList);
 
             // 计算启动RS和UPS的数目
             for(ODAction act: actionList) {
@@ -70,10 +69,10 @@ public class ODPaxosParameterGenerator extends ODParameterGenerator {
                 }
             }         
             //mod zhangyf [paxos] 170522
-            if(RSCount == Integer.parseInt(ODDeployer.getStValueRsCount()) && UPSCount == Integer.parseInt(ODDeployer.getStValueUpsCount())){           	
+            if(RSCount == Integer.parseInt(cluster.getStValueRsCount()) && UPSCount == Integer.parseInt(cluster.getStValueUpsCount())){           	
             	isInit = true;          	
             }else{
-            	ODLogger.log(RSCount+" "+Integer.parseInt(ODDeployer.getStValueRsCount())+" "+UPSCount+" "+Integer.parseInt(ODDeployer.getStValueUpsCount()));
+            	ODLogger.log(RSCount+" "+Integer.parseInt(cluster.getStValueRsCount())+" "+UPSCount+" "+Integer.parseInt(cluster.getStValueUpsCount()));
             	ODLogger.log("real RS and UPS is "+RSCount+" "+UPSCount);
             	isInit = false;
                 ret = ODError.ERROR;
@@ -130,7 +129,7 @@ public class ODPaxosParameterGenerator extends ODParameterGenerator {
         return ODError.SUCCESS;
     }
     
-    public static List<ODAction> getActionList(){
+    public List<ODAction> getActionList(){
     	return actionList;
     }
 }
@@ -0,0 +1,96 @@
+package com.oceanbase.odeployer.task;
+
+import java.util.List;
+import java.util.Map;
+
+import com.oceanbase.odeployer.common.ODBenchmark;
+import com.oceanbase.odeployer.common.ODBenchmarkResult;
+import com.oceanbase.odeployer.common.ODError;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODPrinter;
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * 压测任务
+ * <p>默认对可用的MS执行, 也可以指定任意MySQL协议的服务, 负载见{@code ODBenchmark}</p>
+ * 配置项映射bench.*, 未配置时使用默认值
+ * @since OD2.0
+ */
+public class ODBenchTask extends ODTask {
+
+    /** 压测的服务, ms表示可用的MS, 映射配置项bench.endpoint */
+    private String endpoint = "ms";
+
+    /** 用户名, 映射配置项bench.user */
+    private String username = "admin";
+
+    /** 密码, 映射配置项bench.user */
+    private String password = "admin";
+
+    /** 负载及权重, 映射配置项bench.workload */
+    private String workload = "point-select:8|insert:1|range-scan:1";
+
+    /** 工作线程数, 映射配置项bench.threads */
+    private int threads = 8;
+
+    /** 持续时间(秒), 映射配置项bench.duration */
+    private int duration = 30;
+
+    /** 预置的行数, 映射配置项bench.rows */
+    private int rows = 10000;
+
+    /** 压测表名, 映射配置项bench.table */
+    private String table = "od_bench";
+
+    /** 每个语句的超时时间(秒), 映射配置项bench.timeout */
+    private int timeout = 5;
+
+    public ODBenchTask(String name) {
+        super(name);
+    }
+
+    @Override
+    public ODError execute(List<String> argv, String sectionName) throws Exception {
+        Map<String, Integer> workloadMap = ODBenchmark.parseWorkload(workload);
+        if(workloadMap == null || threads <= 0 || duration <= 0) {
+            ODLogger.log("[ERROR] invalid bench configuration: workload=" + workload
+                    + ", threads=" + threads + ", duration=" + duration);
+            return ODError.ERROR;
+        }
+        String ip;
+        String port;
+        if(endpoint.equalsIgnoreCase("ms")) {
+            ip = cluster.getOceanbase() != null ? cluster.getOceanbase().getAliveMsIp() : null;
+            if(ip == null) {
+                ODLogger.log("[ERROR] No alive mergeserver is found!");
+                return ODError.ERROR;
+            }
+            port = cluster.getShell().getMsZPort();
+        } else {
+            String[] ipPort = ODUtil.split(endpoint, ":");
+            if(ipPort.length != 2) {
+                ODLogger.log("[ERROR] the endpoint '" + endpoint + "' should be 'ms' or 'ip:port'!");
+                return ODError.ERROR;
+            }
+            ip = ipPort[0];
+            port = ipPort[1];
+        }
+        ODBenchmark benchmark = new ODBenchmark(ip, port, username, password, table);
+        if(benchmark.prepare(rows).isError()) {
+            return ODError.ERROR;
+        }
+        ODLogger.log("bench " + ip + ":" + port + " with " + threads + " threads for " + duration + "s, workload: "
+                + workloadMap);
+        ODBenchmarkResult result = benchmark.run(workloadMap, threads, duration * 1000L, timeout);
+        ODPrinter.printTable("Bench (latency in ms)", ODBenchmarkResult.getHeader(), result.toRows());
+        if(result.getTotal().getTotalCount() == 0 || result.getWorkerFailures() > 0) {
+            ODLogger.log("[ERROR] bench fail, ops: " + result.getTotal().getTotalCount() + ", errors: "
+                    + result.getErrorCount() + ", failed workers: " + result.getWorkerFailures());
+            return ODError.ERROR;
+        }
+        if(result.getErrorCount() > 0) {
+            ODLogger.log("[WARN] " + result.getErrorCount() + " statements failed during the bench");
+        }
+        return ODError.SUCCESS;
+    }
+}
@@ -2,7 +2,6 @@ package com.oceanbase.odeployer.task;
 
 import java.util.List;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.common.ODError;
 
 /**
@@ -30,9 +29,8 @@ public class ODDeployTask extends ODTask {
     public ODError execute(List<String> argv, String sectionName) throws Exception {
 //ODLogger.log("execute deploy task");
         ODError ret = ODError.SUCCESS;
-        ODDeployer deployer = ODDeployer.getInstance();
-        if(deployer.getOceanbase() != null) {
-            ret = deployer.getOceanbase().deploy(sourceIp, sourceUsername, 
+        if(cluster.getOceanbase() != null) {
+            ret = cluster.getOceanbase().deploy(sourceIp, sourceUsername, 
             		sourcePassword, sourceDir);
         } else {
             ret = ODError.ERROR;
@@ -0,0 +1,307 @@
+package com.oceanbase.odeployer.task;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oceanbase.odeployer.common.ODError;
+import com.oceanbase.odeployer.common.ODQuery;
+import com.oceanbase.odeployer.common.ODSqlScript;
+import com.oceanbase.odeployer.common.ODSqlScript.ODSqlStage;
+import com.oceanbase.odeployer.common.ODSqlScript.ODSqlStatement;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODPrinter;
+import com.oceanbase.odeployer.util.ODUtil;
+import com.oceanbase.odeployer.util.Pair;
+
+/**
+ * 执行初始化SQL脚本的任务
+ * <p>脚本的执行阶段见{@code ODSqlScript}, 并行阶段中不同表的批量分配到parallel个连接上执行,
+ * 实际并发不超过集群线程池的大小</p>
+ * 每条语句的耗时写入log/init-sql下的报告文件, 控制台输出按类型的汇总和最慢的语句
+ * @since OD2.0
+ */
+public class ODInitSqlTask extends ODTask {
+
+    /** 报告文件的目录 */
+    private static final String REPORT_DIR = "log/init-sql";
+
+    /** 控制台输出的最慢语句数 */
+    private static final int SLOWEST_COUNT = 10;
+
+    /** 报告中SQL的最大长度 */
+    private static final int SQL_DISPLAY_LENGTH = 200;
+
+    /** SQL脚本, 映射配置项initsql.file */
+    private String file;
+
+    /** 并行的连接数, 映射配置项initsql.parallel */
+    private int parallel = 4;
+
+    /** 每个批量的最大语句数, 映射配置项initsql.batch */
+    private int batch = 100;
+
+    /** 每条语句或批量的超时时间(秒), 映射配置项initsql.timeout */
+    private int timeout = 60;
+
+    /** 失败处理策略, 映射配置项initsql.policy */
+    private String policy;
+
+    /** 以下按语句序号记录执行结果, 由执行该语句的线程写入 */
+    private long[] batchTimes;
+    private int[] batchSizes;
+    private int[] batchFirsts;
+    private String[] results;
+
+    private AtomicInteger failedCount = new AtomicInteger(0);
+
+    /** 失败处理策略是否已触发 */
+    private volatile boolean isTripped;
+
+    public ODInitSqlTask(String name) {
+        super(name);
+    }
+
+    @Override
+    public ODError execute(List<String> argv, String sectionName) throws Exception {
+        if(cluster.getOceanbase() == null) {
+            return ODError.ERROR;
+        }
+        final String msIp = cluster.getOceanbase().getAliveMsIp();
+        if(msIp == null) {
+            ODLogger.log("[ERROR] No alive mergeserver is found!");
+            return ODError.ERROR;
+        }
+        ODSqlScript script = ODSqlScript.load(new File(file));
+        if(script == null) {
+            return ODError.ERROR;
+        }
+        List<ODSqlStatement> statements = script.getStatements();
+        List<ODSqlStage> stages = script.getStages(batch);
+        int total = statements.size();
+        batchTimes = new long[total + 1];
+        batchSizes = new int[total + 1];
+        batchFirsts = new int[total + 1];
+        results = new String[total + 1];
+        failedCount.set(0);
+        isTripped = false;
+        final ODTaskPolicy taskPolicy = getPolicy();
+        ODLogger.log("init-sql '" + file + "': " + total + " statements in " + stages.size() + " stages on " + msIp
+                + ", parallel=" + parallel + ", batch=" + batch + ", policy=" + taskPolicy);
+        long begin = System.currentTimeMillis();
+        ODQuery query = new ODQuery(cluster, msIp);
+        try {
+            for(ODSqlStage stage: stages) {
+                if(isTripped) {
+                    break;
+                }
+                if(stage.barrier != null) {
+                    runBatch(query, Collections.singletonList(stage.barrier), taskPolicy, total);
+                } else {
+                    runParallel(query, msIp, stage.batches, taskPolicy, total);
+                }
+            }
+        } finally {
+            query.close();
+        }
+        long useTime = System.currentTimeMillis() - begin;
+        int skipped = 0;
+        for(int i = 1; i <= total; i++) {
+            if(results[i] == null) {
+                results[i] = "skipped";
+                skipped++;
+            }
+        }
+        report(statements, useTime, skipped);
+        if(isTripped) {
+            return ODError.ERROR;
+        }
+        if(failedCount.get() > 0) {
+            ODLogger.log("[WARN] " + failedCount.get() + " of " + total
+                    + " statements failed, continue with policy '" + taskPolicy + "'");
+        }
+        return ODError.SUCCESS;
+    }
+
+    @Override
+    public ODTaskPolicy getPolicy() {
+        return ODTaskPolicy.toPolicy(policy);
+    }
+
+    // ----------------------------------------------------------- private
+
+    /**
+     * 执行并行阶段
+     * 表按顺序轮流分配到各连接, 同一个表的批量在同一个连接上依次执行
+     */
+    private void runParallel(ODQuery query, final String msIp, Map<String, List<List<ODSqlStatement>>> batches,
+                             final ODTaskPolicy taskPolicy, final int total) {
+        int laneCount = Math.max(1, Math.min(parallel, batches.size()));
+        List<List<List<ODSqlStatement>>> lanes = new ArrayList<>();
+        for(int i = 0; i < laneCount; i++) {
+            lanes.add(new ArrayList<List<ODSqlStatement>>());
+        }
+        int index = 0;
+        for(List<List<ODSqlStatement>> tableBatches: batches.values()) {
+            lanes.get(index++ % laneCount).addAll(tableBatches);
+        }
+        if(laneCount == 1) { // 不需要新的连接
+            for(List<ODSqlStatement> b: lanes.get(0)) {
+                runBatch(query, b, taskPolicy, total);
+            }
+            return;
+        }
+        List<Future<?>> futureList = new ArrayList<>();
+        for(final List<List<ODSqlStatement>> lane: lanes) {
+            futureList.add(cluster.executeAction(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    ODQuery laneQuery = new ODQuery(cluster, msIp); // 从连接池借出
+                    try {
+                        for(List<ODSqlStatement> b: lane) {
+                            runBatch(laneQuery, b, taskPolicy, total);
+                        }
+                    } finally {
+                        laneQuery.close();
+                    }
+                    return null;
+                }
+            }));
+        }
+        for(Future<?> future: futureList) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                ODLogger.error(e.toString(), (new Throwable()).getStackTrace());
+                isTripped = true;
+            }
+        }
+    }
+
+    /** 执行一个批量并记录结果, 策略已触发时跳过 */
+    private void runBatch(ODQuery query, List<ODSqlStatement> statements, ODTaskPolicy taskPolicy, int total) {
+        if(isTripped) {
+            return;
+        }
+        List<String> sqls = new ArrayList<>(statements.size());
+        for(ODSqlStatement statement: statements) {
+            sqls.add(statement.sql);
+        }
+        long start = System.currentTimeMillis();
+        Pair<ODError, List<Integer>> ret = query.executeBatch(sqls, timeout);
+        long useTime = System.currentTimeMillis() - start;
+        for(int i = 0; i < statements.size(); i++) {
+            ODSqlStatement statement = statements.get(i);
+            batchTimes[statement.index] = useTime;
+            batchSizes[statement.index] = statements.size();
+            batchFirsts[statement.index] = statements.get(0).index;
+            if(ret.second.contains(i)) {
+                results[statement.index] = "fail";
+                ODLogger.log("[ERROR] line " + statement.line + ": " + abbreviate(statement.sql, 80) + " fail!");
+            } else {
+                results[statement.index] = "ok";
+            }
+        }
+        if(!ret.second.isEmpty()) {
+            int failed = failedCount.addAndGet(ret.second.size());
+            if(taskPolicy.isTripped(failed, total)) {
+                isTripped = true;
+            }
+        }
+    }
+
+    /** 输出汇总和最慢的语句, 写入报告文件 */
+    private void report(List<ODSqlStatement> statements, long useTime, int skipped) {
+        // 按类型汇总, 批量的耗时平均到每条语句
+        Map<String, long[]> kinds = new LinkedHashMap<>(); // count, failed, total(us), max(ms)
+        for(ODSqlStatement statement: statements) {
+            long[] kind = kinds.get(statement.getKind());
+            if(kind == null) {
+                kind = new long[4];
+                kinds.put(statement.getKind(), kind);
+            }
+            int size = Math.max(batchSizes[statement.index], 1);
+            kind[0]++;
+            kind[1] += "fail".equals(results[statement.index]) ? 1 : 0;
+            kind[2] += batchTimes[statement.index] * 1000 / size;
+            kind[3] = Math.max(kind[3], batchTimes[statement.index]);
+        }
+        List<List<String>> rows = new ArrayList<>();
+        for(Map.Entry<String, long[]> entry: kinds.entrySet()) {
+            long[] kind = entry.getValue();
+            rows.add(new ArrayList<>(Arrays.asList(entry.getKey(), String.valueOf(kind[0]), String.valueOf(kind[1]),
+                    String.valueOf(kind[2] / 1000), String.valueOf(kind[3]))));
+        }
+        ODPrinter.printTable("Init SQL '" + name + "'", new ArrayList<>(Arrays.asList("Kind", "Count", "Failed",
+                "Total(ms)", "Max(ms)")), rows);
+        // 最慢的语句, 同一批量只列出第一条
+        List<ODSqlStatement> slowest = new ArrayList<>();
+        for(ODSqlStatement statement: statements) {
+            if(batchFirsts[statement.index] == statement.index) {
+                slowest.add(statement);
+            }
+        }
+        Collections.sort(slowest, new Comparator<ODSqlStatement>() {
+            @Override
+            public int compare(ODSqlStatement o1, ODSqlStatement o2) {
+                return Long.compare(batchTimes[o2.index], batchTimes[o1.index]);
+            }
+        });
+        rows = new ArrayList<>();
+        for(ODSqlStatement statement: slowest.subList(0, Math.min(SLOWEST_COUNT, slowest.size()))) {
+            rows.add(new ArrayList<>(Arrays.asList(String.valueOf(statement.line), String.valueOf(batchSizes[statement.index]),
+                    String.valueOf(batchTimes[statement.index]), results[statement.index], abbreviate(statement.sql, 40))));
+        }
+        if(!rows.isEmpty()) {
+            ODPrinter.printTable("Slowest", new ArrayList<>(Arrays.asList("Line", "Batch", "Time(ms)", "Result", "SQL")), rows);
+        }
+        String reportFile = writeReport(statements);
+        ODLogger.log(statements.size() + " statements in " + useTime + "ms, failed: " + failedCount.get()
+                + ", skipped: " + skipped + (reportFile != null ? ", report: " + reportFile : ""));
+    }
+
+    /**
+     * 写入每条语句的耗时, 以制表符分隔
+     * @return 文件路径, 失败时返回null
+     */
+    private String writeReport(List<ODSqlStatement> statements) {
+        File dir = new File(REPORT_DIR);
+        dir.mkdirs();
+        File reportFile = new File(dir, name + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".tsv");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(reportFile))) {
+            writer.write("index\tline\tkind\ttable\tbatch\ttime_ms\tresult\tsql");
+            writer.newLine();
+            for(ODSqlStatement statement: statements) {
+                writer.write(statement.index + "\t" + statement.line + "\t" + statement.getKind() + "\t"
+                        + (statement.table != null ? statement.table : "-") + "\t" + batchSizes[statement.index] + "\t"
+                        + batchTimes[statement.index] + "\t" + results[statement.index] + "\t"
+                        + abbreviate(statement.sql, SQL_DISPLAY_LENGTH));
+                writer.newLine();
+            }
+            return reportFile.getPath();
+        } catch (IOException e) {
+            ODLogger.log("[WARN] write report '" + reportFile + "' fail: " + ODUtil.parseException(e));
+            return null;
+        }
+    }
+
+    /** 合并空白, 超出长度时截断 */
+    private static String abbreviate(String sql, int length) {
+        sql = sql.replaceAll("\\s+", " ");
+        return sql.length() > length ? sql.substring(0, length - 3) + "..." : sql;
+    }
+}
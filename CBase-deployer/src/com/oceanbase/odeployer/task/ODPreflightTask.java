@@ -0,0 +1,184 @@
+package com.oceanbase.odeployer.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.oceanbase.odeployer.common.ODError;
+import com.oceanbase.odeployer.common.ODPreflightResult;
+import com.oceanbase.odeployer.common.ODServer;
+import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODPrinter;
+import com.oceanbase.odeployer.util.ODUtil;
+
+/**
+ * 启动前检查任务
+ * <p>并行检查所有主机的磁盘, ulimit, 内存, CPU, 内核参数和时钟偏差, 每台主机只执行一次远程命令</p>
+ * 阈值映射配置项preflight.*, 未配置时使用默认值
+ * @since OD2.0
+ */
+public class ODPreflightTask extends ODTask {
+
+    private static final Pattern SYSCTL_PATTERN = Pattern.compile("^\\s*([\\w.\\-]+)\\s*(>=|<=|=)\\s*(-?\\d+)\\s*$");
+
+    private static final long GB = 1024 * 1024;
+
+    /** 安装目录所在分区的最小可用空间(GB), 映射配置项preflight.disk */
+    private int disk = 20;
+
+    /** 最小可用内存(GB), 映射配置项preflight.memory */
+    private int memory = 4;
+
+    /** 最少在线CPU数, 映射配置项preflight.cpu */
+    private int cpu = 2;
+
+    /** 最小ulimit -n, 映射配置项preflight.nofile */
+    private int nofile = 65535;
+
+    /** 最小ulimit -u, 映射配置项preflight.nproc */
+    private int nproc = 4096;
+
+    /** 最大时钟偏差(毫秒), 映射配置项preflight.clock */
+    private int clock = 200;
+
+    /** 内核参数, 映射配置项preflight.sysctl */
+    private String sysctl = "vm.max_map_count>=65530|net.core.somaxconn>=1024";
+
+    public ODPreflightTask(String name) {
+        super(name);
+    }
+
+    @Override
+    public ODError execute(List<String> argv, String sectionName) throws Exception {
+        ODError ret = ODError.SUCCESS;
+        if(cluster.getOceanbase() == null) {
+            return ODError.ERROR;
+        }
+        final List<String[]> sysctlList = parseSysctl();
+        if(sysctlList == null) {
+            return ODError.ERROR;
+        }
+        final List<String> sysctlNames = new ArrayList<>();
+        for(String[] condition: sysctlList) {
+            sysctlNames.add(condition[0]);
+        }
+        List<ODServer> serverList = cluster.getOceanbase().getServerList();
+        List<Future<ODPreflightResult>> futureList = new ArrayList<>();
+        for(final ODServer server: serverList) {
+            futureList.add(cluster.executeAction(new Callable<ODPreflightResult>() {
+                @Override
+                public ODPreflightResult call() throws Exception {
+                    return server.preflight(sysctlNames);
+                }
+            }));
+        }
+        List<List<String>> rows = new ArrayList<>();
+        for(int i = 0; i < serverList.size(); i++) {
+            ODPreflightResult result;
+            try {
+                result = futureList.get(i).get();
+            } catch (InterruptedException | ExecutionException e) {
+                result = new ODPreflightResult(serverList.get(i).ip, false);
+            }
+            List<String> row = check(result, sysctlList);
+            if(!row.get(row.size() - 1).equals("ok")) {
+                ret = ODError.ERROR;
+            }
+            rows.add(row);
+        }
+        ODPrinter.printTable("Preflight", new ArrayList<>(Arrays.asList("IP", "Disk(GB)", "Memory(GB)", "CPU",
+                "nofile", "nproc", "Clock(ms)", "Sysctl", "Result")), rows);
+        if(ret.isError()) {
+            ODLogger.log("[ERROR] preflight fail, thresholds: disk=" + disk + "GB, memory=" + memory + "GB, cpu=" + cpu
+                    + ", nofile=" + nofile + ", nproc=" + nproc + ", clock=" + clock + "ms, sysctl=" + sysctl);
+        }
+        return ret;
+    }
+
+    // ----------------------------------------------------------- private
+
+    /**
+     * 按阈值检查一台主机
+     * @return 表格的一行, 不满足的项标记阈值, 最后一列为ok, fail或unreachable
+     */
+    private List<String> check(ODPreflightResult result, List<String[]> sysctlList) {
+        List<String> row = new ArrayList<>();
+        row.add(result.getIp());
+        if(!result.isReachable()) {
+            for(int i = 0; i < 7; i++) {
+                row.add("-");
+            }
+            row.add("unreachable");
+            return row;
+        }
+        boolean ok = true;
+        long diskKB = result.getLong(ODPreflightResult.DISK);
+        ok &= addCell(row, diskKB < 0 ? "-" : ODUtil.trimFloat(diskKB / (float) GB), diskKB >= disk * GB, "<" + disk);
+        long memoryKB = result.getLong(ODPreflightResult.MEMORY);
+        ok &= addCell(row, memoryKB < 0 ? "-" : ODUtil.trimFloat(memoryKB / (float) GB), memoryKB >= memory * GB, "<" + memory);
+        ok &= addMinimum(row, result.getLong(ODPreflightResult.CPU), cpu);
+        ok &= addMinimum(row, result.getLong(ODPreflightResult.NOFILE), nofile);
+        ok &= addMinimum(row, result.getLong(ODPreflightResult.NPROC), nproc);
+        if(result.hasClock()) {
+            long offset = result.getClockOffset();
+            // 去掉误差后仍超过阈值才视为偏差过大
+            ok &= addCell(row, (offset >= 0 ? "+" : "") + offset + " (err " + result.getClockError() + ")",
+                    Math.abs(offset) - result.getClockError() <= clock, ">" + clock);
+        } else {
+            ok &= addCell(row, "-", false, "");
+        }
+        StringBuilder failed = new StringBuilder();
+        for(String[] condition: sysctlList) {
+            long value = result.getLong(ODPreflightResult.SYSCTL_PREFIX + condition[0]);
+            long threshold = Long.parseLong(condition[2]);
+            boolean pass = value >= 0 && (condition[1].equals(">=") ? value >= threshold
+                    : condition[1].equals("<=") ? value <= threshold : value == threshold);
+            if(!pass) {
+                failed.append(failed.length() > 0 ? " " : "").append(condition[0]).append('=')
+                      .append(value < 0 ? "-" : String.valueOf(value)).append('(').append(condition[1]).append(condition[2]).append(')');
+            }
+        }
+        ok &= addCell(row, failed.length() > 0 ? failed.toString() : "ok", failed.length() == 0, "");
+        row.add(ok ? "ok" : "fail");
+        return row;
+    }
+
+    /**
+     * 添加单元格, 不满足时在值后标记阈值
+     * @return pass
+     */
+    private boolean addCell(List<String> row, String value, boolean pass, String threshold) {
+        row.add(pass || threshold.length() == 0 ? value : value + " (" + threshold + ")");
+        return pass;
+    }
+
+    private boolean addMinimum(List<String> row, long value, long minimum) {
+        String cell = value == Long.MAX_VALUE ? "unlimited" : value < 0 ? "-" : String.valueOf(value);
+        return addCell(row, cell, value >= minimum, "<" + minimum);
+    }
+
+    /**
+     * 解析内核参数条件
+     * @return 每项为{名称, 比较符, 阈值}, 格式错误时打印错误信息并返回null
+     */
+    private List<String[]> parseSysctl() {
+        List<String[]> list = new ArrayList<>();
+        if(sysctl == null || sysctl.trim().length() == 0 || sysctl.trim().equals("none")) {
+            return list;
+        }
+        for(String condition: ODUtil.split(sysctl, "\\|")) {
+            Matcher matcher = SYSCTL_PATTERN.matcher(condition);
+            if(!matcher.matches()) {
+                ODLogger.log("[ERROR] preflight.sysctl '" + condition + "' is undefined, it should be 'name>=value', 'name<=value' or 'name=value'!");
+                return null;
+            }
+            list.add(new String[] {matcher.group(1), matcher.group(2), matcher.group(3)});
+        }
+        return list;
+    }
+}
@@ -1,16 +1,25 @@
 package com.oceanbase.odeployer.task;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import com.oceanbase.odeployer.ODDeployer;
 import com.oceanbase.odeployer.common.ODAction;
+import com.oceanbase.odeployer.common.ODBenchmark;
+import com.oceanbase.odeployer.common.ODBenchmarkResult;
 import com.oceanbase.odeployer.common.ODError;
+import com.oceanbase.odeployer.common.ODPortConflict;
 import com.oceanbase.odeployer.common.ODServer;
 import com.oceanbase.odeployer.common.ODServerName;
 import com.oceanbase.odeployer.start.ODParameterGenerator;
 import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODPrinter;
 import com.oceanbase.odeployer.util.ODUtil;
-import com.oceanbase.odeployer.common.ODConfiguration;
+import com.oceanbase.odeployer.util.Pair;
 
 /**
  * 启动任务
@@ -24,7 +33,6 @@ public class ODStartTask extends ODTask {
 	/** 判断所所启动的RS、UPS数目与所设定的RS、UPS数目是否一致 */
 	private int rsCount;
 	private int upsCount;
-	ODConfiguration conf;
 	
     /** 清空数据 */
     private List<String> wipe;   
@@ -35,7 +43,25 @@ public class ODStartTask extends ODTask {
     private ODServer masterUPS;
     private ODServer serverIp;
     private ODParameterGenerator parameterGenerator;
-    public static ODServer mRs;
+
+    /** 失败处理策略, 映射配置项start.policy */
+    private String policy;
+
+    /** 启动后的冒烟负载的最小QPS, 不大于0时不检查, 映射配置项start.gate.qps */
+    private int gateQps;
+
+    /** 冒烟负载的最大p99延迟(毫秒), 映射配置项start.gate.p99 */
+    private int gateP99 = 100;
+
+    /** 达到以上指标的时限(秒), 映射配置项start.gate.budget */
+    private int gateBudget = 300;
+
+    /** 冒烟负载: 每轮的时长(毫秒), 线程数, 预置行数, 读写比例 */
+    private static final long GATE_WINDOW = 10000;
+    private static final int GATE_THREADS = 4;
+    private static final int GATE_ROWS = 1000;
+    private static final String GATE_TABLE = "od_smoke";
+    private static final String GATE_WORKLOAD = "point-select:4|insert:1";
     
     /**
      * 子类必须实现Task(String)类型的构造函数
@@ -49,14 +75,13 @@ public class ODStartTask extends ODTask {
     public ODError execute(List<String> argv, String sectionName) throws Exception {
         ODError ret = ODError.SUCCESS;
         if(actionList != null && actionList.size() > 0) {
-            ODDeployer deployer = ODDeployer.getInstance();
             // 从配置项中获取Oceanbase的版本名称, 调用对应的启动命令参数生成器
-            ODDeployTask deployTask = deployer.getDeployTask();
+            ODDeployTask deployTask = cluster.getDeployTask();
             int startWait = deployTask.getAfterstartWait();
             int bootstrapWait = deployTask.getBootstrapWait();
             int bootstrapTimeout = 600;//bootstrap延迟时间
             
-            parameterGenerator = deployer.getParameterGenerator();
+            parameterGenerator = cluster.getParameterGenerator();
             if(parameterGenerator != null) {
                 // ----------------------------------------------------------- 1. start
                 if(wipe != null) {
@@ -82,15 +107,19 @@ public class ODStartTask extends ODTask {
                 // 初始化附加的启动参数生成器
                 ret = parameterGenerator.init(actionList);                                
                 if(ret.isError()) {
-                	ODLogger.debug("fail to init parameterGenerator", (new Throwable()).getStackTrace());
+                	ODLogger.debug("fail to init parameterGenerator");
                 } else {
                 	ret = putMasterRS();
                 	ret = putMasterUPS();
                 	if(masterRS == null || masterUPS == null) {
                 		ODLogger.log("start one rootserver and updateserver at least!");
                 	} else {
-                		// 执行action
-                        executeActions(argv, sectionName);
+                		// 启动前检查端口, 有冲突时不再启动
+                        ret = checkPortConflicts();
+                		// 执行action, 失败时不再bootstrap
+                        if(ret.isSuccess()) {
+                            ret = executeActions(argv, sectionName);
+                        }
                         // ----------------------------------------------------------- 2. setRole
                         if(ret.isSuccess()) {
                             if(startWait > 0) {
@@ -115,6 +144,10 @@ public class ODStartTask extends ODTask {
                             // 执行bootstrap
                             ret = masterRS.bootstrap(bootstrapTimeout);
                         }
+                        // ----------------------------------------------------------- 4. smoke gate
+                        if(gateQps > 0 && ret.isSuccess()) {
+                            ret = runSmokeGate();
+                        }
                 	}
                 }
             } else {
@@ -128,6 +161,123 @@ public class ODStartTask extends ODTask {
         return ret;
     }
     
+    /**
+     * 启动后的冒烟负载
+     * <p>bootstrap成功后集群可能仍需一段时间才能正常读写, 在时限内反复执行短时的读写负载,
+     * 直到某一轮的QPS和p99延迟达到配置的指标</p>
+     * @return 时限内未达到指标时返回ERROR
+     */
+    private ODError runSmokeGate() {
+        ODLogger.log("smoke gate: qps >= " + gateQps + ", p99 <= " + gateP99 + "ms within " + gateBudget + "s");
+        long begin = System.currentTimeMillis();
+        long deadline = begin + gateBudget * 1000L;
+        ODBenchmark benchmark = null;
+        ODBenchmarkResult result = null;
+        int round = 0;
+        while(System.currentTimeMillis() < deadline) {
+            if(benchmark == null) { // 等待MS可用并建表
+                String msIp = cluster.getOceanbase().getAliveMsIp();
+                if(msIp != null) {
+                    benchmark = new ODBenchmark(msIp, cluster.getShell().getMsZPort(), "admin", "admin", GATE_TABLE);
+                    if(benchmark.prepare(GATE_ROWS).isError()) {
+                        benchmark = null;
+                    }
+                }
+                if(benchmark == null) {
+                    ODUtil.sleep(Math.min(5000, Math.max(deadline - System.currentTimeMillis(), 0)));
+                    continue;
+                }
+            }
+            long window = Math.min(GATE_WINDOW, deadline - System.currentTimeMillis());
+            if(window < GATE_WINDOW / 2) { // 剩余时间太短, 结果不可信
+                break;
+            }
+            round++;
+            result = benchmark.run(ODBenchmark.parseWorkload(GATE_WORKLOAD), GATE_THREADS, window, 5);
+            double qps = result.getQps();
+            double p99 = result.getTotal().getValueAtPercentile(99) / 1000.0;
+            boolean pass = qps >= gateQps && p99 <= gateP99;
+            ODLogger.log("smoke round " + round + ": qps=" + String.format("%.1f", qps) + ", p99="
+                    + String.format("%.2f", p99) + "ms, errors=" + result.getErrorCount() + (pass ? ", pass" : ""));
+            if(pass) {
+                break;
+            }
+        }
+        long useTime = (System.currentTimeMillis() - begin) / 1000;
+        if(result != null) {
+            ODPrinter.printTable("Smoke Gate (latency in ms)", ODBenchmarkResult.getHeader(), result.toRows());
+            double qps = result.getQps();
+            double p99 = result.getTotal().getValueAtPercentile(99) / 1000.0;
+            String summary = "qps=" + String.format("%.1f", qps) + " (>= " + gateQps + "), p99="
+                    + String.format("%.2f", p99) + "ms (<= " + gateP99 + "ms), " + round + " rounds in " + useTime + "s";
+            if(qps >= gateQps && p99 <= gateP99) {
+                ODLogger.log("smoke gate pass: " + summary);
+                return ODError.SUCCESS;
+            }
+            ODLogger.log("[ERROR] smoke gate fail: " + summary);
+        } else {
+            ODLogger.log("[ERROR] smoke gate fail: mergeserver is not usable within " + gateBudget + "s");
+        }
+        return ODError.ERROR;
+    }
+
+    /**
+     * 并行检查各主机上待启动的Server的端口是否已被占用
+     * <p>每台主机只执行一次远程命令, 有冲突时打印冲突表格</p>
+     * @return 有端口冲突或主机不可达时返回ERROR
+     */
+    private ODError checkPortConflicts() {
+        ODError ret = ODError.SUCCESS;
+        // 同一主机可能有多个action
+        final Map<ODServer, List<ODServerName>> serverMap = new LinkedHashMap<>();
+        for(ODAction action: actionList) {
+            List<ODServerName> servernames = serverMap.get(action.getServer());
+            if(servernames == null) {
+                servernames = new ArrayList<>();
+                serverMap.put(action.getServer(), servernames);
+            }
+            servernames.addAll(action.getServernames());
+        }
+        List<Future<Pair<ODError, List<ODPortConflict>>>> futureList = new ArrayList<>();
+        for(final Map.Entry<ODServer, List<ODServerName>> entry: serverMap.entrySet()) {
+            futureList.add(cluster.executeAction(new Callable<Pair<ODError, List<ODPortConflict>>>() {
+                @Override
+                public Pair<ODError, List<ODPortConflict>> call() throws Exception {
+                    return entry.getKey().checkPorts(entry.getValue());
+                }
+            }));
+        }
+        List<List<String>> rows = new ArrayList<>();
+        int i = 0;
+        for(ODServer server: serverMap.keySet()) {
+            try {
+                Pair<ODError, List<ODPortConflict>> result = futureList.get(i).get();
+                if(result.first.isError()) {
+                    ODLogger.log("[ERROR] [" + server.ip + "]: check ports fail!");
+                    ret = ODError.ERROR;
+                }
+                for(ODPortConflict conflict: result.second) {
+                    rows.add(conflict.toRow());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                ODLogger.log("[ERROR] [" + server.ip + "]: check ports fail!");
+                ret = ODError.ERROR;
+            }
+            i++;
+        }
+        if(!rows.isEmpty()) {
+            ODPrinter.printTable("Port Conflicts", ODPortConflict.getHeader(), rows);
+            ODLogger.log("[ERROR] " + rows.size() + " port(s) already in use, stop them before start!");
+            ret = ODError.ERROR;
+        }
+        return ret;
+    }
+
+    @Override
+    public ODTaskPolicy getPolicy() {
+        return ODTaskPolicy.toPolicy(policy);
+    }
+
     public ODParameterGenerator getParameterGenerator() {
         return parameterGenerator;
     }
@@ -159,6 +309,7 @@ public class ODStartTask extends ODTask {
     //
     /**
      * 默认启动所指定的RS为master，所指定的UPS为master
+     * <p>未指定start.mrs, start.mups时(如ODOceanbase.start()构建的all-start), 取第一个RS和UPS</p>
      * @return 可能为空
      */  
     public ODError putMasterRS() {
@@ -170,10 +321,9 @@ public class ODStartTask extends ODTask {
         			if(sn == ODServerName.RS) {//判断一个action里的server是否是RS，若是RS判断是否是主RS 
         				//mod zhangyf [paxos] 170522
         				serverIp = ac.getServer();
-        				if((serverIp.ip).equals(ODDeployer.getStValueMrs()))
+        				if(cluster.getStValueMrs() == null || (serverIp.ip).equals(cluster.getStValueMrs())) // 未指定时(如all-start)取第一个RS
         				{
         					masterRS = ac.getServer();
-        					mRs = masterRS;
         					return ret;        					
         				}
         				//mod end
@@ -201,7 +351,7 @@ public class ODStartTask extends ODTask {
     				{
     					//mod zhangyf[paxos] 170522
     					serverIp = ac.getServer();
-    					if((serverIp.ip).equals(ODDeployer.getStValueMups()))
+    					if(cluster.getStValueMups() == null || (serverIp.ip).equals(cluster.getStValueMups())) // 未指定时(如all-start)取第一个UPS
     					{
     						masterUPS = ac.getServer();
     						return ret;
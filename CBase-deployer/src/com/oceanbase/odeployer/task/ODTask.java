@@ -1,17 +1,25 @@
 package com.oceanbase.odeployer.task;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.oceanbase.odeployer.ODDeployer;
+import com.oceanbase.odeployer.ODCluster;
 import com.oceanbase.odeployer.common.ODAction;
 import com.oceanbase.odeployer.common.ODActionExecutor;
 import com.oceanbase.odeployer.common.ODError;
 import com.oceanbase.odeployer.common.ODItem;
+import com.oceanbase.odeployer.util.ODEventLog;
 import com.oceanbase.odeployer.util.ODLogger;
+import com.oceanbase.odeployer.util.ODMetricRegistry;
 import com.oceanbase.odeployer.util.ODUtil;
 
 /**
@@ -25,14 +33,26 @@ public abstract class ODTask {
     /** 任务名称 */
     protected String name;
 
+    /** 所属的集群上下文 */
+    protected ODCluster cluster;
+
     /** 动作列表 */
     protected List<ODAction> actionList = new ArrayList<>();
     
     /** 动作执行器 */
     private Map<ODItem, ODActionExecutor> actionExecutorMap;
     
-    /** 正在执行action的线程计数 */
-    private AtomicInteger executingCount = new AtomicInteger(0);
+    /** 失败的action计数 */
+    private AtomicInteger failedCount = new AtomicInteger(0);
+
+    /** 正在执行的action序号 */
+    private Set<Integer> runningIndexSet = Collections.synchronizedSet(new HashSet<Integer>());
+
+    /** 失败处理策略是否已触发 */
+    private volatile boolean isTripped;
+
+    /** 并行执行的action, 策略触发时取消 */
+    private List<Future<?>> pendingFutures = new ArrayList<>();
 
     /**
      * 运行任务, 可以执行多次
@@ -44,8 +64,9 @@ public abstract class ODTask {
     
     /**
      * 执行动作
+     * 动作的执行结果按任务的失败处理策略汇总, 策略触发时取消未执行的动作并中止正在执行的远程命令
      * @param argv 命令行参数
-     * @return
+     * @return 策略触发或执行器缺失时返回ERROR
      */
     public ODError executeActions(final List<String> argv, String sectionName) {
         ODError ret = ODError.SUCCESS;
@@ -60,50 +81,48 @@ public abstract class ODTask {
                 }
             }
         }
-        
-//        for(int j = 0; j < actionList.size(); j++){
-//           final ODAction actionMrs = actionList.get(j);
-//           final ODActionExecutor executorMrs = actionExecutorMap.get(actionMrs.getItem());
-//           if(actionMrs.getServer().ip == ODStartTask.mRs.ip )//主RS所在主机优先执行
-//           {
-//ODLogger.log("action "+actionMrs.getServer().ip+" "+argv+" "+this);         	   
-//           	executorMrs.execute(0, argv, this); 
-//           }else if(ODStartTask.mRs.ip == null || actionMrs.getServer().ip == null){
-//        	   ret = ODError.ERROR;
-//               ODLogger.error("[ERROR] Master ip is not alive!", (new Throwable()).getStackTrace());
-//           }
-//        }
-        
-        for(int i = 0; i < actionList.size(); i++) {
+        final ODTaskPolicy policy = getPolicy();
+        failedCount.set(0);
+        isTripped = false;
+        runningIndexSet.clear();
+        for(int i = 0; i < actionList.size() && !isTripped; i++) {
             final ODAction action = actionList.get(i);
             if(actionExecutorMap != null) {
                 final ODActionExecutor executor = actionExecutorMap.get(action.getItem());
-//ODLogger.log("action2 "+action.getServer().ip+" "+argv+" "+this);                
                 if(executor != null) { //调用对应的actionExecutor
                     action.waitInterval();
-                    //add 
-//                    if(action.getServer().ip != ODStartTask.mRs.ip)//主RS所在主机优先执行
-//                    {
-                    //end add
-                      if(i < actionList.size() - 1 && // 若不是最后一个action
-                        actionList.get(i + 1).getInterval() < 0) { // 若后一个action的需要同时执行
-                         final int index = i; // action的序号
-                         final ODTask self = this;
-                         ODDeployer.getInstance().executeAction(new Runnable() { // 启动新线程
+                    if(i < actionList.size() - 1 && // 若不是最后一个action
+                            actionList.get(i + 1).getInterval() < 0) { // 若后一个action的需要同时执行
+                        final int index = i; // action的序号
+                        runningIndexSet.add(index);
+                        Future<?> future = cluster.executeAction(new Runnable() { // 启动新线程
                             @Override
                             public void run() {
-                                executingCount.incrementAndGet(); // 增加计数
-                                executor.execute(index, argv, self); // 在新线程中执行, 不阻塞, 使得后面的action可同时执行
-                                executingCount.decrementAndGet(); // 减少计数
+                                if(isTripped) { // 策略已触发, 不再执行
+                                    runningIndexSet.remove(index);
+                                    return;
+                                }
+                                // 在新线程中执行, 不阻塞, 使得后面的action可同时执行
+                                ODError actionRet = ODError.ERROR;
+                                try {
+                                    actionRet = executeAction(executor, index, argv);
+                                } finally {
+                                    onActionDone(index, actionRet, policy);
+                                }
                             }
                         });
-                      } else {
-                          if(action.getInterval() >= 0) { // 若interval >= 0, 说明需要等待前面所有线程结束
-                            while(executingCount.get() > 0); // 等待
-                         }
-                         executor.execute(i, argv, this); // 在主线程中执行
-                      }
-//                   }   
+                        synchronized (pendingFutures) {
+                            pendingFutures.add(future);
+                        }
+                    } else {
+                        if(action.getInterval() >= 0) { // 若interval >= 0, 说明需要等待前面所有线程结束
+                            waitActions();
+                        }
+                        if(!isTripped) {
+                            runningIndexSet.add(i);
+                            onActionDone(i, executeAction(executor, i, argv), policy); // 在主线程中执行
+                        }
+                    }
                 } else {
                     ret = ODError.ERROR;
                     ODLogger.error("[ERROR] action executor for '" + action.getItem() + "' is undefined!", 
@@ -114,10 +133,23 @@ public abstract class ODTask {
                 ODLogger.error("[ERROR] action executor map is null!", (new Throwable()).getStackTrace());
             }
         }
-        ODUtil.sleep(1);
-        while(executingCount.get() > 0); // 等待所有action结束
+        waitActions(); // 等待所有action结束
+        if(isTripped) {
+            ret = ODError.ERROR;
+        } else if(failedCount.get() > 0) {
+            ODLogger.log("[WARN] " + failedCount.get() + " of " + actionList.size()
+                    + " actions failed, continue with policy '" + policy + "'");
+        }
         return ret;
     }
+
+    /**
+     * 失败处理策略, 默认任一动作失败即终止
+     * @return 子类可重载
+     */
+    public ODTaskPolicy getPolicy() {
+        return ODTaskPolicy.FAIL_FAST;
+    }
     
     /**
      * 将配置项与Task属性绑定
@@ -128,6 +160,22 @@ public abstract class ODTask {
         //do nothing
     };
 
+    /**
+     * 绑定集群上下文
+     * @param cluster 由解析器在创建任务时调用
+     */
+    public void setCluster(ODCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * 所属的集群上下文
+     * @return 可能为null
+     */
+    public ODCluster getCluster() {
+        return cluster;
+    }
+
     /**
      * 任务名称
      * @return name
@@ -175,6 +223,94 @@ public abstract class ODTask {
     }
     
     // ----------------------------------------------------------- private
+
+    /**
+     * 调用执行器, 并记录耗时和失败次数
+     * @param executor 动作执行器
+     * @param index action的序号
+     * @param argv 命令行参数
+     * @return 执行器的返回值
+     */
+    private ODError executeAction(ODActionExecutor executor, int index, List<String> argv) {
+        ODAction action = actionList.get(index);
+        String item = ODMetricRegistry.label("item", String.valueOf(action.getItem()));
+        long start = System.nanoTime();
+        ODError ret = null;
+        // 执行器在当前线程中执行的远程命令关联到该action
+        ODEventLog.beginAction(name, index, String.valueOf(action.getItem()),
+                action.getServer() != null ? action.getServer().ip : null, action.getRoles());
+        try {
+            ret = executor.execute(index, argv, this);
+        } finally {
+            ODEventLog.endAction(ret != null && ret.isSuccess() ? ODEventLog.RESULT_SUCCESS : ODEventLog.RESULT_ERROR);
+            ODMetricRegistry.histogram("od_action_seconds", "Duration of task actions", item).observeSince(start);
+            if(ret == null || ret.isError()) {
+                ODMetricRegistry.counter("od_action_failures_total", "Failed task actions", item).increment();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 记录action的执行结果, 若策略触发则取消其它action
+     * @param index action的序号
+     * @param actionRet 执行结果
+     * @param policy 失败处理策略
+     */
+    private void onActionDone(int index, ODError actionRet, ODTaskPolicy policy) {
+        runningIndexSet.remove(index);
+        if(actionRet == null || actionRet.isError()) {
+            int failed = failedCount.incrementAndGet();
+            ODAction action = actionList.get(index);
+            ODLogger.log("[ERROR] action[" + index + "] " + action.getItem() + " on [" + action.getServer().ip + "] fail!");
+            synchronized (this) {
+                if(!isTripped && policy.isTripped(failed, actionList.size())) {
+                    isTripped = true;
+                    ODLogger.log("[ERROR] " + failed + " of " + actionList.size() + " actions failed, policy '"
+                            + policy + "' is tripped, cancel the remaining actions!");
+                    cancelRunningActions();
+                }
+            }
+        }
+    }
+
+    /**
+     * 取消未开始的action, 中止正在执行的远程命令
+     */
+    private void cancelRunningActions() {
+        synchronized (pendingFutures) {
+            for(Future<?> future: pendingFutures) {
+                future.cancel(true);
+            }
+        }
+        Integer[] indexes;
+        synchronized (runningIndexSet) {
+            indexes = runningIndexSet.toArray(new Integer[runningIndexSet.size()]);
+        }
+        for(Integer i: indexes) {
+            actionList.get(i).getServer().abort();
+        }
+    }
+
+    /**
+     * 等待并行执行的action结束
+     */
+    private void waitActions() {
+        List<Future<?>> futureList;
+        synchronized (pendingFutures) {
+            futureList = new ArrayList<>(pendingFutures);
+        }
+        for(Future<?> future: futureList) {
+            try {
+                future.get();
+            } catch (CancellationException | ExecutionException | InterruptedException e) {
+                // 结果已由onActionDone记录
+            }
+        }
+        synchronized (pendingFutures) {
+            pendingFutures.removeAll(futureList);
+        }
+    }
     
     /**
      * 添加动作处理器
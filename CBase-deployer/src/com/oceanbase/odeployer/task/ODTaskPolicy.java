@@ -0,0 +1,63 @@
+package com.oceanbase.odeployer.task;
+
+/**
+ * 任务的失败处理策略
+ * <blockquote><pre>
+ * 1. FAIL_FAST:   任一动作失败即终止任务, 取消其余正在执行和未执行的动作
+ * 2. BEST_EFFORT: 执行所有动作, 只记录失败, 任务仍视为成功
+ * 3. QUORUM:      成功的动作已不可能超过半数时终止任务
+ * </pre></blockquote>
+ * @since OD2.0
+ */
+public enum ODTaskPolicy {
+    FAIL_FAST,
+    BEST_EFFORT,
+    QUORUM;
+
+    /**
+     * 转换类型
+     * @param policy 配置项的值, 如: fail-fast
+     * @return 无法识别时返回FAIL_FAST
+     */
+    public static ODTaskPolicy toPolicy(String policy) {
+        if(policy != null) {
+            for(ODTaskPolicy p: values()) {
+                if(p.toString().equalsIgnoreCase(policy.trim())) {
+                    return p;
+                }
+            }
+        }
+        return FAIL_FAST;
+    }
+
+    /**
+     * 是否应终止任务
+     * @param failedCount 已失败的动作数
+     * @param totalCount 动作总数
+     * @return boolean
+     */
+    public boolean isTripped(int failedCount, int totalCount) {
+        switch (this) {
+            case FAIL_FAST:
+                return failedCount > 0;
+            case QUORUM:
+                return totalCount - failedCount <= totalCount / 2;
+            default:
+                return false;
+        }
+    }
+
+    /** 配置文件中的名称 */
+    public String toString() {
+        switch (this) {
+            case FAIL_FAST:
+                return "fail-fast";
+            case BEST_EFFORT:
+                return "best-effort";
+            case QUORUM:
+                return "quorum";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.oceanbase.odeployer.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步追加写文件
+ * <p>各线程把文本放入环形缓冲区{@link ODLogRing}, 由一个写线程批量取出并写入文件, 每批只flush一次</p>
+ * 缓冲区满时写入的线程等待, 不丢弃; close()时写完缓冲区中的文本再关闭文件
+ * @since OD2.0
+ */
+public class ODAsyncWriter {
+
+    /** 缓冲区容量(条) */
+    private static final int RING_CAPACITY = 8192;
+
+    /** 每批最多写入的条数 */
+    private static final int BATCH_SIZE = 512;
+
+    /** 缓冲区为空时写线程的等待时间 */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ODLogRing ring = new ODLogRing(RING_CAPACITY);
+
+    private final Writer writer;
+
+    /** 写文件的线程 */
+    private final Thread writerThread;
+
+    private volatile boolean isClosed;
+
+    /** 已写入文件的条数 */
+    private volatile long writtenCount;
+
+    /**
+     * 打开文件并启动写线程, 目录不存在时创建
+     * @param file 追加写入的文件
+     * @param threadName 写线程的名称
+     * @throws IOException 打开文件失败
+     */
+    public ODAsyncWriter(File file, String threadName) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(dir != null) {
+            dir.mkdirs();
+        }
+        writer = new BufferedWriter(new FileWriter(file, true));
+        writerThread = new Thread(threadName) {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 放入缓冲区, 缓冲区满时等待写线程
+     * @param text 文本, 包括换行符
+     */
+    public void write(String text) {
+        while(!ring.offer(text)) {
+            if(!writerThread.isAlive()) {
+                break;
+            }
+            LockSupport.unpark(writerThread);
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 等待已放入缓冲区的文本写入文件
+     */
+    public void flush() {
+        long count = ring.getWriteCount();
+        while(writtenCount < count && writerThread.isAlive()) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * 写完缓冲区中的文本后关闭文件
+     */
+    public void close() {
+        isClosed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ----------------------------------------------------------- private
+
+    /** 写线程: 批量取出文本, 每批flush一次; close()后写完剩余的文本并关闭文件 */
+    private void drain() {
+        StringBuilder sb = new StringBuilder();
+        while(true) {
+            boolean isStopped = isClosed; // 先读取状态, 再取文本, 保证关闭前放入的文本都被写入
+            sb.setLength(0);
+            int count = ring.drain(sb, BATCH_SIZE);
+            if(count > 0) {
+                try {
+                    writer.write(sb.toString());
+                    writer.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                writtenCount += count;
+            } else if(isStopped && ring.isEmpty()) {
+                break;
+            } else if(!isStopped) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
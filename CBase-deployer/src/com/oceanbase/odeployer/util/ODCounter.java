@@ -0,0 +1,49 @@
+package com.oceanbase.odeployer.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器
+ * <p>不同线程按线程号写入不同的分段, 减少多线程同时计数时的竞争, 读取时累加所有分段</p>
+ * 各分段之间间隔一个缓存行, 避免伪共享
+ * @since OD2.0
+ */
+public class ODCounter {
+
+    /** 分段数, 必须为2的幂 */
+    private static final int STRIPES = 16;
+
+    /** 每个分段占用的long个数, 8个long为64字节 */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /** 加1 */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * 增加计数
+     * @param delta 增量
+     */
+    public void add(long delta) {
+        cells.getAndAdd(index(), delta);
+    }
+
+    /**
+     * 当前计数
+     * @return 所有分段之和
+     */
+    public long get() {
+        long sum = 0;
+        for(int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int index() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,248 @@
+package com.oceanbase.odeployer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 结构化事件日志
+ * <p>每行一个JSON对象, 经{@link ODAsyncWriter}异步写入, 用于统计多次运行中各主机的耗时和失败率</p>
+ * <blockquote><pre>
+ * ts           时间戳(毫秒)
+ * run          运行标识, 每次启动程序生成一个
+ * event        action: 执行的动作; command: 远程命令
+ * task         所属的task
+ * action       action的序号
+ * item         action的配置项
+ * host         主机IP
+ * role         Server类型, 如: rs|ups
+ * cmd          远程命令的序号, 同一次运行内唯一
+ * duration_ms  耗时(毫秒)
+ * result       SUCCESS, ERROR, ABORTED
+ * error        失败时的错误信息, 只保留第一行
+ * </pre></blockquote>
+ * 值为空的字段不输出; 在action中执行的远程命令继承所在线程的task, action和role
+ * @since OD2.0
+ */
+public class ODEventLog {
+
+    public static final String RESULT_SUCCESS = "SUCCESS";
+
+    public static final String RESULT_ERROR = "ERROR";
+
+    public static final String RESULT_ABORTED = "ABORTED";
+
+    /** error字段的最大长度 */
+    private static final int MAX_ERROR_LENGTH = 200;
+
+    /** 运行标识, 如: 20161230120000-1a2b3c4d */
+    private static final String RUN_ID = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    /** 远程命令的序号 */
+    private static final AtomicLong commandId = new AtomicLong();
+
+    /** 当前线程正在执行的action */
+    private static final ThreadLocal<Context> context = new ThreadLocal<>();
+
+    private static volatile ODAsyncWriter writer;
+
+    private static boolean isHookAdded = false;
+
+    /**
+     * 初始化, 已初始化时不重复打开文件
+     * @param filepath 事件日志的路径和文件名
+     */
+    public static synchronized void init(String filepath) {
+        if(writer != null) {
+            return;
+        }
+        try {
+            writer = new ODAsyncWriter(new File(filepath), "od-event-log");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if(!isHookAdded) { // 未调用destroy()就退出时, 如Ctrl+C
+            isHookAdded = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("od-event-log-flush") {
+                @Override
+                public void run() {
+                    ODAsyncWriter w = writer;
+                    if(w != null) {
+                        w.flush();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 写完缓冲区中的事件后关闭文件
+     */
+    public static synchronized void destroy() {
+        if(writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    public static String getRunId() {
+        return RUN_ID;
+    }
+
+    /**
+     * 开始执行action, 之后当前线程中执行的远程命令都关联到该action
+     * @param task task名称
+     * @param index action的序号
+     * @param item action的配置项
+     * @param host 主机IP
+     * @param role Server类型, 可为null
+     */
+    public static void beginAction(String task, int index, String item, String host, String role) {
+        context.set(new Context(task, index, item, host, role, System.nanoTime()));
+    }
+
+    /**
+     * action执行结束, 记录事件并清除当前线程的关联
+     * @param result 执行结果
+     */
+    public static void endAction(String result) {
+        Context c = context.get();
+        context.remove();
+        if(c != null && writer != null) {
+            StringBuilder sb = begin("action");
+            appendContext(sb, c);
+            append(sb, "item", c.item);
+            append(sb, "host", c.host);
+            end(sb, c.start, result, null);
+        }
+    }
+
+    /**
+     * 分配远程命令的序号
+     * @return 同一次运行内唯一
+     */
+    public static long nextCommandId() {
+        return commandId.incrementAndGet();
+    }
+
+    /**
+     * 记录远程命令的执行结果
+     * @param id 由nextCommandId()分配
+     * @param host 主机IP
+     * @param start 开始时间, System.nanoTime()
+     * @param result 执行结果
+     * @param error 错误信息, 可为null
+     */
+    public static void command(long id, String host, long start, String result, String error) {
+        if(writer != null) {
+            StringBuilder sb = begin("command");
+            appendContext(sb, context.get());
+            append(sb, "host", host);
+            sb.append(",\"cmd\":").append(id);
+            end(sb, start, result, error);
+        }
+    }
+
+    // ----------------------------------------------------------- private
+
+    private static StringBuilder begin(String event) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"ts\":").append(System.currentTimeMillis());
+        append(sb, "run", RUN_ID);
+        append(sb, "event", event);
+        return sb;
+    }
+
+    private static void appendContext(StringBuilder sb, Context c) {
+        if(c != null) {
+            append(sb, "task", c.task);
+            sb.append(",\"action\":").append(c.index);
+            append(sb, "role", c.role);
+        }
+    }
+
+    private static void end(StringBuilder sb, long start, String result, String error) {
+        sb.append(",\"duration_ms\":").append((System.nanoTime() - start) / 1000 / 1000.0);
+        append(sb, "result", result);
+        if(error != null) {
+            int pos = error.indexOf('\n');
+            if(pos >= 0) {
+                error = error.substring(0, pos);
+            }
+            if(error.length() > MAX_ERROR_LENGTH) {
+                error = error.substring(0, MAX_ERROR_LENGTH);
+            }
+            append(sb, "error", error.trim());
+        }
+        sb.append('}').append(ODUtil.SEPARATOR);
+        ODAsyncWriter w = writer;
+        if(w != null) {
+            w.write(sb.toString());
+        }
+    }
+
+    /** 添加字符串字段, 值为null时忽略 */
+    private static void append(StringBuilder sb, String name, String value) {
+        if(value == null) {
+            return;
+        }
+        sb.append(",\"").append(name).append("\":\"");
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /** 正在执行的action */
+    private static class Context {
+
+        private final String task;
+
+        private final int index;
+
+        private final String item;
+
+        private final String host;
+
+        private final String role;
+
+        private final long start;
+
+        private Context(String task, int index, String item, String host, String role, long start) {
+            this.task = task;
+            this.index = index;
+            this.item = item;
+            this.host = host;
+            this.role = role;
+            this.start = start;
+        }
+    }
+}
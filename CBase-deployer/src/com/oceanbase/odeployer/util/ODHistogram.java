@@ -0,0 +1,84 @@
+package com.oceanbase.odeployer.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时直方图
+ * <p>桶的上界在创建时确定并预先分配, 记录时只做一次查找和原子加, 不产生对象</p>
+ * 导出格式与Prometheus的histogram一致, 单位为秒
+ * @since OD2.0
+ */
+public class ODHistogram {
+
+    /** 默认桶上界(秒) */
+    public static final double[] DEFAULT_BUCKETS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300
+    };
+
+    /** 桶上界(纳秒), 最后一个桶为+Inf */
+    private final long[] bounds;
+
+    private final double[] buckets;
+
+    private final AtomicLongArray counts;
+
+    /** 所有记录值之和(纳秒) */
+    private final ODCounter sum = new ODCounter();
+
+    public ODHistogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * @param buckets 桶上界(秒), 从小到大
+     */
+    public ODHistogram(double[] buckets) {
+        this.buckets = buckets.clone();
+        this.bounds = new long[buckets.length];
+        for(int i = 0; i < buckets.length; i++) {
+            bounds[i] = (long) (buckets[i] * 1000000000L);
+        }
+        this.counts = new AtomicLongArray(buckets.length + 1);
+    }
+
+    /**
+     * 记录一次耗时
+     * @param nanos 纳秒
+     */
+    public void observe(long nanos) {
+        int i = 0;
+        while(i < bounds.length && nanos > bounds[i]) {
+            i++;
+        }
+        counts.incrementAndGet(i);
+        sum.add(nanos);
+    }
+
+    /**
+     * 记录从startNanos到现在的耗时
+     * @param startNanos System.nanoTime()
+     */
+    public void observeSince(long startNanos) {
+        observe(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 导出为Prometheus文本格式
+     * @param sb 输出
+     * @param name 指标名称
+     * @param labels 标签, 如: host="10.0.0.1", 可以为空字符串
+     */
+    public void write(StringBuilder sb, String name, String labels) {
+        String sep = labels.length() > 0 ? "," : "";
+        long cumulative = 0;
+        for(int i = 0; i <= buckets.length; i++) {
+            cumulative += counts.get(i);
+            String le = i < buckets.length ? String.valueOf(buckets[i]) : "+Inf";
+            sb.append(name).append("_bucket{").append(labels).append(sep).append("le=\"").append(le).append("\"} ")
+              .append(cumulative).append('\n');
+        }
+        String braces = labels.length() > 0 ? "{" + labels + "}" : "";
+        sb.append(name).append("_sum").append(braces).append(' ').append(sum.get() / 1e9).append('\n');
+        sb.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+}
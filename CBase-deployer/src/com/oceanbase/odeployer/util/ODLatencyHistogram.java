@@ -0,0 +1,119 @@
+package com.oceanbase.odeployer.util;
+
+/**
+ * 延迟直方图, 用于计算分位数
+ * <p>与HdrHistogram相同的对数-线性分桶: 小于2^SUB_BITS微秒的值精确记录,
+ * 更大的值在每个2的幂区间内均分为2^(SUB_BITS-1)个桶, 相对误差不超过1/2^(SUB_BITS-1)</p>
+ * 非线程安全, 每个线程记录到自己的实例, 结束后合并
+ * @since OD2.0
+ */
+public class ODLatencyHistogram {
+
+    /** 精度位数, 相对误差约1.6% */
+    private static final int SUB_BITS = 7;
+
+    private static final int HALF_COUNT = 1 << (SUB_BITS - 1);
+
+    /** 覆盖到Long.MAX_VALUE微秒 */
+    private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * HALF_COUNT + HALF_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+
+    private long totalCount;
+
+    /** 微秒 */
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private long sum;
+
+    /**
+     * 记录一次耗时
+     * @param nanos 纳秒
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 0);
+        counts[indexOf(micros)]++;
+        totalCount++;
+        sum += micros;
+        if(micros < min) {
+            min = micros;
+        }
+        if(micros > max) {
+            max = micros;
+        }
+    }
+
+    /**
+     * 合并另一个直方图
+     * @param other 不会被修改
+     */
+    public void add(ODLatencyHistogram other) {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 分位数
+     * @param percentile 如: 99.9
+     * @return 微秒, 为所在桶的上界且不超过最大值; 没有记录时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * totalCount);
+        rank = Math.min(Math.max(rank, 1), totalCount);
+        long cumulative = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if(cumulative >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /** 微秒 */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /** 微秒 */
+    public long getMax() {
+        return max;
+    }
+
+    /** 微秒 */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    // ----------------------------------------------------------- private
+
+    private static int indexOf(long value) {
+        if(value < (1 << SUB_BITS)) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1); // >= 1
+        return shift * HALF_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if(index < (1 << SUB_BITS)) {
+            return index;
+        }
+        int shift = index / HALF_COUNT - 1;
+        long sub = index - (long) shift * HALF_COUNT;
+        long highest = ((sub + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest; // 最高的桶溢出
+    }
+}
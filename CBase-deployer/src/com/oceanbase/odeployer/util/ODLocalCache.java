@@ -0,0 +1,130 @@
+package com.oceanbase.odeployer.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * 本地缓存文件
+ * <p>保存在多次命令之间需要记住的信息, 如上次可用的MS, 格式为key=value</p>
+ * 位于配置文件所在目录的缓存目录下, 与配置文件的快照共用该目录; 缓存只用于加速, 读写失败时忽略
+ * @since OD2.0
+ */
+public class ODLocalCache {
+
+    /** 缓存目录, 相对于配置文件所在目录 */
+    public static final String CACHE_DIR = ".cache";
+
+    /** 缓存文件, 位于缓存目录下 */
+    public static final String CACHE_FILE_NAME = "local.properties";
+
+    /**
+     * 配置文件对应的缓存目录
+     * @param configureFileName 配置文件
+     * @return 可能还不存在
+     */
+    public static File getCacheDir(String configureFileName) {
+        return new File(new File(configureFileName).getAbsoluteFile().getParentFile(), CACHE_DIR);
+    }
+
+    /**
+     * 创建缓存目录
+     * <p>旧版本的缓存是同名的文件, 此时把其中的内容移到缓存目录下的缓存文件中</p>
+     * @param configureFileName 配置文件
+     * @return 创建失败时返回false
+     */
+    public static synchronized boolean makeCacheDir(String configureFileName) {
+        File dir = getCacheDir(configureFileName);
+        if(dir.isFile()) {
+            Properties properties = load(dir);
+            if(!dir.delete() || !dir.mkdirs()) {
+                ODLogger.log("[WARN] create cache directory '" + dir + "' fail!");
+                return false;
+            }
+            store(new File(dir, CACHE_FILE_NAME), properties);
+        }
+        return dir.isDirectory() || dir.mkdirs();
+    }
+
+    /**
+     * 读取缓存
+     * @param configureFileName 配置文件
+     * @param key 键
+     * @return 不存在或读取失败时返回null
+     */
+    public static synchronized String get(String configureFileName, String key) {
+        return load(getCacheFile(configureFileName)).getProperty(key);
+    }
+
+    /**
+     * 写入缓存
+     * @param configureFileName 配置文件
+     * @param key 键
+     * @param value 为null时删除
+     */
+    public static synchronized void put(String configureFileName, String key, String value) {
+        Properties properties = load(getCacheFile(configureFileName));
+        String oldValue = properties.getProperty(key);
+        if(value == null ? oldValue == null : value.equals(oldValue)) {
+            return; // 未变化, 不写文件
+        }
+        if(value == null) {
+            properties.remove(key);
+        } else {
+            properties.setProperty(key, value);
+        }
+        if(makeCacheDir(configureFileName)) {
+            store(getCacheFile(configureFileName), properties);
+        }
+    }
+
+    // ----------------------------------------------------------- private
+
+    /** 旧版本的缓存文件未迁移时直接读取 */
+    private static File getCacheFile(String configureFileName) {
+        File dir = getCacheDir(configureFileName);
+        return dir.isFile() ? dir : new File(dir, CACHE_FILE_NAME);
+    }
+
+    private static Properties load(File file) {
+        Properties properties = new Properties();
+        if(file.isFile()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                properties.load(in);
+            } catch (Exception e) {
+                ODLogger.debug("read cache '" + file + "' fail: " + e);
+            } finally {
+                close(in);
+            }
+        }
+        return properties;
+    }
+
+    private static void store(File file, Properties properties) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            properties.store(out, "Oceanbase Deployer cache, safe to delete");
+        } catch (Exception e) {
+            ODLogger.log("[WARN] write cache '" + file + "' fail: " + e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.oceanbase.odeployer.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 日志的环形缓冲区
+ * <p>多个线程写入, 只有一个线程读取, 写入和读取都不加锁</p>
+ * <blockquote><pre>
+ * 写入: CAS占用序号tail, 再把日志放入对应的槽位
+ * 读取: 从序号head开始按顺序取出, 遇到未放入日志的槽位时停止
+ * </pre></blockquote>
+ * 缓冲区满时写入失败, 由调用者决定等待或丢弃
+ * @since OD2.0
+ */
+public class ODLogRing {
+
+    private final AtomicReferenceArray<String> slots;
+
+    /** 容量减1, 容量必须为2的幂 */
+    private final int mask;
+
+    /** 下一个写入的序号 */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** 下一个读取的序号, 只由读取线程修改 */
+    private volatile long head;
+
+    /**
+     * @param capacity 容量, 向上取整为2的幂
+     */
+    public ODLogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * 写入一条日志
+     * @param msg 日志, 不能为null
+     * @return 缓冲区满时返回false
+     */
+    public boolean offer(String msg) {
+        long seq;
+        do {
+            seq = tail.get();
+            if(seq - head > mask) {
+                return false;
+            }
+        } while(!tail.compareAndSet(seq, seq + 1));
+        slots.set((int) seq & mask, msg);
+        return true;
+    }
+
+    /**
+     * 按写入顺序取出日志, 只能由一个线程调用
+     * @param sb 保存取出的日志
+     * @param max 最多取出的条数
+     * @return 取出的条数
+     */
+    public int drain(StringBuilder sb, int max) {
+        int count = 0;
+        long seq = head;
+        while(count < max) {
+            int index = (int) seq & mask;
+            String msg = slots.get(index);
+            if(msg == null) { // 序号已被占用, 但还未放入日志
+                break;
+            }
+            slots.lazySet(index, null);
+            sb.append(msg);
+            head = ++seq;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 已写入的日志条数
+     * @return 包括已取出的日志
+     */
+    public long getWriteCount() {
+        return tail.get();
+    }
+
+    /**
+     * 是否已全部取出
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+}
@@ -1,41 +1,53 @@
 package com.oceanbase.odeployer.util;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 
 import com.oceanbase.odeployer.ODDeployer;
 
 /**
  * 系统日志
+ * <p>写日志文件是异步的, 见{@link ODAsyncWriter}; 控制台输出仍在调用线程中完成, 与其他输出保持顺序</p>
+ * destroy()或程序退出时写完缓冲区中的日志
  * @author lbz@lbzhong.com 2016/03/30
  * @since OD1.0
  */
 public class ODLogger {
     
-    private static boolean isInit = false;
+    private static volatile boolean isInit = false;
 
     /** 换行符 */
     private static String SEPARATOR = System.getProperty("line.separator");
-        
-    private static FileWriter fw;
+
+    /** 异步写日志文件 */
+    private static ODAsyncWriter writer;
+
+    private static boolean isHookAdded = false;
 
     /**
-     * 初始化
+     * 初始化, 已初始化时不重复打开日志文件
      * @param filepath 日志文件路径和文件名
      */
-    public static void init(String filepath) {
-        String dir = filepath.substring(0, filepath.lastIndexOf("/"));
-        File fileDir = new File(dir);
-        fileDir.mkdirs();
-        File file = new File(filepath);
+    public static synchronized void init(String filepath) {
+        if(isInit) {
+            return;
+        }
         try {
-            file.createNewFile();
-            fw = new FileWriter(file, true);
+            writer = new ODAsyncWriter(new File(filepath), "od-logger");
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
         isInit = true;
+        if(!isHookAdded) { // 未调用destroy()就退出时, 如Ctrl+C
+            isHookAdded = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("od-logger-flush") {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
     }
 
     public static void error(StackTraceElement stacks[]) {
@@ -54,6 +66,18 @@ public class ODLogger {
         log(log);
     }
 
+    /**
+     * 只有在debug模式下才打印，且不输出到日志文件
+     * <p>只在debug模式下获取调用栈</p>
+     * @param msg 信息
+     */
+    public static void debug(String msg) {
+        if(ODDeployer.DEBUG) {
+            StackTraceElement[] stacks = (new Throwable()).getStackTrace();
+            debug(msg, new StackTraceElement[] {stacks.length > 1 ? stacks[1] : stacks[0]});
+        }
+    }
+
     /**
      * 只有在debug模式下才打印，且不输出到日志文件
      * @param msg 信息
@@ -76,6 +100,14 @@ public class ODLogger {
         log(msg + SEPARATOR, true);
     }
 
+    /**
+     * 只输出到日志文件, 用于控制台被占用时, 如watch命令重绘屏幕
+     * @param msg 信息
+     */
+    public static void logToFile(String msg) {
+        log(msg + SEPARATOR, false);
+    }
+
     /**
      * @param msg 信息
      * @param isPrintToConcole 是否输出到控制台
@@ -84,26 +116,31 @@ public class ODLogger {
         if(isPrintToConcole) {
             System.out.print(msg);
         }
-        if(isInit) {
-            try {
-                fw.write(msg);
-                fw.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        ODAsyncWriter w = writer;
+        if(isInit && w != null) {
+            w.write(msg);
         } else {
             System.out.println("[ERROR] Logger has not been initialized!");
         }
     }
 
-    public static void destroy() {
-        if(null != fw) {
-            try {
-                fw.close();
-                isInit = false;
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    /**
+     * 等待已放入缓冲区的日志写入文件
+     */
+    public static void flush() {
+        ODAsyncWriter w = writer;
+        if(w != null) {
+            w.flush();
+        }
+    }
+
+    /**
+     * 写完缓冲区中的日志后关闭日志文件
+     */
+    public static synchronized void destroy() {
+        if(isInit) {
+            isInit = false;
+            writer.close();
         }
     }
 
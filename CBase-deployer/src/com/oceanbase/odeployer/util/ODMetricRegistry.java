@@ -0,0 +1,164 @@
+package com.oceanbase.odeployer.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 部署器自身的运行指标
+ * <p>全局唯一, 与ODLogger一样以静态方法访问, 所有集群共享</p>
+ * <blockquote><pre>
+ * 1. counter:   ODCounter, 只增不减
+ * 2. histogram: ODHistogram, 耗时分布
+ * 3. gauge:     ODGauge, 导出时读取的瞬时值, 如队列长度
+ * </pre></blockquote>
+ * 热点路径上应保存counter()和histogram()的返回值, 避免重复查找
+ * @since OD2.0
+ */
+public class ODMetricRegistry {
+
+    /** 导出时读取的瞬时值 */
+    public interface ODGauge {
+        long value();
+    }
+
+    /** 同名指标的集合, key为标签 */
+    private static class Family {
+
+        private final String type;
+
+        private final String help;
+
+        private final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+        private Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private static ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * 获取或创建计数器
+     * @param name 指标名称, 如: od_remote_commands_total
+     * @param help 说明
+     * @param labels 标签, 见label(), 无标签时为空字符串
+     * @return 不会为null
+     * @throws IllegalArgumentException 名称已注册为其他类型的指标
+     */
+    public static ODCounter counter(String name, String help, String labels) {
+        Family family = getFamily(name, "counter", help);
+        Object counter = family.series.get(labels);
+        if(counter == null) {
+            counter = new ODCounter();
+            Object old = family.series.putIfAbsent(labels, counter);
+            if(old != null) {
+                counter = old;
+            }
+        }
+        return (ODCounter) counter;
+    }
+
+    /**
+     * 获取或创建直方图
+     * @param name 指标名称, 如: od_remote_command_seconds
+     * @param help 说明
+     * @param labels 标签, 见label(), 无标签时为空字符串
+     * @return 不会为null
+     * @throws IllegalArgumentException 名称已注册为其他类型的指标
+     */
+    public static ODHistogram histogram(String name, String help, String labels) {
+        Family family = getFamily(name, "histogram", help);
+        Object histogram = family.series.get(labels);
+        if(histogram == null) {
+            histogram = new ODHistogram();
+            Object old = family.series.putIfAbsent(labels, histogram);
+            if(old != null) {
+                histogram = old;
+            }
+        }
+        return (ODHistogram) histogram;
+    }
+
+    /**
+     * 注册瞬时值
+     * @param name 指标名称, 如: od_action_queue_depth
+     * @param help 说明
+     * @param labels 标签, 见label(), 无标签时为空字符串
+     * @param gauge 导出时调用
+     * @throws IllegalArgumentException 名称已注册为其他类型的指标
+     */
+    public static void gauge(String name, String help, String labels, ODGauge gauge) {
+        getFamily(name, "gauge", help).series.put(labels, gauge);
+    }
+
+    /**
+     * 删除指标, 如集群关闭后的队列长度
+     * @param name 指标名称
+     * @param labels 标签
+     */
+    public static void remove(String name, String labels) {
+        Family family = families.get(name);
+        if(family != null) {
+            family.series.remove(labels);
+        }
+    }
+
+    /**
+     * 格式化标签
+     * @param key 标签名称
+     * @param value 标签值
+     * @return 如: host="10.0.0.1"
+     */
+    public static String label(String key, String value) {
+        return key + "=\"" + String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * 导出为Prometheus文本格式
+     * @return text/plain; version=0.0.4
+     */
+    public static String export() {
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String, Family> entry: families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for(Map.Entry<String, Object> series: family.series.entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if(metric instanceof ODHistogram) {
+                    ((ODHistogram) metric).write(sb, name, labels);
+                } else {
+                    long value = metric instanceof ODCounter ? ((ODCounter) metric).get() : ((ODGauge) metric).value();
+                    sb.append(name);
+                    if(labels.length() > 0) {
+                        sb.append('{').append(labels).append('}');
+                    }
+                    sb.append(' ').append(value).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // ----------------------------------------------------------- private
+
+    private static Family getFamily(String name, String type, String help) {
+        Family family = families.get(name);
+        if(family == null) {
+            family = new Family(type, help);
+            Family old = families.putIfAbsent(name, family);
+            if(old != null) {
+                family = old;
+            }
+        }
+        if(!family.type.equals(type)) { // 名称冲突是编码错误, 不能返回其他类型的指标
+            throw new IllegalArgumentException("metric '" + name + "' is registered as " + family.type + ", not " + type + "!");
+        }
+        return family;
+    }
+}
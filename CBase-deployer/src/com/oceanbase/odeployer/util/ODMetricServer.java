@@ -0,0 +1,70 @@
+package com.oceanbase.odeployer.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 导出运行指标的HTTP服务
+ * <p>在watch, metrics等长时间运行的命令中启动, GET /metrics 返回{@code ODMetricRegistry.export()}</p>
+ * @since OD2.0
+ */
+public class ODMetricServer {
+
+    private static HttpServer server;
+
+    /** 启动该服务的命令数, 为0时关闭 */
+    private static int refCount;
+
+    /**
+     * 启动服务, 已启动时只增加引用计数
+     * @param port 端口, 不大于0时不启动
+     * @return 启动失败时返回false
+     */
+    public static synchronized boolean start(int port) {
+        if(port <= 0) {
+            return true;
+        }
+        if(server == null) {
+            try {
+                server = HttpServer.create(new InetSocketAddress(port), 0);
+            } catch (IOException e) {
+                ODLogger.log("[ERROR] start metrics server on port " + port + " fail: " + e.getMessage());
+                return false;
+            }
+            server.createContext("/metrics", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    byte[] body = ODMetricRegistry.export().getBytes("UTF-8");
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    try {
+                        out.write(body);
+                    } finally {
+                        out.close();
+                    }
+                }
+            });
+            server.start(); // 使用HttpServer默认的单线程处理请求
+            ODLogger.log("Metrics: http://0.0.0.0:" + port + "/metrics");
+        }
+        refCount++;
+        return true;
+    }
+
+    /**
+     * 减少引用计数, 为0时关闭服务
+     */
+    public static synchronized void stop() {
+        if(server != null && --refCount <= 0) {
+            server.stop(0);
+            server = null;
+            refCount = 0;
+        }
+    }
+}
@@ -172,10 +172,28 @@ public class ODPrinter {
      * @param rows 若某行为null, 则打印横线
      */
     public static void printTable(String tablename, List<String> header, List<List<String>> rows) {
-        String table = "+";
         if(header == null || rows == null) { // 检查参数
             return;
         }
+        // table title
+        if(tablename != null) {
+            int totalWidth = 1; // 表格的总宽度
+            for(int i = 0; i < header.size(); i++) {
+                totalWidth += getColumnWidth(header, rows, i) + 1; //3表示两个空格和一个|
+            }
+        	printSingleLine("+", totalWidth);
+            printMessageCenter(tablename, "|", totalWidth);
+        }
+        ODLogger.log(formatTable(header, rows, getColumnWidths(header, rows)));
+    }
+
+    /**
+     * 表格各列的宽度
+     * @param header 表头
+     * @param rows 表格内容
+     * @return 已按总宽度对齐
+     */
+    public static List<Integer> getColumnWidths(List<String> header, List<List<String>> rows) {
         int columnCount = header.size();
         List<Integer> widths = new ArrayList<>(); // 各列的宽度
         int totalWidth = 1; // 表格的总宽度
@@ -184,11 +202,6 @@ public class ODPrinter {
             totalWidth += width + 1; //3表示两个空格和一个|
             widths.add(width);
         }
-        // table title
-        if(tablename != null) {
-        	printSingleLine("+", totalWidth);
-            printMessageCenter(tablename, "|", totalWidth);
-        }
         int gap = WIDTH - totalWidth - 1;
         if(gap > 0) {
             // 增加第一列的宽度，使得表格与总宽度对齐
@@ -198,6 +211,19 @@ public class ODPrinter {
         		widths.set(0, widths.get(0) + gap);
         	}
         }
+        return widths;
+    }
+
+    /**
+     * 格式化表格, 不含表格名称
+     * @param header 表头
+     * @param rows 若某行为null, 则为横线
+     * @param widths 各列的宽度
+     * @return 不以换行结尾
+     */
+    public static String formatTable(List<String> header, List<List<String>> rows, List<Integer> widths) {
+        String table = "+";
+        int columnCount = header.size();
         table += getTableLine(columnCount, widths);
         table += ODUtil.SEPARATOR + "|";
         for(int i = 0; i < columnCount; i++) {
@@ -212,11 +238,7 @@ public class ODPrinter {
             			&& row.size() == columnCount) {
             		table += "|";
                     for(int i = 0; i < columnCount; i++) {
-                        String col = row.get(i);
-                        if(col != null) {
-                            col = col.replace("\n", "").trim(); // 去除换行和多余空格
-                        }
-                        table += ODUtil.formatString(" " + col, widths.get(i)) + "|";
+                        table += formatCell(row.get(i), widths.get(i)) + "|";
                     }
             	} else {
             		table += "+";
@@ -230,7 +252,20 @@ public class ODPrinter {
         }
         table += "+";
         table += getTableLine(columnCount, widths);
-        ODLogger.log(table);
+        return table;
+    }
+
+    /**
+     * 格式化单元格
+     * @param col 单元格内容
+     * @param width 列宽
+     * @return 左侧加一个空格, 右侧补齐空格
+     */
+    public static String formatCell(String col, int width) {
+        if(col != null) {
+            col = col.replace("\n", "").trim(); // 去除换行和多余空格
+        }
+        return ODUtil.formatString(" " + col, width);
     }
 
 
@@ -0,0 +1,263 @@
+package com.oceanbase.odeployer.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 逐行输出查询结果
+ * <p>与{@code ODPrinter.printTable()}不同, 不保存全部行:</p>
+ * <pre>
+ * table: 缓存前SAMPLE_ROWS行估算列宽后输出, 之后的行到达即输出, 超出列宽的单元格截断
+ * csv:   RFC 4180, 含',', '"'或换行的值加引号, NULL为空, 空串为""
+ * tsv:   以制表符分隔, 制表符、换行和'\'转义, NULL为\N
+ * </pre>
+ * csv和tsv只输出到控制台, 不写日志文件, 便于重定向
+ * @since OD2.0
+ */
+public abstract class ODResultWriter {
+
+    public static final String TABLE = "table";
+    public static final String CSV = "csv";
+    public static final String TSV = "tsv";
+
+    /** 估算列宽的行数 */
+    public static int SAMPLE_ROWS = 200;
+
+    /** 估算的列宽上限 */
+    public static int MAX_COLUMN_WIDTH = 64;
+
+    /** 已输出的行数 */
+    protected long rowCount;
+
+    /**
+     * @param format table, csv或tsv
+     * @param tablename 表格名称, 仅table格式使用, 可以为null
+     * @return 格式不支持时返回null
+     */
+    public static ODResultWriter create(String format, String tablename) {
+        if(TABLE.equalsIgnoreCase(format)) {
+            return new ODTableWriter(tablename);
+        } else if(CSV.equalsIgnoreCase(format)) {
+            return new ODDelimitedWriter(',');
+        } else if(TSV.equalsIgnoreCase(format)) {
+            return new ODDelimitedWriter('\t');
+        }
+        ODLogger.log("[ERROR] the format '" + format + "' is undefined, it should be 'table', 'csv' or 'tsv'!");
+        return null;
+    }
+
+    /**
+     * 开始输出
+     * @param header 列名
+     */
+    public abstract void start(List<String> header);
+
+    /**
+     * 输出一行
+     * @param row 值可以为null
+     */
+    public abstract void write(List<String> row);
+
+    /**
+     * 输出剩余的行和表格结尾
+     * @return 总行数
+     */
+    public abstract long finish();
+
+    // ----------------------------------------------------------- writers
+
+    /** 表格 */
+    private static class ODTableWriter extends ODResultWriter {
+
+        private String tablename;
+
+        private List<String> header;
+
+        /** 确定列宽前缓存的行 */
+        private List<List<String>> sample = new ArrayList<>();
+
+        /** 为null表示尚未确定 */
+        private List<Integer> widths;
+
+        private ODTableWriter(String tablename) {
+            this.tablename = tablename;
+        }
+
+        @Override
+        public void start(List<String> header) {
+            this.header = header;
+        }
+
+        @Override
+        public void write(List<String> row) {
+            rowCount++;
+            if(widths == null) {
+                sample.add(row);
+                if(sample.size() >= SAMPLE_ROWS) {
+                    flushSample();
+                }
+            } else {
+                ODLogger.log(formatRow(row));
+            }
+        }
+
+        @Override
+        public long finish() {
+            if(header == null) { // 查询失败, 没有输出
+                return rowCount;
+            }
+            if(widths == null) {
+                flushSample();
+            }
+            ODLogger.log("+" + line());
+            ODLogger.log(rowCount + " rows");
+            return rowCount;
+        }
+
+        /** 由表头和缓存的行确定列宽, 并输出 */
+        private void flushSample() {
+            widths = new ArrayList<>();
+            int totalWidth = 1;
+            for(int i = 0; i < header.size(); i++) {
+                int width = header.get(i).length();
+                for(List<String> row: sample) {
+                    String cell = row.get(i);
+                    if(cell != null && cell.length() > width) {
+                        width = cell.length();
+                    }
+                }
+                width = Math.min(width, MAX_COLUMN_WIDTH) + 2; // 左右各一个空格
+                widths.add(width);
+                totalWidth += width + 1;
+            }
+            if(tablename != null) {
+                ODPrinter.printSingleLine("+", totalWidth);
+                ODPrinter.printMessageCenter(tablename, "|", totalWidth);
+            }
+            StringBuilder builder = new StringBuilder("+").append(line()).append(ODUtil.SEPARATOR).append("|");
+            for(int i = 0; i < header.size(); i++) {
+                builder.append(ODUtil.formatString(" " + header.get(i), widths.get(i))).append("|");
+            }
+            builder.append(ODUtil.SEPARATOR).append("+").append(line());
+            for(List<String> row: sample) {
+                builder.append(ODUtil.SEPARATOR).append(formatRow(row));
+            }
+            ODLogger.log(builder.toString());
+            sample = null;
+        }
+
+        private String formatRow(List<String> row) {
+            StringBuilder builder = new StringBuilder("|");
+            for(int i = 0; i < widths.size(); i++) {
+                String cell = row.get(i);
+                cell = cell == null ? "" : cell.replace("\n", " ").trim();
+                int width = widths.get(i);
+                if(cell.length() > width - 2) { // 截断, 以"..."结尾
+                    cell = cell.substring(0, Math.max(0, width - 5)) + "...";
+                }
+                builder.append(ODPrinter.formatCell(cell, width)).append("|");
+            }
+            return builder.toString();
+        }
+
+        private String line() {
+            StringBuilder builder = new StringBuilder();
+            for(int width: widths) {
+                builder.append(ODUtil.charToString("-", width)).append("+");
+            }
+            return builder.toString();
+        }
+    }
+
+    /** csv和tsv */
+    private static class ODDelimitedWriter extends ODResultWriter {
+
+        private char delimiter;
+
+        private Writer writer = new BufferedWriter(new OutputStreamWriter(System.out), 64 * 1024);
+
+        private StringBuilder builder = new StringBuilder();
+
+        private ODDelimitedWriter(char delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        @Override
+        public void start(List<String> header) {
+            writeLine(header);
+        }
+
+        @Override
+        public void write(List<String> row) {
+            rowCount++;
+            writeLine(row);
+        }
+
+        @Override
+        public long finish() {
+            try {
+                writer.flush(); // 不关闭System.out
+            } catch (IOException e) {
+                ODLogger.log("[ERROR] write result fail: " + e.getMessage());
+            }
+            return rowCount;
+        }
+
+        private void writeLine(List<String> row) {
+            builder.setLength(0);
+            for(int i = 0; i < row.size(); i++) {
+                if(i > 0) {
+                    builder.append(delimiter);
+                }
+                if(delimiter == '\t') {
+                    appendTsv(row.get(i));
+                } else {
+                    appendCsv(row.get(i));
+                }
+            }
+            builder.append(ODUtil.SEPARATOR);
+            try {
+                writer.write(builder.toString());
+            } catch (IOException e) {
+                ODLogger.log("[ERROR] write result fail: " + e.getMessage());
+            }
+        }
+
+        private void appendCsv(String value) {
+            if(value == null) {
+                return;
+            }
+            boolean quote = value.isEmpty();
+            for(int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if(quote) {
+                builder.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                builder.append(value);
+            }
+        }
+
+        private void appendTsv(String value) {
+            if(value == null) {
+                builder.append("\\N");
+                return;
+            }
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch(c) {
+                case '\t': builder.append("\\t"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\\': builder.append("\\\\"); break;
+                default: builder.append(c);
+                }
+            }
+        }
+    }
+}
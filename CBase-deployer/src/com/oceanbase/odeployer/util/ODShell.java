@@ -1,13 +1,16 @@
 package com.oceanbase.odeployer.util;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import com.oceanbase.odeployer.common.ODLogFilter;
 import com.oceanbase.odeployer.common.ODServer;
 import com.oceanbase.odeployer.common.ODServerName;
 import com.oceanbase.odeployer.start.ODParameter;
 
 /**
  * Shell命令
+ * <p>保存一个集群的安装目录和端口号, 每个集群上下文拥有一个实例: cluster.getShell()</p>
  * @author lbz@lbzhong.com 2016/03/30
  * @since OD1.0
  * @author yanfeizhang68@gmail.com 2016/12/30
@@ -16,18 +19,18 @@ import com.oceanbase.odeployer.start.ODParameter;
 public class ODShell {
 
     /** 各Server启动所需要的端口号 */
-    private static String rsPort;
-    private static String upsPort;
-    private static String upsMPort;
-    private static String csPort;
-    private static String msPort;
-    private static String msZPort;
+    private String rsPort;
+    private String upsPort;
+    private String upsMPort;
+    private String csPort;
+    private String msPort;
+    private String msZPort;
 
     /**CHUNKSERVER -N*/
-    private static String csPortN;
+    private String csPortN;
     
     /** 创建oceanbase的安装目录 */
-    private static String oceanbaseDir;
+    private String oceanbaseDir;
 
     // ----------------------------------------------------------- 初始化
 
@@ -35,9 +38,9 @@ public class ODShell {
      * 根据RS的端口号计算其它Server的端口号
      * @param rsPort RS端口号
      */
-    public static void init(String oceanbaseDir, String rsPort, String upsPortp, String upsPortm, String msPortp, String msPortz, String csPortp, String csPortn) {
+    public void init(String oceanbaseDir, String rsPort, String upsPortp, String upsPortm, String msPortp, String msPortz, String csPortp, String csPortn) {
 //        String prefix = rsPort.substring(0, rsPort.length() - 1);
-          ODShell.rsPort = rsPort;
+          this.rsPort = rsPort;
 //        upsPort = prefix + "1";
 //        upsMPort = prefix + "2";
 //        msPort = prefix + "3";
@@ -50,7 +53,7 @@ public class ODShell {
 		  msZPort = msPortz;
 		  csPort = csPortp;
 		  csPortN = csPortn;
-        ODShell.oceanbaseDir = oceanbaseDir;
+        this.oceanbaseDir = oceanbaseDir;
     }
 
     // ----------------------------------------------------------- 启动相关
@@ -61,7 +64,7 @@ public class ODShell {
      * @bootstrapTimeout 超时时间,默认600
      * @return shell命令
      */
-    public static String getBootstrapCmd(String RSIp, int bootstrapTimeout) {
+    public String getBootstrapCmd(String RSIp, int bootstrapTimeout) {
         if(bootstrapTimeout > 0) {
             bootstrapTimeout *= 1000000;
         } else {
@@ -79,7 +82,7 @@ public class ODShell {
      * @param parameters 附加启动参数
      * @return shell命令
      */
-    public static String getStartRSCmd(String RSIp, String masterRSIp, String network,
+    public String getStartRSCmd(String RSIp, String masterRSIp, String network,
                                        List<ODParameter> parameters) {
         return getStartServerCmd(RSIp, masterRSIp, network, parameters, ODServerName.RS);
     }
@@ -92,7 +95,7 @@ public class ODShell {
      * @param parameters 附加启动参数
      * @return shell命令
      */
-    public static String getStartUPSCmd(String RSIp, String network, List<ODParameter> parameters) {
+    public String getStartUPSCmd(String RSIp, String network, List<ODParameter> parameters) {
     	return getStartServerCmd(RSIp, null, network, parameters, ODServerName.UPS);
     }
 
@@ -104,7 +107,7 @@ public class ODShell {
      * @param parameters 附加启动参数
      * @return shell命令
      */
-    public static String getStartMSCmd(String RSIp, String network, List<ODParameter> parameters) {
+    public String getStartMSCmd(String RSIp, String network, List<ODParameter> parameters) {
     	return getStartServerCmd(RSIp, null, network, parameters, ODServerName.MS);
     }
 
@@ -116,7 +119,7 @@ public class ODShell {
      * @param parameters 附加启动参数
      * @return shell命令
      */
-    public static String getStartLMSCmd(String RSIp, String network, List<ODParameter> parameters) {
+    public String getStartLMSCmd(String RSIp, String network, List<ODParameter> parameters) {
     	return getStartServerCmd(RSIp, null, network, parameters, ODServerName.LMS);
     }
 
@@ -128,7 +131,7 @@ public class ODShell {
      * @param parameters 附加启动参数
      * @return shell命令
      */
-    public static String getStartCSCmd(String RSIp, String network, List<ODParameter> parameters) {
+    public String getStartCSCmd(String RSIp, String network, List<ODParameter> parameters) {
     	return getStartServerCmd(RSIp, null, network, parameters, ODServerName.CS);
     }
 
@@ -144,7 +147,7 @@ public class ODShell {
      * @param csParameters CS的附加启动参数
      * @return shell命令
      */
-    public static String getStartAllCmd(String RSIp, String masterRSIp, String network, boolean isLMS,
+    public String getStartAllCmd(String RSIp, String masterRSIp, String network, boolean isLMS,
                                         List<ODParameter> rsParameters, List<ODParameter> upsParameters,
                                         List<ODParameter> msParameters, List<ODParameter> csParameters) { 	
     	StringBuilder sb = new StringBuilder();
@@ -169,7 +172,7 @@ public class ODShell {
      * @param serverName Server的名称
      * @return shell命令
      */
-    private static String getStartServerCmd(String RSIp, String masterRSIp, String network,
+    private String getStartServerCmd(String RSIp, String masterRSIp, String network,
                                            List<ODParameter> parameters, ODServerName serverName) {  
     	StringBuilder sb = new StringBuilder();
         sb.append(serverName);
@@ -246,77 +249,172 @@ public class ODShell {
      * @param force 是否强制停止 kill -9/-15
      * @return shell命令
      */
-    public static String getKillServerCmd(ODServerName serverName, boolean force) {
-        int signal = -15;
+    public String getKillServerCmd(ODServerName serverName, boolean force) {
+        return "kill " + getKillSignal(force) + " `" + getServerPidCmd(serverName) + "`";
+    }
+
+    /**
+     * 按进程号停止Server
+     * @param pid 状态快照中的进程号
+     * @param force 是否强制停止 kill -9/-15
+     * @return shell命令
+     */
+    public String getKillPidCmd(int pid, boolean force) {
+        return "kill " + getKillSignal(force) + " " + pid;
+    }
+
+    private String getKillSignal(boolean force) {
         if(force) {
-            signal = -9;
+            return "-9";
         }
-        return "kill " + signal + " `" + getServerPidCmd(serverName) + "`";
+        return "-15";
     }
 
+    // ----------------------------------------------------------- 进程相关
+
     /**
-     * 停止所有Server
+     * Server的进程号
+     * @param serverName Server的名称
      * @return shell命令
      */
-    public static String getKillAllCmd(boolean force) {
-        StringBuilder sb = new StringBuilder();
+    public String getServerPidCmd(ODServerName serverName) {
+        return "cat " + oceanbaseDir + "/run/" + serverName + ".pid";
+    }
+
+    /**
+     * 获取所有Server进程的状态, 一次远程调用完成
+     * <p>每个Server输出一行: rs|pid|comm etime rss pcpu|port,port, 进程不存在时第3,4列为空</p>
+     * 监听端口优先使用ss获取, 不存在时使用netstat
+     * @return shell命令
+     */
+    public String getStatusCmd() {
+        StringBuilder sb = new StringBuilder("{ ");
         for(ODServerName server: ODServer.SERVER_NAMES) {
-            sb.append(getKillServerCmd(server, force)).append(";");
+            sb.append("p=`").append(getServerPidCmd(server)).append("`; s=; l=; ")
+              .append("if [ -n \"$p\" ]; then s=`ps -o comm=,etime=,rss=,pcpu= -p $p`; fi; ")
+              .append("if [ -n \"$s\" ]; then l=`(ss -ltnp || netstat -ltnp) | grep -E \"pid=$p,|[ ]$p/\"")
+              .append(" | awk '{print $4}' | sed 's/.*://' | sort -un | tr '\\n' ','`; fi; ")
+              .append("echo \"").append(server.toShortName()).append("|$p|$s|$l\"; ");
         }
+        sb.append("} 2>/dev/null");
         return sb.toString();
     }
 
-    // ----------------------------------------------------------- 进程相关
-
     /**
-     * 获取所有Server的进程号
+     * 读取所有Server进程的资源计数, 一次远程调用完成
+     * <p>第1行: t|系统运行时间(秒)|CLK_TCK</p>
+     * 每个Server输出一行: rs|pid|utime stime|VmRSS Threads|fd数|read_bytes write_bytes, 进程不存在时只有前两列
      * @return shell命令
      */
-    public static String getAllPidCmd() {
-        StringBuilder sb = new StringBuilder();
+    public String getProcMetricsCmd() {
+        StringBuilder sb = new StringBuilder("{ ");
+        sb.append("echo \"t|`cut -d' ' -f1 /proc/uptime`|`getconf CLK_TCK`\"; ");
         for(ODServerName server: ODServer.SERVER_NAMES) {
-            sb.append(getServerPidCmd(server)).append(";");
+            sb.append("p=`").append(getServerPidCmd(server)).append("`; ")
+              .append("if [ -n \"$p\" ] && [ -d /proc/$p ]; then ")
+              .append("s=`cut -d' ' -f14,15 /proc/$p/stat`; ")
+              .append("m=`awk '/^VmRSS:|^Threads:/{printf \"%s \", $2}' /proc/$p/status`; ")
+              .append("f=`ls /proc/$p/fd | wc -l`; ")
+              .append("o=`awk '/^read_bytes:|^write_bytes:/{printf \"%s \", $2}' /proc/$p/io`; ")
+              .append("echo \"").append(server.toShortName()).append("|$p|$s|$m|$f|$o\"; ")
+              .append("else echo \"").append(server.toShortName()).append("|$p\"; fi; ");
         }
+        sb.append("} 2>/dev/null");
         return sb.toString();
     }
 
     /**
-     * Server的进程号
-     * @param serverName Server的名称
+     * 采集主机的启动前检查项, 一次远程调用完成
+     * <p>每行为key=value, 第1行为远程主机的时间, 尽量靠近命令开始执行的时刻:</p>
+     * <blockquote><pre>
+     * time=纳秒(不支持%N时为秒后接N)
+     * disk=安装目录所在分区的可用空间(KB), 目录不存在时取最近的已存在的上级目录
+     * nofile=ulimit -n, nproc=ulimit -u, 可能为unlimited
+     * memory=可用内存(KB), 没有MemAvailable时取MemFree+Buffers+Cached
+     * cpu=在线CPU数
+     * sysctl.vm.max_map_count=/proc/sys/vm/max_map_count
+     * </pre></blockquote>
+     * @param sysctlNames 内核参数名称, 如: vm.max_map_count
      * @return shell命令
      */
-    public static String getServerPidCmd(ODServerName serverName) {
-        return "cat " + oceanbaseDir + "/run/" + serverName + ".pid";
+    public String getPreflightCmd(List<String> sysctlNames) {
+        StringBuilder sb = new StringBuilder("{ ");
+        sb.append("echo \"time=`date +%s%N`\"; ")
+          .append("d=").append(oceanbaseDir).append("; while [ ! -d \"$d\" ]; do d=`dirname \"$d\"`; done; ")
+          .append("echo \"disk=`df -Pk \"$d\" | awk 'NR==2{print $4}'`\"; ")
+          .append("echo \"nofile=`ulimit -n`\"; echo \"nproc=`ulimit -u`\"; ")
+          .append("echo \"memory=`awk '/^MemAvailable:/{a=$2} /^(MemFree|Buffers|Cached):/{f+=$2} END{print a?a:f}' /proc/meminfo`\"; ")
+          .append("echo \"cpu=`getconf _NPROCESSORS_ONLN`\"; ");
+        if(!sysctlNames.isEmpty()) {
+            sb.append("for k in");
+            for(String name: sysctlNames) {
+                sb.append(' ').append(name);
+            }
+            sb.append("; do echo \"sysctl.$k=`cat /proc/sys/$(echo $k | tr . /)`\"; done; ");
+        }
+        sb.append("} 2>/dev/null");
+        return sb.toString();
     }
 
     /**
-     * 检查Server进程是否存活
-     * @param serverName Server的名称
+     * 列出正在监听指定端口的TCP套接字, 一次远程调用完成
+     * <p>每行为ss或netstat的一行输出, 第4列为本地地址, 包含占用端口的进程号</p>
+     * @param ports 端口号
      * @return shell命令
      */
-    public static String getCheckServerAliveCmd(ODServerName serverName) {
-        return "ps -p `" + getServerPidCmd(serverName) + "`";
+    public String getListenPortsCmd(List<String> ports) {
+        StringBuilder sb = new StringBuilder();
+        for(String port: ports) {
+            sb.append(sb.length() > 0 ? "|" : "").append(port);
+        }
+        return "{ ss -ltnp || netstat -ltnp; } 2>/dev/null | grep -E ':(" + sb + ")[[:space:]]'";
     }
 
     /**
-     * 检查所有Server进程是否存活
+     * 持续输出Server的日志
+     * 多个文件时tail会在切换文件时输出'==> log/xxx.log <=='
+     * @param serverNames Server的类型
+     * @param lines 先输出的已有行数
      * @return shell命令
      */
-    public static String getCheckAllAliveCmd() {
+    public String getTailLogCmd(List<ODServerName> serverNames, int lines) {
         StringBuilder sb = new StringBuilder();
-        for(ODServerName server: ODServer.SERVER_NAMES) {
-            sb.append(getCheckServerAliveCmd(server)).append(";");
+        sb.append(getCdOceanbaseDir()).append(";tail -n ").append(lines).append(" -F");
+        for(ODServerName server: serverNames) {
+            sb.append(" log/").append(server).append(".log");
         }
         return sb.toString();
     }
 
+    /**
+     * 在远程主机上过滤Server的日志, 包括已切分的历史日志, 按修改时间从旧到新读取
+     * <p>过滤条件通过环境变量传给awk, 避免转义; 只对带时间戳的行判断, 续行沿用上一行的结果</p>
+     * 输出经gzip压缩, 没有日志文件时输出为空
+     * @param serverName Server的类型
+     * @param filter 过滤条件
+     * @return shell命令
+     */
+    public String getFetchLogCmd(ODServerName serverName, ODLogFilter filter) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getCdOceanbaseDir()).append("; f=`ls -tr log/").append(serverName).append(".log* 2>/dev/null`; ")
+          .append("[ -n \"$f\" ] && F=").append(quote(filter.getFrom()))
+          .append(" T=").append(quote(filter.getTo()))
+          .append(" V=").append(quote(filter.getLevel()))
+          .append(" G=").append(quote(filter.getGrep()))
+          .append(" awk 'BEGIN{n=split(\"").append(ODUtil.toString(ODLogFilter.LEVELS).trim()).append("\",L,\" \");")
+          .append(" for(i=1;i<=n;i++) R[L[i]]=i; f=ENVIRON[\"F\"]; t=ENVIRON[\"T\"]; v=R[ENVIRON[\"V\"]]; g=ENVIRON[\"G\"]}")
+          .append(" /^\\[[0-9]/{d=substr($0,2,19); k=(f==\"\"||d>=f)&&(t==\"\"||substr(d,1,length(t))<=t)&&(v==\"\"||R[$3]>=v)&&(g==\"\"||$0~g)}")
+          .append(" k' $f | gzip -c");
+        return sb.toString();
+    }
+
     // ----------------------------------------------------------- 初始化Oceanbase,目录文件操作相关
 
     /**
      * 安装目录
      * @return shell命令
      */
-    public static String getOceanbaseDir() {
+    public String getOceanbaseDir() {
         return oceanbaseDir;
     }
     
@@ -324,7 +422,7 @@ public class ODShell {
      * 清除系统日志./log/
      * @return shell命令
      */
-    public static String getClearSystemLogCmd() {
+    public String getClearSystemLogCmd() {
         return "rm -f log/*";
     }
     
@@ -332,7 +430,7 @@ public class ODShell {
      * 清除系统配置文件./etc/*.bin
      * @return shell命令
      */
-    public static String getClearConfigureCmd() {
+    public String getClearConfigureCmd() {
         return "rm -f etc/*.bin";
     }
 
@@ -340,7 +438,7 @@ public class ODShell {
      * 创建oceanbase的安装目录
      * @return shell命令
      */
-    public static String getMkOceanbaseDir() {
+    public String getMkOceanbaseDir() {
         return "mkdir -p " + oceanbaseDir + "/log";
     }
 
@@ -348,35 +446,64 @@ public class ODShell {
      * 打开到oceanbase安装目录
      * @return shell命令
      */
-    public static String getCdOceanbaseDir() {
+    public String getCdOceanbaseDir() {
         return "cd " + oceanbaseDir;
     }
     
-    public static String getRsPort() {
+    public String getRsPort() {
         return rsPort;
     }
     
-    public static String getUpsPort() {
+    public String getUpsPort() {
         return upsPort;
     }
     
-    public static String getMsPort() {
+    public String getMsPort() {
         return msPort;
     }
     
-    public static String getCsPort() {
+    public String getCsPort() {
         return csPort;
     }
 
-    public static String getMsZPort() {
+    public String getMsZPort() {
         return msZPort;
     }
+
+    /**
+     * Server监听的端口号
+     * @param serverName Server的类型, LMS与MS相同
+     * @return 不会为null
+     */
+    public List<String> getServerPorts(ODServerName serverName) {
+        List<String> ports = new ArrayList<>();
+        switch (serverName) {
+            case RS:
+                ports.add(rsPort);
+                break;
+            case UPS:
+                ports.add(upsPort);
+                ports.add(upsMPort);
+                break;
+            case MS:
+            case LMS:
+                ports.add(msPort);
+                ports.add(msZPort);
+                break;
+            case CS:
+                ports.add(csPort);
+                break;
+            default:
+                break;
+        }
+        return ports;
+    }
     
     /**
      * 重建data目录
      * @return shell命令
      */
-    public static String getResetDataCmd() {
+    public String getResetDataCmd() {
         StringBuilder sb = new StringBuilder();
         sb.append("rm -rf ./data/;");
         sb.append("mkdir -p ./data/admin_ups1;");
@@ -400,7 +527,7 @@ public class ODShell {
      * @param user 程序用户名，用于区分不同的部署事件
      * @return shell命令
      */
-    public static String getDeployCmd(List<ODServer> serverList, String originOceanbase, String user) {  	
+    public String getDeployCmd(List<ODServer> serverList, String originOceanbase, String user) {  	
         StringBuilder sb = new StringBuilder();
         sb.append("cd ").append(originOceanbase)
                 .append(";rm -f *.").append(user).append(".exp.tmp;mkdir -p run;")
@@ -428,7 +555,7 @@ public class ODShell {
      * @param password 密码
      * @return shell命令
      */
-    private static String getCreateExpectFileCmd(String ip, String username, String password) {
+    private String getCreateExpectFileCmd(String ip, String username, String password) {
         return "#!/usr/bin/expect -f\\n" +
                 "spawn scp -r bin etc include run lib mrsstable_lib_5u mrsstable_lib_6u "
                 + username + "@" + ip + ":" + oceanbaseDir + "\\n" +
@@ -440,4 +567,13 @@ public class ODShell {
                 "expect eof";
     }
 
+    /**
+     * 用单引号包围参数, 参数中的单引号转义为'\''
+     * @param value 任意字符串
+     * @return 可以直接拼接到shell命令中
+     */
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
 }
@@ -2,6 +2,8 @@ package com.oceanbase.odeployer.util;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -193,6 +195,29 @@ public class ODUtil {
         }
     }
 
+    /**
+     * 检查远程端口是否可以连接
+     * @param ip 主机IP
+     * @param port 端口号
+     * @param timeout 连接超时(毫秒)
+     * @return 连接成功返回true
+     */
+    public static boolean isPortOpen(String ip, int port, int timeout) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(ip, port), timeout);
+            return true;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+
     /**
      * 格式化字符串，右边补空格
      * @param str
@@ -223,6 +248,9 @@ public class ODUtil {
                 "# @notice: This configuration template file is generated automatically." + SEPARATOR +
                 "#          The whole line or several words can be commented out by using" + SEPARATOR +
                 "#          the character of \"#\"." + SEPARATOR +
+                "#          'include = <file>' reads another configuration file," + SEPARATOR +
+                "#          'role.<name> = <value>' defines the value of the field '@<name>'," + SEPARATOR +
+                "#          and the ip range such as 10.1.2.[10-209] is expanded in place." + SEPARATOR +
                 "# " + charToString("=", width) + SEPARATOR);
         for(ODISectionParser parser: sectionParserList) {
             String name = parser.getSectionName();//不同的sectionParser调用不同的getSectionName方法
@@ -233,7 +261,7 @@ public class ODUtil {
                     .append("# ").append(charToString("-", width)).append(SEPARATOR)
                     .append("# ").append(parser.getDescription()).append(SEPARATOR);
             //----------------------- 1. 赋值格式和说明
-            List<Pair<String, Pair<String, String>>> vdList = ODItem.getValuePatternAndDescriptionList(name);
+            List<Pair<String, Pair<String, String>>> vdList = ODItem.getValuePatternAndDescriptionList(name, oceanbaseVersions);
             //通过sectionname获取到相关的item、pattern以及description
             int maxLen = 0;
             for(Pair<String, Pair<String, String>> vd: vdList) {